@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link CellComparatorImpl} on adjacent cells of a sorted data set, which is the
+ * comparison pattern of every heap, seeker and memstore in the read and write paths. Adjacent
+ * cells mostly differ late in the key (qualifier, or row suffix) so this exercises the common
+ * prefix handling rather than the first-byte fast path.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CellComparatorBenchmark {
+
+  private static final int NUM_ROWS = 4096;
+
+  /** Whether the cells are array backed {@link KeyValue}s or off-heap ByteBufferKeyValues. */
+  @Param({ "false", "true" })
+  public boolean offheap;
+
+  @Param({ "4" })
+  public int qualifiersPerRow;
+
+  private Cell[] cells;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    List<KeyValue> kvs = new BenchmarkDataGenerator(qualifiersPerRow, 16).generate(NUM_ROWS);
+    List<? extends Cell> list = offheap ? BenchmarkDataGenerator.toOffheap(kvs) : kvs;
+    cells = list.toArray(new Cell[list.size()]);
+  }
+
+  private int next() {
+    index++;
+    if (index >= cells.length) {
+      index = 1;
+    }
+    return index;
+  }
+
+  @Benchmark
+  public int compare() {
+    int i = next();
+    return CellComparatorImpl.COMPARATOR.compare(cells[i - 1], cells[i]);
+  }
+
+  @Benchmark
+  public int compareRows() {
+    int i = next();
+    return CellComparatorImpl.COMPARATOR.compareRows(cells[i - 1], cells[i]);
+  }
+
+  @Benchmark
+  public int compareWithoutRow() {
+    int i = next();
+    return CellComparatorImpl.COMPARATOR.compareWithoutRow(cells[i - 1], cells[i]);
+  }
+}
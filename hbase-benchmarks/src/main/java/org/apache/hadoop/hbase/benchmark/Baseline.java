@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A set of benchmark scores that later runs are compared against.
+ * <p>
+ * A baseline is stored as a small tab separated text file, one benchmark per line:
+ * <pre>
+ * label  mode  score  error  unit
+ * </pre>
+ * where label is the benchmark method plus its parameters, mode is the JMH mode short label
+ * (thrpt, avgt, sample, ss) and error is the half width of the 99.9% confidence interval JMH
+ * reports. Lines starting with '#' are ignored. The format is deliberately trivial so baselines
+ * can be checked in next to a release and diffed by hand.
+ */
+@InterfaceAudience.Private
+public class Baseline {
+
+  static final String HEADER = "# hbase-benchmarks baseline v1";
+
+  /** A single benchmark score. */
+  public static final class Score {
+    private final String mode;
+    private final double score;
+    private final double error;
+    private final String unit;
+
+    public Score(String mode, double score, double error, String unit) {
+      this.mode = mode;
+      this.score = score;
+      this.error = Double.isNaN(error) ? 0 : error;
+      this.unit = unit;
+    }
+
+    public String getMode() {
+      return mode;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    public double getError() {
+      return error;
+    }
+
+    public String getUnit() {
+      return unit;
+    }
+
+    /** @return true if a larger score is better, i.e. this is a throughput measurement. */
+    boolean higherIsBetter() {
+      return "thrpt".equals(mode);
+    }
+  }
+
+  /** Outcome of comparing one benchmark against its baseline. */
+  public static final class Comparison {
+    private final String label;
+    private final Score baseline;
+    private final Score current;
+    private final double change;
+    private final boolean regression;
+
+    Comparison(String label, Score baseline, Score current, double change, boolean regression) {
+      this.label = label;
+      this.baseline = baseline;
+      this.current = current;
+      this.change = change;
+      this.regression = regression;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    /**
+     * @return relative change, signed so that a positive value is always an improvement and a
+     *         negative value always a slowdown, regardless of the benchmark mode.
+     */
+    public double getChange() {
+      return change;
+    }
+
+    public boolean isRegression() {
+      return regression;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-80s %12.3f -> %12.3f %-10s %+7.2f%%%s", label, baseline.getScore(),
+        current.getScore(), current.getUnit(), change * 100, regression ? "  REGRESSION" : "");
+    }
+  }
+
+  private final Map<String, Score> scores = new TreeMap<>();
+
+  public void put(String label, Score score) {
+    scores.put(label, score);
+  }
+
+  public Score get(String label) {
+    return scores.get(label);
+  }
+
+  public Map<String, Score> getScores() {
+    return Collections.unmodifiableMap(scores);
+  }
+
+  public static Baseline read(Reader in) throws IOException {
+    Baseline baseline = new Baseline();
+    BufferedReader reader = new BufferedReader(in);
+    String line;
+    int lineNo = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNo++;
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] parts = line.split("\t");
+      if (parts.length != 5) {
+        throw new IOException("Malformed baseline line " + lineNo + ": " + line);
+      }
+      try {
+        baseline.put(parts[0], new Score(parts[1], Double.parseDouble(parts[2]),
+            Double.parseDouble(parts[3]), parts[4]));
+      } catch (NumberFormatException e) {
+        throw new IOException("Malformed score on baseline line " + lineNo + ": " + line, e);
+      }
+    }
+    return baseline;
+  }
+
+  public void write(Writer out) throws IOException {
+    BufferedWriter writer = new BufferedWriter(out);
+    writer.write(HEADER);
+    writer.newLine();
+    for (Map.Entry<String, Score> e : scores.entrySet()) {
+      Score s = e.getValue();
+      writer.write(e.getKey() + "\t" + s.getMode() + "\t" + s.getScore() + "\t" + s.getError()
+          + "\t" + s.getUnit());
+      writer.newLine();
+    }
+    writer.flush();
+  }
+
+  /**
+   * Compares every benchmark present in both this baseline and {@code current}.
+   * <p>
+   * A benchmark is flagged as a regression only when it got worse by more than {@code tolerance}
+   * (a fraction, e.g. 0.03 for 3%) <em>and</em> the difference is larger than the sum of both
+   * confidence intervals, so a noisy benchmark does not fail the comparison on its own.
+   */
+  public List<Comparison> compare(Baseline current, double tolerance) {
+    List<Comparison> result = new ArrayList<>();
+    for (Map.Entry<String, Score> e : scores.entrySet()) {
+      Score base = e.getValue();
+      Score cur = current.get(e.getKey());
+      if (cur == null || !base.getMode().equals(cur.getMode())
+          || !base.getUnit().equals(cur.getUnit()) || base.getScore() == 0) {
+        continue;
+      }
+      double delta = cur.getScore() - base.getScore();
+      double change = (base.higherIsBetter() ? delta : -delta) / base.getScore();
+      boolean outsideNoise = Math.abs(delta) > base.getError() + cur.getError();
+      result.add(new Comparison(e.getKey(), base, cur, change,
+          change < -tolerance && outsideNoise));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.ArrayBackedTag;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.Tag;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Reproducible generator of sorted cells for the benchmarks in this module.
+ * <p>
+ * Row keys are shaped like real composite keys: a fixed-width 'tenant' prefix shared by runs of
+ * {@value #ROWS_PER_TENANT} consecutive rows, followed by a zero padded, monotonically increasing
+ * entity id. Every row carries the same set of qualifiers in one family, so neighbouring cells
+ * share long prefixes the way they do in real HFiles. All randomness is drawn from a
+ * {@link Random} seeded at construction, so two generators built with the same arguments always
+ * produce byte-identical data; this is what makes numbers from different runs (and different
+ * builds) comparable.
+ */
+@InterfaceAudience.Private
+public class BenchmarkDataGenerator {
+
+  /** Seed used by the benchmarks unless they are told otherwise. */
+  public static final long DEFAULT_SEED = 0x5EEDL;
+
+  public static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private static final int TENANT_LENGTH = 8;
+  private static final int ROWS_PER_TENANT = 4096;
+  private static final int ENTITY_ID_LENGTH = 12;
+
+  private final long seed;
+  private final int qualifiersPerRow;
+  private final int valueLength;
+  private final int tagsPerCell;
+
+  public BenchmarkDataGenerator(int qualifiersPerRow, int valueLength) {
+    this(DEFAULT_SEED, qualifiersPerRow, valueLength, 0);
+  }
+
+  public BenchmarkDataGenerator(long seed, int qualifiersPerRow, int valueLength,
+      int tagsPerCell) {
+    if (qualifiersPerRow <= 0) {
+      throw new IllegalArgumentException("qualifiersPerRow must be positive");
+    }
+    if (valueLength < 0 || tagsPerCell < 0) {
+      throw new IllegalArgumentException("valueLength and tagsPerCell must not be negative");
+    }
+    this.seed = seed;
+    this.qualifiersPerRow = qualifiersPerRow;
+    this.valueLength = valueLength;
+    this.tagsPerCell = tagsPerCell;
+  }
+
+  /**
+   * @param rowIndex index of the row in generation order
+   * @return the row key of the given row. Row keys sort in the order of their index.
+   */
+  public static byte[] row(int rowIndex) {
+    int tenant = rowIndex / ROWS_PER_TENANT;
+    String tenantPart = String.format("t%0" + (TENANT_LENGTH - 1) + "d", tenant);
+    String entityPart = String.format("%0" + ENTITY_ID_LENGTH + "d", rowIndex);
+    return Bytes.toBytes(tenantPart + entityPart);
+  }
+
+  public static byte[] qualifier(int qualifierIndex) {
+    return Bytes.toBytes(String.format("q%04d", qualifierIndex));
+  }
+
+  /**
+   * Generates {@code numRows * qualifiersPerRow} cells in {@link CellComparatorImpl#COMPARATOR}
+   * order.
+   */
+  public List<KeyValue> generate(int numRows) {
+    Random rand = new Random(seed);
+    List<KeyValue> kvs = new ArrayList<>(numRows * qualifiersPerRow);
+    long ts = 1500000000000L;
+    for (int r = 0; r < numRows; r++) {
+      byte[] row = row(r);
+      for (int q = 0; q < qualifiersPerRow; q++) {
+        byte[] value = new byte[valueLength];
+        rand.nextBytes(value);
+        KeyValue kv;
+        if (tagsPerCell > 0) {
+          List<Tag> tags = new ArrayList<>(tagsPerCell);
+          for (int t = 0; t < tagsPerCell; t++) {
+            tags.add(new ArrayBackedTag((byte) (t + 1), Bytes.toBytes(rand.nextInt())));
+          }
+          kv = new KeyValue(row, FAMILY, qualifier(q), ts, KeyValue.Type.Put, value, tags);
+        } else {
+          kv = new KeyValue(row, FAMILY, qualifier(q), ts, KeyValue.Type.Put, value);
+        }
+        kv.setSequenceId(r + 1);
+        kvs.add(kv);
+      }
+    }
+    // Generation order already matches the comparator; sort anyway so that changing the key
+    // shape above can never silently produce an unsorted data set.
+    Collections.sort(kvs, CellComparatorImpl.COMPARATOR);
+    return kvs;
+  }
+
+  /**
+   * Copies the passed cells into a single direct buffer and returns {@link ByteBufferKeyValue}s
+   * over it, mirroring what the read path hands out for off-heap blocks.
+   */
+  public static List<Cell> toOffheap(List<KeyValue> kvs) {
+    int total = 0;
+    for (KeyValue kv : kvs) {
+      total += kv.getLength();
+    }
+    ByteBuffer buf = ByteBuffer.allocateDirect(total);
+    List<Cell> cells = new ArrayList<>(kvs.size());
+    for (KeyValue kv : kvs) {
+      int offset = buf.position();
+      buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+      cells.add(new ByteBufferKeyValue(buf, offset, kv.getLength(), kv.getSequenceId()));
+    }
+    return cells;
+  }
+
+  /**
+   * @return {@code count} indexes in {@code [0, bound)} drawn from a generator derived from this
+   *         generator's seed. Used to pick seek targets reproducibly.
+   */
+  public int[] probes(int count, int bound) {
+    Random rand = new Random(seed * 31 + bound);
+    int[] probes = new int[count];
+    for (int i = 0; i < count; i++) {
+      probes[i] = rand.nextInt(bound);
+    }
+    return probes;
+  }
+}
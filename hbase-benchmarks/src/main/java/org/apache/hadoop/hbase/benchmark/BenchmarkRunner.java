@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the JMH benchmarks in this module and optionally gates the results on a saved
+ * {@link Baseline}.
+ * <p>
+ * Typical use when evaluating a change:
+ * <pre>
+ * # on the old build
+ * java -jar hbase-benchmarks.jar -saveBaseline before.tsv
+ * # on the new build
+ * java -jar hbase-benchmarks.jar -baseline before.tsv -tolerance 3
+ * </pre>
+ * The second invocation exits non-zero if any benchmark regressed by more than the tolerance
+ * (in percent) beyond the measurement noise. Positional arguments are JMH include regular
+ * expressions, e.g. {@code CellComparator} to run only the comparator suite.
+ */
+@InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.TOOLS)
+public class BenchmarkRunner extends AbstractHBaseTool {
+  private static final Logger LOG = LoggerFactory.getLogger(BenchmarkRunner.class);
+
+  private static final String OPT_BASELINE = "baseline";
+  private static final String OPT_SAVE_BASELINE = "saveBaseline";
+  private static final String OPT_TOLERANCE = "tolerance";
+  private static final String OPT_QUICK = "quick";
+  private static final String OPT_FORKS = "forks";
+  private static final String OPT_JSON = "json";
+
+  private static final double DEFAULT_TOLERANCE_PERCENT = 3.0;
+
+  private String baselineFile;
+  private String saveBaselineFile;
+  private double tolerance;
+  private boolean quick;
+  private int forks;
+  private String jsonFile;
+  private String[] includes;
+
+  @Override
+  protected void addOptions() {
+    addOptWithArg(OPT_BASELINE, "Compare the results with the baseline in this file and fail "
+        + "if any benchmark regressed");
+    addOptWithArg(OPT_SAVE_BASELINE, "Write the results as a new baseline to this file");
+    addOptWithArg(OPT_TOLERANCE, "Allowed slowdown against the baseline, in percent. Default: "
+        + DEFAULT_TOLERANCE_PERCENT);
+    addOptNoArg(OPT_QUICK, "Few, short iterations. Good for smoke testing, not for gating");
+    addOptWithArg(OPT_FORKS, "Number of JVM forks per benchmark. Default: JMH default");
+    addOptWithArg(OPT_JSON, "Also write the raw JMH results as JSON to this file");
+  }
+
+  @Override
+  protected void processOptions(CommandLine cmd) {
+    baselineFile = cmd.getOptionValue(OPT_BASELINE);
+    saveBaselineFile = cmd.getOptionValue(OPT_SAVE_BASELINE);
+    tolerance = getOptionAsDouble(cmd, OPT_TOLERANCE, DEFAULT_TOLERANCE_PERCENT) / 100;
+    quick = cmd.hasOption(OPT_QUICK);
+    forks = getOptionAsInt(cmd, OPT_FORKS, -1);
+    jsonFile = cmd.getOptionValue(OPT_JSON);
+    includes = cmd.getArgs();
+  }
+
+  @Override
+  protected int doWork() throws Exception {
+    ChainedOptionsBuilder builder = new OptionsBuilder();
+    if (includes.length == 0) {
+      builder.include("org\\.apache\\.hadoop\\.hbase\\..*Benchmark.*");
+    }
+    for (String include : includes) {
+      builder.include(include);
+    }
+    if (quick) {
+      builder.warmupIterations(2).measurementIterations(3).forks(1);
+    }
+    if (forks >= 0) {
+      builder.forks(forks);
+    }
+    if (jsonFile != null) {
+      builder.result(jsonFile).resultFormat(ResultFormatType.JSON);
+    }
+    Baseline current = toBaseline(new Runner(builder.build()).run());
+
+    if (saveBaselineFile != null) {
+      try (Writer out = new OutputStreamWriter(new FileOutputStream(saveBaselineFile),
+          StandardCharsets.UTF_8)) {
+        current.write(out);
+      }
+      LOG.info("Wrote baseline with " + current.getScores().size() + " entries to "
+          + saveBaselineFile);
+    }
+    if (baselineFile == null) {
+      return EXIT_SUCCESS;
+    }
+    return compareWithBaseline(current) ? EXIT_SUCCESS : EXIT_FAILURE;
+  }
+
+  private boolean compareWithBaseline(Baseline current) throws IOException {
+    Baseline baseline;
+    try (Reader in = new InputStreamReader(new FileInputStream(new File(baselineFile)),
+        StandardCharsets.UTF_8)) {
+      baseline = Baseline.read(in);
+    }
+    List<Baseline.Comparison> comparisons = baseline.compare(current, tolerance);
+    int regressions = 0;
+    StringBuilder report = new StringBuilder("Comparison with baseline ").append(baselineFile)
+        .append(" (tolerance ").append(tolerance * 100).append("%):\n");
+    for (Baseline.Comparison c : comparisons) {
+      report.append(c).append('\n');
+      if (c.isRegression()) {
+        regressions++;
+      }
+    }
+    System.out.println(report);
+    if (comparisons.isEmpty()) {
+      LOG.warn("No benchmark in this run matched an entry of baseline " + baselineFile);
+    }
+    if (regressions > 0) {
+      LOG.error(regressions + " benchmark(s) regressed against " + baselineFile);
+      return false;
+    }
+    return true;
+  }
+
+  static Baseline toBaseline(Collection<RunResult> results) {
+    Baseline baseline = new Baseline();
+    for (RunResult r : results) {
+      BenchmarkParams params = r.getParams();
+      Result<?> primary = r.getPrimaryResult();
+      baseline.put(label(params), new Baseline.Score(params.getMode().shortLabel(),
+          primary.getScore(), primary.getScoreError(), primary.getScoreUnit()));
+    }
+    return baseline;
+  }
+
+  /** Benchmark method name plus its parameters in a stable order, e.g. {@code Foo.bar:size=10}. */
+  static String label(BenchmarkParams params) {
+    StringBuilder sb = new StringBuilder(params.getBenchmark());
+    char sep = ':';
+    for (String key : params.getParamsKeys()) {
+      sb.append(sep).append(key).append('=').append(params.getParam(key));
+      sep = ',';
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) {
+    new BenchmarkRunner().doStaticMain(args);
+  }
+}
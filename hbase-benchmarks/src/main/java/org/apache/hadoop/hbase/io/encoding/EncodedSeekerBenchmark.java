@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Seek and sequential read cost of the {@link DataBlockEncoder.EncodedSeeker}s over a single
+ * 64KB-ish encoded data block, i.e. the inner loop of an HFile read once the block is in cache.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EncodedSeekerBenchmark {
+
+  private static final int ENCODED_DATA_OFFSET = HConstants.HFILEBLOCK_HEADER_SIZE
+      + DataBlockEncoding.ID_SIZE;
+  private static final int NUM_PROBES = 1024;
+
+  @Param({ "FAST_DIFF", "ROW_INDEX_V1" })
+  public DataBlockEncoding encoding;
+
+  /** Rows per block; with 4 qualifiers and 32 byte values this gives roughly a 64KB block. */
+  @Param({ "256" })
+  public int rowsPerBlock;
+
+  @Param({ "false", "true" })
+  public boolean offheap;
+
+  private DataBlockEncoder.EncodedSeeker seeker;
+  private SingleByteBuff block;
+  private Cell[] probes;
+  private int probeIndex;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkDataGenerator generator = new BenchmarkDataGenerator(4, 32);
+    List<KeyValue> kvs = generator.generate(rowsPerBlock);
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false)
+        .withIncludesMvcc(true).withIncludesTags(false)
+        .withCompression(Compression.Algorithm.NONE).build();
+    DataBlockEncoder encoder = encoding.getEncoder();
+    HFileBlockEncodingContext ctx = encoder.newDataBlockEncodingContext(encoding,
+        HConstants.HFILEBLOCK_DUMMY_HEADER, meta);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(HConstants.HFILEBLOCK_DUMMY_HEADER);
+    DataOutputStream dos = new DataOutputStream(baos);
+    encoder.startBlockEncoding(ctx, dos);
+    for (KeyValue kv : kvs) {
+      encoder.encode(kv, ctx, dos);
+    }
+    encoder.endBlockEncoding(ctx, dos, baos.getBuffer());
+    int length = baos.size() - ENCODED_DATA_OFFSET;
+    ByteBuffer buf = offheap ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+    buf.put(baos.getBuffer(), ENCODED_DATA_OFFSET, length);
+    buf.rewind();
+    block = new SingleByteBuff(buf);
+
+    seeker = encoder.createSeeker(CellComparatorImpl.COMPARATOR,
+        encoder.newDataBlockDecodingContext(meta));
+    seeker.setCurrentBuffer(block);
+
+    // Never probe the first cell: seekBefore on it is illegal.
+    int[] idx = generator.probes(NUM_PROBES, kvs.size() - 1);
+    probes = new Cell[NUM_PROBES];
+    for (int i = 0; i < NUM_PROBES; i++) {
+      probes[i] = kvs.get(idx[i] + 1);
+    }
+  }
+
+  @Benchmark
+  public int seekToKeyInBlock() {
+    Cell probe = probes[probeIndex++ & (NUM_PROBES - 1)];
+    seeker.rewind();
+    return seeker.seekToKeyInBlock(probe, false);
+  }
+
+  @Benchmark
+  public int seekBeforeKeyInBlock() {
+    Cell probe = probes[probeIndex++ & (NUM_PROBES - 1)];
+    seeker.rewind();
+    return seeker.seekToKeyInBlock(probe, true);
+  }
+
+  /** Decodes every cell of the block, as a full scan over a cached block does. */
+  @Benchmark
+  public void scanBlock(Blackhole bh) {
+    seeker.rewind();
+    do {
+      bh.consume(seeker.getCell());
+    } while (seeker.next());
+  }
+}
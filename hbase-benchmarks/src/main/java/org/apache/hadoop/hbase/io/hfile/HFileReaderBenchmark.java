@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link HFileReaderImpl} seek and next over an HFile whose blocks are all resident in an
+ * {@link LruBlockCache}, so the numbers reflect index traversal, block cache lookup and cell
+ * decoding rather than disk or HDFS latency. The file is written once per trial to a local
+ * temporary directory and read fully before measuring.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HFileReaderBenchmark {
+
+  private static final int NUM_PROBES = 4096;
+
+  @Param({ "NONE", "FAST_DIFF", "ROW_INDEX_V1" })
+  public DataBlockEncoding encoding;
+
+  @Param({ "100000" })
+  public int numRows;
+
+  private File dir;
+  private LruBlockCache blockCache;
+  private HFile.Reader reader;
+  private HFileScanner scanner;
+  private Cell[] probes;
+  private int probeIndex;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    FileSystem fs = FileSystem.getLocal(conf);
+    dir = Files.createTempDirectory("hfile-benchmark").toFile();
+    Path path = new Path(dir.getAbsolutePath(), "hfile");
+
+    BenchmarkDataGenerator generator = new BenchmarkDataGenerator(4, 32);
+    List<KeyValue> kvs = generator.generate(numRows);
+    HFileContext context = new HFileContextBuilder().withBlockSize(64 * 1024)
+        .withIncludesMvcc(true).withDataBlockEncoding(encoding).build();
+    HFile.Writer writer = HFile.getWriterFactoryNoCache(conf).withPath(fs, path)
+        .withFileContext(context).withComparator(CellComparatorImpl.COMPARATOR).create();
+    try {
+      for (KeyValue kv : kvs) {
+        writer.append(kv);
+      }
+    } finally {
+      writer.close();
+    }
+
+    // Big enough to hold every block of the file without eviction.
+    blockCache = new LruBlockCache(1024L * 1024 * 1024, 64 * 1024, false);
+    CacheConfig cacheConf = new CacheConfig(blockCache, true, false, false, false, false, false,
+        false, false, false);
+    reader = HFile.createReader(fs, path, cacheConf, true, conf);
+    reader.loadFileInfo();
+    scanner = reader.getScanner(true, true);
+    if (scanner.seekTo()) {
+      while (scanner.next()) {
+        // warm the cache
+      }
+    }
+
+    int[] idx = generator.probes(NUM_PROBES, kvs.size());
+    probes = new Cell[NUM_PROBES];
+    for (int i = 0; i < NUM_PROBES; i++) {
+      probes[i] = kvs.get(idx[i]);
+    }
+    scanner.seekTo();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    scanner.close();
+    reader.close(true);
+    blockCache.shutdown();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  /** Random point seek, the shape of a Get. */
+  @Benchmark
+  public int seekTo() throws IOException {
+    return scanner.seekTo(probes[probeIndex++ & (NUM_PROBES - 1)]);
+  }
+
+  /** Sequential read, the shape of a Scan. Wraps to the first cell at the end of the file. */
+  @Benchmark
+  public Cell next() throws IOException {
+    if (!scanner.next()) {
+      scanner.seekTo();
+    }
+    return scanner.getCell();
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.codec.KeyValueCodecWithTags;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * RPC cell block encode and decode through {@link CellBlockBuilder}, for a response of
+ * {@code numCells} cells. {@code decode} is the client side path (copying), {@code decodeServer}
+ * the server side path that builds cells over the request buffer.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CellBlockBuilderBenchmark {
+
+  @Param({ "1000" })
+  public int numCells;
+
+  @Param({ "false", "true" })
+  public boolean tags;
+
+  @Param({ "false", "true" })
+  public boolean compress;
+
+  private CellBlockBuilder builder;
+  private Codec codec;
+  private CompressionCodec compressor;
+  private List<Cell> cells;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    builder = new CellBlockBuilder(conf);
+    codec = tags ? new KeyValueCodecWithTags() : new KeyValueCodec();
+    if (compress) {
+      DefaultCodec deflate = new DefaultCodec();
+      deflate.setConf(conf);
+      compressor = deflate;
+    }
+    BenchmarkDataGenerator generator =
+        new BenchmarkDataGenerator(BenchmarkDataGenerator.DEFAULT_SEED, 10, 64, tags ? 2 : 0);
+    cells = new ArrayList<>(generator.generate(numCells / 10));
+    ByteBuffer bb = encode();
+    encoded = new byte[bb.remaining()];
+    bb.get(encoded);
+  }
+
+  @Benchmark
+  public ByteBuffer encode() throws IOException {
+    return builder.buildCellBlock(codec, compressor, CellUtil.createCellScanner(cells));
+  }
+
+  @Benchmark
+  public void decode(Blackhole bh) throws IOException {
+    CellScanner scanner = builder.createCellScanner(codec, compressor, encoded);
+    while (scanner.advance()) {
+      bh.consume(scanner.current());
+    }
+  }
+
+  @Benchmark
+  public void decodeServer(Blackhole bh) throws IOException {
+    CellScanner scanner = builder.createCellScannerReusingBuffers(codec, compressor,
+        new SingleByteBuff(ByteBuffer.wrap(encoded)));
+    while (scanner.advance()) {
+      bh.consume(scanner.current());
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.MemoryCompactionPolicy;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.io.util.MemorySizeUtil;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write path cost of {@link CompactingMemStore}: adding cells to the active segment, and the
+ * in-memory flush (flatten or merge/compact, depending on the policy) of the pipeline. Each
+ * invocation adds a batch of {@value #BATCH} cells and then snapshots and clears the memstore,
+ * so the memstore does not grow across invocations; scores are per cell.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class CompactingMemStoreBenchmark {
+
+  private static final int BATCH = 10000;
+
+  @Param({ "BASIC", "EAGER" })
+  public MemoryCompactionPolicy policy;
+
+  @Param({ "true" })
+  public boolean mslab;
+
+  private File dir;
+  private HRegion region;
+  private CompactingMemStore memstore;
+  private KeyValue[] cells;
+  private int batchStart;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, mslab);
+    dir = Files.createTempDirectory("memstore-benchmark").toFile();
+    Path rootDir = new Path(dir.getAbsolutePath());
+    long globalMemStoreLimit = (long) (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+        .getMax() * MemorySizeUtil.getGlobalMemStoreHeapPercent(conf, false));
+    ChunkCreator.initialize(MemStoreLABImpl.CHUNK_SIZE_DEFAULT, false, globalMemStoreLimit, 0.2f,
+        MemStoreLAB.POOL_INITIAL_SIZE_DEFAULT, null);
+
+    ColumnFamilyDescriptor family =
+        ColumnFamilyDescriptorBuilder.newBuilder(BenchmarkDataGenerator.FAMILY).build();
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf("benchmark"))
+        .addColumnFamily(family).build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    region = HRegion.createHRegion(info, rootDir, conf, htd, null, true);
+    HStore store = new HStore(region, family, conf);
+    memstore = new CompactingMemStore(conf, CellComparatorImpl.COMPARATOR, store,
+        region.getRegionServicesForStores(), policy);
+
+    // Ten batches worth of distinct cells; later batches reuse them with the memstore emptied.
+    List<KeyValue> kvs = new BenchmarkDataGenerator(4, 64).generate(BATCH * 10 / 4);
+    cells = kvs.toArray(new KeyValue[kvs.size()]);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    region.close();
+    FileSystem.getLocal(new Configuration()).delete(new Path(dir.getAbsolutePath()), true);
+  }
+
+  private void addBatch() {
+    MemStoreSizing sizing = new MemStoreSizing();
+    int start = batchStart;
+    for (int i = 0; i < BATCH; i++) {
+      memstore.add(cells[start + i], sizing);
+    }
+    batchStart = (start + BATCH) % cells.length;
+  }
+
+  private void clear() throws IOException {
+    MemStoreSnapshot snapshot = memstore.snapshot();
+    memstore.clearSnapshot(snapshot.getId());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void add() throws IOException {
+    addBatch();
+    clear();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(2 * BATCH)
+  public void addAndFlushInMemory() throws IOException {
+    addBatch();
+    memstore.flushInMemory();
+    addBatch();
+    memstore.flushInMemory();
+    clear();
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Merging cost of {@link KeyValueHeap} over several sorted inputs, standing in for the memstore
+ * and store file scanners of one store. With {@code INTERLEAVED} inputs consecutive rows come
+ * from different scanners, so nearly every {@code next} changes the top of the heap (the worst
+ * case, e.g. many small flushes of the same key range). With {@code DISJOINT} inputs each
+ * scanner holds a contiguous key range and the heap rarely reorders.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class KeyValueHeapBenchmark {
+
+  private static final int NUM_ROWS = 10000;
+
+  @Param({ "2", "8", "32" })
+  public int numScanners;
+
+  @Param({ "INTERLEAVED", "DISJOINT" })
+  public String layout;
+
+  private ArrayScanner[] scanners;
+  private Cell middleRow;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<KeyValue> kvs = new BenchmarkDataGenerator(4, 16).generate(NUM_ROWS);
+    List<List<Cell>> inputs = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      inputs.add(new ArrayList<>());
+    }
+    boolean interleaved = "INTERLEAVED".equals(layout);
+    int rowsPerScanner = (NUM_ROWS + numScanners - 1) / numScanners;
+    for (int i = 0; i < kvs.size(); i++) {
+      // all cells of one row go to the same input
+      int row = i / 4;
+      int target = interleaved ? row % numScanners : row / rowsPerScanner;
+      inputs.get(target).add(kvs.get(i));
+    }
+    scanners = new ArrayScanner[numScanners];
+    for (int i = 0; i < numScanners; i++) {
+      List<Cell> input = inputs.get(i);
+      scanners[i] = new ArrayScanner(input.toArray(new Cell[input.size()]), i);
+    }
+    middleRow = PrivateCellUtil.createFirstOnRow(kvs.get(kvs.size() / 2));
+  }
+
+  private KeyValueHeap newHeap() throws IOException {
+    List<KeyValueScanner> list = new ArrayList<>(scanners.length);
+    for (ArrayScanner scanner : scanners) {
+      scanner.pos = 0;
+      list.add(scanner);
+    }
+    return new KeyValueHeap(list, CellComparatorImpl.COMPARATOR);
+  }
+
+  /** Full merge of all inputs. Score is per full pass over {@value #NUM_ROWS} rows. */
+  @Benchmark
+  public void scanAll(Blackhole bh) throws IOException {
+    KeyValueHeap heap = newHeap();
+    Cell cell;
+    while ((cell = heap.next()) != null) {
+      bh.consume(cell);
+    }
+  }
+
+  /** Heap construction plus a seek of every input, as done when a StoreScanner is reset. */
+  @Benchmark
+  public boolean seek() throws IOException {
+    return newHeap().seek(middleRow);
+  }
+
+  /**
+   * Minimal scanner over a sorted array, so that the benchmark measures the heap and not the
+   * inputs (CollectionBackedScanner sorts on construction and seeks linearly).
+   */
+  private static final class ArrayScanner extends NonReversedNonLazyKeyValueScanner {
+    private final Cell[] cells;
+    private final long order;
+    private int pos;
+
+    ArrayScanner(Cell[] cells, long order) {
+      this.cells = cells;
+      this.order = order;
+    }
+
+    @Override
+    public Cell peek() {
+      return pos < cells.length ? cells[pos] : null;
+    }
+
+    @Override
+    public Cell next() {
+      return pos < cells.length ? cells[pos++] : null;
+    }
+
+    @Override
+    public boolean seek(Cell key) {
+      int low = 0;
+      int high = cells.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (CellComparatorImpl.COMPARATOR.compare(cells[mid], key) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      pos = low;
+      return pos < cells.length;
+    }
+
+    @Override
+    public boolean reseek(Cell key) {
+      return seek(key);
+    }
+
+    @Override
+    public long getScannerOrder() {
+      return order;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.util;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.benchmark.BenchmarkDataGenerator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexicographic comparison of two byte ranges that share a common prefix of {@code prefix}
+ * bytes and then differ in their last byte. Covers the Unsafe based {@link Bytes#compareTo}
+ * used for on-heap keys and {@link ByteBufferUtils#compareTo} used for off-heap keys.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BytesCompareBenchmark {
+
+  @Param({ "8", "32", "128" })
+  public int length;
+
+  private byte[] left;
+  private byte[] right;
+  private ByteBuffer leftBuffer;
+  private ByteBuffer rightBuffer;
+
+  @Setup
+  public void setUp() {
+    Random rand = new Random(BenchmarkDataGenerator.DEFAULT_SEED);
+    left = new byte[length];
+    rand.nextBytes(left);
+    right = left.clone();
+    right[length - 1]++;
+    leftBuffer = ByteBuffer.allocateDirect(length);
+    leftBuffer.put(left).flip();
+    rightBuffer = ByteBuffer.allocateDirect(length);
+    rightBuffer.put(right).flip();
+  }
+
+  @Benchmark
+  public int compareArrays() {
+    return Bytes.compareTo(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public boolean equalsArrays() {
+    return Bytes.equals(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public int compareBuffers() {
+    return ByteBufferUtils.compareTo(leftBuffer, 0, length, rightBuffer, 0, length);
+  }
+
+  @Benchmark
+  public int compareBufferToArray() {
+    return ByteBufferUtils.compareTo(leftBuffer, 0, length, right, 0, length);
+  }
+}
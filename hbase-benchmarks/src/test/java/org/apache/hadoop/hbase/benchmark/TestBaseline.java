@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.MiscTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests for {@link Baseline} and {@link BenchmarkDataGenerator}.
+ */
+@Category({ MiscTests.class, SmallTests.class })
+public class TestBaseline {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestBaseline.class);
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Baseline baseline = new Baseline();
+    baseline.put("Foo.bar:size=10", new Baseline.Score("avgt", 12.5, 0.25, "ns/op"));
+    baseline.put("Foo.baz", new Baseline.Score("thrpt", 1000, Double.NaN, "ops/s"));
+    StringWriter out = new StringWriter();
+    baseline.write(out);
+    Baseline read = Baseline.read(new StringReader(out.toString()));
+    assertEquals(2, read.getScores().size());
+    Baseline.Score score = read.get("Foo.bar:size=10");
+    assertEquals("avgt", score.getMode());
+    assertEquals(12.5, score.getScore(), 0);
+    assertEquals(0.25, score.getError(), 0);
+    assertEquals("ns/op", score.getUnit());
+    assertEquals(0, read.get("Foo.baz").getError(), 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void testMalformed() throws IOException {
+    Baseline.read(new StringReader("Foo.bar\tavgt\tnot-a-number\t0\tns/op\n"));
+  }
+
+  @Test
+  public void testCompare() {
+    Baseline base = new Baseline();
+    base.put("time", new Baseline.Score("avgt", 100, 1, "ns/op"));
+    base.put("ops", new Baseline.Score("thrpt", 100, 1, "ops/s"));
+    base.put("noisy", new Baseline.Score("avgt", 100, 20, "ns/op"));
+    base.put("missing", new Baseline.Score("avgt", 100, 1, "ns/op"));
+
+    Baseline current = new Baseline();
+    // 10% slower
+    current.put("time", new Baseline.Score("avgt", 110, 1, "ns/op"));
+    // 10% more throughput
+    current.put("ops", new Baseline.Score("thrpt", 110, 1, "ops/s"));
+    // 10% slower, but within the confidence intervals
+    current.put("noisy", new Baseline.Score("avgt", 110, 20, "ns/op"));
+
+    List<Baseline.Comparison> result = base.compare(current, 0.03);
+    assertEquals(3, result.size());
+    for (Baseline.Comparison c : result) {
+      switch (c.getLabel()) {
+        case "time":
+          assertTrue(c.isRegression());
+          assertEquals(-0.1, c.getChange(), 1e-9);
+          break;
+        case "ops":
+          assertFalse(c.isRegression());
+          assertEquals(0.1, c.getChange(), 1e-9);
+          break;
+        case "noisy":
+          assertFalse(c.isRegression());
+          break;
+        default:
+          throw new AssertionError("Unexpected " + c.getLabel());
+      }
+    }
+    // A 10% slowdown is within a 20% tolerance
+    for (Baseline.Comparison c : base.compare(current, 0.2)) {
+      assertFalse(c.getLabel(), c.isRegression());
+    }
+  }
+
+  @Test
+  public void testGeneratorIsReproducibleAndSorted() {
+    List<KeyValue> first = new BenchmarkDataGenerator(3, 8).generate(5000);
+    List<KeyValue> second = new BenchmarkDataGenerator(3, 8).generate(5000);
+    assertEquals(15000, first.size());
+    for (int i = 0; i < first.size(); i++) {
+      assertEquals(0, CellComparatorImpl.COMPARATOR.compare(first.get(i), second.get(i)));
+      assertTrue(CellUtil.matchingValue(first.get(i), second.get(i)));
+      if (i > 0) {
+        assertTrue(CellComparatorImpl.COMPARATOR.compare(first.get(i - 1), first.get(i)) < 0);
+      }
+    }
+  }
+}
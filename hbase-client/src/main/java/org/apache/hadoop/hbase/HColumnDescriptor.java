@@ -605,6 +605,20 @@ public class HColumnDescriptor implements ColumnFamilyDescriptor, Comparable<HCo
     return this;
   }
 
+  @Override
+  public String getBlockCachePartition() {
+    return delegatee.getBlockCachePartition();
+  }
+
+  /**
+   * @param value name of the block cache partition the blocks of this family go to
+   * @return this (for chained invocation)
+   */
+  public HColumnDescriptor setBlockCachePartition(String value) {
+    getDelegateeForModification().setBlockCachePartition(value);
+    return this;
+  }
+
   /**
    * @see java.lang.Object#toString()
    */
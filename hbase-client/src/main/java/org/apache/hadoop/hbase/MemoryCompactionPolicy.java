@@ -47,6 +47,13 @@ public enum MemoryCompactionPolicy {
    * Adaptive compaction adapts to the workload. It applies either index compaction or data
    * compaction based on the ratio of duplicate cells in the data.
    */
-  ADAPTIVE
+  ADAPTIVE,
+  /**
+   * Learning compaction estimates the cost and the benefit of each action from the ratio of
+   * duplicate cells, the number of versions kept and the mix of gets and scans served by the
+   * store, and applies the action with the best expected payoff. The estimates are corrected by
+   * the outcome of the previous data compactions.
+   */
+  LEARNING
 
 }
@@ -24,6 +24,7 @@ import static org.apache.hadoop.hbase.client.ConnectionUtils.toCheckExistenceOnl
 import com.google.protobuf.RpcChannel;
 
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -356,6 +357,33 @@ public interface AsyncTable<C extends ScanResultConsumerBase> {
    */
   CompletableFuture<List<Result>> scanAll(Scan scan);
 
+  /**
+   * Aggregates the rows of a scan on the region servers, and merges the partial aggregates they
+   * return.
+   * <p>
+   * For example, to sum the values of a column for every row prefix of 4 bytes:
+   *
+   * <pre>
+   * <code>
+   * table.aggregate(new Scan().addColumn(family, qualifier)
+   *     .setAggregation(ScanAggregation.groupByRowPrefix(4))).thenAccept(aggregates -> {
+   *   aggregates.forEach((prefix, aggregate) -> System.out.println(
+   *     Bytes.toStringBinary(prefix) + ": " + aggregate.getSum()));
+   * });
+   * </code>
+   * </pre>
+   * @param scan A configured {@link Scan} object with its {@link ScanAggregation} set.
+   * @return The aggregate of every group by group key. The return value will be wrapped by a
+   *         {@link CompletableFuture}.
+   * @see Scan#setAggregation(ScanAggregation)
+   * @since 3.0.0
+   */
+  default CompletableFuture<NavigableMap<byte[], ScanAggregation.Aggregate>> aggregate(
+      Scan scan) {
+    Preconditions.checkArgument(scan.getAggregation() != null, "No aggregation set on the scan");
+    return scanAll(scan).thenApply(ScanAggregation::merge);
+  }
+
   /**
    * Test for the existence of columns in the table, as specified by the Gets.
    * <p>
@@ -234,6 +234,11 @@ public interface ColumnFamilyDescriptor {
    * @return true if we should prefetch blocks into the blockcache on open
    */
   boolean isPrefetchBlocksOnOpen();
+  /**
+   * @return the name of the block cache partition the blocks of this family are cached in, or
+   * null if not set
+   */
+  String getBlockCachePartition();
 
   /**
    * @return Column family descriptor with only the customized attributes.
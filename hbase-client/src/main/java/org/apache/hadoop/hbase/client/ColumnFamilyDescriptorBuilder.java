@@ -109,6 +109,15 @@ public class ColumnFamilyDescriptorBuilder {
   public static final String PREFETCH_BLOCKS_ON_OPEN = "PREFETCH_BLOCKS_ON_OPEN";
   private static final Bytes PREFETCH_BLOCKS_ON_OPEN_BYTES = new Bytes(Bytes.toBytes(PREFETCH_BLOCKS_ON_OPEN));
 
+  /**
+   * Key for the BLOCKCACHE_PARTITION attribute. The blocks of this family are accounted to, and
+   * evicted within, the named block cache partition. Also accepted as a table attribute, which
+   * applies to the families that do not set it.
+   */
+  @InterfaceAudience.Private
+  public static final String BLOCKCACHE_PARTITION = "BLOCKCACHE_PARTITION";
+  private static final Bytes BLOCKCACHE_PARTITION_BYTES = new Bytes(Bytes.toBytes(BLOCKCACHE_PARTITION));
+
   /**
    * Size of storefile/hfile 'blocks'. Default is {@link #DEFAULT_BLOCKSIZE}.
    * Use smaller block sizes for faster random-access at expense of larger
@@ -306,6 +315,7 @@ public class ColumnFamilyDescriptorBuilder {
     RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(IS_MOB)));
     RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(MOB_THRESHOLD)));
     RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(MOB_COMPACT_PARTITION_POLICY)));
+    RESERVED_KEYWORDS.add(BLOCKCACHE_PARTITION_BYTES);
   }
 
   public static Unit getUnit(String key) {
@@ -532,6 +542,11 @@ public class ColumnFamilyDescriptorBuilder {
     return this;
   }
 
+  public ColumnFamilyDescriptorBuilder setBlockCachePartition(final String value) {
+    desc.setBlockCachePartition(value);
+    return this;
+  }
+
   public ColumnFamilyDescriptorBuilder setScope(final int value) {
     desc.setScope(value);
     return this;
@@ -1044,6 +1059,20 @@ public class ColumnFamilyDescriptorBuilder {
       return setValue(PREFETCH_BLOCKS_ON_OPEN_BYTES, Boolean.toString(value));
     }
 
+    @Override
+    public String getBlockCachePartition() {
+      return getStringOrDefault(BLOCKCACHE_PARTITION_BYTES, Function.identity(), null);
+    }
+
+    /**
+     * @param partition name of the block cache partition the blocks of this family go to, null
+     * for the default partition
+     * @return this (for chained invocation)
+     */
+    public ModifyableColumnFamilyDescriptor setBlockCachePartition(String partition) {
+      return setValue(BLOCKCACHE_PARTITION_BYTES, partition);
+    }
+
     @Override
     public String toString() {
       StringBuilder s = new StringBuilder();
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A column-wise view of a batch of {@link Result}s. Row i of the batch is the i-th result, and
+ * column j one of the columns, family and qualifier, any of the results has a cell of. The
+ * columns are sorted as the cells of a row are, and are only indexed the first time one of them
+ * is asked for; the results are not copied.
+ * <p>
+ * Only the newest version of a column is seen through {@link #getCell(int, int)}. A row returned
+ * in several partial results, when the scan allows them, is as many rows of the batch.
+ * @since 3.0.0
+ */
+@InterfaceAudience.Public
+public class ColumnarResults {
+
+  private final Result[] results;
+
+  // indexed on first use
+  private byte[][] families;
+  private byte[][] qualifiers;
+  private Cell[][] columns;
+
+  public ColumnarResults(Result[] results) {
+    this.results = results;
+  }
+
+  /**
+   * @return the number of rows of this batch
+   */
+  public int getRowCount() {
+    return results.length;
+  }
+
+  /**
+   * @return the row key of the row
+   */
+  public byte[] getRow(int row) {
+    return results[row].getRow();
+  }
+
+  /**
+   * @return the result of the row, with all its cells
+   */
+  public Result getResult(int row) {
+    return results[row];
+  }
+
+  /**
+   * @return the number of distinct columns in the rows of this batch
+   */
+  public int getColumnCount() {
+    index();
+    return columns.length;
+  }
+
+  public byte[] getFamily(int column) {
+    index();
+    return families[column];
+  }
+
+  public byte[] getQualifier(int column) {
+    index();
+    return qualifiers[column];
+  }
+
+  /**
+   * @return the index of the column, or -1 if none of the rows has it
+   */
+  public int getColumnIndex(byte[] family, byte[] qualifier) {
+    index();
+    int low = 0;
+    int high = columns.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int c = Bytes.compareTo(families[mid], family);
+      if (c == 0) {
+        c = Bytes.compareTo(qualifiers[mid], qualifier);
+      }
+      if (c < 0) {
+        low = mid + 1;
+      } else if (c > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the newest cell of the column in the row, or null if the row does not have it
+   */
+  public Cell getCell(int row, int column) {
+    index();
+    return columns[column][row];
+  }
+
+  /**
+   * @return the value of the newest cell of the column in the row, or null if the row does not
+   *         have it
+   */
+  public byte[] getValue(int row, int column) {
+    Cell cell = getCell(row, column);
+    return cell == null ? null : CellUtil.cloneValue(cell);
+  }
+
+  private void index() {
+    if (columns != null) {
+      return;
+    }
+    Map<byte[], Map<byte[], Cell[]>> index = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    int count = 0;
+    for (int row = 0; row < results.length; row++) {
+      Cell[] cells = results[row].rawCells();
+      if (cells == null) {
+        continue;
+      }
+      for (Cell cell : cells) {
+        Map<byte[], Cell[]> family =
+            index.computeIfAbsent(CellUtil.cloneFamily(cell), f -> new TreeMap<>(
+              Bytes.BYTES_COMPARATOR));
+        byte[] qualifier = CellUtil.cloneQualifier(cell);
+        Cell[] column = family.get(qualifier);
+        if (column == null) {
+          column = new Cell[results.length];
+          family.put(qualifier, column);
+          count++;
+        }
+        // the versions of a column are sorted newest first
+        if (column[row] == null) {
+          column[row] = cell;
+        }
+      }
+    }
+    byte[][] families = new byte[count][];
+    byte[][] qualifiers = new byte[count][];
+    List<Cell[]> columns = new ArrayList<>(count);
+    for (Map.Entry<byte[], Map<byte[], Cell[]>> family : index.entrySet()) {
+      for (Map.Entry<byte[], Cell[]> column : family.getValue().entrySet()) {
+        families[columns.size()] = family.getKey();
+        qualifiers[columns.size()] = column.getKey();
+        columns.add(column.getValue());
+      }
+    }
+    this.families = families;
+    this.qualifiers = qualifiers;
+    this.columns = columns.toArray(new Cell[count][]);
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Receives the results of an asynchronous scan batch by batch, each of them seen column-wise
+ * through a {@link ColumnarResults}. A batch holds the results of one call to
+ * {@link #onNext(Result[], ScanController)}, usually all the rows returned by a region server for
+ * one RPC.
+ * <p>
+ * Pass it to the raw {@link AsyncTable} of {@link AsyncConnection#getTable(TableName)}. It is
+ * called in the threads the RPCs complete in, like any {@link AdvancedScanResultConsumer}. For
+ * analytical scans, use it together with the {@link org.apache.hadoop.hbase.codec.ColumnarCodec}
+ * as hbase.client.rpc.codec, so the rows are shipped column-wise as well.
+ * @since 3.0.0
+ */
+@InterfaceAudience.Public
+public interface ColumnarScanResultConsumer extends AdvancedScanResultConsumer {
+
+  /**
+   * Indicate that we have receive a batch of rows.
+   * @param batch the rows fetched from HBase service. It is only valid within the scope of
+   *          onNext.
+   * @param controller used to suspend or terminate the scan. Notice that the {@code controller}
+   *          instance is only valid within scope of onNext method. You can only call its method in
+   *          onNext, do NOT store it and call it later outside onNext.
+   */
+  void onNext(ColumnarResults batch, ScanController controller);
+
+  @Override
+  default void onNext(Result[] results, ScanController controller) {
+    onNext(new ColumnarResults(results), controller);
+  }
+}
@@ -133,6 +133,17 @@ public class Scan extends Query {
   // scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(tableName))
   static public final String SCAN_ATTRIBUTES_TABLE_NAME = "scan.attributes.table.name";
 
+  // A region server scanning a region in parallel returns the rows of the region in the order
+  // they are read rather than sorted when the scan defines this attribute by calling
+  // scan.setAttribute(Scan.SCAN_ATTRIBUTES_UNORDERED, Bytes.toBytes(true)).
+  // The scanner of the client restarts a region after the last row it got, so the rows of a
+  // region may be missed or returned twice when its scanner is reopened, as when its lease
+  // expires or the region moves. Only for scans that can be run again from the start on error.
+  static public final String SCAN_ATTRIBUTES_UNORDERED = "scan.attributes.unordered";
+
+  // The serialized ScanAggregation of a scan, set by setAggregation(ScanAggregation).
+  static public final String SCAN_ATTRIBUTES_AGGREGATION = "scan.attributes.aggregation";
+
   /**
    * -1 means no caching specified and the value of {@link HConstants#HBASE_CLIENT_SCANNER_CACHING}
    * (default to {@link HConstants#DEFAULT_HBASE_CLIENT_SCANNER_CACHING}) will be used
@@ -1102,6 +1113,28 @@ public class Scan extends Query {
     return attr == null ? false : Bytes.toBoolean(attr);
   }
 
+  /**
+   * Has the region servers aggregate the rows of this scan rather than return them. The results
+   * of the scan are then partial aggregates to merge with {@link ScanAggregation#merge(Iterable)},
+   * as {@link AsyncTable#aggregate(Scan)} does.
+   * @param aggregation the aggregation, or null to return the rows
+   * @return this
+   * @since 3.0.0
+   */
+  public Scan setAggregation(ScanAggregation aggregation) {
+    return setAttribute(Scan.SCAN_ATTRIBUTES_AGGREGATION,
+      aggregation == null ? null : aggregation.toByteArray());
+  }
+
+  /**
+   * @return the aggregation of the rows of this scan, or null if the rows are returned
+   * @since 3.0.0
+   */
+  public ScanAggregation getAggregation() {
+    byte[] attr = getAttribute(Scan.SCAN_ATTRIBUTES_AGGREGATION);
+    return attr == null ? null : ScanAggregation.parseFrom(attr);
+  }
+
   /**
    * @return Metrics on this Scan, if metrics were enabled.
    * @see #setScanMetricsEnabled(boolean)
@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Aggregation of the rows of a scan, evaluated by the region servers instead of returning the
+ * rows. The count, sum, min and max of the cells the scan selects are computed for every group of
+ * rows or columns, the values of the cells being read as longs written by
+ * {@link Bytes#toBytes(long)}. A cell whose value is not 8 bytes long is counted but left out of
+ * the sum, min and max.
+ * <p>
+ * Set it with {@link Scan#setAggregation(ScanAggregation)}, and run the scan with
+ * {@link AsyncTable#aggregate(Scan)}. A region server returns partial aggregates, one for the rows
+ * it scanned in every scan RPC, which are merged with {@link #merge(Iterable)}. The scan may not
+ * be reversed nor batched, and should not set a limit, as the limit would apply to the partial
+ * aggregates.
+ * @since 3.0.0
+ */
+@InterfaceAudience.Public
+public class ScanAggregation {
+
+  public enum GroupBy {
+    /**
+     * All the rows in one group, of the empty key.
+     */
+    NONE,
+    /**
+     * The rows grouped by the first bytes of their key.
+     */
+    ROW_PREFIX,
+    /**
+     * The cells grouped by their column, of key family:qualifier.
+     */
+    COLUMN
+  }
+
+  private final GroupBy groupBy;
+  private final int prefixLength;
+
+  private ScanAggregation(GroupBy groupBy, int prefixLength) {
+    this.groupBy = groupBy;
+    this.prefixLength = prefixLength;
+  }
+
+  /**
+   * @return an aggregation of all the rows of the scan
+   */
+  public static ScanAggregation all() {
+    return new ScanAggregation(GroupBy.NONE, 0);
+  }
+
+  /**
+   * @param prefixLength the number of bytes of a row key its group is keyed by. A shorter row is
+   *          a group of its own.
+   * @return an aggregation of the rows grouped by the prefix of their key
+   */
+  public static ScanAggregation groupByRowPrefix(int prefixLength) {
+    if (prefixLength <= 0) {
+      throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+    }
+    return new ScanAggregation(GroupBy.ROW_PREFIX, prefixLength);
+  }
+
+  /**
+   * @return an aggregation of the cells grouped by their column
+   */
+  public static ScanAggregation groupByColumn() {
+    return new ScanAggregation(GroupBy.COLUMN, 0);
+  }
+
+  public GroupBy getGroupBy() {
+    return groupBy;
+  }
+
+  public int getPrefixLength() {
+    return prefixLength;
+  }
+
+  /**
+   * @return the serialized form of this aggregation, carried by the scan as an attribute
+   */
+  public byte[] toByteArray() {
+    return Bytes.add(new byte[] { (byte) groupBy.ordinal() }, Bytes.toBytes(prefixLength));
+  }
+
+  /**
+   * @param bytes an aggregation serialized by {@link #toByteArray()}
+   * @return the aggregation
+   */
+  public static ScanAggregation parseFrom(byte[] bytes) {
+    if (bytes.length != 1 + Bytes.SIZEOF_INT || bytes[0] < 0
+        || bytes[0] >= GroupBy.values().length) {
+      throw new IllegalArgumentException("Invalid aggregation: " + Bytes.toStringBinary(bytes));
+    }
+    return new ScanAggregation(GroupBy.values()[bytes[0]], Bytes.toInt(bytes, 1));
+  }
+
+  /**
+   * Merges partial aggregates returned by the region servers.
+   * @param partials the results of a scan with an aggregation
+   * @return the aggregate of every group, by group key
+   */
+  public static NavigableMap<byte[], Aggregate> merge(Iterable<Result> partials) {
+    NavigableMap<byte[], Aggregate> aggregates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Result partial : partials) {
+      for (Cell cell : partial.rawCells()) {
+        Aggregate aggregate = Aggregate.parseFrom(cell.getValueArray(), cell.getValueOffset(),
+          cell.getValueLength());
+        aggregates.merge(CellUtil.cloneQualifier(cell), aggregate, Aggregate::merge);
+      }
+    }
+    return aggregates;
+  }
+
+  @Override
+  public String toString() {
+    return groupBy == GroupBy.ROW_PREFIX ? groupBy + "(" + prefixLength + ")" : groupBy.name();
+  }
+
+  /**
+   * The count, sum, min and max of a group. A partial aggregate is returned as a cell of the
+   * group key as qualifier and of the serialized aggregate as value.
+   */
+  @InterfaceAudience.Public
+  public static final class Aggregate {
+
+    static final int SERIALIZED_LENGTH = 5 * Bytes.SIZEOF_LONG;
+
+    private long count;
+    private long valueCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    @InterfaceAudience.Private
+    public Aggregate() {
+    }
+
+    /**
+     * Counts a row, or a cell when grouped by column.
+     */
+    @InterfaceAudience.Private
+    public void increment() {
+      count++;
+    }
+
+    /**
+     * Adds a value to the sum, min and max if it is a long.
+     */
+    @InterfaceAudience.Private
+    public void add(byte[] bytes, int offset, int length) {
+      if (length != Bytes.SIZEOF_LONG) {
+        return;
+      }
+      long value = Bytes.toLong(bytes, offset, length);
+      valueCount++;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+
+    @InterfaceAudience.Private
+    public Aggregate merge(Aggregate other) {
+      count += other.count;
+      valueCount += other.valueCount;
+      sum += other.sum;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+      return this;
+    }
+
+    /**
+     * @return the number of rows of the group, or of cells when grouped by column
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return the number of long values in the sum, min and max
+     */
+    public long getValueCount() {
+      return valueCount;
+    }
+
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * @return the smallest value, or {@link Long#MAX_VALUE} if there is none
+     */
+    public long getMin() {
+      return min;
+    }
+
+    /**
+     * @return the largest value, or {@link Long#MIN_VALUE} if there is none
+     */
+    public long getMax() {
+      return max;
+    }
+
+    @InterfaceAudience.Private
+    public byte[] toByteArray() {
+      byte[] bytes = new byte[SERIALIZED_LENGTH];
+      int offset = Bytes.putLong(bytes, 0, count);
+      offset = Bytes.putLong(bytes, offset, valueCount);
+      offset = Bytes.putLong(bytes, offset, sum);
+      offset = Bytes.putLong(bytes, offset, min);
+      Bytes.putLong(bytes, offset, max);
+      return bytes;
+    }
+
+    @InterfaceAudience.Private
+    public static Aggregate parseFrom(byte[] bytes, int offset, int length) {
+      if (length != SERIALIZED_LENGTH) {
+        throw new IllegalArgumentException("Not an aggregate: "
+            + Bytes.toStringBinary(bytes, offset, length));
+      }
+      Aggregate aggregate = new Aggregate();
+      aggregate.count = Bytes.toLong(bytes, offset);
+      aggregate.valueCount = Bytes.toLong(bytes, offset + Bytes.SIZEOF_LONG);
+      aggregate.sum = Bytes.toLong(bytes, offset + 2 * Bytes.SIZEOF_LONG);
+      aggregate.min = Bytes.toLong(bytes, offset + 3 * Bytes.SIZEOF_LONG);
+      aggregate.max = Bytes.toLong(bytes, offset + 4 * Bytes.SIZEOF_LONG);
+      return aggregate;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + ", valueCount=" + valueCount + ", sum=" + sum + ", min=" + min
+          + ", max=" + max;
+    }
+  }
+}
@@ -279,6 +279,18 @@ public abstract class Filter {
    */
   abstract public boolean isFamilyEssential(byte[] name) throws IOException;
 
+  /**
+   * Gives ranges holding all the rows the filter may include, so the regionserver can leave out
+   * the store files holding none of them before scanning. Most filters may include any row and
+   * return null here.
+   *
+   * @return the ranges, sorted and merged as by {@link MultiRowRangeFilter#sortAndMerge(List)},
+   *         or null if the filter may include any row
+   */
+  public List<MultiRowRangeFilter.RowRange> getRowRangesHint() {
+    return null;
+  }
+
   /**
    * TODO: JAVADOC
    * 
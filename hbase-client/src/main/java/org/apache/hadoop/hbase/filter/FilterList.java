@@ -260,6 +260,11 @@ final public class FilterList extends FilterBase {
     return this.filterListBase.isFamilyEssential(name);
   }
 
+  @Override
+  public List<MultiRowRangeFilter.RowRange> getRowRangesHint() {
+    return this.filterListBase.getRowRangesHint();
+  }
+
   @Override
   public void setReversed(boolean reversed) {
     this.reversed = reversed;
@@ -269,4 +269,16 @@ public class FilterListWithAND extends FilterListBase {
     }
     return maxHint;
   }
+
+  @Override
+  public List<MultiRowRangeFilter.RowRange> getRowRangesHint() {
+    // the rows included pass all the filters, so are in the ranges of any of them
+    for (int i = 0, n = filters.size(); i < n; i++) {
+      List<MultiRowRangeFilter.RowRange> ranges = filters.get(i).getRowRangesHint();
+      if (ranges != null) {
+        return ranges;
+      }
+    }
+    return null;
+  }
 }
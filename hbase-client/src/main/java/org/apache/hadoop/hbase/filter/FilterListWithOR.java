@@ -391,4 +391,21 @@ public class FilterListWithOR extends FilterListBase {
     }
     return minKeyHint;
   }
+
+  @Override
+  public List<MultiRowRangeFilter.RowRange> getRowRangesHint() {
+    if (isEmpty()) {
+      return null;
+    }
+    List<MultiRowRangeFilter.RowRange> ranges = new ArrayList<>();
+    for (int i = 0, n = filters.size(); i < n; i++) {
+      List<MultiRowRangeFilter.RowRange> filterRanges = filters.get(i).getRowRangesHint();
+      if (filterRanges == null) {
+        // If any filter may include any row, so may the list
+        return null;
+      }
+      ranges.addAll(filterRanges);
+    }
+    return ranges.isEmpty() ? null : MultiRowRangeFilter.sortAndMerge(ranges);
+  }
 }
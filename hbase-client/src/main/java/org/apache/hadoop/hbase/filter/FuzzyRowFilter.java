@@ -25,6 +25,7 @@ import java.util.PriorityQueue;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.exceptions.DeserializationException;
@@ -75,6 +76,11 @@ public class FuzzyRowFilter extends FilterBase {
    */
   private RowTracker tracker;
 
+  /**
+   * The ranges of the rows the fuzzy keys may match, computed on first use
+   */
+  private List<MultiRowRangeFilter.RowRange> rowRangesHint;
+
   public FuzzyRowFilter(List<Pair<byte[], byte[]>> fuzzyKeysData) {
     List<Pair<byte[], byte[]>> fuzzyKeyDataCopy = new ArrayList<>(fuzzyKeysData.size());
 
@@ -190,6 +196,53 @@ public class FuzzyRowFilter extends FilterBase {
     return PrivateCellUtil.createFirstOnRow(nextRowKey, 0, (short) nextRowKey.length);
   }
 
+  /**
+   * A fuzzy key matches the rows starting with its leading fixed bytes, and the shorter rows that
+   * are a prefix of them, as a row is only compared up to its length. No range is given if the
+   * first byte of a key is not fixed.
+   */
+  @Override
+  public List<MultiRowRangeFilter.RowRange> getRowRangesHint() {
+    if (rowRangesHint == null && !fuzzyKeysData.isEmpty()) {
+      List<MultiRowRangeFilter.RowRange> ranges = new ArrayList<>();
+      for (Pair<byte[], byte[]> fuzzyKey : fuzzyKeysData) {
+        byte[] key = fuzzyKey.getFirst();
+        byte[] mask = fuzzyKey.getSecond();
+        int fixed = 0;
+        // fixed positions are 0, or -1 once preprocessed
+        while (fixed < mask.length && (mask[fixed] == 0 || mask[fixed] == -1)) {
+          fixed++;
+        }
+        if (fixed == 0) {
+          return null;
+        }
+        for (int i = 1; i < fixed; i++) {
+          byte[] row = Arrays.copyOf(key, i);
+          ranges.add(new MultiRowRangeFilter.RowRange(row, true, row, true));
+        }
+        byte[] prefix = Arrays.copyOf(key, fixed);
+        ranges.add(new MultiRowRangeFilter.RowRange(prefix, true, nextPrefix(prefix), false));
+      }
+      rowRangesHint = MultiRowRangeFilter.sortAndMerge(ranges);
+    }
+    return rowRangesHint;
+  }
+
+  /**
+   * @return the smallest row larger than all the rows starting with the prefix, or an empty
+   *         array if there is none
+   */
+  private static byte[] nextPrefix(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xFF) {
+        byte[] next = Arrays.copyOf(prefix, i + 1);
+        next[i]++;
+        return next;
+      }
+    }
+    return HConstants.EMPTY_BYTE_ARRAY;
+  }
+
   /**
    * If we have multiple fuzzy keys, row tracker should improve overall performance. It calculates
    * all next rows (one per every fuzzy key) and put them (the fuzzy key is bundled) into a priority
@@ -76,6 +76,11 @@ public class MultiRowRangeFilter extends FilterBase {
     return this.rangeList;
   }
 
+  @Override
+  public List<RowRange> getRowRangesHint() {
+    return this.rangeList;
+  }
+
   @Override
   public boolean filterRowKey(Cell firstRowCell) {
     if (filterAllRemaining()) return true;
@@ -34,5 +34,16 @@ public enum BloomType {
   /**
    * Bloom enabled with Table row &amp; column (family+qualifier) as Key
    */
-  ROWCOL
+  ROWCOL,
+  /**
+   * Bloom enabled with a fixed length prefix of the Table row as Key. The prefix length is set
+   * with the column family configuration "RowPrefixBloomFilter.prefix_length".
+   */
+  ROWPREFIX_FIXED_LENGTH,
+  /**
+   * Bloom enabled with the Table row up to and including the first delimiter as Key. The
+   * delimiter is set with the column family configuration
+   * "RowPrefixDelimitedBloomFilter.delimiter".
+   */
+  ROWPREFIX_DELIMITED
 }
@@ -78,6 +78,7 @@ public class TestColumnFamilyDescriptorBuilder {
     builder.setMobEnabled(true);
     builder.setMobThreshold(1000L);
     builder.setDFSReplication((short) v);
+    builder.setBlockCachePartition("serving");
 
     ColumnFamilyDescriptor hcd = builder.build();
     byte [] bytes = ColumnFamilyDescriptorBuilder.toByteArray(hcd);
@@ -97,6 +98,7 @@ public class TestColumnFamilyDescriptorBuilder {
     assertEquals(hcd.isMobEnabled(), deserializedHcd.isMobEnabled());
     assertEquals(hcd.getMobThreshold(), deserializedHcd.getMobThreshold());
     assertEquals(v, deserializedHcd.getDFSReplication());
+    assertEquals("serving", deserializedHcd.getBlockCachePartition());
   }
 
   /**
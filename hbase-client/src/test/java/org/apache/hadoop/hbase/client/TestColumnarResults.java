@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ClientTests.class, SmallTests.class})
+public class TestColumnarResults {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestColumnarResults.class);
+
+  private static final byte[] A = Bytes.toBytes("a");
+  private static final byte[] B = Bytes.toBytes("b");
+  private static final byte[] Q1 = Bytes.toBytes("q1");
+  private static final byte[] Q2 = Bytes.toBytes("q2");
+
+  private static Cell cell(String row, byte[] family, byte[] qualifier, long ts, String value) {
+    return new KeyValue(Bytes.toBytes(row), family, qualifier, ts, Bytes.toBytes(value));
+  }
+
+  private static Result[] results() {
+    return new Result[] {
+      Result.create(new Cell[] { cell("r1", A, Q1, 2, "new"), cell("r1", A, Q1, 1, "old"),
+        cell("r1", B, Q2, 1, "r1b") }),
+      Result.create(new Cell[] { cell("r2", A, Q2, 1, "r2a") }) };
+  }
+
+  @Test
+  public void testColumns() {
+    ColumnarResults batch = new ColumnarResults(results());
+    assertEquals(2, batch.getRowCount());
+    assertArrayEquals(Bytes.toBytes("r2"), batch.getRow(1));
+    assertEquals(3, batch.getColumnCount());
+    assertArrayEquals(A, batch.getFamily(0));
+    assertArrayEquals(Q1, batch.getQualifier(0));
+    assertArrayEquals(A, batch.getFamily(1));
+    assertArrayEquals(Q2, batch.getQualifier(1));
+    assertArrayEquals(B, batch.getFamily(2));
+    assertEquals(1, batch.getColumnIndex(A, Q2));
+    assertEquals(-1, batch.getColumnIndex(B, Q1));
+  }
+
+  @Test
+  public void testValues() {
+    ColumnarResults batch = new ColumnarResults(results());
+    int q1 = batch.getColumnIndex(A, Q1);
+    // the newest version only
+    assertArrayEquals(Bytes.toBytes("new"), batch.getValue(0, q1));
+    assertNull(batch.getValue(1, q1));
+    assertNull(batch.getCell(0, batch.getColumnIndex(A, Q2)));
+    assertArrayEquals(Bytes.toBytes("r2a"), batch.getValue(1, batch.getColumnIndex(A, Q2)));
+  }
+
+  @Test
+  public void testConsumer() {
+    Result[] results = results();
+    AtomicReference<ColumnarResults> received = new AtomicReference<>();
+    ColumnarScanResultConsumer consumer = new ColumnarScanResultConsumer() {
+
+      @Override
+      public void onNext(ColumnarResults batch, ScanController controller) {
+        received.set(batch);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+      }
+
+      @Override
+      public void onComplete() {
+      }
+    };
+    consumer.onNext(results, new AdvancedScanResultConsumer.ScanController() {
+
+      @Override
+      public AdvancedScanResultConsumer.ScanResumer suspend() {
+        return null;
+      }
+
+      @Override
+      public void terminate() {
+      }
+
+      @Override
+      public Optional<Cursor> cursor() {
+        return Optional.empty();
+      }
+    });
+    assertEquals(2, received.get().getRowCount());
+    assertSame(results[1], received.get().getResult(1));
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NavigableMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.ScanAggregation.Aggregate;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ClientTests.class, SmallTests.class})
+public class TestScanAggregation {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestScanAggregation.class);
+
+  private static Aggregate aggregate(long... values) {
+    Aggregate aggregate = new Aggregate();
+    for (long value : values) {
+      aggregate.increment();
+      aggregate.add(Bytes.toBytes(value), 0, Bytes.SIZEOF_LONG);
+    }
+    return aggregate;
+  }
+
+  private static Result partial(String row, String group, Aggregate aggregate) {
+    return Result.create(new Cell[] { new KeyValue(Bytes.toBytes(row),
+        HConstants.EMPTY_BYTE_ARRAY, Bytes.toBytes(group), HConstants.LATEST_TIMESTAMP,
+        aggregate.toByteArray()) });
+  }
+
+  @Test
+  public void testScanAttribute() throws IOException {
+    Scan scan = new Scan();
+    assertNull(scan.getAggregation());
+    scan.setAggregation(ScanAggregation.groupByRowPrefix(3));
+    ScanAggregation aggregation = new Scan(scan).getAggregation();
+    assertEquals(ScanAggregation.GroupBy.ROW_PREFIX, aggregation.getGroupBy());
+    assertEquals(3, aggregation.getPrefixLength());
+    assertEquals(ScanAggregation.GroupBy.COLUMN,
+      scan.setAggregation(ScanAggregation.groupByColumn()).getAggregation().getGroupBy());
+    assertNull(scan.setAggregation(null).getAggregation());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidAggregation() {
+    ScanAggregation.parseFrom(new byte[] { 7, 0, 0, 0, 0 });
+  }
+
+  @Test
+  public void testAggregate() {
+    Aggregate aggregate = aggregate(5, -2, 9);
+    // not a long
+    aggregate.increment();
+    aggregate.add(Bytes.toBytes("abc"), 0, 3);
+    byte[] bytes = aggregate.toByteArray();
+    aggregate = Aggregate.parseFrom(bytes, 0, bytes.length);
+    assertEquals(4, aggregate.getCount());
+    assertEquals(3, aggregate.getValueCount());
+    assertEquals(12, aggregate.getSum());
+    assertEquals(-2, aggregate.getMin());
+    assertEquals(9, aggregate.getMax());
+    Aggregate empty = new Aggregate();
+    assertEquals(Long.MAX_VALUE, empty.getMin());
+    assertEquals(Long.MIN_VALUE, empty.getMax());
+  }
+
+  @Test
+  public void testMerge() {
+    NavigableMap<byte[], Aggregate> aggregates = ScanAggregation.merge(Arrays.asList(
+      partial("a1", "a", aggregate(1, 2)), partial("a2", "a", aggregate(10)),
+      partial("b5", "b", aggregate(-4))));
+    assertEquals(2, aggregates.size());
+    Aggregate a = aggregates.get(Bytes.toBytes("a"));
+    assertEquals(3, a.getCount());
+    assertEquals(13, a.getSum());
+    assertEquals(1, a.getMin());
+    assertEquals(10, a.getMax());
+    assertEquals(-4, aggregates.get(Bytes.toBytes("b")).getSum());
+  }
+}
@@ -57,6 +57,13 @@ public final class HConstants {
      * splitting code, one per region
      */
   public static final String RECOVERED_EDITS_DIR = "recovered.edits";
+
+  /*
+   * Name of directory that holds the HFiles written by the wal log splitting code when it
+   * splits to HFiles, one per column family of a region
+   */
+  public static final String RECOVERED_HFILES_DIR = "recovered.hfiles";
+
   /**
    * The first four bytes of Hadoop RPC connections
    */
@@ -1249,9 +1256,9 @@ public final class HConstants {
   // hbase-common?
 
   /**
-   * Current ioengine options in include: heap, offheap and file:PATH (where PATH is the path
-   * to the file that will host the file-based cache.  See BucketCache#getIOEngineFromName() for
-   * list of supported ioengine options.
+   * Current ioengine options in include: heap, offheap, file:PATH and directfile:PATH (where
+   * PATH is the path to the file that will host the file-based cache.  See
+   * BucketCache#getIOEngineFromName() for list of supported ioengine options.
    * <p>Set this option and a non-zero {@link #BUCKET_CACHE_SIZE_KEY} to enable bucket cache.
    */
   public static final String BUCKET_CACHE_IOENGINE_KEY = "hbase.bucketcache.ioengine";
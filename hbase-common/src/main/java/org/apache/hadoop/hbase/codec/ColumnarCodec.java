@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.IndividualBytesFieldCell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ByteBuffInputStream;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Codec that writes cells column-wise, in batches of consecutive cells. A batch holds the
+ * distinct rows of its cells with the number of cells of each, dictionaries of the families and
+ * qualifiers with an index into them for every cell, the timestamps as deltas from the previous
+ * one, the types, and all the values one after the other. A row key is written once for all the
+ * cells of its row and a column name once for the batch, so a scan of many columns ships much
+ * less than with {@link KeyValueCodec}. To use it for the RPCs of a client, set
+ * hbase.client.rpc.codec to this class.
+ *
+ * <p>Like {@link KeyValueCodec}, this codec does not write tags nor sequence ids. A batch is read
+ * as a whole, and its cells are decoded one by one on {@link Decoder#advance()}. They are
+ * {@link IndividualBytesFieldCell}s pointing into the arrays of the batch, so the cells of a row
+ * share its row key and all the cells share the column names, with no copy.
+ *
+ * <pre>
+ * cells         // vint
+ * rows          // vint, then for every row: vint length, bytes, vint number of cells
+ * families      // vint, then for every family: vint length, bytes
+ * qualifiers    // vint, then for every qualifier: vint length, bytes
+ * columns       // for every cell: vint family index, vint qualifier index
+ * timestamps    // for every cell: vlong delta from the timestamp of the previous cell
+ * types         // for every cell: byte
+ * values        // for every cell: vint length, then all the value bytes
+ * </pre>
+ */
+@InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
+public class ColumnarCodec implements Codec {
+
+  // cells written in a batch at most, so an encoder holds a bounded number of cells
+  static final int MAX_BATCH_CELLS = 4096;
+
+  public static class ColumnarEncoder extends BaseEncoder {
+    private final DataOutputStream dos;
+    private final List<Cell> cells = new ArrayList<>();
+
+    public ColumnarEncoder(final OutputStream out) {
+      super(out);
+      this.dos = new DataOutputStream(out);
+    }
+
+    @Override
+    public void write(Cell cell) throws IOException {
+      checkFlushed();
+      cells.add(cell);
+      if (cells.size() >= MAX_BATCH_CELLS) {
+        writeBatch();
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (this.flushed) {
+        return;
+      }
+      writeBatch();
+      dos.flush();
+      super.flush();
+    }
+
+    private void writeBatch() throws IOException {
+      int n = cells.size();
+      if (n == 0) {
+        return;
+      }
+      WritableUtils.writeVInt(dos, n);
+
+      // rows, in runs of cells of the same row
+      List<Integer> runStarts = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        if (i == 0 || !CellUtil.matchingRows(cells.get(i - 1), cells.get(i))) {
+          runStarts.add(i);
+        }
+      }
+      WritableUtils.writeVInt(dos, runStarts.size());
+      for (int r = 0; r < runStarts.size(); r++) {
+        int start = runStarts.get(r);
+        int end = r + 1 < runStarts.size() ? runStarts.get(r + 1) : n;
+        Cell first = cells.get(start);
+        WritableUtils.writeVInt(dos, first.getRowLength());
+        dos.write(CellUtil.cloneRow(first));
+        WritableUtils.writeVInt(dos, end - start);
+      }
+
+      // column dictionaries
+      Map<byte[], Integer> families = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      Map<byte[], Integer> qualifiers = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      int[] familyIndexes = new int[n];
+      int[] qualifierIndexes = new int[n];
+      for (int i = 0; i < n; i++) {
+        Cell cell = cells.get(i);
+        familyIndexes[i] = index(families, CellUtil.cloneFamily(cell));
+        qualifierIndexes[i] = index(qualifiers, CellUtil.cloneQualifier(cell));
+      }
+      writeDictionary(families);
+      writeDictionary(qualifiers);
+      for (int i = 0; i < n; i++) {
+        WritableUtils.writeVInt(dos, familyIndexes[i]);
+        WritableUtils.writeVInt(dos, qualifierIndexes[i]);
+      }
+
+      long previous = 0;
+      for (Cell cell : cells) {
+        WritableUtils.writeVLong(dos, cell.getTimestamp() - previous);
+        previous = cell.getTimestamp();
+      }
+      for (Cell cell : cells) {
+        dos.writeByte(cell.getTypeByte());
+      }
+      for (Cell cell : cells) {
+        WritableUtils.writeVInt(dos, cell.getValueLength());
+      }
+      for (Cell cell : cells) {
+        dos.write(CellUtil.cloneValue(cell));
+      }
+      cells.clear();
+    }
+
+    private static int index(Map<byte[], Integer> dictionary, byte[] key) {
+      Integer index = dictionary.get(key);
+      if (index == null) {
+        index = dictionary.size();
+        dictionary.put(key, index);
+      }
+      return index;
+    }
+
+    private void writeDictionary(Map<byte[], Integer> dictionary) throws IOException {
+      byte[][] keys = new byte[dictionary.size()][];
+      for (Map.Entry<byte[], Integer> entry : dictionary.entrySet()) {
+        keys[entry.getValue()] = entry.getKey();
+      }
+      WritableUtils.writeVInt(dos, keys.length);
+      for (byte[] key : keys) {
+        WritableUtils.writeVInt(dos, key.length);
+        dos.write(key);
+      }
+    }
+  }
+
+  public static class ColumnarDecoder implements Codec.Decoder {
+    private final PushbackInputStream in;
+    private final DataInputStream dis;
+    private Cell current = null;
+
+    // the batch being decoded
+    private int cells = 0;
+    private int next = 0;
+    private byte[][] rows;
+    private int[] rowCells;
+    private int row;
+    private int cellsLeftInRow;
+    private byte[][] families;
+    private byte[][] qualifiers;
+    private int[] familyIndexes;
+    private int[] qualifierIndexes;
+    private long[] timestamps;
+    private byte[] types;
+    private int[] valueLengths;
+    private byte[] values;
+    private int valueOffset;
+
+    public ColumnarDecoder(final InputStream in) {
+      this.in = new PushbackInputStream(in, 1);
+      this.dis = new DataInputStream(this.in);
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+      if (next == cells) {
+        int firstByte = in.read();
+        if (firstByte == -1) {
+          return false;
+        }
+        in.unread(firstByte);
+        readBatch();
+      }
+      while (cellsLeftInRow == 0) {
+        row++;
+        cellsLeftInRow = rowCells[row];
+      }
+      byte[] r = rows[row];
+      byte[] f = families[familyIndexes[next]];
+      byte[] q = qualifiers[qualifierIndexes[next]];
+      int valueLength = valueLengths[next];
+      current = new IndividualBytesFieldCell(r, 0, r.length, f, 0, f.length, q, 0, q.length,
+          timestamps[next], KeyValue.Type.codeToType(types[next]), 0L, values, valueOffset,
+          valueLength, null, 0, 0);
+      valueOffset += valueLength;
+      cellsLeftInRow--;
+      next++;
+      return true;
+    }
+
+    @Override
+    public Cell current() {
+      return current;
+    }
+
+    private void readBatch() throws IOException {
+      int n = WritableUtils.readVInt(dis);
+      int numRows = WritableUtils.readVInt(dis);
+      rows = new byte[numRows][];
+      rowCells = new int[numRows];
+      for (int r = 0; r < numRows; r++) {
+        rows[r] = readBytes();
+        rowCells[r] = WritableUtils.readVInt(dis);
+      }
+      families = readDictionary();
+      qualifiers = readDictionary();
+      familyIndexes = new int[n];
+      qualifierIndexes = new int[n];
+      for (int i = 0; i < n; i++) {
+        familyIndexes[i] = WritableUtils.readVInt(dis);
+        qualifierIndexes[i] = WritableUtils.readVInt(dis);
+      }
+      timestamps = new long[n];
+      long previous = 0;
+      for (int i = 0; i < n; i++) {
+        previous += WritableUtils.readVLong(dis);
+        timestamps[i] = previous;
+      }
+      types = new byte[n];
+      dis.readFully(types);
+      valueLengths = new int[n];
+      long totalValueLength = 0;
+      for (int i = 0; i < n; i++) {
+        valueLengths[i] = WritableUtils.readVInt(dis);
+        totalValueLength += valueLengths[i];
+      }
+      if (totalValueLength > Integer.MAX_VALUE) {
+        throw new CodecException("Values of a batch too large: " + totalValueLength);
+      }
+      values = new byte[(int) totalValueLength];
+      dis.readFully(values);
+      valueOffset = 0;
+      cells = n;
+      next = 0;
+      row = 0;
+      cellsLeftInRow = numRows > 0 ? rowCells[0] : 0;
+    }
+
+    private byte[][] readDictionary() throws IOException {
+      byte[][] keys = new byte[WritableUtils.readVInt(dis)][];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = readBytes();
+      }
+      return keys;
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[WritableUtils.readVInt(dis)];
+      dis.readFully(bytes);
+      return bytes;
+    }
+  }
+
+  @Override
+  public Decoder getDecoder(InputStream is) {
+    return new ColumnarDecoder(is);
+  }
+
+  @Override
+  public Decoder getDecoder(ByteBuff buf) {
+    return getDecoder(new ByteBuffInputStream(buf));
+  }
+
+  @Override
+  public Encoder getEncoder(OutputStream os) {
+    return new ColumnarEncoder(os);
+  }
+}
@@ -431,6 +431,60 @@ public final class UnsafeAccess {
     }
     return offset + Bytes.SIZEOF_LONG;
   }
+
+  /**
+   * Reads a long value at the given buffer's offset with volatile semantics. Unlike
+   * {@link #toLong(ByteBuffer, int)} the value is kept in the platform's byte order, so it should
+   * only be written with {@link #putLongVolatile(ByteBuffer, int, long)} or
+   * {@link #compareAndSwapLong(ByteBuffer, int, long, long)}. The offset must be 8 byte aligned.
+   * @param buf the byte buffer
+   * @param offset position in the buffer
+   * @return long value at offset
+   */
+  public static long getLongVolatile(ByteBuffer buf, int offset) {
+    if (buf.isDirect()) {
+      return theUnsafe.getLongVolatile(null, ((DirectBuffer) buf).address() + offset);
+    }
+    return theUnsafe.getLongVolatile(buf.array(),
+        BYTE_ARRAY_BASE_OFFSET + buf.arrayOffset() + offset);
+  }
+
+  /**
+   * Put a long value out to the specified BB position, in the platform's byte order, with
+   * volatile semantics.
+   * @param buf the byte buffer
+   * @param offset position in the buffer, 8 byte aligned
+   * @param val long to write out
+   * @return incremented offset
+   */
+  public static int putLongVolatile(ByteBuffer buf, int offset, long val) {
+    if (buf.isDirect()) {
+      theUnsafe.putLongVolatile(null, ((DirectBuffer) buf).address() + offset, val);
+    } else {
+      theUnsafe.putLongVolatile(buf.array(), BYTE_ARRAY_BASE_OFFSET + buf.arrayOffset() + offset,
+        val);
+    }
+    return offset + Bytes.SIZEOF_LONG;
+  }
+
+  /**
+   * Atomically sets the long at the specified BB position to the given value if it currently
+   * holds the expected one. The value is in the platform's byte order.
+   * @param buf the byte buffer
+   * @param offset position in the buffer, 8 byte aligned
+   * @param expected the expected value
+   * @param val the new value
+   * @return true if the value was updated
+   */
+  public static boolean compareAndSwapLong(ByteBuffer buf, int offset, long expected, long val) {
+    if (buf.isDirect()) {
+      return theUnsafe.compareAndSwapLong(null, ((DirectBuffer) buf).address() + offset, expected,
+        val);
+    }
+    return theUnsafe.compareAndSwapLong(buf.array(),
+        BYTE_ARRAY_BASE_OFFSET + buf.arrayOffset() + offset, expected, val);
+  }
+
   /**
    * Put a byte value out to the specified BB position in big-endian format.
    * @param buf the byte buffer
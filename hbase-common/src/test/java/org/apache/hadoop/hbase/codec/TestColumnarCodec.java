@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.MiscTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({MiscTests.class, SmallTests.class})
+public class TestColumnarCodec {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestColumnarCodec.class);
+
+  private static final byte[][] FAMILIES = { Bytes.toBytes("a"), Bytes.toBytes("b") };
+
+  private static byte[] encode(List<? extends Cell> cells) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    Codec.Encoder encoder = new ColumnarCodec().getEncoder(baos);
+    for (Cell cell : cells) {
+      encoder.write(cell);
+    }
+    encoder.flush();
+    return baos.toByteArray();
+  }
+
+  private static List<Cell> decode(byte[] bytes) throws IOException {
+    Codec.Decoder decoder = new ColumnarCodec().getDecoder(new ByteArrayInputStream(bytes));
+    List<Cell> cells = new ArrayList<>();
+    while (decoder.advance()) {
+      cells.add(decoder.current());
+    }
+    return cells;
+  }
+
+  private static List<KeyValue> rows(int rows, int columns) {
+    List<KeyValue> cells = new ArrayList<>();
+    for (int r = 0; r < rows; r++) {
+      for (byte[] family : FAMILIES) {
+        for (int c = 0; c < columns; c++) {
+          cells.add(new KeyValue(Bytes.toBytes(String.format("row%05d", r)), family,
+              Bytes.toBytes("q" + c), 1000L + r * 7 - c, KeyValue.Type.Put,
+              Bytes.toBytes("value" + r + "_" + c)));
+        }
+      }
+    }
+    return cells;
+  }
+
+  private static void assertCells(List<? extends Cell> expected, List<Cell> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(0, CellComparatorImpl.COMPARATOR.compare(expected.get(i), actual.get(i)));
+      assertTrue(Bytes.equals(expected.get(i).getValueArray(), expected.get(i).getValueOffset(),
+        expected.get(i).getValueLength(), actual.get(i).getValueArray(),
+        actual.get(i).getValueOffset(), actual.get(i).getValueLength()));
+    }
+  }
+
+  @Test
+  public void testEmptyWorks() throws IOException {
+    byte[] bytes = encode(new ArrayList<>());
+    assertEquals(0, bytes.length);
+    assertFalse(new ColumnarCodec().getDecoder(new ByteArrayInputStream(bytes)).advance());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<KeyValue> cells = rows(10, 3);
+    cells.add(new KeyValue(Bytes.toBytes("row99999"), FAMILIES[0], Bytes.toBytes("q0"),
+        5L, KeyValue.Type.DeleteColumn));
+    cells.add(new KeyValue(Bytes.toBytes("row99999"), FAMILIES[1], null, Long.MAX_VALUE,
+        KeyValue.Type.DeleteFamily));
+    assertCells(cells, decode(encode(cells)));
+  }
+
+  @Test
+  public void testSeveralBatches() throws IOException {
+    List<KeyValue> cells = rows(1000, 5);
+    assertTrue(cells.size() > 2 * ColumnarCodec.MAX_BATCH_CELLS);
+    assertCells(cells, decode(encode(cells)));
+  }
+
+  @Test
+  public void testRowsAndColumnsShared() throws IOException {
+    List<Cell> decoded = decode(encode(rows(2, 2)));
+    // the cells of a row share its key, the cells of a column its name
+    assertSame(decoded.get(0).getRowArray(), decoded.get(3).getRowArray());
+    assertSame(decoded.get(0).getQualifierArray(), decoded.get(4).getQualifierArray());
+  }
+
+  @Test
+  public void testSmallerThanKeyValues() throws IOException {
+    List<KeyValue> cells = rows(100, 20);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    Codec.Encoder encoder = new KeyValueCodec().getEncoder(baos);
+    for (Cell cell : cells) {
+      encoder.write(cell);
+    }
+    encoder.flush();
+    assertTrue(encode(cells).length * 2 < baos.size());
+  }
+}
@@ -326,6 +326,19 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String BLOCK_CACHE_FAILED_INSERTION_COUNT = "blockCacheFailedInsertionCount";
   String BLOCK_CACHE_FAILED_INSERTION_COUNT_DESC = "Number of times that a block cache " +
       "insertion failed. Usually due to size restrictions.";
+  String BLOCK_CACHE_DEFERRED_INSERTION_COUNT = "blockCacheDeferredInsertionCount";
+  String BLOCK_CACHE_DEFERRED_INSERTION_COUNT_DESC = "Number of times that a block cache " +
+      "insertion waited for the cache to catch up on writes, rather than being dropped.";
+  String BLOCK_CACHE_PARTITION_PREFIX = "blockCachePartition_";
+  String BLOCK_CACHE_PARTITION_SIZE = "_size";
+  String BLOCK_CACHE_PARTITION_SIZE_DESC = "Size of the blocks of the block cache partition.";
+  String BLOCK_CACHE_PARTITION_HIT_COUNT = "_hitCount";
+  String BLOCK_CACHE_PARTITION_HIT_COUNT_DESC = "Count of hits in the block cache partition.";
+  String BLOCK_CACHE_PARTITION_MISS_COUNT = "_missCount";
+  String BLOCK_CACHE_PARTITION_MISS_COUNT_DESC = "Count of misses in the block cache partition.";
+  String BLOCK_CACHE_PARTITION_HIT_PERCENT = "_hitPercent";
+  String BLOCK_CACHE_PARTITION_HIT_PERCENT_DESC =
+      "Percent of block cache partition requests that are hits.";
   String BLOCK_CACHE_DATA_MISS_COUNT = "blockCacheDataMissCount";
   String BLOCK_CACHE_ENCODED_DATA_MISS_COUNT = "blockCacheEncodedDataMissCount";
   String BLOCK_CACHE_LEAF_INDEX_MISS_COUNT = "blockCacheLeafIndexMissCount";
@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Collection;
+
 /**
  * This is the interface that will expose RegionServer information to hadoop1/hadoop2
  * implementations of the MetricsRegionServerSource.
@@ -269,6 +271,31 @@ public interface MetricsRegionServerWrapper {
    */
   long getBlockCacheFailedInsertions();
 
+  /**
+   * Number of cache insertions that had to wait for room in the cache.
+   */
+  long getBlockCacheDeferredInsertions();
+
+  /**
+   * Names of the block cache partitions, empty if the block cache is not partitioned.
+   */
+  Collection<String> getBlockCachePartitionNames();
+
+  /**
+   * Size of the blocks of a block cache partition, summed over the cache levels.
+   */
+  long getBlockCachePartitionSize(String partition);
+
+  /**
+   * Hit count of a block cache partition, summed over the cache levels.
+   */
+  long getBlockCachePartitionHitCount(String partition);
+
+  /**
+   * Miss count of a block cache partition, summed over the cache levels.
+   */
+  long getBlockCachePartitionMissCount(String partition);
+
   /**
    * Hit count of L1 cache.
    */
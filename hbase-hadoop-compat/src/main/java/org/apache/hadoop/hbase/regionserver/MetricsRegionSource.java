@@ -51,6 +51,32 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
   String COPROCESSOR_EXECUTION_STATISTICS_DESC = "Statistics for coprocessor execution times";
   String REPLICA_ID = "replicaid";
   String REPLICA_ID_DESC = "The replica ID of a region. 0 is primary, otherwise is secondary";
+  String PREFETCHED_BYTES = "prefetchedBytes";
+  String PREFETCHED_BYTES_DESC =
+      "Bytes of store files prefetched into the block cache since the region opened";
+  String PREFETCH_PENDING_BYTES = "prefetchPendingBytes";
+  String PREFETCH_PENDING_BYTES_DESC =
+      "Bytes of store files left to prefetch into the block cache";
+  String MEMSTORE_COMPACTION_DECISIONS = "inMemoryCompactionDecisions";
+  String MEMSTORE_COMPACTION_DECISIONS_DESC =
+      "In-memory compaction actions chosen for a store since the region opened";
+  String ROW_LOCK_CONTENDED_COUNT = "rowLockContendedCount";
+  String ROW_LOCK_CONTENDED_COUNT_DESC =
+      "Number of row locks that were held by others when asked for";
+  String ROW_LOCK_WAIT_TIME = "rowLockWaitTime";
+  String ROW_LOCK_WAIT_TIME_DESC = "Milliseconds spent waiting for row locks held by others";
+  String ROW_LOCK_TIMEOUT_COUNT = "rowLockTimeoutCount";
+  String ROW_LOCK_TIMEOUT_COUNT_DESC =
+      "Number of row locks given up after waiting for the longest time allowed";
+  String SCAN_CACHE_HIT_COUNT = "scanCacheHitCount";
+  String SCAN_CACHE_HIT_COUNT_DESC = "Number of scans answered with the cached rows of the region";
+  String SCAN_CACHE_MISS_COUNT = "scanCacheMissCount";
+  String SCAN_CACHE_MISS_COUNT_DESC = "Number of cacheable scans that found no cached rows";
+  String SCAN_CACHE_EVICTED_COUNT = "scanCacheEvictedCount";
+  String SCAN_CACHE_EVICTED_COUNT_DESC =
+      "Number of cached scans evicted to make room for others";
+  String SCAN_CACHE_SIZE = "scanCacheSize";
+  String SCAN_CACHE_SIZE_DESC = "Bytes taken by the cached rows of the scans of the region";
 
   /**
    * Close the region's metrics as this region is closing.
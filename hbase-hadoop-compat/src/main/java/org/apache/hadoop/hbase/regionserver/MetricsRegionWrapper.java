@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Map;
+
 /**
  * Interface of class that will wrap an HRegion and export numbers so they can be
  * used in MetricsRegionSource
@@ -143,6 +145,57 @@ public interface MetricsRegionWrapper {
    */
   long getMaxFlushQueueSize();
 
+  /**
+   * @return the bytes of the store files of this region prefetched into the block cache
+   */
+  long getPrefetchedBytes();
+
+  /**
+   * @return the bytes of the store files of this region left to prefetch into the block cache
+   */
+  long getPrefetchPendingBytes();
+
+  /**
+   * @return for every store of this region with an in-memory compacting memstore, the number
+   *         of times each in-memory compaction action was chosen
+   */
+  Map<String, Map<String, Long>> getMemStoreCompactionDecisions();
+
+  /**
+   * @return the number of row locks of this region that had to be waited for
+   */
+  long getRowLockContendedCount();
+
+  /**
+   * @return the total milliseconds spent waiting for row locks of this region
+   */
+  long getRowLockWaitTime();
+
+  /**
+   * @return the number of row locks of this region given up after waiting too long
+   */
+  long getRowLockTimeoutCount();
+
+  /**
+   * @return the number of scans of this region answered with cached rows
+   */
+  long getScanCacheHitCount();
+
+  /**
+   * @return the number of cacheable scans of this region that found no cached rows
+   */
+  long getScanCacheMissCount();
+
+  /**
+   * @return the number of cached scans of this region evicted to make room for others
+   */
+  long getScanCacheEvictedCount();
+
+  /**
+   * @return the bytes taken by the cached rows of the scans of this region
+   */
+  long getScanCacheSize();
+
   int getRegionHashCode();
 
   /**
@@ -64,6 +64,19 @@ public interface MetricsWALSource extends BaseSource {
       "How many times a log roll was requested due to too few DN's in the write pipeline.";
   String WRITTEN_BYTES = "writtenBytes";
   String WRITTEN_BYTES_DESC = "Size (in bytes) of the data written to the WAL.";
+  String APPEND_HEAP_BUFFER_SIZE = "appendHeapBufferSize";
+  String APPEND_HEAP_BUFFER_SIZE_DESC =
+      "Size (in bytes) of the heap buffers allocated to serialize WAL entries.";
+  String APPEND_DIRECT_BUFFER_SIZE = "appendDirectBufferSize";
+  String APPEND_DIRECT_BUFFER_SIZE_DESC =
+      "Size (in bytes) of the WAL entry data serialized into pooled off-heap buffers.";
+  String SYNC_BATCH_SIZE = "syncBatchSize";
+  String SYNC_BATCH_SIZE_DESC = "Number of handler syncs released by one filesystem sync.";
+  String SYNC_APPEND_BATCH_SIZE = "syncAppendBatchSize";
+  String SYNC_APPEND_BATCH_SIZE_DESC = "Number of appends committed by one filesystem sync.";
+  String SYNC_LINGER_TIME = "syncLingerTime";
+  String SYNC_LINGER_TIME_DESC =
+      "The time (in microseconds) the WAL waits for more appends before a filesystem sync.";
 
   /**
    * Add the append size.
@@ -98,5 +111,30 @@ public interface MetricsWALSource extends BaseSource {
 
   void incrementWrittenBytes(long val);
 
+  /**
+   * Add the size of the heap buffers allocated to serialize WAL entries.
+   */
+  void incrementAppendHeapBufferSize(long size);
+
+  /**
+   * Add the size of the WAL entry data serialized into pooled off-heap buffers.
+   */
+  void incrementAppendDirectBufferSize(long size);
+
+  /**
+   * Add the number of handler syncs released by one filesystem sync.
+   */
+  void incrementSyncBatchSize(long handlerSyncs);
+
+  /**
+   * Add the number of appends committed by one filesystem sync.
+   */
+  void incrementSyncAppendBatchSize(long appends);
+
+  /**
+   * Set the window the WAL waits for more appends before a filesystem sync.
+   */
+  void setSyncLingerTime(long micros);
+
   long getWrittenBytes();
 }
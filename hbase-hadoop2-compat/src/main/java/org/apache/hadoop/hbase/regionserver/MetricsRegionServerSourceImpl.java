@@ -319,6 +319,20 @@ public class MetricsRegionServerSourceImpl
     }
   }
 
+  private void addBlockCachePartitionMetrics(MetricsRecordBuilder mrb, String partition) {
+    String prefix = BLOCK_CACHE_PARTITION_PREFIX + partition;
+    long hits = rsWrap.getBlockCachePartitionHitCount(partition);
+    long requests = hits + rsWrap.getBlockCachePartitionMissCount(partition);
+    mrb.addGauge(Interns.info(prefix + BLOCK_CACHE_PARTITION_SIZE,
+          BLOCK_CACHE_PARTITION_SIZE_DESC), rsWrap.getBlockCachePartitionSize(partition))
+        .addCounter(Interns.info(prefix + BLOCK_CACHE_PARTITION_HIT_COUNT,
+          BLOCK_CACHE_PARTITION_HIT_COUNT_DESC), hits)
+        .addCounter(Interns.info(prefix + BLOCK_CACHE_PARTITION_MISS_COUNT,
+          BLOCK_CACHE_PARTITION_MISS_COUNT_DESC), requests - hits)
+        .addGauge(Interns.info(prefix + BLOCK_CACHE_PARTITION_HIT_PERCENT,
+          BLOCK_CACHE_PARTITION_HIT_PERCENT_DESC), requests == 0 ? 0 : 100.0 * hits / requests);
+  }
+
   /**
    * Yes this is a get function that doesn't return anything.  Thanks Hadoop for breaking all
    * expectations of java programmers.  Instead of returning anything Hadoop metrics expects
@@ -425,6 +439,8 @@ public class MetricsRegionServerSourceImpl
               BLOCK_CACHE_EXPRESS_HIT_PERCENT_DESC), rsWrap.getBlockCacheHitCachingPercent())
           .addCounter(Interns.info(BLOCK_CACHE_FAILED_INSERTION_COUNT,
               BLOCK_CACHE_FAILED_INSERTION_COUNT_DESC),rsWrap.getBlockCacheFailedInsertions())
+          .addCounter(Interns.info(BLOCK_CACHE_DEFERRED_INSERTION_COUNT,
+              BLOCK_CACHE_DEFERRED_INSERTION_COUNT_DESC), rsWrap.getBlockCacheDeferredInsertions())
           .addCounter(Interns.info(BLOCK_CACHE_DATA_MISS_COUNT, ""), rsWrap.getDataMissCount())
           .addCounter(Interns.info(BLOCK_CACHE_LEAF_INDEX_MISS_COUNT, ""),
               rsWrap.getLeafIndexMissCount())
@@ -532,6 +548,9 @@ public class MetricsRegionServerSourceImpl
           .tag(Interns.info(SERVER_NAME_NAME, SERVER_NAME_DESC), rsWrap.getServerName())
           .tag(Interns.info(CLUSTER_ID_NAME, CLUSTER_ID_DESC), rsWrap.getClusterId());
 
+      for (String partition : rsWrap.getBlockCachePartitionNames()) {
+        addBlockCachePartitionMetrics(mrb, partition);
+      }
     }
 
     metricsRegistry.snapshot(mrb, all);
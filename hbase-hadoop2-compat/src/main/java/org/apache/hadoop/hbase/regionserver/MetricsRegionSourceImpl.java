@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.yetus.audience.InterfaceAudience;
@@ -289,6 +290,53 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
               regionNamePrefix + MetricsRegionSource.MAX_FLUSH_QUEUE_SIZE,
               MetricsRegionSource.MAX_FLUSH_QUEUE_DESC),
           this.regionWrapper.getMaxFlushQueueSize());
+      mrb.addGauge(Interns.info(
+              regionNamePrefix + MetricsRegionSource.PREFETCHED_BYTES,
+              MetricsRegionSource.PREFETCHED_BYTES_DESC),
+          this.regionWrapper.getPrefetchedBytes());
+      mrb.addGauge(Interns.info(
+              regionNamePrefix + MetricsRegionSource.PREFETCH_PENDING_BYTES,
+              MetricsRegionSource.PREFETCH_PENDING_BYTES_DESC),
+          this.regionWrapper.getPrefetchPendingBytes());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.ROW_LOCK_CONTENDED_COUNT,
+              MetricsRegionSource.ROW_LOCK_CONTENDED_COUNT_DESC),
+          this.regionWrapper.getRowLockContendedCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.ROW_LOCK_WAIT_TIME,
+              MetricsRegionSource.ROW_LOCK_WAIT_TIME_DESC),
+          this.regionWrapper.getRowLockWaitTime());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.ROW_LOCK_TIMEOUT_COUNT,
+              MetricsRegionSource.ROW_LOCK_TIMEOUT_COUNT_DESC),
+          this.regionWrapper.getRowLockTimeoutCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.SCAN_CACHE_HIT_COUNT,
+              MetricsRegionSource.SCAN_CACHE_HIT_COUNT_DESC),
+          this.regionWrapper.getScanCacheHitCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.SCAN_CACHE_MISS_COUNT,
+              MetricsRegionSource.SCAN_CACHE_MISS_COUNT_DESC),
+          this.regionWrapper.getScanCacheMissCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.SCAN_CACHE_EVICTED_COUNT,
+              MetricsRegionSource.SCAN_CACHE_EVICTED_COUNT_DESC),
+          this.regionWrapper.getScanCacheEvictedCount());
+      mrb.addGauge(Interns.info(
+              regionNamePrefix + MetricsRegionSource.SCAN_CACHE_SIZE,
+              MetricsRegionSource.SCAN_CACHE_SIZE_DESC),
+          this.regionWrapper.getScanCacheSize());
+      for (Map.Entry<String, Map<String, Long>> store :
+          this.regionWrapper.getMemStoreCompactionDecisions().entrySet()) {
+        for (Map.Entry<String, Long> decision : store.getValue().entrySet()) {
+          mrb.addCounter(Interns.info(
+                  regionNamePrefix + "store_" + store.getKey() + "_"
+                      + MetricsRegionSource.MEMSTORE_COMPACTION_DECISIONS + "_"
+                      + decision.getKey(),
+                  MetricsRegionSource.MEMSTORE_COMPACTION_DECISIONS_DESC),
+              decision.getValue());
+        }
+      }
     }
   }
 
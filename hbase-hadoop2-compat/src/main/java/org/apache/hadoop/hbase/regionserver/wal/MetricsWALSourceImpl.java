@@ -22,6 +22,7 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.metrics.BaseSourceImpl;
 import org.apache.hadoop.metrics2.MetricHistogram;
 import org.apache.hadoop.metrics2.lib.MutableFastCounter;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 
 
 /**
@@ -41,6 +42,11 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
   private final MutableFastCounter logRollRequested;
   private final MutableFastCounter lowReplicationLogRollRequested;
   private final MutableFastCounter writtenBytes;
+  private final MutableFastCounter appendHeapBufferSize;
+  private final MutableFastCounter appendDirectBufferSize;
+  private final MetricHistogram syncBatchSizeHisto;
+  private final MetricHistogram syncAppendBatchSizeHisto;
+  private final MutableGaugeLong syncLingerTime;
 
   public MetricsWALSourceImpl() {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -64,6 +70,16 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     lowReplicationLogRollRequested = this.getMetricsRegistry()
         .newCounter(LOW_REPLICA_ROLL_REQUESTED, LOW_REPLICA_ROLL_REQUESTED_DESC, 0L);
     writtenBytes = this.getMetricsRegistry().newCounter(WRITTEN_BYTES, WRITTEN_BYTES_DESC, 0l);
+    appendHeapBufferSize = this.getMetricsRegistry()
+        .newCounter(APPEND_HEAP_BUFFER_SIZE, APPEND_HEAP_BUFFER_SIZE_DESC, 0L);
+    appendDirectBufferSize = this.getMetricsRegistry()
+        .newCounter(APPEND_DIRECT_BUFFER_SIZE, APPEND_DIRECT_BUFFER_SIZE_DESC, 0L);
+    syncBatchSizeHisto =
+        this.getMetricsRegistry().newHistogram(SYNC_BATCH_SIZE, SYNC_BATCH_SIZE_DESC);
+    syncAppendBatchSizeHisto =
+        this.getMetricsRegistry().newHistogram(SYNC_APPEND_BATCH_SIZE, SYNC_APPEND_BATCH_SIZE_DESC);
+    syncLingerTime =
+        this.getMetricsRegistry().newGauge(SYNC_LINGER_TIME, SYNC_LINGER_TIME_DESC, 0L);
   }
 
   @Override
@@ -116,4 +132,29 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     return writtenBytes.value();
   }
 
+  @Override
+  public void incrementAppendHeapBufferSize(long size) {
+    appendHeapBufferSize.incr(size);
+  }
+
+  @Override
+  public void incrementAppendDirectBufferSize(long size) {
+    appendDirectBufferSize.incr(size);
+  }
+
+  @Override
+  public void incrementSyncBatchSize(long handlerSyncs) {
+    syncBatchSizeHisto.add(handlerSyncs);
+  }
+
+  @Override
+  public void incrementSyncAppendBatchSize(long appends) {
+    syncAppendBatchSizeHisto.add(appends);
+  }
+
+  @Override
+  public void setSyncLingerTime(long micros) {
+    syncLingerTime.set(micros);
+  }
+
 }
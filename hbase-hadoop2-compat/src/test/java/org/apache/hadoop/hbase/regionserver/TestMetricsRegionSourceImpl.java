@@ -21,6 +21,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.Map;
+
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
 import org.apache.hadoop.hbase.testclassification.MetricsTests;
@@ -198,5 +201,55 @@ public class TestMetricsRegionSourceImpl {
     public long getMaxFlushQueueSize() {
       return 0;
     }
+
+    @Override
+    public long getPrefetchedBytes() {
+      return 0;
+    }
+
+    @Override
+    public long getPrefetchPendingBytes() {
+      return 0;
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getMemStoreCompactionDecisions() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public long getRowLockContendedCount() {
+      return 0;
+    }
+
+    @Override
+    public long getRowLockWaitTime() {
+      return 0;
+    }
+
+    @Override
+    public long getRowLockTimeoutCount() {
+      return 0;
+    }
+
+    @Override
+    public long getScanCacheHitCount() {
+      return 0;
+    }
+
+    @Override
+    public long getScanCacheMissCount() {
+      return 0;
+    }
+
+    @Override
+    public long getScanCacheEvictedCount() {
+      return 0;
+    }
+
+    @Override
+    public long getScanCacheSize() {
+      return 0;
+    }
   }
 }
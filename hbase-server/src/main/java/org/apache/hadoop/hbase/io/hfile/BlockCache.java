@@ -18,7 +18,12 @@
  */
 package org.apache.hadoop.hbase.io.hfile;
 
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
@@ -37,6 +42,20 @@ public interface BlockCache extends Iterable<CachedBlock> {
    */
   void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory);
 
+  /**
+   * Add block to cache, optionally waiting for room when the cache writes blocks asynchronously
+   * and its queue is full. Writers caching the blocks they write use this so that they are slowed
+   * down rather than the blocks dropped.
+   * @param cacheKey The block's cache key.
+   * @param buf The block contents wrapped in a ByteBuffer.
+   * @param inMemory Whether block should be treated as in-memory
+   * @param waitWhenCache Whether to wait for room in the cache before giving up on the block
+   */
+  default void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      boolean waitWhenCache) {
+    cacheBlock(cacheKey, buf, inMemory);
+  }
+
   /**
    * Add block to cache (defaults to not in-memory).
    * @param cacheKey The block's cache key.
@@ -56,6 +75,26 @@ public interface BlockCache extends Iterable<CachedBlock> {
   Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
     boolean updateCacheMetrics);
 
+  /**
+   * Counts an access to a block served by a cache in front of this one, such as the
+   * {@link DecompressedBlockCache}, as a hit or a miss, and keeps the recency of the block as
+   * {@link #getBlock(BlockCacheKey, boolean, boolean, boolean)} does. Implementations should not
+   * read the block.
+   * @param cacheKey Block accessed.
+   * @param caching Whether this request has caching enabled (used for stats)
+   * @param updateCacheMetrics Whether to update cache metrics or not
+   * @return true if the block is cached
+   */
+  default boolean touchBlock(BlockCacheKey cacheKey, boolean caching,
+      boolean updateCacheMetrics) {
+    Cacheable block = getBlock(cacheKey, caching, false, updateCacheMetrics);
+    if (block == null) {
+      return false;
+    }
+    returnBlock(cacheKey, block);
+    return true;
+  }
+
   /**
    * Evict block from cache.
    * @param cacheKey Block to evict
@@ -134,6 +173,38 @@ public interface BlockCache extends Iterable<CachedBlock> {
    */
   BlockCache [] getBlockCaches();
 
+  /**
+   * @return The partitions of this cache, or null if it is not partitioned. A cache made of sub
+   * caches is not partitioned itself, see {@link #getBlockCaches()}.
+   */
+  default CachePartitions getPartitions() {
+    return null;
+  }
+
+  /**
+   * Returns the offsets of the hot blocks of files, the cached ones which were read again after
+   * they were cached and the in memory ones. The default goes over all the cached blocks once.
+   * @param hfileNames the names of the files, as in their {@link BlockCacheKey}s
+   * @return the offsets in ascending order by file name, for the files with hot blocks only
+   */
+  default Map<String, long[]> getHotBlockOffsets(Set<String> hfileNames) {
+    Map<String, SortedSet<Long>> offsets = new HashMap<>();
+    for (CachedBlock block : this) {
+      BlockPriority priority = block.getBlockPriority();
+      if ((priority == BlockPriority.MULTI || priority == BlockPriority.MEMORY)
+          && hfileNames.contains(block.getFilename())) {
+        offsets.computeIfAbsent(block.getFilename(), name -> new TreeSet<>())
+            .add(block.getOffset());
+      }
+    }
+    Map<String, long[]> hotBlocks = new HashMap<>(offsets.size());
+    for (Map.Entry<String, SortedSet<Long>> entry : offsets.entrySet()) {
+      hotBlocks.put(entry.getKey(),
+        entry.getValue().stream().mapToLong(Long::longValue).toArray());
+    }
+    return hotBlocks;
+  }
+
   /**
    * Called when the scanner using the block decides to return the block once its usage
    * is over.
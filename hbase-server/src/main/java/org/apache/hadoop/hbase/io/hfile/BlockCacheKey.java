@@ -32,6 +32,7 @@ public class BlockCacheKey implements HeapSize, java.io.Serializable {
   private final long offset;
   private final BlockType blockType;
   private final boolean isPrimaryReplicaBlock;
+  private final String partition;
 
   /**
    * Construct a new BlockCacheKey
@@ -43,10 +44,25 @@ public class BlockCacheKey implements HeapSize, java.io.Serializable {
   }
 
   public BlockCacheKey(String hfileName, long offset, boolean isPrimaryReplica, BlockType blockType) {
+    this(hfileName, offset, isPrimaryReplica, blockType, null);
+  }
+
+  /**
+   * Construct a new BlockCacheKey
+   * @param hfileName The name of the HFile this block belongs to.
+   * @param offset Offset of the block into the file
+   * @param isPrimaryReplica Whether the file is read by a primary replica region
+   * @param blockType Type of the block
+   * @param partition The {@link CachePartitions} partition of the block, null for the default.
+   *          Like the block type, it is not part of the key identity.
+   */
+  public BlockCacheKey(String hfileName, long offset, boolean isPrimaryReplica, BlockType blockType,
+      String partition) {
     this.isPrimaryReplicaBlock = isPrimaryReplica;
     this.hfileName = hfileName;
     this.offset = offset;
     this.blockType = blockType;
+    this.partition = partition;
   }
 
   @Override
@@ -76,6 +92,7 @@ public class BlockCacheKey implements HeapSize, java.io.Serializable {
       Bytes.SIZEOF_BOOLEAN +
       ClassSize.REFERENCE + // this.hfileName
       ClassSize.REFERENCE + // this.blockType
+      ClassSize.REFERENCE + // this.partition, names are shared
       Bytes.SIZEOF_LONG);    // this.offset
 
   /**
@@ -107,4 +124,11 @@ public class BlockCacheKey implements HeapSize, java.io.Serializable {
   public BlockType getBlockType() {
     return blockType;
   }
+
+  /**
+   * @return The name of the cache partition of the block, null for the default partition
+   */
+  public String getPartition() {
+    return partition;
+  }
 }
@@ -138,6 +138,13 @@ public class CacheConfig {
    */
   public static final String BLOCKCACHE_BLOCKSIZE_KEY = "hbase.offheapcache.minblocksize";
 
+  /**
+   * The eviction policy of the on heap block cache, either "LRU" for {@link LruBlockCache} or
+   * "TinyLFU" for {@link TinyLfuBlockCache}.
+   */
+  public static final String BLOCKCACHE_POLICY_KEY = "hfile.block.cache.policy";
+  public static final String BLOCKCACHE_POLICY_DEFAULT = "LRU";
+
   private static final String EXTERNAL_BLOCKCACHE_KEY = "hbase.blockcache.use.external";
   private static final boolean EXTERNAL_BLOCKCACHE_DEFAULT = false;
 
@@ -210,6 +217,12 @@ public class CacheConfig {
 
   private final boolean dropBehindCompaction;
 
+  /** The {@link CachePartitions} partition of the blocks, null for the default partition */
+  private String cachePartition;
+
+  /** Unpacked form of the hottest data blocks when they are cached compressed, may be null */
+  private DecompressedBlockCache decompressedBlockCache;
+
   /**
    * Create a cache configuration using the specified configuration object and
    * family descriptor.
@@ -236,6 +249,8 @@ public class CacheConfig {
             DEFAULT_PREFETCH_ON_OPEN) || family.isPrefetchBlocksOnOpen(),
         conf.getBoolean(DROP_BEHIND_CACHE_COMPACTION_KEY, DROP_BEHIND_CACHE_COMPACTION_DEFAULT)
      );
+    this.cachePartition = family.getBlockCachePartition();
+    this.decompressedBlockCache = instantiateDecompressedBlockCache(conf);
     LOG.info("Created cacheConfig for " + family.getNameAsString() + ": " + this);
   }
 
@@ -259,6 +274,7 @@ public class CacheConfig {
         conf.getBoolean(PREFETCH_BLOCKS_ON_OPEN_KEY, DEFAULT_PREFETCH_ON_OPEN),
         conf.getBoolean(DROP_BEHIND_CACHE_COMPACTION_KEY, DROP_BEHIND_CACHE_COMPACTION_DEFAULT)
      );
+    this.decompressedBlockCache = instantiateDecompressedBlockCache(conf);
     LOG.info("Created cacheConfig: " + this);
   }
 
@@ -307,6 +323,8 @@ public class CacheConfig {
         cacheConf.cacheBloomsOnWrite, cacheConf.evictOnClose,
         cacheConf.cacheDataCompressed, cacheConf.prefetchOnOpen,
         cacheConf.dropBehindCompaction);
+    this.cachePartition = cacheConf.cachePartition;
+    this.decompressedBlockCache = cacheConf.decompressedBlockCache;
   }
 
   private CacheConfig() {
@@ -421,6 +439,14 @@ public class CacheConfig {
     return isBlockCacheEnabled() && this.cacheDataOnRead && this.cacheDataCompressed;
   }
 
+  /**
+   * @return the cache of the unpacked form of the hottest data blocks, or null if data blocks
+   *         are not cached compressed or there is no such cache
+   */
+  public DecompressedBlockCache getDecompressedBlockCache() {
+    return shouldCacheDataCompressed() ? decompressedBlockCache : null;
+  }
+
   /**
    * @return true if this {@link BlockCategory} should be compressed in blockcache, false otherwise
    */
@@ -441,6 +467,21 @@ public class CacheConfig {
     return isBlockCacheEnabled() && this.prefetchOnOpen;
   }
 
+  /**
+   * @return the name of the cache partition of the blocks, null for the default partition
+   */
+  public String getCachePartition() {
+    return this.cachePartition;
+  }
+
+  /**
+   * @param cachePartition the name of the cache partition of the blocks, null for the default
+   *          partition
+   */
+  public void setCachePartition(String cachePartition) {
+    this.cachePartition = cachePartition;
+  }
+
   /**
    * Return true if we may find this type of block in block cache.
    * <p>
@@ -495,7 +536,8 @@ public class CacheConfig {
       ", cacheBloomsOnWrite=" + shouldCacheBloomsOnWrite() +
       ", cacheEvictOnClose=" + shouldEvictOnClose() +
       ", cacheDataCompressed=" + shouldCacheDataCompressed() +
-      ", prefetchOnOpen=" + shouldPrefetchOnOpen();
+      ", prefetchOnOpen=" + shouldPrefetchOnOpen() +
+      (cachePartition == null ? "" : ", cachePartition=" + cachePartition);
   }
 
   // Static block cache reference and methods
@@ -507,8 +549,9 @@ public class CacheConfig {
   // Clear this if in tests you'd make more than one block cache instance.
   @VisibleForTesting
   static BlockCache GLOBAL_BLOCK_CACHE_INSTANCE;
-  private static LruBlockCache ONHEAP_CACHE_INSTANCE = null;
+  private static FirstLevelBlockCache ONHEAP_CACHE_INSTANCE = null;
   private static BlockCache L2_CACHE_INSTANCE = null;// Can be BucketCache or External cache.
+  private static DecompressedBlockCache DECOMPRESSED_BLOCK_CACHE_INSTANCE = null;
 
   /** Boolean whether we have disabled the block cache entirely. */
   @VisibleForTesting
@@ -516,9 +559,9 @@ public class CacheConfig {
 
   /**
    * @param c Configuration to use.
-   * @return An L1 instance.  Currently an instance of LruBlockCache.
+   * @return An L1 instance, as chosen by {@link #BLOCKCACHE_POLICY_KEY}.
    */
-  public static LruBlockCache getOnHeapCache(final Configuration c) {
+  public static FirstLevelBlockCache getOnHeapCache(final Configuration c) {
     return getOnHeapCacheInternal(c);
   }
 
@@ -538,9 +581,9 @@ public class CacheConfig {
 
   /**
    * @param c Configuration to use.
-   * @return An L1 instance.  Currently an instance of LruBlockCache.
+   * @return An L1 instance, as chosen by {@link #BLOCKCACHE_POLICY_KEY}.
    */
-  private synchronized static LruBlockCache getOnHeapCacheInternal(final Configuration c) {
+  private synchronized static FirstLevelBlockCache getOnHeapCacheInternal(final Configuration c) {
     if (ONHEAP_CACHE_INSTANCE != null) {
       return ONHEAP_CACHE_INSTANCE;
     }
@@ -550,9 +593,17 @@ public class CacheConfig {
     }
     if (blockCacheDisabled) return null;
     int blockSize = c.getInt(BLOCKCACHE_BLOCKSIZE_KEY, HConstants.DEFAULT_BLOCKSIZE);
-    LOG.info("Allocating On heap LruBlockCache size=" +
+    String policy = c.get(BLOCKCACHE_POLICY_KEY, BLOCKCACHE_POLICY_DEFAULT);
+    LOG.info("Allocating On heap " + policy + " block cache size=" +
       StringUtils.byteDesc(cacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
-    ONHEAP_CACHE_INSTANCE = new LruBlockCache(cacheSize, blockSize, true, c);
+    if (policy.equalsIgnoreCase("LRU")) {
+      ONHEAP_CACHE_INSTANCE = new LruBlockCache(cacheSize, blockSize, true, c);
+    } else if (policy.equalsIgnoreCase("TinyLFU")) {
+      ONHEAP_CACHE_INSTANCE = new TinyLfuBlockCache(cacheSize, blockSize, c);
+    } else {
+      throw new IllegalArgumentException("Unknown block cache policy " + policy + " for '"
+          + BLOCKCACHE_POLICY_KEY + "', expected LRU or TinyLFU");
+    }
     return ONHEAP_CACHE_INSTANCE;
   }
 
@@ -649,7 +700,7 @@ public class CacheConfig {
   public static synchronized BlockCache instantiateBlockCache(Configuration conf) {
     if (GLOBAL_BLOCK_CACHE_INSTANCE != null) return GLOBAL_BLOCK_CACHE_INSTANCE;
     if (blockCacheDisabled) return null;
-    LruBlockCache onHeapCache = getOnHeapCacheInternal(conf);
+    FirstLevelBlockCache onHeapCache = getOnHeapCacheInternal(conf);
     // blockCacheDisabled is set as a side-effect of getL1Internal(), so check it again after the
     // call.
     if (blockCacheDisabled) return null;
@@ -672,11 +723,31 @@ public class CacheConfig {
     return GLOBAL_BLOCK_CACHE_INSTANCE;
   }
 
+  /**
+   * @return the cache of unpacked data blocks shared by all the stores, or null if data blocks
+   *         are not cached compressed or the cache is disabled
+   */
+  private static synchronized DecompressedBlockCache instantiateDecompressedBlockCache(
+      Configuration conf) {
+    if (DECOMPRESSED_BLOCK_CACHE_INSTANCE != null) {
+      return DECOMPRESSED_BLOCK_CACHE_INSTANCE;
+    }
+    long size = conf.getLong(DecompressedBlockCache.SIZE_KEY, DecompressedBlockCache.DEFAULT_SIZE);
+    if (!conf.getBoolean(CACHE_DATA_BLOCKS_COMPRESSED_KEY, DEFAULT_CACHE_DATA_COMPRESSED)
+        || size <= 0) {
+      return null;
+    }
+    LOG.info("Allocating decompressed block cache of size " + StringUtils.byteDesc(size));
+    DECOMPRESSED_BLOCK_CACHE_INSTANCE = new DecompressedBlockCache(size);
+    return DECOMPRESSED_BLOCK_CACHE_INSTANCE;
+  }
+
   // Supposed to use only from tests. Some tests want to reinit the Global block cache instance
   @VisibleForTesting
   static synchronized void clearGlobalInstances() {
     ONHEAP_CACHE_INSTANCE = null;
     L2_CACHE_INSTANCE = null;
     GLOBAL_BLOCK_CACHE_INSTANCE = null;
+    DECOMPRESSED_BLOCK_CACHE_INSTANCE = null;
   }
 }
@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * Named shares of a block cache. A column family, or a table, picks the partition its blocks go
+ * to with the {@code BLOCKCACHE_PARTITION} attribute, see
+ * {@link org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder#BLOCKCACHE_PARTITION}.
+ * Blocks of the families that do not, or that name an unknown partition, go to the
+ * {@link #DEFAULT_PARTITION}.
+ * <p>
+ * Each partition has a floor and a ceiling, as factors of the cache size. The cache evicts the
+ * blocks of a partition above its ceiling first, and never evicts the blocks of a partition at
+ * its floor to make room for others. Partitions are declared with
+ * {@link #PARTITIONS_KEY}, e.g. for a serving table that keeps at least 40% of the cache and an
+ * analytics table that gets at most 30% of it:
+ * <pre>
+ * hbase.blockcache.partitions = serving,analytics
+ * hbase.blockcache.partition.serving.min.factor = 0.4
+ * hbase.blockcache.partition.analytics.max.factor = 0.3
+ * </pre>
+ * The accounting is per cache, each level of a combined cache enforces the shares on its own
+ * size.
+ */
+@InterfaceAudience.Private
+public class CachePartitions {
+
+  /** Comma separated names of the partitions, the cache is not partitioned if unset */
+  public static final String PARTITIONS_KEY = "hbase.blockcache.partitions";
+  /** Share of the cache a partition keeps when others need room, 0 by default */
+  public static final String MIN_FACTOR_KEY_FORMAT = "hbase.blockcache.partition.%s.min.factor";
+  /** Largest share of the cache a partition may take, the whole cache by default */
+  public static final String MAX_FACTOR_KEY_FORMAT = "hbase.blockcache.partition.%s.max.factor";
+
+  /** The partition of the blocks that are not assigned one */
+  public static final String DEFAULT_PARTITION = "default";
+
+  private final Map<String, Partition> partitions;
+  private final Partition defaultPartition;
+
+  private CachePartitions(Map<String, Partition> partitions) {
+    this.partitions = Collections.unmodifiableMap(partitions);
+    this.defaultPartition = partitions.get(DEFAULT_PARTITION);
+  }
+
+  /**
+   * @return the partitions declared in the configuration, or null if the cache is not partitioned
+   */
+  public static CachePartitions create(Configuration conf) {
+    Collection<String> names = conf.getTrimmedStringCollection(PARTITIONS_KEY);
+    if (names.isEmpty()) {
+      return null;
+    }
+    Map<String, Partition> partitions = new LinkedHashMap<>();
+    partitions.put(DEFAULT_PARTITION, createPartition(conf, DEFAULT_PARTITION));
+    for (String name : names) {
+      if (!partitions.containsKey(name)) {
+        partitions.put(name, createPartition(conf, name));
+      }
+    }
+    float floors = 0;
+    for (Partition partition : partitions.values()) {
+      floors += partition.minFactor;
+    }
+    Preconditions.checkArgument(floors <= 1.0f,
+      "The block cache partition floors add up to more than the cache: " + floors);
+    return new CachePartitions(partitions);
+  }
+
+  private static Partition createPartition(Configuration conf, String name) {
+    float minFactor = conf.getFloat(String.format(MIN_FACTOR_KEY_FORMAT, name), 0.0f);
+    float maxFactor = conf.getFloat(String.format(MAX_FACTOR_KEY_FORMAT, name), 1.0f);
+    Preconditions.checkArgument(minFactor >= 0 && minFactor <= maxFactor && maxFactor <= 1,
+      "Block cache partition " + name + " must have 0 <= min.factor <= max.factor <= 1");
+    return new Partition(name, minFactor, maxFactor);
+  }
+
+  /**
+   * @return the partition the block of the given key belongs to
+   */
+  public Partition get(BlockCacheKey cacheKey) {
+    String name = cacheKey.getPartition();
+    if (name == null) {
+      return defaultPartition;
+    }
+    Partition partition = partitions.get(name);
+    return partition == null ? defaultPartition : partition;
+  }
+
+  /**
+   * @return the partition with the given name, or null if there is none
+   */
+  public Partition get(String name) {
+    return partitions.get(name);
+  }
+
+  /**
+   * @return all the partitions, the default one first
+   */
+  public Collection<Partition> getPartitions() {
+    return partitions.values();
+  }
+
+  /**
+   * @return the bytes that eviction must leave to the partitions at or below their floor in a
+   *         cache of the given size. Eviction candidates are collected with this much extra room
+   *         so that the oldest blocks, when they are held by a floor, do not crowd out the others.
+   */
+  public long getProtectedSize(long cacheSize) {
+    long protectedSize = 0;
+    for (Partition partition : partitions.values()) {
+      protectedSize += Math.min(partition.getSize(), (long) (cacheSize * partition.minFactor));
+    }
+    return protectedSize;
+  }
+
+  /**
+   * The occupancy and hit statistics of one partition. Sizes are in the unit of the cache, heap
+   * size for an on heap cache and serialized length for the bucket cache.
+   */
+  public static final class Partition {
+    private final String name;
+    private final float minFactor;
+    private final float maxFactor;
+    private final LongAdder size = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    Partition(String name, float minFactor, float maxFactor) {
+      this.name = name;
+      this.minFactor = minFactor;
+      this.maxFactor = maxFactor;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public float getMinFactor() {
+      return minFactor;
+    }
+
+    public float getMaxFactor() {
+      return maxFactor;
+    }
+
+    public long getSize() {
+      return size.sum();
+    }
+
+    public long getHitCount() {
+      return hitCount.sum();
+    }
+
+    public long getMissCount() {
+      return missCount.sum();
+    }
+
+    public double getHitRatio() {
+      long hits = getHitCount();
+      long requests = hits + getMissCount();
+      return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public void add(long delta) {
+      size.add(delta);
+    }
+
+    public void hit() {
+      hitCount.increment();
+    }
+
+    public void miss() {
+      missCount.increment();
+    }
+
+    /**
+     * @return how much the partition is above its ceiling in a cache of the given size
+     */
+    public long overflow(long cacheSize) {
+      return getSize() - (long) (cacheSize * maxFactor);
+    }
+
+    /**
+     * @return true if a block of the given size can be evicted to make room for other partitions
+     *         without taking this one below its floor
+     */
+    public boolean canEvict(long blockSize, long cacheSize) {
+      return minFactor == 0 || getSize() - blockSize >= (long) (cacheSize * minFactor);
+    }
+
+    @Override
+    public String toString() {
+      return "name=" + name + ", minFactor=" + minFactor + ", maxFactor=" + maxFactor
+          + ", size=" + getSize() + ", hitCount=" + getHitCount()
+          + ", missCount=" + getMissCount();
+    }
+  }
+}
@@ -74,6 +74,19 @@ public class CacheStats {
   /** The total number of blocks that were not inserted. */
   private final AtomicLong failedInserts = new AtomicLong(0);
 
+  /**
+   * The number of blocks whose insertion had to wait for room in the cache, rather than being
+   * dropped. Only counted by caches with a write queue, see
+   * {@link org.apache.hadoop.hbase.io.hfile.bucket.BucketCache}.
+   */
+  private final LongAdder deferredInserts = new LongAdder();
+
+  /**
+   * The number of blocks an admission policy turned away, evicting them in favour of more popular
+   * ones. Only counted by caches with an admission filter, see {@link TinyLfuBlockCache}.
+   */
+  private final LongAdder rejectedAdmissionCount = new LongAdder();
+
   /** Per Block Type Counts */
   private final LongAdder dataMissCount = new LongAdder();
   private final LongAdder leafIndexMissCount = new LongAdder();
@@ -97,6 +110,9 @@ public class CacheStats {
   private final LongAdder deleteFamilyBloomHitCount = new LongAdder();
   private final LongAdder trailerHitCount = new LongAdder();
 
+  /** Name of the cache, identifying the eviction policy it uses */
+  private final String name;
+
   /** The number of metrics periods to include in window */
   private final int numPeriodsInWindow;
   /** Hit counts for each period in window */
@@ -128,6 +144,7 @@ public class CacheStats {
   }
 
   public CacheStats(final String name, int numPeriodsInWindow) {
+    this.name = name;
     this.numPeriodsInWindow = numPeriodsInWindow;
     this.hitCounts = new long[numPeriodsInWindow];
     this.hitCachingCounts =  new long[numPeriodsInWindow];
@@ -139,10 +156,12 @@ public class CacheStats {
   @Override
   public String toString() {
     AgeSnapshot snapshot = getAgeAtEvictionSnapshot();
-    return "hitCount=" + getHitCount() + ", hitCachingCount=" + getHitCachingCount() +
+    return "name=" + name + ", hitCount=" + getHitCount() +
+      ", hitCachingCount=" + getHitCachingCount() +
       ", missCount=" + getMissCount() + ", missCachingCount=" + getMissCachingCount() +
       ", evictionCount=" + getEvictionCount() +
       ", evictedBlockCount=" + getEvictedCount() +
+      ", rejectedAdmissionCount=" + getRejectedAdmissionCount() +
       ", primaryMissCount=" + getPrimaryMissCount() +
       ", primaryHitCount=" + getPrimaryHitCount() +
       ", evictedAgeMean=" + snapshot.getMean();
@@ -261,6 +280,14 @@ public class CacheStats {
     return failedInserts.incrementAndGet();
   }
 
+  public void deferInsert() {
+    deferredInserts.increment();
+  }
+
+  public void rejectAdmission() {
+    rejectedAdmissionCount.increment();
+  }
+
 
   // All of the counts of misses and hits.
   public long getDataMissCount() {
@@ -411,6 +438,21 @@ public class CacheStats {
     return failedInserts.get();
   }
 
+  public long getDeferredInserts() {
+    return deferredInserts.sum();
+  }
+
+  public long getRejectedAdmissionCount() {
+    return rejectedAdmissionCount.sum();
+  }
+
+  /**
+   * @return the name of the cache these are the statistics of
+   */
+  public String getName() {
+    return name;
+  }
+
   public void rollMetricsPeriod() {
     hitCounts[windowIndex] = getHitCount() - lastHitCount;
     lastHitCount = getHitCount();
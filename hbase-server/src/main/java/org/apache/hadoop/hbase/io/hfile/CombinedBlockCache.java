@@ -18,7 +18,12 @@
  */
 package org.apache.hadoop.hbase.io.hfile;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
 
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.io.HeapSize;
@@ -29,8 +34,8 @@ import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesti
 
 
 /**
- * CombinedBlockCache is an abstraction layer that combines
- * {@link LruBlockCache} and {@link BucketCache}. The smaller lruCache is used
+ * CombinedBlockCache is an abstraction layer that combines a {@link FirstLevelBlockCache},
+ * {@link LruBlockCache} by default, and {@link BucketCache}. The smaller lruCache is used
  * to cache bloom blocks and index blocks.  The larger Cache is used to
  * cache data blocks. {@link #getBlock(BlockCacheKey, boolean, boolean, boolean)} reads
  * first from the smaller lruCache before looking for the block in the l2Cache.
@@ -38,11 +43,11 @@ import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesti
  */
 @InterfaceAudience.Private
 public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
-  protected final LruBlockCache onHeapCache;
+  protected final FirstLevelBlockCache onHeapCache;
   protected final BlockCache l2Cache;
   protected final CombinedCacheStats combinedCacheStats;
 
-  public CombinedBlockCache(LruBlockCache onHeapCache, BlockCache l2Cache) {
+  public CombinedBlockCache(FirstLevelBlockCache onHeapCache, BlockCache l2Cache) {
     this.onHeapCache = onHeapCache;
     this.l2Cache = l2Cache;
     this.combinedCacheStats = new CombinedCacheStats(onHeapCache.getStats(),
@@ -68,6 +73,17 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
     }
   }
 
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      boolean waitWhenCache) {
+    boolean metaBlock = buf.getBlockType().getCategory() != BlockCategory.DATA;
+    if (metaBlock) {
+      onHeapCache.cacheBlock(cacheKey, buf, inMemory, waitWhenCache);
+    } else {
+      l2Cache.cacheBlock(cacheKey, buf, inMemory, waitWhenCache);
+    }
+  }
+
   @Override
   public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf) {
     cacheBlock(cacheKey, buf, false);
@@ -85,6 +101,14 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
         l2Cache.getBlock(cacheKey, caching, repeat, updateCacheMetrics);
   }
 
+  @Override
+  public boolean touchBlock(BlockCacheKey cacheKey, boolean caching,
+      boolean updateCacheMetrics) {
+    return onHeapCache.containsBlock(cacheKey)
+        ? onHeapCache.touchBlock(cacheKey, caching, updateCacheMetrics)
+        : l2Cache.touchBlock(cacheKey, caching, updateCacheMetrics);
+  }
+
   @Override
   public boolean evictBlock(BlockCacheKey cacheKey) {
     return onHeapCache.evictBlock(cacheKey) || l2Cache.evictBlock(cacheKey);
@@ -96,6 +120,16 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
         + l2Cache.evictBlocksByHfileName(hfileName);
   }
 
+  @Override
+  public Map<String, long[]> getHotBlockOffsets(Set<String> hfileNames) {
+    Map<String, long[]> hotBlocks = new HashMap<>(l2Cache.getHotBlockOffsets(hfileNames));
+    onHeapCache.getHotBlockOffsets(hfileNames).forEach((name, l1Offsets) ->
+        hotBlocks.merge(name, l1Offsets, (l2Offsets, offsets) ->
+            LongStream.concat(Arrays.stream(l2Offsets), Arrays.stream(offsets)).sorted()
+                .distinct().toArray()));
+    return hotBlocks;
+  }
+
   @Override
   public CacheStats getStats() {
     return this.combinedCacheStats;
@@ -330,6 +364,17 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
       return lruCacheStats.getFailedInserts() + bucketCacheStats.getFailedInserts();
     }
 
+    @Override
+    public long getDeferredInserts() {
+      return lruCacheStats.getDeferredInserts() + bucketCacheStats.getDeferredInserts();
+    }
+
+    @Override
+    public long getRejectedAdmissionCount() {
+      return lruCacheStats.getRejectedAdmissionCount()
+          + bucketCacheStats.getRejectedAdmissionCount();
+    }
+
     @Override
     public long getSumHitCountsPastNPeriods() {
       return lruCacheStats.getSumHitCountsPastNPeriods()
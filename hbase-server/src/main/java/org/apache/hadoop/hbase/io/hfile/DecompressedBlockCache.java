@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A small on heap cache of the unpacked form of the hottest data blocks, for when the block cache
+ * keeps data blocks compressed, see {@link CacheConfig#CACHE_DATA_BLOCKS_COMPRESSED_KEY}. The
+ * block cache then holds about as many blocks as the compression ratio allows, and this cache
+ * saves the blocks read over and over from being decompressed on every hit.
+ * <p>
+ * A block is offered here every time it is found packed in the block cache, and only admitted
+ * when a frequency sketch of the stripe has seen it offered before, so the blocks read once by a
+ * scan over cached data never displace the hot ones. The cache is split into stripes, each an LRU
+ * map with its own lock, its share of the size and its sketch. Blocks are immutable and their
+ * keys are unique to a file, so there is nothing to invalidate; the blocks of a file are dropped
+ * with it when the block cache evicts on close. The block cache still counts the hits of the
+ * blocks served from here, and keeps their recency.
+ */
+@InterfaceAudience.Private
+public class DecompressedBlockCache {
+
+  /** Size in bytes of the cache, 0 to disable it */
+  public static final String SIZE_KEY = "hbase.block.data.cachecompressed.decompressed.size";
+  public static final long DEFAULT_SIZE = 16L * 1024 * 1024;
+
+  private static final int STRIPES = 16;
+  // the times a block is offered before it is admitted
+  private static final int ADMISSION_FREQUENCY = 2;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final long maxSize;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+
+  public DecompressedBlockCache(long maxSize) {
+    this.maxSize = maxSize;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe(maxSize / STRIPES);
+    }
+  }
+
+  private Stripe getStripe(BlockCacheKey cacheKey) {
+    return stripes[(cacheKey.hashCode() & Integer.MAX_VALUE) % STRIPES];
+  }
+
+  /**
+   * @return the unpacked block of the given key, or null if it is not cached
+   */
+  public HFileBlock getBlock(BlockCacheKey cacheKey) {
+    HFileBlock block = getStripe(cacheKey).get(cacheKey);
+    if (block == null) {
+      missCount.increment();
+    } else {
+      hitCount.increment();
+    }
+    return block;
+  }
+
+  /**
+   * Offers the unpacked form of a block. It is added if it was offered recently before, evicting
+   * the least recently used blocks of its stripe to make room. Blocks larger than a stripe are
+   * not cached.
+   */
+  public void cacheBlock(BlockCacheKey cacheKey, HFileBlock block) {
+    assert block.isUnpacked() : "Packed block in the decompressed cache";
+    if (!getStripe(cacheKey).put(cacheKey, block)) {
+      rejectedCount.increment();
+    }
+  }
+
+  /**
+   * Evicts all the blocks of the given file
+   * @return the number of blocks evicted
+   */
+  public int evictBlocksByHfileName(String hfileName) {
+    int evicted = 0;
+    for (Stripe stripe : stripes) {
+      evicted += stripe.evictByHfileName(hfileName);
+    }
+    return evicted;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getCurrentSize() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.getSize();
+    }
+    return size;
+  }
+
+  public long getBlockCount() {
+    long count = 0;
+    for (Stripe stripe : stripes) {
+      count += stripe.getBlockCount();
+    }
+    return count;
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return the number of blocks offered and not admitted
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "maxSize=" + StringUtils.byteDesc(maxSize) + ", currentSize="
+        + StringUtils.byteDesc(getCurrentSize()) + ", blockCount=" + getBlockCount()
+        + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount()
+        + ", rejectedCount=" + getRejectedCount();
+  }
+
+  private static final class Stripe {
+    private final long maxSize;
+    private final LinkedHashMap<BlockCacheKey, HFileBlock> blocks =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    // remembers the offers of several times the blocks the stripe holds
+    private final FrequencySketch sketch;
+
+    Stripe(long maxSize) {
+      this.maxSize = maxSize;
+      this.sketch = new FrequencySketch(Math.max(256, 8 * maxSize / HConstants.DEFAULT_BLOCKSIZE));
+    }
+
+    synchronized HFileBlock get(BlockCacheKey cacheKey) {
+      return blocks.get(cacheKey);
+    }
+
+    /**
+     * @return true if the block was admitted
+     */
+    synchronized boolean put(BlockCacheKey cacheKey, HFileBlock block) {
+      long blockSize = block.heapSize();
+      if (blockSize > maxSize) {
+        return false;
+      }
+      if (!blocks.containsKey(cacheKey)) {
+        sketch.increment(cacheKey.hashCode());
+        if (sketch.frequency(cacheKey.hashCode()) < ADMISSION_FREQUENCY) {
+          return false;
+        }
+      }
+      HFileBlock previous = blocks.put(cacheKey, block);
+      if (previous != null) {
+        size -= previous.heapSize();
+      }
+      size += blockSize;
+      Iterator<HFileBlock> it = blocks.values().iterator();
+      while (size > maxSize && it.hasNext()) {
+        size -= it.next().heapSize();
+        it.remove();
+      }
+      return true;
+    }
+
+    synchronized int evictByHfileName(String hfileName) {
+      int evicted = 0;
+      Iterator<Map.Entry<BlockCacheKey, HFileBlock>> it = blocks.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<BlockCacheKey, HFileBlock> entry = it.next();
+        if (entry.getKey().getHfileName().equals(hfileName)) {
+          size -= entry.getValue().heapSize();
+          it.remove();
+          evicted++;
+        }
+      }
+      return evicted;
+    }
+
+    synchronized long getSize() {
+      return size;
+    }
+
+    synchronized int getBlockCount() {
+      return blocks.size();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A probabilistic multiset estimating the popularity of an element within a time window, used
+ * as the admission filter of {@link TinyLfuBlockCache}.
+ * <p>
+ * This is a count-min sketch of depth four with 4-bit counters, sixteen to a long. An element
+ * selects one group of four counters within each of four longs; its frequency is the minimum of
+ * those counters. Once the number of increments reaches ten times the expected number of
+ * elements, all counters are halved so that the sketch favours recent popularity.
+ * <p>
+ * Not thread safe, callers must synchronize.
+ */
+@InterfaceAudience.Private
+final class FrequencySketch {
+
+  private static final long[] SEED = new long[] {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  /** The largest value a counter can hold */
+  static final int MAX_FREQUENCY = 15;
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int size;
+
+  /**
+   * @param expectedElements the expected number of distinct elements in the cache
+   */
+  FrequencySketch(long expectedElements) {
+    ensureCapacity(expectedElements);
+  }
+
+  /**
+   * Grows the sketch for a new expected number of elements. Resets the counters when resized.
+   */
+  void ensureCapacity(long expectedElements) {
+    int maximum = (int) Math.min(Math.max(expectedElements, 1), Integer.MAX_VALUE >>> 2);
+    if (table != null && table.length >= maximum) {
+      return;
+    }
+    // Round up to a power of two
+    table = new long[maximum == 1 ? 1 : Integer.highestOneBit(maximum - 1) << 1];
+    tableMask = table.length - 1;
+    sampleSize = 10 * maximum;
+    size = 0;
+  }
+
+  /**
+   * @return the estimated number of occurrences of the element, up to {@link #MAX_FREQUENCY}
+   */
+  int frequency(int item) {
+    int hash = spread(item);
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the popularity of the element, unless it is already at the maximum. All counters
+   * are aged once the sample size is reached.
+   */
+  void increment(int item) {
+    int hash = spread(item);
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter and the sample count */
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int item, int i) {
+    long hash = (item + SEED[i]) * SEED[i];
+    hash += hash >>> 32;
+    return ((int) hash) & tableMask;
+  }
+
+  /** Applies a supplemental hash, as the keys' own hash codes are of poor quality */
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -438,6 +438,12 @@ public class HFile {
 
     Optional<Cell> midKey() throws IOException;
 
+    /**
+     * @return the keys of the root level of the data block index, in order. They are the first
+     *         keys of data blocks, or of index blocks when the index has several levels.
+     */
+    List<Cell> getRootIndexKeys();
+
     long length();
 
     long getEntries();
@@ -500,6 +506,13 @@ public class HFile {
     @VisibleForTesting
     boolean prefetchComplete();
 
+    /**
+     * Reads the data blocks at the given offsets into the block cache in the background, like the
+     * prefetch on open. Warms the cache with the blocks which were hot on the server which had
+     * the region before.
+     */
+    void prefetchBlocks(long[] offsets);
+
     /**
      * To close the stream's socket. Note: This can be concurrently called from multiple threads and
      * implementation should take care of thread safety.
@@ -1105,7 +1105,8 @@ public class HFileBlockIndex {
         if (cacheConf != null) {
           HFileBlock blockForCaching = blockWriter.getBlockForCaching(cacheConf);
           cacheConf.getBlockCache().cacheBlock(new BlockCacheKey(nameForCaching,
-            rootLevelIndexPos, true, blockForCaching.getBlockType()), blockForCaching);
+            rootLevelIndexPos, true, blockForCaching.getBlockType(),
+            cacheConf.getCachePartition()), blockForCaching);
         }
       }
 
@@ -1209,7 +1210,8 @@ public class HFileBlockIndex {
       if (getCacheOnWrite()) {
         HFileBlock blockForCaching = blockWriter.getBlockForCaching(cacheConf);
         cacheConf.getBlockCache().cacheBlock(new BlockCacheKey(nameForCaching,
-          beginOffset, true, blockForCaching.getBlockType()), blockForCaching);
+          beginOffset, true, blockForCaching.getBlockType(), cacheConf.getCachePartition()),
+          blockForCaching);
       }
 
       // Add intermediate index block size
@@ -76,6 +76,9 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
   // to navigate the source code when so many classes participating in read.
   private static final Logger LOG = LoggerFactory.getLogger(HFileReaderImpl.class);
 
+  /** Suffix of the path keying the prefetch of given blocks of this file */
+  private static final String HOT_BLOCKS_PREFETCH_SUFFIX = ".hot";
+
   /** Data block index reader keeping the root data index in memory */
   private HFileBlockIndex.CellBasedKeyBlockIndexReader dataBlockIndexReader;
 
@@ -254,7 +257,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
 
     // Prefetch file blocks upon open if requested
     if (cacheConf.shouldPrefetchOnOpen()) {
-      PrefetchExecutor.request(path, new Runnable() {
+      PrefetchExecutor.request(path, trailer.getLoadOnOpenDataOffset(), new Runnable() {
         @Override
         public void run() {
           long offset = 0;
@@ -284,6 +287,8 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
               returnBlock(block);
               prevBlock = block;
               offset += block.getOnDiskSizeWithHeader();
+              // Waits out the prefetch throughput limit, if any
+              PrefetchExecutor.control(path, block.getOnDiskSizeWithHeader());
             }
           } catch (IOException e) {
             // IOExceptions are probably due to region closes (relocation, etc.)
@@ -373,7 +378,8 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     BlockCache blockCache = this.cacheConf.getBlockCache();
     if (blockCache != null && block != null) {
       BlockCacheKey cacheKey = new BlockCacheKey(this.getFileContext().getHFileName(),
-          block.getOffset(), this.isPrimaryReplicaReader(), block.getBlockType());
+          block.getOffset(), this.isPrimaryReplicaReader(), block.getBlockType(),
+          cacheConf.getCachePartition());
       blockCache.returnBlock(cacheKey, block);
     }
   }
@@ -1299,15 +1305,32 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
      // Check cache for block. If found return.
      if (cacheConf.isBlockCacheEnabled()) {
        BlockCache cache = cacheConf.getBlockCache();
-       HFileBlock cachedBlock = (HFileBlock) cache.getBlock(cacheKey, cacheBlock, useLock,
-         updateCacheMetrics);
+       // Data blocks kept compressed in the block cache may have their unpacked form at hand
+       DecompressedBlockCache decompressedCache = expectedBlockType == null
+           || expectedBlockType.getCategory() == BlockType.BlockCategory.DATA
+           ? cacheConf.getDecompressedBlockCache() : null;
+       HFileBlock cachedBlock =
+           decompressedCache == null ? null : decompressedCache.getBlock(cacheKey);
+       boolean unpacked = cachedBlock != null;
+       if (unpacked) {
+         // The block cache still keeps the recency and counts the hits of the blocks served here
+         cache.touchBlock(cacheKey, cacheBlock, updateCacheMetrics);
+       } else {
+         cachedBlock = (HFileBlock) cache.getBlock(cacheKey, cacheBlock, useLock,
+           updateCacheMetrics);
+       }
        if (cachedBlock != null) {
-         if (cacheConf.shouldCacheCompressed(cachedBlock.getBlockType().getCategory())) {
+         if (!unpacked
+             && cacheConf.shouldCacheCompressed(cachedBlock.getBlockType().getCategory())) {
            HFileBlock compressedBlock = cachedBlock;
            cachedBlock = compressedBlock.unpack(hfileContext, fsBlockReader);
            // In case of compressed block after unpacking we can return the compressed block
           if (compressedBlock != cachedBlock) {
             cache.returnBlock(cacheKey, compressedBlock);
+            // Kept unpacked if it was unpacked recently before, in case it is hot
+            if (decompressedCache != null) {
+              decompressedCache.cacheBlock(cacheKey, cachedBlock);
+            }
           }
         }
          validateBlockType(cachedBlock, expectedBlockType);
@@ -1388,7 +1411,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
       // Check cache for block. If found return.
       long metaBlockOffset = metaBlockIndexReader.getRootBlockOffset(block);
       BlockCacheKey cacheKey = new BlockCacheKey(name, metaBlockOffset,
-        this.isPrimaryReplicaReader(), BlockType.META);
+        this.isPrimaryReplicaReader(), BlockType.META, cacheConf.getCachePartition());
 
       cacheBlock &= cacheConf.shouldCacheBlockOnRead(BlockType.META.getCategory());
       if (cacheConf.isBlockCacheEnabled()) {
@@ -1437,7 +1460,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     // from doing).
 
     BlockCacheKey cacheKey = new BlockCacheKey(name, dataBlockOffset,
-      this.isPrimaryReplicaReader(), expectedBlockType);
+      this.isPrimaryReplicaReader(), expectedBlockType, cacheConf.getCachePartition());
 
     boolean useLock = false;
     IdLock.Entry lockEntry = null;
@@ -1561,6 +1584,19 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     return Optional.ofNullable(dataBlockIndexReader.midkey());
   }
 
+  @Override
+  public List<Cell> getRootIndexKeys() {
+    if (dataBlockIndexReader == null) {
+      throw new BlockIndexNotLoadedException();
+    }
+    int count = dataBlockIndexReader.getRootBlockCount();
+    List<Cell> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(dataBlockIndexReader.getRootBlockKey(i));
+    }
+    return keys;
+  }
+
   @Override
   public void close() throws IOException {
     close(cacheConf.shouldEvictOnClose());
@@ -1571,6 +1607,10 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     PrefetchExecutor.cancel(path);
     if (evictOnClose && cacheConf.isBlockCacheEnabled()) {
       int numEvicted = cacheConf.getBlockCache().evictBlocksByHfileName(name);
+      DecompressedBlockCache decompressedCache = cacheConf.getDecompressedBlockCache();
+      if (decompressedCache != null) {
+        numEvicted += decompressedCache.evictBlocksByHfileName(name);
+      }
       if (LOG.isTraceEnabled()) {
         LOG.trace("On close, file=" + name + " evicted=" + numEvicted
           + " block(s)");
@@ -1786,6 +1826,38 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     return PrefetchExecutor.isCompleted(path);
   }
 
+  @Override
+  public void prefetchBlocks(long[] offsets) {
+    // Keyed apart from the prefetch on open of the whole file, which may run at the same time
+    Path prefetchPath = new Path(path.getParent(), path.getName() + HOT_BLOCKS_PREFETCH_SUFFIX);
+    long end = trailer.getLoadOnOpenDataOffset();
+    PrefetchExecutor.request(prefetchPath, offsets.length * (long) hfileContext.getBlocksize(),
+      () -> {
+        long offset = 0;
+        try {
+          for (int i = 0; i < offsets.length && !Thread.interrupted(); i++) {
+            offset = offsets[i];
+            if (offset >= end) {
+              // The load-on-open blocks are read with the file
+              break;
+            }
+            HFileBlock block = readBlock(offset, -1, true, true, false, false, null, null);
+            returnBlock(block);
+            PrefetchExecutor.control(prefetchPath, block.getOnDiskSizeWithHeader());
+          }
+        } catch (IOException e) {
+          // IOExceptions are probably due to region closes (relocation, etc.)
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Prefetch " + getPathOffsetEndStr(path, offset, end), e);
+          }
+        } catch (Exception e) {
+          LOG.warn("Prefetch " + getPathOffsetEndStr(path, offset, end), e);
+        } finally {
+          PrefetchExecutor.complete(prefetchPath);
+        }
+      });
+  }
+
   protected HFileContext createHFileContext(FSDataInputStreamWrapper fsdis, long fileSize,
       HFileSystem hfs, Path path, FixedFileTrailer trailer) throws IOException {
     HFileContextBuilder builder = new HFileContextBuilder()
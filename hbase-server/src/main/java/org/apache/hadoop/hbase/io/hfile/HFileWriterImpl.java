@@ -543,9 +543,12 @@ public class HFileWriterImpl implements HFile.Writer {
    */
   private void doCacheOnWrite(long offset) {
     HFileBlock cacheFormatBlock = blockWriter.getBlockForCaching(cacheConf);
+    // Wait for room in the cache, so that flushes and compactions are slowed down by a backlogged
+    // cache rather than the blocks they write are dropped
     cacheConf.getBlockCache().cacheBlock(
-        new BlockCacheKey(name, offset, true, cacheFormatBlock.getBlockType()),
-        cacheFormatBlock);
+        new BlockCacheKey(name, offset, true, cacheFormatBlock.getBlockType(),
+            cacheConf.getCachePartition()),
+        cacheFormatBlock, false, true);
   }
 
   /**
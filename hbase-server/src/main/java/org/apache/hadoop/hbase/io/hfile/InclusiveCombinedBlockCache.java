@@ -23,7 +23,7 @@ import org.apache.yetus.audience.InterfaceAudience;
 
 @InterfaceAudience.Private
 public class InclusiveCombinedBlockCache extends CombinedBlockCache {
-  public InclusiveCombinedBlockCache(LruBlockCache l1, BlockCache l2) {
+  public InclusiveCombinedBlockCache(FirstLevelBlockCache l1, BlockCache l2) {
     super(l1,l2);
     l1.setVictimCache(l2);
   }
@@ -37,6 +37,12 @@ public class InclusiveCombinedBlockCache extends CombinedBlockCache {
     return onHeapCache.getBlock(cacheKey, caching, repeat, updateCacheMetrics);
   }
 
+  @Override
+  public boolean touchBlock(BlockCacheKey cacheKey, boolean caching,
+      boolean updateCacheMetrics) {
+    return onHeapCache.touchBlock(cacheKey, caching, updateCacheMetrics);
+  }
+
   /**
    *
    * @param cacheKey The block's cache key.
@@ -54,6 +60,13 @@ public class InclusiveCombinedBlockCache extends CombinedBlockCache {
     l2Cache.cacheBlock(cacheKey, buf, inMemory);
   }
 
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      boolean waitWhenCache) {
+    onHeapCache.cacheBlock(cacheKey, buf, inMemory, waitWhenCache);
+    l2Cache.cacheBlock(cacheKey, buf, inMemory, waitWhenCache);
+  }
+
   @Override
   public boolean evictBlock(BlockCacheKey cacheKey) {
     boolean l1Result = this.onHeapCache.evictBlock(cacheKey);
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.io.hfile;
 
 import java.lang.ref.WeakReference;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -97,7 +98,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  */
 @InterfaceAudience.Private
 @JsonIgnoreProperties({"encodingCountsForTest"})
-public class LruBlockCache implements ResizableBlockCache, HeapSize {
+public class LruBlockCache implements FirstLevelBlockCache {
 
   private static final Logger LOG = LoggerFactory.getLogger(LruBlockCache.class);
 
@@ -229,6 +230,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
    */
   private BlockCache victimHandler = null;
 
+  /** Shares of the cache by table or column family, null if the cache is not partitioned */
+  private CachePartitions partitions;
+
   /**
    * Default constructor.  Specify maximum size and expected average block
    * size (approximation is fine).
@@ -275,6 +279,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
         conf.getBoolean(LRU_IN_MEMORY_FORCE_MODE_CONFIG_NAME, DEFAULT_IN_MEMORY_FORCE_MODE),
         conf.getLong(LRU_MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE)
     );
+    this.partitions = CachePartitions.create(conf);
   }
 
   public LruBlockCache(long maxSize, long blockSize, Configuration conf) {
@@ -417,11 +422,16 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       long size = map.size();
       assertCounterSanity(size, val);
     }
-    if (newSize > currentAcceptableSize && !evictionInProgress) {
+    if ((newSize > currentAcceptableSize || isPartitionOverflowing(cacheKey))
+        && !evictionInProgress) {
       runEviction();
     }
   }
 
+  private boolean isPartitionOverflowing(BlockCacheKey cacheKey) {
+    return partitions != null && partitions.get(cacheKey).overflow(maxSize) > 0;
+  }
+
   /**
    * Sanity-checking for parity between actual block cache content and metrics.
    * Intended only for use with TRACE level logging and -ea JVM.
@@ -467,6 +477,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     if (bt != null && bt.isData()) {
        dataBlockSize.add(heapsize);
     }
+    if (partitions != null) {
+      partitions.get(cb.getCacheKey()).add(heapsize);
+    }
     return size.addAndGet(heapsize);
   }
 
@@ -489,6 +502,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     if (cb == null) {
       if (!repeat && updateCacheMetrics) {
         stats.miss(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+        if (partitions != null) {
+          partitions.get(cacheKey).miss();
+        }
       }
       // If there is another block cache then try and read there.
       // However if this is a retry ( second time in double checked locking )
@@ -507,16 +523,47 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       }
       return null;
     }
-    if (updateCacheMetrics) stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+    if (updateCacheMetrics) {
+      stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      if (partitions != null) {
+        partitions.get(cacheKey).hit();
+      }
+    }
     cb.access(count.incrementAndGet());
     return cb.getBuffer();
   }
 
+  @Override
+  public boolean touchBlock(BlockCacheKey cacheKey, boolean caching,
+      boolean updateCacheMetrics) {
+    LruCachedBlock cb = map.get(cacheKey);
+    if (cb == null) {
+      if (updateCacheMetrics) {
+        stats.miss(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+        if (partitions != null) {
+          partitions.get(cacheKey).miss();
+        }
+      }
+      // The block is not promoted from the victim cache, it is not read
+      return victimHandler != null
+          && victimHandler.touchBlock(cacheKey, caching, updateCacheMetrics);
+    }
+    if (updateCacheMetrics) {
+      stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      if (partitions != null) {
+        partitions.get(cacheKey).hit();
+      }
+    }
+    cb.access(count.incrementAndGet());
+    return true;
+  }
+
   /**
    * Whether the cache contains block with specified cacheKey
    *
    * @return true if contains the block
    */
+  @Override
   public boolean containsBlock(BlockCacheKey cacheKey) {
     return map.containsKey(cacheKey);
   }
@@ -616,6 +663,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
 
     try {
       evictionInProgress = true;
+      if (partitions != null) {
+        freeOverflowingPartitions();
+      }
       long currentSize = this.size.get();
       long bytesToFree = currentSize - minSize();
 
@@ -628,9 +678,11 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       if (bytesToFree <= 0) return;
 
       // Instantiate priority buckets
-      BlockBucket bucketSingle = new BlockBucket("single", bytesToFree, blockSize, singleSize());
-      BlockBucket bucketMulti = new BlockBucket("multi", bytesToFree, blockSize, multiSize());
-      BlockBucket bucketMemory = new BlockBucket("memory", bytesToFree, blockSize, memorySize());
+      long candidateSize =
+          partitions == null ? bytesToFree : bytesToFree + partitions.getProtectedSize(maxSize);
+      BlockBucket bucketSingle = new BlockBucket("single", candidateSize, blockSize, singleSize());
+      BlockBucket bucketMulti = new BlockBucket("multi", candidateSize, blockSize, multiSize());
+      BlockBucket bucketMemory = new BlockBucket("memory", candidateSize, blockSize, memorySize());
 
       // Scan entire map putting into appropriate buckets
       for (LruCachedBlock cachedBlock : map.values()) {
@@ -727,6 +779,42 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     }
   }
 
+  /**
+   * Evicts the least recently used blocks of the partitions above their ceiling until they are
+   * back under it, whatever the occupancy of the cache.
+   */
+  private void freeOverflowingPartitions() {
+    Map<CachePartitions.Partition, LruCachedBlockQueue> overflowing = new HashMap<>();
+    for (CachePartitions.Partition partition : partitions.getPartitions()) {
+      long overflow = partition.overflow(maxSize);
+      if (overflow > 0) {
+        overflowing.put(partition, new LruCachedBlockQueue(overflow, blockSize));
+      }
+    }
+    if (overflowing.isEmpty()) {
+      return;
+    }
+    for (LruCachedBlock cachedBlock : map.values()) {
+      LruCachedBlockQueue queue = overflowing.get(partitions.get(cachedBlock.getCacheKey()));
+      if (queue != null) {
+        queue.add(cachedBlock);
+      }
+    }
+    for (Map.Entry<CachePartitions.Partition, LruCachedBlockQueue> entry :
+        overflowing.entrySet()) {
+      long overflow = entry.getKey().overflow(maxSize);
+      long freed = 0;
+      LruCachedBlock cb;
+      while (freed < overflow && (cb = entry.getValue().pollLast()) != null) {
+        freed += evictBlock(cb, true);
+      }
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("freed " + StringUtils.byteDesc(freed) + " from partition "
+            + entry.getKey().getName() + " above its ceiling");
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -776,6 +864,11 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       LruCachedBlock cb;
       long freedBytes = 0;
       while ((cb = queue.pollLast()) != null) {
+        if (partitions != null
+            && !partitions.get(cb.getCacheKey()).canEvict(cb.heapSize(), maxSize)) {
+          // Leave the blocks of a partition at its floor to it
+          continue;
+        }
         freedBytes += evictBlock(cb, true);
         if (freedBytes >= toFree) {
           return freedBytes;
@@ -978,7 +1071,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
   }
 
   public final static long CACHE_FIXED_OVERHEAD = ClassSize.align(
-      (4 * Bytes.SIZEOF_LONG) + (11 * ClassSize.REFERENCE) +
+      (4 * Bytes.SIZEOF_LONG) + (12 * ClassSize.REFERENCE) +
       (6 * Bytes.SIZEOF_FLOAT) + (2 * Bytes.SIZEOF_BOOLEAN)
       + ClassSize.OBJECT);
 
@@ -1167,6 +1260,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     return counts;
   }
 
+  @Override
   public void setVictimCache(BlockCache handler) {
     assert victimHandler == null;
     victimHandler = handler;
@@ -1184,4 +1278,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       return new BlockCache[] {this, this.victimHandler};
     return null;
   }
+
+  @Override
+  public CachePartitions getPartitions() {
+    return partitions;
+  }
 }
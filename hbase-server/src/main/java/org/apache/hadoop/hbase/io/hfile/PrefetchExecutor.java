@@ -18,58 +18,23 @@
  */
 package org.apache.hadoop.hbase.io.hfile;
 
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.Future;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
 import java.util.regex.Pattern;
 
-import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * Block prefetch on open, shared by all the HFiles of the process. See {@link PrefetchScheduler}.
+ */
 public class PrefetchExecutor {
 
-  private static final Logger LOG = LoggerFactory.getLogger(PrefetchExecutor.class);
-
-  /** Futures for tracking block prefetch activity */
-  private static final Map<Path,Future<?>> prefetchFutures = new ConcurrentSkipListMap<>();
-  /** Executor pool shared among all HFiles for block prefetch */
-  private static final ScheduledExecutorService prefetchExecutorPool;
-  /** Delay before beginning prefetch */
-  private static final int prefetchDelayMillis;
-  /** Variation in prefetch delay times, to mitigate stampedes */
-  private static final float prefetchDelayVariation;
-  static {
-    // Consider doing this on demand with a configuration passed in rather
-    // than in a static initializer.
-    Configuration conf = HBaseConfiguration.create();
-    // 1s here for tests, consider 30s in hbase-default.xml
-    // Set to 0 for no delay
-    prefetchDelayMillis = conf.getInt("hbase.hfile.prefetch.delay", 1000);
-    prefetchDelayVariation = conf.getFloat("hbase.hfile.prefetch.delay.variation", 0.2f);
-    int prefetchThreads = conf.getInt("hbase.hfile.thread.prefetch", 4);
-    prefetchExecutorPool = new ScheduledThreadPoolExecutor(prefetchThreads,
-      new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-          String name = "hfile-prefetch-" + System.currentTimeMillis();
-          Thread t = new Thread(r, name);
-          t.setDaemon(true);
-          return t;
-        }
-    });
-  }
-
-  private static final Random RNG = new Random();
+  /** Scheduler shared among all HFiles for block prefetch */
+  // Consider doing this on demand with a configuration passed in rather
+  // than in a static initializer.
+  private static final PrefetchScheduler scheduler =
+      new PrefetchScheduler(HBaseConfiguration.create());
 
   // TODO: We want HFile, which is where the blockcache lives, to handle
   // prefetching of file blocks but the Store level is where path convention
@@ -87,52 +52,58 @@ public class PrefetchExecutor {
         ")");
 
   public static void request(Path path, Runnable runnable) {
+    request(path, 0, runnable);
+  }
+
+  /**
+   * @param totalBytes the bytes the runnable will read, for the progress of the region
+   * @param runnable reads the blocks, reporting each to {@link #control(Path, long)}
+   */
+  public static void request(Path path, long totalBytes, Runnable runnable) {
     if (!prefetchPathExclude.matcher(path.toString()).find()) {
-      long delay;
-      if (prefetchDelayMillis > 0) {
-        delay = (long)((prefetchDelayMillis * (1.0f - (prefetchDelayVariation/2))) +
-        (prefetchDelayMillis * (prefetchDelayVariation/2) * RNG.nextFloat()));
-      } else {
-        delay = 0;
-      }
-      try {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Prefetch requested for " + path + ", delay=" + delay + " ms");
-        }
-        prefetchFutures.put(path, prefetchExecutorPool.schedule(runnable, delay,
-          TimeUnit.MILLISECONDS));
-      } catch (RejectedExecutionException e) {
-        prefetchFutures.remove(path);
-        LOG.warn("Prefetch request rejected for " + path);
-      }
+      scheduler.request(path, totalBytes, runnable);
     }
   }
 
+  /**
+   * Accounts a block read by the prefetch of a file and applies the throughput limit. Sets the
+   * interrupt flag of the calling thread if the prefetch is cancelled while waiting.
+   */
+  public static void control(Path path, long bytes) {
+    scheduler.control(path, bytes);
+  }
+
   public static void complete(Path path) {
-    prefetchFutures.remove(path);
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("Prefetch completed for " + path);
-    }
+    scheduler.complete(path);
   }
 
   public static void cancel(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
-      // ok to race with other cancellation attempts
-      future.cancel(true);
-      prefetchFutures.remove(path);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Prefetch cancelled for " + path);
-      }
-    }
+    scheduler.cancel(path);
   }
 
   public static boolean isCompleted(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
-      return future.isDone(); 
-    }
-    return true;
+    return scheduler.isCompleted(path);
   }
 
+  /**
+   * Orders the prefetch of the files of a region by the given priority, higher first
+   */
+  public static void registerRegion(String encodedRegionName, DoubleSupplier priority) {
+    scheduler.registerRegion(encodedRegionName, priority);
+  }
+
+  /**
+   * Cancels the prefetch of all the files of a closing region
+   */
+  public static void cancelRegion(String encodedRegionName) {
+    scheduler.cancelRegion(encodedRegionName);
+  }
+
+  public static long getPrefetchedBytes(String encodedRegionName) {
+    return scheduler.getPrefetchedBytes(encodedRegionName);
+  }
+
+  public static long getPendingBytes(String encodedRegionName) {
+    return scheduler.getPendingBytes(encodedRegionName);
+  }
 }
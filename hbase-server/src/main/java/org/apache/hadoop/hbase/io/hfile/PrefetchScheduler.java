@@ -0,0 +1,432 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.regionserver.throttle.NoLimitThroughputController;
+import org.apache.hadoop.hbase.regionserver.throttle.PrefetchThroughputController;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the block prefetch of opened files. A request waits out a short, randomized delay, so a
+ * region finishes opening and its neighbours do not all start at once, and then queues for one of
+ * the prefetch threads. A free thread takes the queued file of the region with the highest
+ * priority, which the region server sets to the read request rate of the region, so the regions
+ * clients are reading are warmed first after a restart. The bytes read by all the threads are held
+ * to a total limit by a {@link ThroughputController}, see
+ * {@link PrefetchThroughputController#HBASE_HFILE_PREFETCH_MAX_THROUGHPUT}, so the prefetch does
+ * not starve the foreground reads of disk and network.
+ * <p>
+ * The prefetch of a file is cancelled when its reader is closed, and the prefetch of all the files
+ * of a region when the region is closed. The bytes prefetched and left to prefetch are kept per
+ * region.
+ */
+@InterfaceAudience.Private
+public class PrefetchScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchScheduler.class);
+
+  /** Delay before beginning prefetch, 0 for no delay */
+  public static final String PREFETCH_DELAY_KEY = "hbase.hfile.prefetch.delay";
+  // 1s here for tests, consider 30s in hbase-default.xml
+  public static final int DEFAULT_PREFETCH_DELAY = 1000;
+  /** Variation in prefetch delay times, to mitigate stampedes */
+  public static final String PREFETCH_DELAY_VARIATION_KEY = "hbase.hfile.prefetch.delay.variation";
+  public static final float DEFAULT_PREFETCH_DELAY_VARIATION = 0.2f;
+  /** Number of threads reading blocks */
+  public static final String PREFETCH_THREADS_KEY = "hbase.hfile.thread.prefetch";
+  public static final int DEFAULT_PREFETCH_THREADS = 4;
+
+  private static final Random RNG = new Random();
+
+  /** Tasks by file, from request until complete or cancelled */
+  private final Map<Path, PrefetchTask> tasks = new ConcurrentSkipListMap<>();
+  /** Prefetch state by encoded region name */
+  private final Map<String, RegionPrefetch> regions = new ConcurrentHashMap<>();
+  /** Tasks past their delay, waiting for a thread. Guarded by this */
+  private final List<PrefetchTask> queue = new ArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final ScheduledThreadPoolExecutor delayExecutor;
+  private final Thread[] threads;
+  private final ThroughputController throughputController;
+  private final int delayMillis;
+  private final float delayVariation;
+  private volatile boolean stopped = false;
+
+  public PrefetchScheduler(Configuration conf) {
+    this.delayMillis = conf.getInt(PREFETCH_DELAY_KEY, DEFAULT_PREFETCH_DELAY);
+    this.delayVariation =
+        conf.getFloat(PREFETCH_DELAY_VARIATION_KEY, DEFAULT_PREFETCH_DELAY_VARIATION);
+    if (conf.getLong(PrefetchThroughputController.HBASE_HFILE_PREFETCH_MAX_THROUGHPUT,
+      PrefetchThroughputController.DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT) > 0) {
+      PrefetchThroughputController controller = new PrefetchThroughputController();
+      controller.setConf(conf);
+      this.throughputController = controller;
+    } else {
+      this.throughputController = NoLimitThroughputController.INSTANCE;
+    }
+    this.delayExecutor = new ScheduledThreadPoolExecutor(1,
+        Threads.newDaemonThreadFactory("hfile-prefetch-delay"));
+    this.delayExecutor.setRemoveOnCancelPolicy(true);
+    this.threads = new Thread[Math.max(1, conf.getInt(PREFETCH_THREADS_KEY,
+      DEFAULT_PREFETCH_THREADS))];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(this::runTasks, "hfile-prefetch-" + i);
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+  }
+
+  private static String getRegionName(Path path) {
+    // Store files live in <region>/<family>/<file>
+    Path family = path.getParent();
+    Path region = family == null ? null : family.getParent();
+    return region == null ? "" : region.getName();
+  }
+
+  private long getDelay() {
+    if (delayMillis <= 0) {
+      return 0;
+    }
+    return (long) ((delayMillis * (1.0f - (delayVariation / 2)))
+        + (delayMillis * (delayVariation / 2) * RNG.nextFloat()));
+  }
+
+  /**
+   * Schedules the prefetch of a file, replacing any pending prefetch of the same path.
+   * @param totalBytes the bytes the runnable will read, for the progress of the region
+   * @param runnable reads the blocks, reporting each to {@link #control(Path, long)}
+   */
+  public void request(Path path, long totalBytes, Runnable runnable) {
+    String regionName = getRegionName(path);
+    RegionPrefetch region = regions.computeIfAbsent(regionName, k -> new RegionPrefetch());
+    PrefetchTask task = new PrefetchTask(path, region, Math.max(0, totalBytes), runnable,
+        sequence.incrementAndGet());
+    region.taskCount.incrementAndGet();
+    region.pendingBytes.add(task.totalBytes);
+    PrefetchTask previous = tasks.put(path, task);
+    if (previous != null) {
+      previous.cancel();
+      removed(regionName, previous);
+    }
+    long delay = getDelay();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Prefetch requested for " + path + ", delay=" + delay + " ms");
+    }
+    if (delay == 0) {
+      enqueue(task);
+      return;
+    }
+    try {
+      task.setDelayFuture(delayExecutor.schedule(() -> enqueue(task), delay,
+        TimeUnit.MILLISECONDS));
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Prefetch request rejected for " + path);
+      remove(task);
+    }
+  }
+
+  private synchronized void enqueue(PrefetchTask task) {
+    if (!task.isCancelled()) {
+      queue.add(task);
+      notify();
+    }
+  }
+
+  /**
+   * @return the queued task of the region with the highest priority, the earliest requested of
+   *         that region if several
+   */
+  private synchronized PrefetchTask take() throws InterruptedException {
+    while (queue.isEmpty()) {
+      wait();
+    }
+    int best = 0;
+    double bestPriority = queue.get(0).region.getPriority();
+    for (int i = 1; i < queue.size(); i++) {
+      PrefetchTask task = queue.get(i);
+      double priority = task.region.getPriority();
+      if (priority > bestPriority
+          || (priority == bestPriority && task.seqId < queue.get(best).seqId)) {
+        best = i;
+        bestPriority = priority;
+      }
+    }
+    return queue.remove(best);
+  }
+
+  private synchronized void dequeue(PrefetchTask task) {
+    queue.remove(task);
+  }
+
+  private void runTasks() {
+    while (!stopped) {
+      PrefetchTask task;
+      try {
+        task = take();
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (!task.start()) {
+        continue;
+      }
+      throughputController.start(task.opName);
+      try {
+        task.runnable.run();
+      } catch (RuntimeException e) {
+        LOG.warn("Prefetch of " + task.path + " failed", e);
+      } finally {
+        throughputController.finish(task.opName);
+        task.finish();
+        remove(task);
+      }
+    }
+  }
+
+  /**
+   * Accounts the bytes of a block read by the prefetch of a file, and waits as long as the
+   * throughput limit asks for. A prefetch which is cancelled while waiting returns with the
+   * interrupt flag of its thread set.
+   */
+  public void control(Path path, long bytes) {
+    PrefetchTask task = tasks.get(path);
+    if (task == null || !task.isRunBy(Thread.currentThread())) {
+      return;
+    }
+    long credited = Math.max(0, Math.min(bytes, task.totalBytes - task.prefetchedBytes));
+    task.prefetchedBytes += bytes;
+    task.region.prefetchedBytes.add(bytes);
+    task.region.pendingBytes.add(-credited);
+    try {
+      throughputController.control(task.opName, bytes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Forgets the prefetch of a file, once it has run to the end or given up
+   */
+  public void complete(Path path) {
+    PrefetchTask task = tasks.get(path);
+    if (task != null && task.isRunBy(Thread.currentThread())) {
+      remove(task);
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Prefetch completed for " + path);
+    }
+  }
+
+  public void cancel(Path path) {
+    PrefetchTask task = tasks.get(path);
+    if (task != null) {
+      // ok to race with other cancellation attempts
+      task.cancel();
+      dequeue(task);
+      remove(task);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Prefetch cancelled for " + path);
+      }
+    }
+  }
+
+  public boolean isCompleted(Path path) {
+    PrefetchTask task = tasks.get(path);
+    return task == null || task.isDone();
+  }
+
+  /**
+   * Sets how urgent the prefetch of the files of a region is, higher first. Regions without a
+   * priority come after all the others.
+   */
+  public void registerRegion(String encodedRegionName, DoubleSupplier priority) {
+    regions.computeIfAbsent(encodedRegionName, k -> new RegionPrefetch()).priority = priority;
+  }
+
+  /**
+   * Cancels the prefetch of all the files of a region and forgets the region
+   */
+  public void cancelRegion(String encodedRegionName) {
+    RegionPrefetch region = regions.remove(encodedRegionName);
+    if (region == null) {
+      return;
+    }
+    int cancelled = 0;
+    for (PrefetchTask task : tasks.values()) {
+      if (task.region == region) {
+        task.cancel();
+        dequeue(task);
+        remove(task);
+        cancelled++;
+      }
+    }
+    if (cancelled > 0) {
+      LOG.debug("Prefetch cancelled for {} files of region {}", cancelled, encodedRegionName);
+    }
+  }
+
+  /**
+   * @return the bytes prefetched for the files of a region since it was registered or first
+   *         requested a prefetch
+   */
+  public long getPrefetchedBytes(String encodedRegionName) {
+    RegionPrefetch region = regions.get(encodedRegionName);
+    return region == null ? 0 : region.prefetchedBytes.sum();
+  }
+
+  /**
+   * @return the bytes left to prefetch for the files of a region
+   */
+  public long getPendingBytes(String encodedRegionName) {
+    RegionPrefetch region = regions.get(encodedRegionName);
+    return region == null ? 0 : region.pendingBytes.sum();
+  }
+
+  private void remove(PrefetchTask task) {
+    if (tasks.remove(task.path, task)) {
+      removed(getRegionName(task.path), task);
+    }
+  }
+
+  private void removed(String regionName, PrefetchTask task) {
+    RegionPrefetch region = task.region;
+    region.pendingBytes.add(-Math.max(0, task.totalBytes - task.prefetchedBytes));
+    if (region.taskCount.decrementAndGet() == 0 && region.priority == null) {
+      // Files read outside of a region server region, nobody asks for their progress
+      regions.remove(regionName, region);
+    }
+  }
+
+  public void shutdown() {
+    stopped = true;
+    delayExecutor.shutdownNow();
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    for (PrefetchTask task : tasks.values()) {
+      task.cancel();
+    }
+  }
+
+  private static final class RegionPrefetch {
+    private volatile DoubleSupplier priority;
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final LongAdder prefetchedBytes = new LongAdder();
+    private final LongAdder pendingBytes = new LongAdder();
+
+    double getPriority() {
+      DoubleSupplier supplier = priority;
+      return supplier == null ? Double.NEGATIVE_INFINITY : supplier.getAsDouble();
+    }
+  }
+
+  private static final class PrefetchTask {
+    private final Path path;
+    private final RegionPrefetch region;
+    private final long totalBytes;
+    private final Runnable runnable;
+    private final long seqId;
+    private final String opName;
+    // Only updated by the thread running the task
+    private volatile long prefetchedBytes = 0;
+    private ScheduledFuture<?> delayFuture;
+    private Thread runner;
+    private boolean cancelled = false;
+    private boolean done = false;
+
+    PrefetchTask(Path path, RegionPrefetch region, long totalBytes, Runnable runnable,
+        long seqId) {
+      this.path = path;
+      this.region = region;
+      this.totalBytes = totalBytes;
+      this.runnable = runnable;
+      this.seqId = seqId;
+      // A file opened again may be read by the new task while the cancelled one winds down
+      this.opName = path + "#" + seqId;
+    }
+
+    synchronized void setDelayFuture(ScheduledFuture<?> delayFuture) {
+      this.delayFuture = delayFuture;
+      if (cancelled) {
+        delayFuture.cancel(false);
+      }
+    }
+
+    synchronized boolean start() {
+      if (cancelled) {
+        return false;
+      }
+      runner = Thread.currentThread();
+      return true;
+    }
+
+    synchronized boolean isRunBy(Thread thread) {
+      return runner == thread;
+    }
+
+    synchronized void finish() {
+      runner = null;
+      done = true;
+      // Drop an interrupt from a cancel racing with the end of the task, so it does not hit the
+      // next task of this thread
+      Thread.interrupted();
+    }
+
+    synchronized void cancel() {
+      if (cancelled || done) {
+        return;
+      }
+      cancelled = true;
+      if (delayFuture != null) {
+        delayFuture.cancel(false);
+      }
+      if (runner != null) {
+        runner.interrupt();
+      }
+    }
+
+    synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    synchronized boolean isDone() {
+      return done || cancelled;
+    }
+  }
+}
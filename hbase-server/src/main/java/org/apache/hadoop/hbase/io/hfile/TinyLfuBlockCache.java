@@ -0,0 +1,816 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.hbase.thirdparty.com.google.common.base.MoreObjects;
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A block cache that is memory-aware using {@link org.apache.hadoop.hbase.io.HeapSize},
+ * memory bound using the W-TinyLFU eviction algorithm, and concurrent. This implementation
+ * delegates to neither a library nor an eviction thread: the policy is maintained under a lock
+ * that is taken on insertion and, for reads, only opportunistically.
+ * <p>
+ * W-TinyLFU (<a href="http://arxiv.org/pdf/1512.00727.pdf">TinyLFU: A Highly Efficient Cache
+ * Admission Policy</a>) splits the cache into a small admission window and a main region. New
+ * blocks enter the window, which is ordered by recency. A block leaving the window is only let
+ * into the main region if a {@link FrequencySketch} estimates it to be more popular than the
+ * block the main region would evict for it, so a one-off scan can not flush the blocks that point
+ * gets keep hitting. The main region is a segmented LRU, where blocks hit while on probation are
+ * promoted to the protected segment.
+ * <p>
+ * Reads are recorded in a lossy ring buffer which is replayed against the policy when its lock is
+ * free, so a hit never blocks. The in-memory hint is not used, the sketch already keeps the
+ * blocks of frequently read families.
+ */
+@InterfaceAudience.Private
+public class TinyLfuBlockCache implements FirstLevelBlockCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TinyLfuBlockCache.class);
+
+  /** Percentage of the cache given to the admission window */
+  static final String WINDOW_FACTOR_CONFIG_NAME = "hbase.tinylfu.blockcache.window.factor";
+
+  /** Percentage of the main region given to blocks that have been hit while in it */
+  static final String PROTECTED_FACTOR_CONFIG_NAME =
+      "hbase.tinylfu.blockcache.protected.factor";
+
+  private static final String MAX_BLOCK_SIZE = "hbase.tinylfu.max.block.size";
+
+  static final float DEFAULT_WINDOW_FACTOR = 0.01f;
+  static final float DEFAULT_PROTECTED_FACTOR = 0.8f;
+  private static final long DEFAULT_MAX_BLOCK_SIZE = 16L * 1024L * 1024L;
+
+  /** Candidates this popular are let in at random now and then, see {@link #admit} */
+  private static final int ADMIT_HASHDOS_THRESHOLD = 6;
+
+  private static final int READ_BUFFER_SIZE = 128;
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  /** Every so many reads, try to replay the read buffer */
+  private static final int DRAIN_MASK = 31;
+
+  private static final int STAT_THREAD_PERIOD_SECONDS = 5 * 60;
+
+  public static final long NODE_OVERHEAD = ClassSize.align(
+      ClassSize.OBJECT + (4 * ClassSize.REFERENCE) + (2 * Bytes.SIZEOF_LONG)
+      + Bytes.SIZEOF_BYTE);
+
+  /** Queue a node is in. The policy fields of a node are only accessed under the evictionLock */
+  private static final byte NEW = 0;
+  private static final byte WINDOW = 1;
+  private static final byte PROBATION = 2;
+  private static final byte PROTECTED = 3;
+  private static final byte RETIRED = 4;
+
+  private final ConcurrentHashMap<BlockCacheKey, Node> map;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final AtomicReferenceArray<Node> readBuffer =
+      new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+  private final AtomicLong readCounter = new AtomicLong();
+
+  // Guarded by evictionLock
+  private final AccessOrderQueue window = new AccessOrderQueue();
+  private final AccessOrderQueue probation = new AccessOrderQueue();
+  private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+  private final FrequencySketch sketch;
+  private long weightedSize;
+  private long windowWeight;
+  private long protectedWeight;
+  private long windowMaximum;
+  private long protectedMaximum;
+
+  private final AtomicLong size = new AtomicLong();
+  private final LongAdder dataBlockSize = new LongAdder();
+  private final LongAdder elements = new LongAdder();
+  private final LongAdder dataBlockElements = new LongAdder();
+
+  private final float windowFactor;
+  private final float protectedFactor;
+  private final long blockSize;
+  private final long maxBlockSize;
+  private volatile long maxSize;
+
+  private final CacheStats stats;
+  private final ScheduledExecutorService statsThreadPool;
+
+  private BlockCache victimCache;
+
+  /**
+   * Creates a block cache.
+   *
+   * @param maxSize maximum size of this cache, in bytes
+   * @param blockSize expected average size of blocks, in bytes
+   * @param conf additional configuration
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize, Configuration conf) {
+    this(maxSize, blockSize,
+        conf.getFloat(WINDOW_FACTOR_CONFIG_NAME, DEFAULT_WINDOW_FACTOR),
+        conf.getFloat(PROTECTED_FACTOR_CONFIG_NAME, DEFAULT_PROTECTED_FACTOR),
+        conf.getLong(MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE));
+  }
+
+  /**
+   * Creates a block cache.
+   *
+   * @param maxSize maximum size of this cache, in bytes
+   * @param blockSize expected average size of blocks, in bytes
+   * @param windowFactor percentage of the cache for the admission window
+   * @param protectedFactor percentage of the main region for blocks hit while in it
+   * @param maxBlockSize maximum size of a block, in bytes
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize, float windowFactor,
+      float protectedFactor, long maxBlockSize) {
+    if (windowFactor < 0 || windowFactor >= 1 || protectedFactor < 0 || protectedFactor > 1) {
+      throw new IllegalArgumentException("Window factor must be in [0, 1) and protected factor "
+          + "in [0, 1]; window=" + windowFactor + ", protected=" + protectedFactor);
+    }
+    this.blockSize = blockSize;
+    this.maxBlockSize = maxBlockSize;
+    this.windowFactor = windowFactor;
+    this.protectedFactor = protectedFactor;
+    this.map = new ConcurrentHashMap<>((int) Math.ceil(1.2 * maxSize / blockSize));
+    this.sketch = new FrequencySketch(maxSize / blockSize);
+    this.stats = new CacheStats(getClass().getSimpleName());
+    setMaximum(maxSize);
+    this.statsThreadPool = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("TinyLfuBlockCacheStatsExecutor").setDaemon(true).build());
+    this.statsThreadPool.scheduleAtFixedRate(this::logStats, STAT_THREAD_PERIOD_SECONDS,
+        STAT_THREAD_PERIOD_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void setVictimCache(BlockCache victimCache) {
+    if (this.victimCache != null) {
+      throw new IllegalArgumentException("The victim cache has already been set");
+    }
+    this.victimCache = victimCache;
+  }
+
+  @Override
+  public long size() {
+    return getMaxSize();
+  }
+
+  @Override
+  public long getFreeSize() {
+    return getMaxSize() - getCurrentSize();
+  }
+
+  @Override
+  public long getCurrentSize() {
+    return size.get();
+  }
+
+  @Override
+  public long getCurrentDataSize() {
+    return dataBlockSize.sum();
+  }
+
+  @Override
+  public long getBlockCount() {
+    return elements.sum();
+  }
+
+  @Override
+  public long getDataBlockCount() {
+    return dataBlockElements.sum();
+  }
+
+  @Override
+  public long heapSize() {
+    return getCurrentSize();
+  }
+
+  @Override
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public void setMaxSize(long size) {
+    evictionLock.lock();
+    try {
+      setMaximum(size);
+      drainReadBuffer();
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void setMaximum(long size) {
+    this.maxSize = size;
+    this.windowMaximum = (long) (size * windowFactor);
+    this.protectedMaximum = (long) ((size - windowMaximum) * protectedFactor);
+    sketch.ensureCapacity(size / blockSize);
+  }
+
+  @Override
+  public boolean containsBlock(BlockCacheKey cacheKey) {
+    return map.containsKey(cacheKey);
+  }
+
+  @Override
+  public Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
+      boolean updateCacheMetrics) {
+    Node node = map.get(cacheKey);
+    if (node == null) {
+      if (!repeat && updateCacheMetrics) {
+        stats.miss(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      }
+      // If there is another block cache then try and read there. A retry that already missed
+      // here will miss in the victim cache too.
+      if (victimCache != null && !repeat) {
+        Cacheable result = victimCache.getBlock(cacheKey, caching, repeat, updateCacheMetrics);
+        // Promote this to L1
+        if (result != null && caching) {
+          if (result instanceof HFileBlock && ((HFileBlock) result).usesSharedMemory()) {
+            result = ((HFileBlock) result).deepClone();
+          }
+          cacheBlock(cacheKey, result, /* inMemory = */ false);
+        }
+        return result;
+      }
+      return null;
+    }
+    if (updateCacheMetrics) {
+      stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+    }
+    afterRead(node);
+    return node.value;
+  }
+
+  @Override
+  public boolean touchBlock(BlockCacheKey cacheKey, boolean caching,
+      boolean updateCacheMetrics) {
+    Node node = map.get(cacheKey);
+    if (node == null) {
+      if (updateCacheMetrics) {
+        stats.miss(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      }
+      // The block is not promoted from the victim cache, it is not read
+      return victimCache != null && victimCache.touchBlock(cacheKey, caching, updateCacheMetrics);
+    }
+    if (updateCacheMetrics) {
+      stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+    }
+    afterRead(node);
+    return true;
+  }
+
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable value) {
+    cacheBlock(cacheKey, value, /* inMemory = */ false);
+  }
+
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable value, boolean inMemory) {
+    if (value.heapSize() > maxBlockSize) {
+      // If there are a lot of blocks that are too big this can make the logs too noisy (2% logged)
+      if (stats.failInsert() % 50 == 0) {
+        LOG.warn("Trying to cache too large a block " + cacheKey.getHfileName() + " @ "
+            + cacheKey.getOffset() + " is " + value.heapSize() + " which is larger than "
+            + maxBlockSize);
+      }
+      return;
+    }
+    Node node = new Node(cacheKey, value);
+    Node existing = map.putIfAbsent(cacheKey, node);
+    if (existing != null) {
+      // compare the contents, if they are not equal, we are in big trouble
+      if (BlockCacheUtil.compareCacheBlock(value, existing.value) != 0) {
+        throw new RuntimeException("Cached block contents differ, which should not have happened."
+            + "cacheKey:" + cacheKey);
+      }
+      LOG.warn("Cached an already cached block: " + cacheKey + ". This is harmless and can "
+          + "happen in rare cases (see HBASE-8547)");
+      return;
+    }
+    onInsertion(node);
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      onAdd(node);
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean evictBlock(BlockCacheKey cacheKey) {
+    Node node = map.remove(cacheKey);
+    if (node == null) {
+      return false;
+    }
+    onRemoval(node);
+    evictionLock.lock();
+    try {
+      unlink(node);
+    } finally {
+      evictionLock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public int evictBlocksByHfileName(String hfileName) {
+    int evicted = 0;
+    for (BlockCacheKey key : map.keySet()) {
+      if (key.getHfileName().equals(hfileName) && evictBlock(key)) {
+        evicted++;
+      }
+    }
+    if (victimCache != null) {
+      evicted += victimCache.evictBlocksByHfileName(hfileName);
+    }
+    return evicted;
+  }
+
+  @Override
+  public CacheStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public void shutdown() {
+    if (victimCache != null) {
+      victimCache.shutdown();
+    }
+    statsThreadPool.shutdown();
+  }
+
+  @Override
+  @JsonIgnore
+  public BlockCache[] getBlockCaches() {
+    return victimCache == null ? null : new BlockCache[] { this, victimCache };
+  }
+
+  /** Clears the cache. Used in tests. */
+  @VisibleForTesting
+  void clearCache() {
+    for (BlockCacheKey key : map.keySet()) {
+      evictBlock(key);
+    }
+  }
+
+  /** Replays the buffered reads and runs the eviction, so that tests see a settled policy. */
+  @VisibleForTesting
+  void cleanUp() {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void onInsertion(Node node) {
+    size.addAndGet(node.weight);
+    elements.increment();
+    if (node.isData()) {
+      dataBlockSize.add(node.weight);
+      dataBlockElements.increment();
+    }
+  }
+
+  private void onRemoval(Node node) {
+    size.addAndGet(-node.weight);
+    elements.decrement();
+    if (node.isData()) {
+      dataBlockSize.add(-node.weight);
+      dataBlockElements.decrement();
+    }
+  }
+
+  /**
+   * Records a hit in the read buffer. Slots are overwritten when the buffer is not replayed in
+   * time, which only loses some popularity information.
+   */
+  private void afterRead(Node node) {
+    long count = readCounter.getAndIncrement();
+    readBuffer.lazySet((int) (count & READ_BUFFER_MASK), node);
+    if ((count & DRAIN_MASK) == DRAIN_MASK && evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void drainReadBuffer() {
+    for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+      Node node = readBuffer.get(i);
+      if (node != null && readBuffer.compareAndSet(i, node, null)) {
+        onAccess(node);
+      }
+    }
+  }
+
+  /** Adds a newly inserted block to the admission window, unless it was evicted meanwhile. */
+  private void onAdd(Node node) {
+    if (node.queue != NEW) {
+      return;
+    }
+    sketch.increment(node.key.hashCode());
+    node.queue = WINDOW;
+    window.add(node);
+    windowWeight += node.weight;
+    weightedSize += node.weight;
+  }
+
+  private void onAccess(Node node) {
+    switch (node.queue) {
+      case WINDOW:
+        window.moveToBack(node);
+        break;
+      case PROBATION:
+        probation.remove(node);
+        node.queue = PROTECTED;
+        protectedQueue.add(node);
+        protectedWeight += node.weight;
+        demoteFromProtected();
+        break;
+      case PROTECTED:
+        protectedQueue.moveToBack(node);
+        break;
+      default:
+        // Not added yet, or already gone
+        return;
+    }
+    sketch.increment(node.key.hashCode());
+  }
+
+  /** Moves the least recently used protected blocks back to probation, while over its share */
+  private void demoteFromProtected() {
+    while (protectedWeight > protectedMaximum) {
+      Node node = protectedQueue.peekFirst();
+      protectedQueue.remove(node);
+      protectedWeight -= node.weight;
+      node.queue = PROBATION;
+      probation.add(node);
+    }
+  }
+
+  private void evictEntries() {
+    evictFromMain(evictFromWindow());
+  }
+
+  /**
+   * Moves the least recently used window blocks to the most recently used end of probation,
+   * while the window is over its share.
+   *
+   * @return the number of blocks moved, the candidates for admission to the main region
+   */
+  private int evictFromWindow() {
+    int candidates = 0;
+    Node node = window.peekFirst();
+    while (windowWeight > windowMaximum && node != null) {
+      Node next = node.next;
+      window.remove(node);
+      windowWeight -= node.weight;
+      node.queue = PROBATION;
+      probation.add(node);
+      candidates++;
+      node = next;
+    }
+    return candidates;
+  }
+
+  /**
+   * Evicts until the cache is within its maximum size. Each candidate that just left the window
+   * is compared with the victim the main region would evict, the least recently used block on
+   * probation, and the less popular of the two goes.
+   */
+  private void evictFromMain(int candidates) {
+    Node candidate = null;
+    if (candidates > 0) {
+      // The oldest candidate, candidates are at the end of probation
+      candidate = probation.peekLast();
+      for (int i = 1; i < candidates; i++) {
+        candidate = candidate.prev;
+      }
+    }
+    boolean evicted = false;
+    while (weightedSize > maxSize) {
+      Node victim = probation.peekFirst();
+      if (victim == null) {
+        victim = protectedQueue.peekFirst();
+      }
+      if (victim == null) {
+        victim = window.peekFirst();
+      }
+      if (victim == null) {
+        break;
+      }
+      evicted = true;
+      if (candidate == null || candidate == victim) {
+        if (candidate != null) {
+          candidate = candidate.next;
+        }
+        evictEntry(victim);
+      } else if (admit(candidate, victim)) {
+        evictEntry(victim);
+      } else {
+        Node next = candidate.next;
+        stats.rejectAdmission();
+        evictEntry(candidate);
+        candidate = next;
+      }
+    }
+    if (evicted) {
+      stats.evict();
+    }
+  }
+
+  /**
+   * Whether the candidate should replace the victim in the main region. Ties go to the victim, as
+   * the candidate has not proven itself yet. A warm candidate is let in at random once in a while
+   * so that hash collisions can not be used to make a victim look popular forever.
+   */
+  private boolean admit(Node candidate, Node victim) {
+    int candidateFreq = sketch.frequency(candidate.key.hashCode());
+    int victimFreq = sketch.frequency(victim.key.hashCode());
+    if (candidateFreq > victimFreq) {
+      return true;
+    } else if (candidateFreq < ADMIT_HASHDOS_THRESHOLD) {
+      return false;
+    }
+    return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+  }
+
+  /** Evicts the block for size, handing it to the victim cache */
+  private void evictEntry(Node node) {
+    unlink(node);
+    if (map.remove(node.key, node)) {
+      onRemoval(node);
+      stats.evicted(node.cachedTime, node.key.isPrimary());
+      if (victimCache != null) {
+        victimCache.cacheBlock(node.key, node.value);
+      }
+    }
+  }
+
+  /** Removes the node from the policy, whatever queue it is in */
+  private void unlink(Node node) {
+    switch (node.queue) {
+      case WINDOW:
+        window.remove(node);
+        windowWeight -= node.weight;
+        break;
+      case PROBATION:
+        probation.remove(node);
+        break;
+      case PROTECTED:
+        protectedQueue.remove(node);
+        protectedWeight -= node.weight;
+        break;
+      default:
+        // Never added, onAdd will skip it
+        node.queue = RETIRED;
+        return;
+    }
+    weightedSize -= node.weight;
+    node.queue = RETIRED;
+  }
+
+  public void logStats() {
+    LOG.info("totalSize=" + StringUtils.byteDesc(heapSize()) + ", "
+        + "freeSize=" + StringUtils.byteDesc(getFreeSize()) + ", "
+        + "max=" + StringUtils.byteDesc(maxSize) + ", "
+        + "blockCount=" + getBlockCount() + ", "
+        + "accesses=" + stats.getRequestCount() + ", "
+        + "hits=" + stats.getHitCount() + ", "
+        + "hitRatio=" + (stats.getHitCount() == 0
+            ? "0," : StringUtils.formatPercent(stats.getHitRatio(), 2) + ", ")
+        + "cachingAccesses=" + stats.getRequestCachingCount() + ", "
+        + "cachingHits=" + stats.getHitCachingCount() + ", "
+        + "cachingHitsRatio=" + (stats.getHitCachingCount() == 0
+            ? "0," : StringUtils.formatPercent(stats.getHitCachingRatio(), 2) + ", ")
+        + "evictions=" + stats.getEvictionCount() + ", "
+        + "evicted=" + stats.getEvictedCount() + ", "
+        + "rejectedAdmissions=" + stats.getRejectedAdmissionCount());
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("blockCount", getBlockCount())
+      .add("currentSize", getCurrentSize())
+      .add("freeSize", getFreeSize())
+      .add("maxSize", getMaxSize())
+      .add("heapSize", heapSize())
+      .add("windowFactor", windowFactor)
+      .add("protectedFactor", protectedFactor)
+      .add("victimCache", (victimCache != null))
+      .toString();
+  }
+
+  @Override
+  public Iterator<CachedBlock> iterator() {
+    Iterator<Node> iterator = map.values().iterator();
+    return new Iterator<CachedBlock>() {
+      private final long now = System.nanoTime();
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public CachedBlock next() {
+        return new CachedBlockView(iterator.next(), now);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * A cached block and its position in the policy. The queue fields are guarded by the
+   * evictionLock of the cache.
+   */
+  private static final class Node {
+    final BlockCacheKey key;
+    final Cacheable value;
+    final long weight;
+    final long cachedTime = System.nanoTime();
+
+    Node prev;
+    Node next;
+    byte queue = NEW;
+
+    Node(BlockCacheKey key, Cacheable value) {
+      this.key = key;
+      this.value = value;
+      this.weight = ClassSize.align(key.heapSize()) + ClassSize.align(value.heapSize())
+          + NODE_OVERHEAD;
+    }
+
+    boolean isData() {
+      BlockType type = value.getBlockType();
+      return type != null && type.isData();
+    }
+  }
+
+  /** A doubly linked list of nodes, least recently used first */
+  private static final class AccessOrderQueue {
+    private Node head;
+    private Node tail;
+
+    Node peekFirst() {
+      return head;
+    }
+
+    Node peekLast() {
+      return tail;
+    }
+
+    void add(Node node) {
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+    }
+
+    void moveToBack(Node node) {
+      if (node != tail) {
+        remove(node);
+        add(node);
+      }
+    }
+  }
+
+  private static final class CachedBlockView implements CachedBlock {
+    private final Node node;
+    private final long now;
+
+    CachedBlockView(Node node, long now) {
+      this.node = node;
+      this.now = now;
+    }
+
+    @Override
+    public BlockPriority getBlockPriority() {
+      // Reads a field guarded by the evictionLock, good enough for reporting
+      return node.queue == PROTECTED ? BlockPriority.MULTI : BlockPriority.SINGLE;
+    }
+
+    @Override
+    public BlockType getBlockType() {
+      return node.value.getBlockType();
+    }
+
+    @Override
+    public long getOffset() {
+      return node.key.getOffset();
+    }
+
+    @Override
+    public long getSize() {
+      return node.value.heapSize();
+    }
+
+    @Override
+    public long getCachedTime() {
+      return node.cachedTime;
+    }
+
+    @Override
+    public String getFilename() {
+      return node.key.getHfileName();
+    }
+
+    @Override
+    public int compareTo(CachedBlock other) {
+      int diff = getFilename().compareTo(other.getFilename());
+      if (diff != 0) {
+        return diff;
+      }
+      diff = Long.compare(getOffset(), other.getOffset());
+      if (diff != 0) {
+        return diff;
+      }
+      if (other.getCachedTime() < 0 || getCachedTime() < 0) {
+        throw new IllegalStateException(getCachedTime() + ", " + other.getCachedTime());
+      }
+      return Long.compare(other.getCachedTime(), getCachedTime());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof CachedBlock && compareTo((CachedBlock) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return node.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return BlockCacheUtil.toString(this, now);
+    }
+  }
+}
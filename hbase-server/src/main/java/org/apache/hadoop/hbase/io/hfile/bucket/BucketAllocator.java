@@ -167,6 +167,40 @@ public final class BucketAllocator {
       freeList[freeCount++] = item;
     }
 
+    /**
+     * Marks the items at the given offsets as allocated, rebuilding the free list in a single
+     * pass. Used when restoring a persisted cache; the bucket must have just been reconfigured.
+     * Offsets that are misaligned, outside of this bucket or repeated are rejected.
+     * @return for each of the first {@code count} offsets, whether it was accepted
+     */
+    boolean[] restoreAllocations(long[] offsets, int count) {
+      assert usedCount == 0;
+      boolean[] used = new boolean[itemCount];
+      boolean[] accepted = new boolean[count];
+      for (int i = 0; i < count; ++i) {
+        long offset = offsets[i] - baseOffset;
+        if (offset < 0 || offset % itemAllocationSize != 0) {
+          continue;
+        }
+        long idx = offset / itemAllocationSize;
+        if (idx >= itemCount || used[(int) idx]) {
+          continue;
+        }
+        used[(int) idx] = true;
+        accepted[i] = true;
+      }
+      freeCount = 0;
+      usedCount = 0;
+      for (int i = itemCount - 1; i >= 0; --i) {
+        if (used[i]) {
+          ++usedCount;
+        } else {
+          freeList[freeCount++] = i;
+        }
+      }
+      return accepted;
+    }
+
     private boolean freeListContains(int blockNo) {
       for (int i = 0; i < freeCount; ++i) {
         if (freeList[i] == blockNo) return true;
@@ -196,6 +230,16 @@ public final class BucketAllocator {
       completelyFreeBuckets.put(b, b);
     }
 
+    /**
+     * Adds a bucket whose allocations were restored from a persisted cache.
+     */
+    synchronized void restoreBucket(Bucket b) {
+      assert b.sizeIndex() == sizeIndex;
+      bucketList.put(b, b);
+      if (b.hasFreeSpace()) freeBuckets.put(b, b);
+      if (b.isCompletelyFree()) completelyFreeBuckets.put(b, b);
+    }
+
     public int sizeIndex() {
       return sizeIndex;
     }
@@ -312,6 +356,11 @@ public final class BucketAllocator {
 
   BucketAllocator(long availableSpace, int[] bucketSizes)
       throws BucketAllocatorException {
+    this(availableSpace, bucketSizes, true);
+  }
+
+  private BucketAllocator(long availableSpace, int[] bucketSizes, boolean instantiate)
+      throws BucketAllocatorException {
     this.bucketSizes = bucketSizes == null ? DEFAULT_BUCKET_SIZES : bucketSizes;
     Arrays.sort(this.bucketSizes);
     this.bigItemSize = Ints.max(this.bucketSizes);
@@ -326,8 +375,10 @@ public final class BucketAllocator {
     }
     for (int i = 0; i < buckets.length; ++i) {
       buckets[i] = new Bucket(bucketCapacity * i);
-      bucketSizeInfos[i < this.bucketSizes.length ? i : this.bucketSizes.length - 1]
-          .instantiateBucket(buckets[i]);
+      if (instantiate) {
+        bucketSizeInfos[i < this.bucketSizes.length ? i : this.bucketSizes.length - 1]
+            .instantiateBucket(buckets[i]);
+      }
     }
     this.totalSize = ((long) buckets.length) * bucketCapacity;
     if (LOG.isInfoEnabled()) {
@@ -414,6 +465,76 @@ public final class BucketAllocator {
     }
   }
 
+  /**
+   * Create an allocator with all of its buckets uninstantiated, for restoring a persisted cache
+   * bucket by bucket. Buckets are filled with {@link #restoreBucket(int, int, long[], int)},
+   * which may be called concurrently for different buckets, and the allocator must not be used
+   * before {@link #finishRestore()} has been called.
+   */
+  static BucketAllocator forRestore(long availableSpace, int[] bucketSizes)
+      throws BucketAllocatorException {
+    return new BucketAllocator(availableSpace, bucketSizes, false);
+  }
+
+  /**
+   * Restore the allocations of one bucket. Only touches the given bucket, so different buckets
+   * can be restored in parallel.
+   * @param bucketNo the bucket to restore, must not have been restored already
+   * @param sizeIndex index of the item size the bucket was configured with
+   * @param offsets offsets of the blocks allocated in the bucket
+   * @param count number of valid elements in {@code offsets}
+   * @return for each offset, whether it was accepted
+   */
+  boolean[] restoreBucket(int bucketNo, int sizeIndex, long[] offsets, int count) {
+    Bucket b = buckets[bucketNo];
+    Preconditions.checkState(b.isUninstantiated(), "Bucket %s restored twice", bucketNo);
+    b.reconfigure(sizeIndex, bucketSizes, bucketCapacity);
+    return b.restoreAllocations(offsets, count);
+  }
+
+  /**
+   * Complete a restore started with {@link #forRestore(long, int[])}: register the restored
+   * buckets with their size and hand out the untouched ones, first to sizes which would
+   * otherwise have no bucket at all.
+   */
+  void finishRestore() {
+    usedSize = 0;
+    for (Bucket b : buckets) {
+      if (!b.isUninstantiated()) {
+        bucketSizeInfos[b.sizeIndex()].restoreBucket(b);
+        usedSize += b.getUsedBytes();
+      }
+    }
+    int next = 0;
+    for (int i = 0; i < buckets.length; ++i) {
+      if (!buckets[i].isUninstantiated()) {
+        continue;
+      }
+      while (next < bucketSizeInfos.length && bucketSizeInfos[next].bucketList.size() > 0) {
+        next++;
+      }
+      BucketSizeInfo bsi = next < bucketSizeInfos.length ? bucketSizeInfos[next]
+          : bucketSizeInfos[i < bucketSizes.length ? i : bucketSizes.length - 1];
+      bsi.instantiateBucket(buckets[i]);
+    }
+  }
+
+  int[] getBucketSizes() {
+    return bucketSizes;
+  }
+
+  /**
+   * @return the index of the smallest bucket size that can hold a block of the given size, or -1
+   */
+  int sizeIndexOf(int blockSize) {
+    for (int i = 0; i < bucketSizes.length; ++i) {
+      if (blockSize <= bucketSizes[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder(1024);
@@ -23,14 +23,13 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -61,6 +60,7 @@ import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheUtil;
 import org.apache.hadoop.hbase.io.hfile.BlockPriority;
 import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.CachePartitions;
 import org.apache.hadoop.hbase.io.hfile.CacheStats;
 import org.apache.hadoop.hbase.io.hfile.Cacheable;
 import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
@@ -69,6 +69,7 @@ import org.apache.hadoop.hbase.io.hfile.CacheableDeserializerIdManager;
 import org.apache.hadoop.hbase.io.hfile.CachedBlock;
 import org.apache.hadoop.hbase.io.hfile.HFileBlock;
 import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.HasThread;
 import org.apache.hadoop.hbase.util.IdReadWriteLock;
@@ -119,6 +120,27 @@ public class BucketCache implements BlockCache, HeapSize {
   static final float DEFAULT_MEMORY_FACTOR = 0.25f;
   static final float DEFAULT_MIN_FACTOR = 0.85f;
 
+  /** Interval between checkpoints of a persistent cache, 0 to only persist on shutdown */
+  static final String PERSIST_INTERVAL_CONFIG_NAME = "hbase.bucketcache.persist.intervalinmillis";
+  /** Number of threads restoring a persisted cache, defaults to the number of processors */
+  static final String RESTORE_THREADS_CONFIG_NAME = "hbase.bucketcache.restore.threads";
+
+  static final long DEFAULT_PERSIST_INTERVAL = 60 * 1000;
+
+  /**
+   * How long a block cached on write waits for room in a full writer queue, in milliseconds.
+   * 0 drops the block right away, as for blocks cached on read.
+   */
+  static final String QUEUE_ADDITION_WAIT_TIME_CONFIG_NAME =
+      "hbase.bucketcache.queue.addition.waittime";
+  /**
+   * Largest write issued by a writer thread when coalescing adjacent blocks, for the IOEngines
+   * that prefer sequential writes
+   */
+  static final String WRITER_BATCH_SIZE_CONFIG_NAME = "hbase.bucketcache.writer.batch.size";
+
+  static final int DEFAULT_WRITER_BATCH_SIZE = 1024 * 1024;
+
   private static final float DEFAULT_EXTRA_FREE_FACTOR = 0.10f;
   private static final float DEFAULT_ACCEPT_FACTOR = 0.95f;
 
@@ -183,9 +205,17 @@ public class BucketCache implements BlockCache, HeapSize {
   private final BucketCacheStats cacheStats = new BucketCacheStats();
 
   private final String persistencePath;
+  /** Reads and writes the persistence file, null if the cache is not persistent */
+  private final BucketCachePersistence persistence;
   private final long cacheCapacity;
   /** Approximate block size */
   private final long blockSize;
+  /** Time to wait for room in a writer queue when the caller asks for it */
+  private final long queueAdditionWaitTime;
+  /** Size of the per writer thread batches, 0 when the IOEngine is written block by block */
+  private final int writerBatchSize;
+  /** Shares of the cache by table or column family, null if the cache is not partitioned */
+  private final CachePartitions partitions;
 
   /** Duration of IO errors tolerated before we disable cache, 1 min as default */
   private final int ioErrorsTolerationDuration;
@@ -259,7 +289,7 @@ public class BucketCache implements BlockCache, HeapSize {
                      int writerThreadNum, int writerQLen, String persistencePath, int ioErrorsTolerationDuration,
                      Configuration conf)
       throws FileNotFoundException, IOException {
-    this.ioEngine = getIOEngineFromName(ioEngineName, capacity, persistencePath);
+    this.ioEngine = getIOEngineFromName(ioEngineName, capacity, persistencePath, conf);
     this.writerThreads = new WriterThread[writerThreadNum];
     long blockNumCapacity = capacity / blockSize;
     if (blockNumCapacity >= Integer.MAX_VALUE) {
@@ -284,6 +314,11 @@ public class BucketCache implements BlockCache, HeapSize {
     this.persistencePath = persistencePath;
     this.blockSize = blockSize;
     this.ioErrorsTolerationDuration = ioErrorsTolerationDuration;
+    this.queueAdditionWaitTime =
+        conf.getLong(QUEUE_ADDITION_WAIT_TIME_CONFIG_NAME, DEFAULT_CACHE_WAIT_TIME);
+    this.writerBatchSize = ioEngine.prefersSequentialWrites()
+        ? conf.getInt(WRITER_BATCH_SIZE_CONFIG_NAME, DEFAULT_WRITER_BATCH_SIZE) : 0;
+    this.partitions = CachePartitions.create(conf);
 
     bucketAllocator = new BucketAllocator(capacity, bucketSizes);
     for (int i = 0; i < writerThreads.length; ++i) {
@@ -296,14 +331,27 @@ public class BucketCache implements BlockCache, HeapSize {
     this.backingMap = new ConcurrentHashMap<>((int) blockNumCapacity);
 
     if (ioEngine.isPersistent() && persistencePath != null) {
+      this.persistence = new BucketCachePersistence(new File(persistencePath),
+          bucketAllocator.getBuckets().length);
       try {
-        retrieveFromFile(bucketSizes);
+        retrieveFromFile(bucketSizes, conf.getInt(RESTORE_THREADS_CONFIG_NAME,
+          Runtime.getRuntime().availableProcessors()));
       } catch (IOException ioex) {
         LOG.error("Can't restore from file because of", ioex);
       } catch (ClassNotFoundException cnfe) {
         LOG.error("Can't restore from file in rebuild because can't deserialise",cnfe);
         throw new RuntimeException(cnfe);
       }
+    } else {
+      this.persistence = null;
+    }
+    if (partitions != null) {
+      // The partition of a block is not persisted, restored blocks are in the default one
+      for (Map.Entry<BlockCacheKey, BucketEntry> entry : backingMap.entrySet()) {
+        CachePartitions.Partition partition = partitions.get(entry.getKey());
+        entry.getValue().setPartition(partition);
+        partition.add(entry.getValue().getLength());
+      }
     }
     final String threadName = Thread.currentThread().getName();
     this.cacheEnabled = true;
@@ -319,6 +367,11 @@ public class BucketCache implements BlockCache, HeapSize {
     // every five minutes.
     this.scheduleThreadPool.scheduleAtFixedRate(new StatisticsThread(this),
         statThreadPeriod, statThreadPeriod, TimeUnit.SECONDS);
+    long persistInterval = conf.getLong(PERSIST_INTERVAL_CONFIG_NAME, DEFAULT_PERSIST_INTERVAL);
+    if (persistence != null && persistInterval > 0) {
+      this.scheduleThreadPool.scheduleWithFixedDelay(this::checkpoint, persistInterval,
+          persistInterval, TimeUnit.MILLISECONDS);
+    }
     LOG.info("Started bucket cache; ioengine=" + ioEngineName +
         ", capacity=" + StringUtils.byteDesc(capacity) +
       ", blockSize=" + StringUtils.byteDesc(blockSize) + ", writerThreadNum=" +
@@ -368,11 +421,12 @@ public class BucketCache implements BlockCache, HeapSize {
    * @param ioEngineName
    * @param capacity
    * @param persistencePath
+   * @param conf
    * @return the IOEngine
    * @throws IOException
    */
-  private IOEngine getIOEngineFromName(String ioEngineName, long capacity, String persistencePath)
-      throws IOException {
+  private IOEngine getIOEngineFromName(String ioEngineName, long capacity, String persistencePath,
+      Configuration conf) throws IOException {
     if (ioEngineName.startsWith("file:") || ioEngineName.startsWith("files:")) {
       // In order to make the usage simple, we only need the prefix 'files:' in
       // document whether one or multiple file(s), but also support 'file:' for
@@ -384,9 +438,19 @@ public class BucketCache implements BlockCache, HeapSize {
       return new ByteBufferIOEngine(capacity);
     } else if (ioEngineName.startsWith("mmap:")) {
       return new FileMmapEngine(ioEngineName.substring(5), capacity);
+    } else if (ioEngineName.startsWith("directfile:")) {
+      return new DirectFileIOEngine(ioEngineName.substring(11), capacity, persistencePath != null,
+          conf.getInt(DirectFileIOEngine.ALIGNMENT_CONFIG_NAME,
+            DirectFileIOEngine.DEFAULT_ALIGNMENT),
+          conf.getInt(DirectFileIOEngine.BUFFER_SIZE_CONFIG_NAME,
+            DirectFileIOEngine.DEFAULT_BUFFER_SIZE),
+          conf.getInt(DirectFileIOEngine.MAX_POOLED_BUFFERS_CONFIG_NAME,
+            DirectFileIOEngine.DEFAULT_MAX_POOLED_BUFFERS),
+          conf.getBoolean(DirectFileIOEngine.ALLOW_BUFFERED_CONFIG_NAME,
+            DirectFileIOEngine.DEFAULT_ALLOW_BUFFERED));
     } else {
-      throw new IllegalArgumentException(
-          "Don't understand io engine name for cache- prefix with file:, files:, mmap: or offheap");
+      throw new IllegalArgumentException("Don't understand io engine name for cache- prefix with"
+          + " file:, files:, mmap:, directfile: or offheap");
     }
   }
 
@@ -411,6 +475,22 @@ public class BucketCache implements BlockCache, HeapSize {
     cacheBlockWithWait(cacheKey, cachedItem, inMemory, wait_when_cache);
   }
 
+  /**
+   * Cache the block with the specified name and buffer. Waits up to
+   * {@link #QUEUE_ADDITION_WAIT_TIME_CONFIG_NAME} for room in the writer queue when asked to,
+   * rather than dropping the block.
+   * @param cacheKey block's cache key
+   * @param cachedItem block buffer
+   * @param inMemory if block is in-memory
+   * @param waitWhenCache if true, wait for room in the writer queue
+   */
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory,
+      boolean waitWhenCache) {
+    cacheBlockWithWait(cacheKey, cachedItem, inMemory,
+      wait_when_cache || (waitWhenCache && queueAdditionWaitTime > 0));
+  }
+
   /**
    * Cache the block to ramCache
    * @param cacheKey block's cache key
@@ -425,8 +505,9 @@ public class BucketCache implements BlockCache, HeapSize {
       return;
     }
 
-    if (backingMap.containsKey(cacheKey)) {
-      Cacheable existingBlock = getBlock(cacheKey, false, false, false);
+    Cacheable existingBlock = backingMap.containsKey(cacheKey) ?
+        getBlock(cacheKey, false, false, false) : null;
+    if (existingBlock != null) {
       try {
         if (BlockCacheUtil.compareCacheBlock(cachedItem, existingBlock) != 0) {
           throw new RuntimeException("Cached block contents differ, which should not have happened."
@@ -452,15 +533,17 @@ public class BucketCache implements BlockCache, HeapSize {
     }
     int queueNum = (cacheKey.hashCode() & 0x7FFFFFFF) % writerQueues.size();
     BlockingQueue<RAMQueueEntry> bq = writerQueues.get(queueNum);
-    boolean successfulAddition = false;
-    if (wait) {
+    boolean successfulAddition = bq.offer(re);
+    if (!successfulAddition && wait) {
+      // The writers are behind, hold the caller back rather than losing the block
+      cacheStats.deferInsert();
       try {
-        successfulAddition = bq.offer(re, DEFAULT_CACHE_WAIT_TIME, TimeUnit.MILLISECONDS);
+        successfulAddition = bq.offer(re,
+          queueAdditionWaitTime > 0 ? queueAdditionWaitTime : DEFAULT_CACHE_WAIT_TIME,
+          TimeUnit.MILLISECONDS);
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
       }
-    } else {
-      successfulAddition = bq.offer(re);
     }
     if (!successfulAddition) {
       ramCache.remove(cacheKey);
@@ -490,6 +573,9 @@ public class BucketCache implements BlockCache, HeapSize {
     if (re != null) {
       if (updateCacheMetrics) {
         cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
+        if (partitions != null) {
+          partitions.get(key).hit();
+        }
       }
       re.access(accessCount.incrementAndGet());
       return re.getData();
@@ -498,6 +584,7 @@ public class BucketCache implements BlockCache, HeapSize {
     if (bucketEntry != null) {
       long start = System.nanoTime();
       ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
+      boolean stale = false;
       try {
         lock.readLock().lock();
         // We can not read here even if backingMap does contain the given key because its offset
@@ -510,21 +597,35 @@ public class BucketCache implements BlockCache, HeapSize {
           if (LOG.isTraceEnabled()) {
             LOG.trace("Read offset=" + bucketEntry.offset() + ", len=" + len);
           }
-          Cacheable cachedBlock = ioEngine.read(bucketEntry.offset(), len,
-              bucketEntry.deserializerReference(this.deserialiserMap));
-          long timeTaken = System.nanoTime() - start;
-          if (updateCacheMetrics) {
-            cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
-            cacheStats.ioHit(timeTaken);
-          }
-          if (cachedBlock.getMemoryType() == MemoryType.SHARED) {
-            bucketEntry.refCount.incrementAndGet();
+          CacheableDeserializer<Cacheable> deserializer =
+              bucketEntry.deserializerReference(this.deserialiserMap);
+          if (!bucketEntry.isVerified()) {
+            // Restored from a checkpoint, the space may have been reused after it was taken
+            deserializer = BucketCachePersistence.verifying(deserializer,
+              bucketEntry.getChecksum());
           }
-          bucketEntry.access(accessCount.incrementAndGet());
-          if (this.ioErrorStartTime > 0) {
-            ioErrorStartTime = -1;
+          Cacheable cachedBlock = ioEngine.read(bucketEntry.offset(), len, deserializer);
+          if (cachedBlock == null) {
+            stale = true;
+          } else {
+            bucketEntry.markVerified();
+            long timeTaken = System.nanoTime() - start;
+            if (updateCacheMetrics) {
+              cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
+              cacheStats.ioHit(timeTaken);
+              if (partitions != null) {
+                partitions.get(key).hit();
+              }
+            }
+            if (cachedBlock.getMemoryType() == MemoryType.SHARED) {
+              bucketEntry.refCount.incrementAndGet();
+            }
+            bucketEntry.access(accessCount.incrementAndGet());
+            if (this.ioErrorStartTime > 0) {
+              ioErrorStartTime = -1;
+            }
+            return cachedBlock;
           }
-          return cachedBlock;
         }
       } catch (IOException ioex) {
         LOG.error("Failed reading block " + key + " from bucket cache", ioex);
@@ -532,17 +633,62 @@ public class BucketCache implements BlockCache, HeapSize {
       } finally {
         lock.readLock().unlock();
       }
+      if (stale) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Checksum mismatch for restored block " + key + ", evicting it");
+        }
+        evictBlock(key, false);
+      }
     }
     if (!repeat && updateCacheMetrics) {
       cacheStats.miss(caching, key.isPrimary(), key.getBlockType());
+      if (partitions != null) {
+        partitions.get(key).miss();
+      }
     }
     return null;
   }
 
+  @Override
+  public boolean touchBlock(BlockCacheKey key, boolean caching, boolean updateCacheMetrics) {
+    if (!cacheEnabled) {
+      return false;
+    }
+    RAMQueueEntry re = ramCache.get(key);
+    BucketEntry bucketEntry = re == null ? backingMap.get(key) : null;
+    if (re == null && bucketEntry == null) {
+      if (updateCacheMetrics) {
+        cacheStats.miss(caching, key.isPrimary(), key.getBlockType());
+        if (partitions != null) {
+          partitions.get(key).miss();
+        }
+      }
+      return false;
+    }
+    if (updateCacheMetrics) {
+      cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
+      if (partitions != null) {
+        partitions.get(key).hit();
+      }
+    }
+    if (re != null) {
+      re.access(accessCount.incrementAndGet());
+    } else {
+      bucketEntry.access(accessCount.incrementAndGet());
+    }
+    return true;
+  }
+
   @VisibleForTesting
   void blockEvicted(BlockCacheKey cacheKey, BucketEntry bucketEntry, boolean decrementBlockNumber) {
     bucketAllocator.freeBlock(bucketEntry.offset());
+    if (persistence != null) {
+      persistence.markDirty(bucketAllocator.getBucketIndex(bucketEntry.offset()));
+    }
     realCacheSize.add(-1 * bucketEntry.getLength());
+    if (bucketEntry.getPartition() != null) {
+      bucketEntry.getPartition().add(-1 * bucketEntry.getLength());
+    }
     blocksByHFile.remove(cacheKey);
     if (decrementBlockNumber) {
       this.blockNumber.decrement();
@@ -665,6 +811,7 @@ public class BucketCache implements BlockCache, HeapSize {
     long freeSize = totalSize - usedSize;
     long cacheSize = getRealCacheSize();
     LOG.info("failedBlockAdditions=" + cacheStats.getFailedInserts() + ", " +
+        "deferredBlockAdditions=" + cacheStats.getDeferredInserts() + ", " +
         "totalSize=" + StringUtils.byteDesc(totalSize) + ", " +
         "freeSize=" + StringUtils.byteDesc(freeSize) + ", " +
         "usedSize=" + StringUtils.byteDesc(usedSize) +", " +
@@ -758,6 +905,9 @@ public class BucketCache implements BlockCache, HeapSize {
     }
     try {
       freeInProgress = true;
+      if (partitions != null) {
+        freeOverflowingPartitions();
+      }
       long bytesToFreeWithoutExtra = 0;
       // Calculate free byte for each bucketSizeinfo
       StringBuilder msgBuffer = LOG.isDebugEnabled()? new StringBuilder(): null;
@@ -795,11 +945,13 @@ public class BucketCache implements BlockCache, HeapSize {
           * (1 + extraFreeFactor));
 
       // Instantiate priority buckets
-      BucketEntryGroup bucketSingle = new BucketEntryGroup(bytesToFreeWithExtra,
+      long candidateSize = partitions == null ? bytesToFreeWithExtra
+          : bytesToFreeWithExtra + partitions.getProtectedSize(cacheCapacity);
+      BucketEntryGroup bucketSingle = new BucketEntryGroup(candidateSize,
           blockSize, getPartitionSize(singleFactor));
-      BucketEntryGroup bucketMulti = new BucketEntryGroup(bytesToFreeWithExtra,
+      BucketEntryGroup bucketMulti = new BucketEntryGroup(candidateSize,
           blockSize, getPartitionSize(multiFactor));
-      BucketEntryGroup bucketMemory = new BucketEntryGroup(bytesToFreeWithExtra,
+      BucketEntryGroup bucketMemory = new BucketEntryGroup(candidateSize,
           blockSize, getPartitionSize(memoryFactor));
 
       // Scan entire map putting bucket entry into appropriate bucket entry
@@ -888,15 +1040,68 @@ public class BucketCache implements BlockCache, HeapSize {
     }
   }
 
+  private boolean isAnyPartitionOverflowing() {
+    if (partitions == null) {
+      return false;
+    }
+    for (CachePartitions.Partition partition : partitions.getPartitions()) {
+      if (partition.overflow(cacheCapacity) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Evicts the least recently used blocks of the partitions above their ceiling until they are
+   * back under it, whatever the occupancy of the cache.
+   */
+  private void freeOverflowingPartitions() {
+    Map<CachePartitions.Partition, CachedEntryQueue> overflowing = new HashMap<>();
+    for (CachePartitions.Partition partition : partitions.getPartitions()) {
+      long overflow = partition.overflow(cacheCapacity);
+      if (overflow > 0) {
+        overflowing.put(partition, new CachedEntryQueue(overflow, blockSize));
+      }
+    }
+    if (overflowing.isEmpty()) {
+      return;
+    }
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : backingMap.entrySet()) {
+      CachedEntryQueue queue = overflowing.get(partitions.get(entry.getKey()));
+      if (queue != null) {
+        queue.add(entry);
+      }
+    }
+    for (Map.Entry<CachePartitions.Partition, CachedEntryQueue> partitionQueue :
+        overflowing.entrySet()) {
+      long overflow = partitionQueue.getKey().overflow(cacheCapacity);
+      long freed = 0;
+      Map.Entry<BlockCacheKey, BucketEntry> entry;
+      while (freed < overflow && (entry = partitionQueue.getValue().pollLast()) != null) {
+        if (evictBlock(entry.getKey(), false)) {
+          freed += entry.getValue().getLength();
+        }
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Freed " + StringUtils.byteDesc(freed) + " from partition "
+            + partitionQueue.getKey().getName() + " above its ceiling");
+      }
+    }
+  }
+
   // This handles flushing the RAM cache to IOEngine.
   @VisibleForTesting
   class WriterThread extends HasThread {
     private final BlockingQueue<RAMQueueEntry> inputQueue;
     private volatile boolean writerEnabled = true;
+    // Coalesces the writes of a drain, null when the IOEngine is written block by block
+    private final WriteBatch batch;
 
     WriterThread(BlockingQueue<RAMQueueEntry> queue) {
       super("BucketCacheWriterThread");
       this.inputQueue = queue;
+      this.batch = writerBatchSize > 0 ? new WriteBatch(ioEngine, writerBatchSize) : null;
     }
 
     // Used for test
@@ -961,8 +1166,9 @@ public class BucketCache implements BlockCache, HeapSize {
             index++;
             continue;
           }
-          BucketEntry bucketEntry =
-            re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize);
+          BucketEntry bucketEntry = batch == null
+              ? re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize)
+              : re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize, batch);
           // Successfully added.  Up index and add bucketEntry. Clear io exceptions.
           bucketEntries[index] = bucketEntry;
           if (ioErrorStartTime > 0) {
@@ -990,9 +1196,12 @@ public class BucketCache implements BlockCache, HeapSize {
 
       // Make sure data pages are written on media before we update maps.
       try {
+        if (batch != null) {
+          batch.flush();
+        }
         ioEngine.sync();
       } catch (IOException ioex) {
-        LOG.error("Failed syncing IO engine", ioex);
+        LOG.error("Failed writing or syncing IO engine", ioex);
         checkIOErrorIsTolerated();
         // Since we failed sync, free the blocks in bucket allocator
         for (int i = 0; i < entries.size(); ++i) {
@@ -1009,7 +1218,17 @@ public class BucketCache implements BlockCache, HeapSize {
         BlockCacheKey key = entries.get(i).getKey();
         // Only add if non-null entry.
         if (bucketEntries[i] != null) {
+          if (partitions != null) {
+            // set before the entry is visible, an eviction racing with the put finds it
+            bucketEntries[i].setPartition(partitions.get(key));
+          }
           backingMap.put(key, bucketEntries[i]);
+          if (partitions != null) {
+            bucketEntries[i].getPartition().add(bucketEntries[i].getLength());
+          }
+          if (persistence != null) {
+            persistence.markDirty(bucketAllocator.getBucketIndex(bucketEntries[i].offset()));
+          }
         }
         // Always remove from ramCache even if we failed adding it to the block cache above.
         RAMQueueEntry ramCacheEntry = ramCache.remove(key);
@@ -1032,6 +1251,8 @@ public class BucketCache implements BlockCache, HeapSize {
       long used = bucketAllocator.getUsedSize();
       if (used > acceptableSize()) {
         freeSpace("Used=" + used + " > acceptable=" + acceptableSize());
+      } else if (isAnyPartitionOverflowing()) {
+        freeSpace("Partition above its ceiling");
       }
       return;
     }
@@ -1059,39 +1280,88 @@ public class BucketCache implements BlockCache, HeapSize {
 
   private void persistToFile() throws IOException {
     assert !cacheEnabled;
-    FileOutputStream fos = null;
-    ObjectOutputStream oos = null;
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to persist non-persistent cache mappings!");
+    }
+    persistence.checkpoint(bucketAllocator, backingMap, deserialiserMap, cacheCapacity,
+      ioEngine.getClass().getName(), true);
+  }
+
+  /**
+   * Write a checkpoint of the backing map while the cache is running, so that the cache can be
+   * restored after an unclean stop. Only the segments which changed since the previous
+   * checkpoint are written.
+   * @return true if a checkpoint was written
+   */
+  @VisibleForTesting
+  boolean checkpoint() {
+    if (!cacheEnabled) {
+      return false;
+    }
     try {
-      if (!ioEngine.isPersistent()) {
-        throw new IOException("Attempt to persist non-persistent cache mappings!");
-      }
-      fos = new FileOutputStream(persistencePath, false);
-      oos = new ObjectOutputStream(fos);
-      oos.writeLong(cacheCapacity);
-      oos.writeUTF(ioEngine.getClass().getName());
-      oos.writeUTF(backingMap.getClass().getName());
-      oos.writeObject(deserialiserMap);
-      oos.writeObject(backingMap);
-    } finally {
-      if (oos != null) oos.close();
-      if (fos != null) fos.close();
+      return persistence.checkpoint(bucketAllocator, backingMap, deserialiserMap, cacheCapacity,
+        ioEngine.getClass().getName(), false);
+    } catch (Throwable t) {
+      LOG.warn("Failed writing bucket cache checkpoint to " + persistencePath, t);
+      return false;
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private void retrieveFromFile(int[] bucketSizes) throws IOException, BucketAllocatorException,
-      ClassNotFoundException {
+  private void retrieveFromFile(int[] bucketSizes, int restoreThreads) throws IOException,
+      BucketAllocatorException, ClassNotFoundException {
     File persistenceFile = new File(persistencePath);
     if (!persistenceFile.exists()) {
       return;
     }
     assert !cacheEnabled;
-    FileInputStream fis = null;
-    ObjectInputStream ois = null;
     try {
       if (!ioEngine.isPersistent())
         throw new IOException(
             "Attempt to restore non-persistent cache mappings!");
+      if (BucketCachePersistence.isLegacyFormat(persistenceFile)) {
+        retrieveFromLegacyFile(bucketSizes);
+      } else {
+        long start = System.nanoTime();
+        BucketAllocator allocator = null;
+        try {
+          allocator = persistence.restore(cacheCapacity, ioEngine.getClass().getName(),
+            bucketSizes, deserialiserMap, backingMap, blocksByHFile, realCacheSize,
+            restoreThreads);
+        } finally {
+          if (allocator == null) {
+            backingMap.clear();
+            blocksByHFile.clear();
+            realCacheSize.reset();
+            deserialiserMap = new UniqueIndexMap<>();
+          }
+        }
+        if (allocator != null) {
+          bucketAllocator = allocator;
+          LOG.info("Restored " + backingMap.size() + " blocks, "
+              + StringUtils.byteDesc(realCacheSize.sum()) + " from " + persistencePath + " in "
+              + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+      }
+      blockNumber.add(backingMap.size());
+    } finally {
+      // The cache changes as soon as it is enabled, the next checkpoint starts a new file
+      persistence.reset();
+      if (!persistenceFile.delete()) {
+        throw new IOException("Failed deleting persistence file "
+            + persistenceFile.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * Restore from a file written with java serialization by an older version.
+   */
+  @SuppressWarnings("unchecked")
+  private void retrieveFromLegacyFile(int[] bucketSizes) throws IOException,
+      BucketAllocatorException, ClassNotFoundException {
+    FileInputStream fis = null;
+    ObjectInputStream ois = null;
+    try {
       fis = new FileInputStream(persistencePath);
       ois = new ObjectInputStream(fis);
       long capacitySize = ois.readLong();
@@ -1116,13 +1386,10 @@ public class BucketCache implements BlockCache, HeapSize {
       bucketAllocator = allocator;
       deserialiserMap = deserMap;
       backingMap = backingMapFromFile;
+      blocksByHFile.addAll(backingMap.keySet());
     } finally {
       if (ois != null) ois.close();
       if (fis != null) fis.close();
-      if (!persistenceFile.delete()) {
-        throw new IOException("Failed deleting persistence file "
-            + persistenceFile.getAbsolutePath());
-      }
     }
   }
 
@@ -1249,6 +1516,24 @@ public class BucketCache implements BlockCache, HeapSize {
     return numEvicted;
   }
 
+  @Override
+  public Map<String, long[]> getHotBlockOffsets(Set<String> hfileNames) {
+    Map<String, long[]> hotBlocks = new HashMap<>();
+    for (String hfileName : hfileNames) {
+      Set<BlockCacheKey> keySet = blocksByHFile.subSet(
+          new BlockCacheKey(hfileName, Long.MIN_VALUE), true,
+          new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
+      long[] offsets = keySet.stream().filter(key -> {
+        BucketEntry bucketEntry = backingMap.get(key);
+        return bucketEntry != null && bucketEntry.getPriority() != BlockPriority.SINGLE;
+      }).mapToLong(BlockCacheKey::getOffset).toArray();
+      if (offsets.length > 0) {
+        hotBlocks.put(hfileName, offsets);
+      }
+    }
+    return hotBlocks;
+  }
+
   /**
    * Item in cache. We expect this to be where most memory goes. Java uses 8
    * bytes just for object headers; after this, we want to use as little as
@@ -1277,7 +1562,14 @@ public class BucketCache implements BlockCache, HeapSize {
     private BlockPriority priority;
     // Set this when we were not able to forcefully evict the block
     private volatile boolean markedForEvict;
+    // CRC32 of the block content, kept for persistent IOEngines only
+    private int checksum;
+    // Set for entries restored from a checkpoint, whose content must be checked on first read
+    private boolean unverified;
     private AtomicInteger refCount = new AtomicInteger(0);
+    // The cache partition the length of the block is accounted to, null if not partitioned. The
+    // key the block is evicted by may not name it, the partition is not persisted.
+    private transient CachePartitions.Partition partition;
 
     /**
      * Time this block was cached.  Presumes we are created just before we are added to the cache.
@@ -1295,6 +1587,20 @@ public class BucketCache implements BlockCache, HeapSize {
       }
     }
 
+    /**
+     * Constructor for entries restored from a persisted cache.
+     */
+    BucketEntry(long offset, int length, long accessCounter, BlockPriority priority,
+        byte deserialiserIndex, int checksum, boolean verified) {
+      setOffset(offset);
+      this.length = length;
+      this.accessCounter = accessCounter;
+      this.priority = priority;
+      this.deserialiserIndex = deserialiserIndex;
+      this.checksum = checksum;
+      this.unverified = !verified;
+    }
+
     long offset() { // Java has no unsigned numbers
       long o = ((long) offsetBase) & 0xFFFFFFFFL; //This needs the L cast otherwise it will be sign extended as a negative number.
       o += (((long) (offset1)) & 0xFF) << 32; //The 0xFF here does not need the L cast because it is treated as a positive int.
@@ -1339,9 +1645,37 @@ public class BucketCache implements BlockCache, HeapSize {
       return this.priority;
     }
 
+    long getAccessCounter() {
+      return accessCounter;
+    }
+
+    int getChecksum() {
+      return checksum;
+    }
+
+    void setChecksum(int checksum) {
+      this.checksum = checksum;
+    }
+
+    boolean isVerified() {
+      return !unverified;
+    }
+
+    void markVerified() {
+      this.unverified = false;
+    }
+
     public long getCachedTime() {
       return cachedTime;
     }
+
+    CachePartitions.Partition getPartition() {
+      return partition;
+    }
+
+    void setPartition(CachePartitions.Partition partition) {
+      this.partition = partition;
+    }
   }
 
   /**
@@ -1373,6 +1707,11 @@ public class BucketCache implements BlockCache, HeapSize {
       // TODO avoid a cycling siutation. We find no block which is not in use and so no way to free
       // What to do then? Caching attempt fail? Need some changes in cacheBlock API?
       while ((entry = queue.pollLast()) != null) {
+        if (partitions != null && !partitions.get(entry.getKey())
+            .canEvict(entry.getValue().getLength(), cacheCapacity)) {
+          // Leave the blocks of a partition at its floor to it
+          continue;
+        }
         if (evictBlock(entry.getKey(), false)) {
           freedBytes += entry.getValue().getLength();
         }
@@ -1450,6 +1789,18 @@ public class BucketCache implements BlockCache, HeapSize {
         final UniqueIndexMap<Integer> deserialiserMap,
         final LongAdder realCacheSize) throws CacheFullException, IOException,
         BucketAllocatorException {
+      return writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize, null);
+    }
+
+    /**
+     * Allocates room for the block and writes it, or adds it to the batch when there is one. A
+     * batched block is only on the IOEngine once the batch is flushed.
+     */
+    public BucketEntry writeToCache(final IOEngine ioEngine,
+        final BucketAllocator bucketAllocator,
+        final UniqueIndexMap<Integer> deserialiserMap,
+        final LongAdder realCacheSize, final WriteBatch batch) throws CacheFullException,
+        IOException, BucketAllocatorException {
       int len = data.getSerializedLength();
       // This cacheable thing can't be serialized
       if (len == 0) return null;
@@ -1465,12 +1816,27 @@ public class BucketCache implements BlockCache, HeapSize {
           if (LOG.isTraceEnabled()) {
             LOG.trace("Write offset=" + offset + ", len=" + len);
           }
-          ioEngine.write(sliceBuf, offset);
-          ioEngine.write(metadata, offset + len - metadata.limit());
+          if (ioEngine.isPersistent()) {
+            bucketEntry.setChecksum(BucketCachePersistence.checksum(sliceBuf, metadata));
+          }
+          if (batch != null) {
+            batch.add(offset, sliceBuf, metadata);
+          } else {
+            ioEngine.write(sliceBuf, offset);
+            ioEngine.write(metadata, offset + len - metadata.limit());
+          }
         } else {
           ByteBuffer bb = ByteBuffer.allocate(len);
           data.serialize(bb);
-          ioEngine.write(bb, offset);
+          if (ioEngine.isPersistent()) {
+            bucketEntry.setChecksum(
+              BucketCachePersistence.checksum(new SingleByteBuff(bb), null));
+          }
+          if (batch != null) {
+            batch.add(offset, new SingleByteBuff(bb), null);
+          } else {
+            ioEngine.write(bb, offset);
+          }
         }
       } catch (IOException ioe) {
         // free it in bucket allocator
@@ -1591,6 +1957,11 @@ public class BucketCache implements BlockCache, HeapSize {
     return null;
   }
 
+  @Override
+  public CachePartitions getPartitions() {
+    return partitions;
+  }
+
   @Override
   public void returnBlock(BlockCacheKey cacheKey, Cacheable block) {
     if (block.getMemoryType() == MemoryType.SHARED) {
@@ -0,0 +1,627 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.io.hfile.CacheableDeserializer;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.util.ObjectIntPair;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Persists the index of a {@link BucketCache} that uses a persistent {@link IOEngine}, so that
+ * the cached blocks can be served again after a restart.
+ * <p>
+ * The file starts with a fixed size header holding the magic, the format version and the
+ * location and CRC32 of a directory. The directory describes the cache (capacity, engine, bucket
+ * sizes), holds the deserialiser ids and points at one record per segment. A segment covers
+ * {@link #BUCKETS_PER_SEGMENT} consecutive buckets of the {@link BucketAllocator}, lists the
+ * blocks cached in them and has its own CRC32, so a damaged segment only loses its own buckets.
+ * <p>
+ * Checkpoints are incremental: segments whose buckets did not change since the previous
+ * checkpoint stay where they are, new versions of the changed segments and a new directory are
+ * appended, and only then is the header switched over to the new directory. The file is
+ * rewritten from scratch when it is mostly garbage, and on a clean shutdown.
+ * <p>
+ * Restore reads and decodes the segments in parallel and rebuilds the allocator bucket by
+ * bucket. A checkpoint taken while the cache was running may list blocks whose space has been
+ * reused since; such entries are restored unverified and the CRC32 of their content is checked
+ * the first time they are read.
+ */
+@InterfaceAudience.Private
+final class BucketCachePersistence {
+  private static final Logger LOG = LoggerFactory.getLogger(BucketCachePersistence.class);
+
+  static final int MAGIC = 0x48424350;
+  static final int VERSION = 1;
+  /** Magic, version, then position, length and checksum of the current directory */
+  static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+  static final int BUCKETS_PER_SEGMENT = 256;
+
+  /** The file is rewritten when garbage exceeds the live segments by this much */
+  private static final long COMPACTION_SLACK = 1024 * 1024;
+  private static final byte NO_BLOCK_TYPE = -1;
+  /** First bytes of a java serialization stream, as written by older versions */
+  private static final int LEGACY_MAGIC = 0xACED;
+
+  private static final Comparator<Map.Entry<BlockCacheKey, BucketEntry>> BY_OFFSET =
+      (a, b) -> Long.compare(a.getValue().offset(), b.getValue().offset());
+
+  private final File file;
+  private final int segmentCount;
+  private final AtomicIntegerArray dirty;
+
+  // Where the latest record of each segment is in the file; position is -1 for none
+  private final long[] segmentPositions;
+  private final int[] segmentLengths;
+  private final long[] segmentChecksums;
+  private long liveBytes;
+  // End of the file; 0 when there is no file to append to
+  private long fileLength;
+
+  BucketCachePersistence(File file, int bucketCount) {
+    this.file = file;
+    this.segmentCount = (bucketCount + BUCKETS_PER_SEGMENT - 1) / BUCKETS_PER_SEGMENT;
+    this.dirty = new AtomicIntegerArray(segmentCount);
+    this.segmentPositions = new long[segmentCount];
+    this.segmentLengths = new int[segmentCount];
+    this.segmentChecksums = new long[segmentCount];
+    Arrays.fill(segmentPositions, -1);
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Record that a block was added to or removed from the given bucket.
+   */
+  void markDirty(int bucketNo) {
+    int segment = bucketNo / BUCKETS_PER_SEGMENT;
+    if (dirty.get(segment) == 0) {
+      dirty.set(segment, 1);
+    }
+  }
+
+  /**
+   * @return true if the file was written by an older version with java serialization
+   */
+  static boolean isLegacyFormat(File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      int b0 = in.read();
+      int b1 = in.read();
+      return b0 >= 0 && b1 >= 0 && ((b0 << 8) | b1) == LEGACY_MAGIC;
+    }
+  }
+
+  /**
+   * Write a checkpoint of the cache index.
+   * @param clean true if the cache no longer changes, i.e. this is the checkpoint written on
+   *          shutdown. Entries restored from a clean checkpoint are trusted without verification.
+   * @return false if nothing changed since the previous checkpoint, so nothing was written
+   */
+  synchronized boolean checkpoint(BucketAllocator allocator,
+      Map<BlockCacheKey, BucketEntry> backingMap, UniqueIndexMap<Integer> deserialiserMap,
+      long capacity, String ioEngineClass, boolean clean) throws IOException {
+    boolean full = clean || fileLength == 0 || fileLength > 2 * liveBytes + COMPACTION_SLACK;
+    boolean[] changed = new boolean[segmentCount];
+    boolean any = false;
+    for (int i = 0; i < segmentCount; i++) {
+      changed[i] = dirty.getAndSet(i, 0) != 0 || full;
+      any |= changed[i];
+    }
+    if (!any) {
+      return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<Map.Entry<BlockCacheKey, BucketEntry>>[] bySegment = new List[segmentCount];
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : backingMap.entrySet()) {
+      int segment = allocator.getBucketIndex(entry.getValue().offset()) / BUCKETS_PER_SEGMENT;
+      if (segment < segmentCount && changed[segment]) {
+        if (bySegment[segment] == null) {
+          bySegment[segment] = new ArrayList<>();
+        }
+        bySegment[segment].add(entry);
+      }
+    }
+
+    long[] positions = full ? new long[segmentCount] : segmentPositions.clone();
+    int[] lengths = full ? new int[segmentCount] : segmentLengths.clone();
+    long[] checksums = full ? new long[segmentCount] : segmentChecksums.clone();
+    if (full) {
+      Arrays.fill(positions, -1);
+    }
+    File target = full ? new File(file.getPath() + ".tmp") : file;
+    try (FileChannel channel = full
+        ? FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+        : FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+      long position = full ? HEADER_SIZE : fileLength;
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      for (int i = 0; i < segmentCount; i++) {
+        if (!changed[i]) {
+          continue;
+        }
+        if (bySegment[i] == null) {
+          positions[i] = -1;
+          continue;
+        }
+        byte[] record = encodeSegment(i, bySegment[i], buffer);
+        write(channel, position, record);
+        positions[i] = position;
+        lengths[i] = record.length;
+        checksums[i] = checksum(record);
+        position += record.length;
+      }
+      byte[] directory = encodeDirectory(allocator.getBucketSizes(), deserialiserMap, capacity,
+        ioEngineClass, clean, positions, lengths, checksums, buffer);
+      write(channel, position, directory);
+      long directoryPosition = position;
+      position += directory.length;
+      // Make sure everything the new directory points at is on disk before switching to it
+      channel.force(false);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putLong(directoryPosition).putInt(directory.length)
+          .putLong(checksum(directory));
+      write(channel, 0, header.array());
+      channel.force(false);
+      if (full) {
+        Files.move(target.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      }
+      System.arraycopy(positions, 0, segmentPositions, 0, segmentCount);
+      System.arraycopy(lengths, 0, segmentLengths, 0, segmentCount);
+      System.arraycopy(checksums, 0, segmentChecksums, 0, segmentCount);
+      liveBytes = 0;
+      for (int i = 0; i < segmentCount; i++) {
+        if (segmentPositions[i] >= 0) {
+          liveBytes += segmentLengths[i];
+        }
+      }
+      fileLength = position;
+    } catch (IOException e) {
+      // We no longer know what the file looks like, start over with the next checkpoint
+      fileLength = 0;
+      throw e;
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Wrote " + (full ? "full" : "incremental") + " bucket cache checkpoint to " + file
+          + ", length=" + fileLength + ", live=" + liveBytes + ", clean=" + clean);
+    }
+    return true;
+  }
+
+  /**
+   * Forget about the file, e.g. after it has been restored and deleted. The next checkpoint
+   * writes a new file from scratch.
+   */
+  synchronized void reset() {
+    fileLength = 0;
+    liveBytes = 0;
+    Arrays.fill(segmentPositions, -1);
+  }
+
+  /**
+   * Restore a checkpoint written by {@link #checkpoint}. Segments are decoded and their buckets
+   * rebuilt in parallel; restored blocks are added to the given collections, which must support
+   * concurrent updates.
+   * @return the rebuilt allocator, or null if the checkpoint does not match this cache
+   */
+  BucketAllocator restore(long capacity, String ioEngineClass, int[] bucketSizes,
+      UniqueIndexMap<Integer> deserialiserMap, ConcurrentMap<BlockCacheKey, BucketEntry> backingMap,
+      NavigableSet<BlockCacheKey> blocksByHFile, LongAdder realCacheSize, int threads)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = read(channel, 0, HEADER_SIZE);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a bucket cache persistence file: " + file);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported bucket cache persistence version " + version);
+      }
+      long directoryPosition = header.getLong();
+      int directoryLength = header.getInt();
+      long directoryChecksum = header.getLong();
+      ByteBuffer directory = read(channel, directoryPosition, directoryLength);
+      if (checksum(directory.array()) != directoryChecksum) {
+        throw new IOException("Checksum mismatch in bucket cache persistence directory");
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(directory.array()));
+
+      long persistedCapacity = in.readLong();
+      if (persistedCapacity != capacity) {
+        throw new IOException("Mismatched cache capacity: " + persistedCapacity + ", expected: "
+            + capacity);
+      }
+      String persistedEngine = in.readUTF();
+      if (!persistedEngine.equals(ioEngineClass)) {
+        throw new IOException("Class name for IO engine mismatch: " + persistedEngine
+            + ", expected: " + ioEngineClass);
+      }
+      BucketAllocator allocator = BucketAllocator.forRestore(capacity, bucketSizes);
+      int[] persistedSizes = new int[in.readInt()];
+      for (int i = 0; i < persistedSizes.length; i++) {
+        persistedSizes[i] = in.readInt();
+      }
+      if (!Arrays.equals(persistedSizes, allocator.getBucketSizes())) {
+        LOG.warn("Bucket sizes changed from " + Arrays.toString(persistedSizes) + " to "
+            + Arrays.toString(allocator.getBucketSizes()) + ", not restoring the cache");
+        return null;
+      }
+      boolean clean = in.readBoolean();
+      BlockType[] blockTypes = new BlockType[in.readInt()];
+      for (int i = 0; i < blockTypes.length; i++) {
+        blockTypes[i] = BlockType.valueOf(in.readUTF());
+      }
+      BlockPriority[] priorities = new BlockPriority[in.readInt()];
+      for (int i = 0; i < priorities.length; i++) {
+        priorities[i] = BlockPriority.valueOf(in.readUTF());
+      }
+      int deserialisers = in.readInt();
+      for (int i = 0; i < deserialisers; i++) {
+        int index = in.readInt();
+        deserialiserMap.restore(index, in.readInt());
+      }
+
+      int segments = in.readInt();
+      ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads),
+        new ThreadFactoryBuilder().setNameFormat("BucketCacheRestore-%d").setDaemon(true)
+            .build());
+      try {
+        List<Future<Integer>> futures = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+          int segment = in.readInt();
+          long position = in.readLong();
+          int length = in.readInt();
+          long checksum = in.readLong();
+          futures.add(pool.submit(() -> restoreSegment(channel, segment, position, length,
+            checksum, allocator, blockTypes, priorities, clean, backingMap, blocksByHFile,
+            realCacheSize)));
+        }
+        int restored = 0;
+        for (Future<Integer> future : futures) {
+          restored += future.get();
+        }
+        allocator.finishRestore();
+        LOG.info("Restored " + restored + " blocks from " + segments + " segments of " + file
+            + ", clean=" + clean);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw (IOException) new InterruptedIOException().initCause(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      } finally {
+        pool.shutdownNow();
+      }
+      return allocator;
+    }
+  }
+
+  private static int restoreSegment(FileChannel channel, int segment, long position, int length,
+      long checksum, BucketAllocator allocator, BlockType[] blockTypes, BlockPriority[] priorities,
+      boolean clean, ConcurrentMap<BlockCacheKey, BucketEntry> backingMap,
+      NavigableSet<BlockCacheKey> blocksByHFile, LongAdder realCacheSize) throws IOException {
+    byte[] record = read(channel, position, length).array();
+    if (checksum(record) != checksum) {
+      LOG.warn("Checksum mismatch in segment " + segment + ", dropping its blocks");
+      return 0;
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    if (in.readInt() != segment) {
+      throw new IOException("Segment record at " + position + " is not segment " + segment);
+    }
+    String[] names = new String[in.readInt()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = in.readUTF();
+    }
+    int count = in.readInt();
+    BlockCacheKey[] keys = new BlockCacheKey[count];
+    long[] offsets = new long[count];
+    int[] lengths = new int[count];
+    long[] accessCounters = new long[count];
+    byte[] deserialisers = new byte[count];
+    BlockPriority[] blockPriorities = new BlockPriority[count];
+    int[] checksums = new int[count];
+    for (int i = 0; i < count; i++) {
+      String name = names[in.readInt()];
+      long blockOffset = in.readLong();
+      byte type = in.readByte();
+      boolean primary = in.readBoolean();
+      keys[i] = new BlockCacheKey(name, blockOffset, primary,
+          type == NO_BLOCK_TYPE ? null : blockTypes[type]);
+      offsets[i] = in.readLong();
+      lengths[i] = in.readInt();
+      accessCounters[i] = in.readLong();
+      deserialisers[i] = in.readByte();
+      blockPriorities[i] = priorities[in.readByte()];
+      checksums[i] = in.readInt();
+    }
+
+    // Entries are sorted by offset, so the blocks of each bucket are consecutive
+    int firstBucket = segment * BUCKETS_PER_SEGMENT;
+    int bucketCount = allocator.getBuckets().length;
+    long[] bucketOffsets = new long[count];
+    int[] bucketEntries = new int[count];
+    int restored = 0;
+    int dropped = 0;
+    int start = 0;
+    while (start < count) {
+      int bucketNo = allocator.getBucketIndex(offsets[start]);
+      int end = start + 1;
+      while (end < count && allocator.getBucketIndex(offsets[end]) == bucketNo) {
+        end++;
+      }
+      int sizeIndex = allocator.sizeIndexOf(lengths[start]);
+      if (bucketNo < firstBucket || bucketNo >= firstBucket + BUCKETS_PER_SEGMENT
+          || bucketNo >= bucketCount || sizeIndex < 0) {
+        dropped += end - start;
+        start = end;
+        continue;
+      }
+      int n = 0;
+      for (int i = start; i < end; i++) {
+        if (allocator.sizeIndexOf(lengths[i]) == sizeIndex) {
+          bucketOffsets[n] = offsets[i];
+          bucketEntries[n++] = i;
+        } else {
+          dropped++;
+        }
+      }
+      boolean[] accepted = allocator.restoreBucket(bucketNo, sizeIndex, bucketOffsets, n);
+      for (int j = 0; j < n; j++) {
+        if (!accepted[j]) {
+          dropped++;
+          continue;
+        }
+        int i = bucketEntries[j];
+        BucketEntry entry = new BucketEntry(offsets[i], lengths[i], accessCounters[i],
+            blockPriorities[i], deserialisers[i], checksums[i], clean);
+        backingMap.put(keys[i], entry);
+        blocksByHFile.add(keys[i]);
+        realCacheSize.add(lengths[i]);
+        restored++;
+      }
+      start = end;
+    }
+    if (dropped > 0) {
+      LOG.warn("Dropped " + dropped + " inconsistent blocks from segment " + segment);
+    }
+    return restored;
+  }
+
+  private static byte[] encodeSegment(int segment, List<Map.Entry<BlockCacheKey, BucketEntry>>
+      entries, ByteArrayOutputStream buffer) throws IOException {
+    entries.sort(BY_OFFSET);
+    Map<String, Integer> names = new HashMap<>();
+    List<String> nameList = new ArrayList<>();
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : entries) {
+      String name = entry.getKey().getHfileName();
+      if (!names.containsKey(name)) {
+        names.put(name, nameList.size());
+        nameList.add(name);
+      }
+    }
+    buffer.reset();
+    DataOutputStream out = new DataOutputStream(buffer);
+    out.writeInt(segment);
+    out.writeInt(nameList.size());
+    for (String name : nameList) {
+      out.writeUTF(name);
+    }
+    out.writeInt(entries.size());
+    for (Map.Entry<BlockCacheKey, BucketEntry> e : entries) {
+      BlockCacheKey key = e.getKey();
+      BucketEntry entry = e.getValue();
+      out.writeInt(names.get(key.getHfileName()));
+      out.writeLong(key.getOffset());
+      out.writeByte(key.getBlockType() == null ? NO_BLOCK_TYPE : key.getBlockType().ordinal());
+      out.writeBoolean(key.isPrimary());
+      out.writeLong(entry.offset());
+      out.writeInt(entry.getLength());
+      out.writeLong(entry.getAccessCounter());
+      out.writeByte(entry.deserialiserIndex);
+      out.writeByte(entry.getPriority().ordinal());
+      out.writeInt(entry.getChecksum());
+    }
+    out.flush();
+    return buffer.toByteArray();
+  }
+
+  private static byte[] encodeDirectory(int[] bucketSizes, UniqueIndexMap<Integer>
+      deserialiserMap, long capacity, String ioEngineClass, boolean clean, long[] positions,
+      int[] lengths, long[] checksums, ByteArrayOutputStream buffer) throws IOException {
+    buffer.reset();
+    DataOutputStream out = new DataOutputStream(buffer);
+    out.writeLong(capacity);
+    out.writeUTF(ioEngineClass);
+    out.writeInt(bucketSizes.length);
+    for (int size : bucketSizes) {
+      out.writeInt(size);
+    }
+    out.writeBoolean(clean);
+    // Enums are written by ordinal in the segments, keep the names to map them back
+    out.writeInt(BlockType.values().length);
+    for (BlockType type : BlockType.values()) {
+      out.writeUTF(type.name());
+    }
+    out.writeInt(BlockPriority.values().length);
+    for (BlockPriority priority : BlockPriority.values()) {
+      out.writeUTF(priority.name());
+    }
+    Map<Integer, Integer> deserialisers = new HashMap<>(deserialiserMap.mReverseMap);
+    out.writeInt(deserialisers.size());
+    for (Map.Entry<Integer, Integer> entry : deserialisers.entrySet()) {
+      out.writeInt(entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+    int segments = 0;
+    for (long position : positions) {
+      if (position >= 0) {
+        segments++;
+      }
+    }
+    out.writeInt(segments);
+    for (int i = 0; i < positions.length; i++) {
+      if (positions[i] >= 0) {
+        out.writeInt(i);
+        out.writeLong(positions[i]);
+        out.writeInt(lengths[i]);
+        out.writeLong(checksums[i]);
+      }
+    }
+    out.flush();
+    return buffer.toByteArray();
+  }
+
+  private static void write(FileChannel channel, long position, byte[] bytes) throws IOException {
+    ByteBuffer bb = ByteBuffer.wrap(bytes);
+    while (bb.hasRemaining()) {
+      position += channel.write(bb, position);
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length)
+      throws IOException {
+    if (position < 0 || length < 0 || position + length > channel.size()) {
+      throw new EOFException("Read of " + length + " bytes at " + position + " is past the end"
+          + " of the bucket cache persistence file");
+    }
+    ByteBuffer bb = ByteBuffer.allocate(length);
+    while (bb.hasRemaining()) {
+      if (channel.read(bb, position + bb.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    bb.flip();
+    return bb;
+  }
+
+  private static long checksum(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return crc.getValue();
+  }
+
+  /**
+   * CRC32 of the remaining bytes of the given buffers, in order, as written to the IOEngine.
+   * Does not move the position of the buffers.
+   */
+  static int checksum(ByteBuff first, ByteBuffer second) {
+    CRC32 crc = new CRC32();
+    update(crc, first);
+    if (second != null) {
+      crc.update(second.duplicate());
+    }
+    return (int) crc.getValue();
+  }
+
+  private static void update(CRC32 crc, ByteBuff buf) {
+    if (buf instanceof SingleByteBuff) {
+      ObjectIntPair<ByteBuffer> pair = new ObjectIntPair<>();
+      buf.asSubByteBuffer(buf.position(), buf.remaining(), pair);
+      ByteBuffer bb = pair.getFirst().duplicate();
+      bb.limit(pair.getSecond() + buf.remaining());
+      bb.position(pair.getSecond());
+      crc.update(bb);
+      return;
+    }
+    byte[] chunk = new byte[Math.min(buf.remaining(), 64 * 1024)];
+    for (int offset = buf.position(); offset < buf.limit(); offset += chunk.length) {
+      int n = Math.min(chunk.length, buf.limit() - offset);
+      buf.get(offset, chunk, 0, n);
+      crc.update(chunk, 0, n);
+    }
+  }
+
+  /**
+   * Wrap a deserializer so that it checks the content read from the IOEngine against the
+   * checksum recorded when the block was cached. On a mismatch the wrapped deserializer is not
+   * called and null is returned. The IOEngines hand over the buffer positioned after the data
+   * read, so the whole buffer is checked.
+   */
+  static CacheableDeserializer<Cacheable> verifying(
+      final CacheableDeserializer<Cacheable> deserializer, final int checksum) {
+    return new CacheableDeserializer<Cacheable>() {
+      private boolean matches(ByteBuff b) {
+        return checksum(b.duplicate().rewind(), null) == checksum;
+      }
+
+      @Override
+      public Cacheable deserialize(ByteBuff b) throws IOException {
+        return matches(b) ? deserializer.deserialize(b) : null;
+      }
+
+      @Override
+      public Cacheable deserialize(ByteBuff b, boolean reuse, MemoryType memType)
+          throws IOException {
+        return matches(b) ? deserializer.deserialize(b, reuse, memType) : null;
+      }
+
+      @Override
+      public int getDeserialiserIdentifier() {
+        return deserializer.getDeserialiserIdentifier();
+      }
+    };
+  }
+}
@@ -0,0 +1,408 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.io.hfile.CacheableDeserializer;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.hbase.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * IO engine that stores data to a file opened with O_DIRECT, bypassing the page cache. With a
+ * large cache on a fast device the page cache only duplicates the data the BucketCache already
+ * holds, costs memory and makes read latency depend on what the kernel decided to keep.
+ * <p>
+ * Direct IO needs the file offsets, the lengths and the memory addresses of the transfers to be
+ * aligned to the logical block size of the device. Every access is widened to the aligned range
+ * covering it and goes through a direct buffer taken from a pool, a read larger than the pooled
+ * buffers in several pieces, a write in a buffer of its size. A write that does not cover
+ * whole aligned pages reads the partial pages first; the pages at the ends of a write may be
+ * shared with the neighbouring blocks, so these read-modify-writes are serialized per page.
+ * Writes of adjacent blocks are coalesced by the writer threads, see {@link WriteBatch}.
+ * <p>
+ * O_DIRECT needs JDK 10 or later and a file system supporting it. Without them the engine fails
+ * to start, unless "hbase.bucketcache.directfile.allow.buffered" is set, in which case it falls
+ * back to buffered IO, with the same alignment, and the page cache holds the data again.
+ */
+@InterfaceAudience.Private
+public class DirectFileIOEngine implements IOEngine {
+  private static final Logger LOG = LoggerFactory.getLogger(DirectFileIOEngine.class);
+
+  public static final String ALIGNMENT_CONFIG_NAME = "hbase.bucketcache.directfile.alignment";
+  public static final int DEFAULT_ALIGNMENT = 4096;
+  public static final String BUFFER_SIZE_CONFIG_NAME = "hbase.bucketcache.directfile.buffer.size";
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024 + 2 * DEFAULT_ALIGNMENT;
+  public static final String MAX_POOLED_BUFFERS_CONFIG_NAME =
+      "hbase.bucketcache.directfile.buffer.pool.max";
+  public static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+  public static final String ALLOW_BUFFERED_CONFIG_NAME =
+      "hbase.bucketcache.directfile.allow.buffered";
+  public static final boolean DEFAULT_ALLOW_BUFFERED = false;
+
+  private static final int LOCK_STRIPES = 64;
+  /** ByteBuffer#alignedSlice, there whenever O_DIRECT is as both came after JDK 8 */
+  private static final Method ALIGNED_SLICE = findAlignedSlice();
+
+  private final String filePath;
+  private final long capacity;
+  private final int alignment;
+  private final int bufferSize;
+  private final int maxPooledBuffers;
+  private final boolean direct;
+  private final RandomAccessFile raf;
+  private final FileChannel fileChannel;
+
+  private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooledBuffers = new AtomicInteger();
+  private final LongAdder allocatedBuffers = new LongAdder();
+  private final ReentrantLock[] pageLocks = new ReentrantLock[LOCK_STRIPES];
+
+  public DirectFileIOEngine(String filePath, long capacity, boolean maintainPersistence,
+      int alignment, int bufferSize, int maxPooledBuffers, boolean allowBuffered)
+      throws IOException {
+    Preconditions.checkArgument(alignment > 0 && Integer.bitCount(alignment) == 1,
+      "Alignment must be a power of two: " + alignment);
+    Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive: " + bufferSize);
+    this.filePath = filePath;
+    this.capacity = capacity;
+    this.alignment = alignment;
+    this.bufferSize = (int) alignUp(bufferSize);
+    this.maxPooledBuffers = maxPooledBuffers;
+    for (int i = 0; i < pageLocks.length; i++) {
+      pageLocks[i] = new ReentrantLock();
+    }
+    File file = new File(filePath);
+    if (!maintainPersistence && file.exists()) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("File " + filePath + " already exists. Deleting!!");
+      }
+      file.delete();
+    }
+    // Sized through a RandomAccessFile as the channel may only accept aligned writes. Reads of the
+    // last page must not go past the end of the file.
+    this.raf = new RandomAccessFile(filePath, "rw");
+    try {
+      raf.setLength(alignUp(capacity));
+      FileChannel channel = openDirect(filePath);
+      this.direct = channel != null;
+      if (!direct) {
+        if (!allowBuffered) {
+          throw new IOException("Can not open " + filePath + " with O_DIRECT, set "
+              + ALLOW_BUFFERED_CONFIG_NAME + " to true to cache through the page cache instead");
+        }
+        LOG.warn("O_DIRECT is not available, the bucket cache in " + filePath + " is accessed"
+            + " through the page cache, which holds a second copy of the cached blocks");
+      }
+      this.fileChannel = direct ? channel : raf.getChannel();
+    } catch (IOException e) {
+      LOG.error("Failed allocating cache on " + filePath, e);
+      raf.close();
+      throw e;
+    }
+    LOG.info("Allocating cache " + StringUtils.byteDesc(capacity) + ", on the path:" + filePath
+        + ", direct=" + direct + ", alignment=" + alignment);
+  }
+
+  private static Method findAlignedSlice() {
+    try {
+      return ByteBuffer.class.getMethod("alignedSlice", int.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a channel with O_DIRECT on the file, or null if the JVM or the file system does not
+   *         support it
+   */
+  private static FileChannel openDirect(String filePath) {
+    OpenOption directOption = null;
+    try {
+      // Only in JDK 10 and later
+      Class<?> optionClass = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+      directOption = (OpenOption) optionClass.getField("DIRECT").get(null);
+    } catch (ReflectiveOperationException e) {
+      // Not supported, see below
+    }
+    if (directOption == null || ALIGNED_SLICE == null) {
+      LOG.error("O_DIRECT is not supported by this JVM, it needs JDK 10 or later");
+      return null;
+    }
+    try {
+      return FileChannel.open(Paths.get(filePath), StandardOpenOption.READ,
+        StandardOpenOption.WRITE, directOption);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.error("Could not open " + filePath + " with O_DIRECT", e);
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ioengine=" + this.getClass().getSimpleName() + ", path=" + filePath + ", direct="
+        + direct + ", capacity=" + String.format("%,d", this.capacity);
+  }
+
+  @Override
+  public boolean isPersistent() {
+    return true;
+  }
+
+  @Override
+  public boolean prefersSequentialWrites() {
+    return true;
+  }
+
+  /**
+   * @return true if the file is accessed with O_DIRECT, false if through the page cache
+   */
+  public boolean isDirect() {
+    return direct;
+  }
+
+  @Override
+  public Cacheable read(long offset, int length, CacheableDeserializer<Cacheable> deserializer)
+      throws IOException {
+    Preconditions.checkArgument(length >= 0, "Length of read can not be less than 0.");
+    ByteBuffer dstBuffer = ByteBuffer.allocate(length);
+    if (length != 0) {
+      long end = offset + length;
+      long alignedEnd = alignUp(end);
+      // a read larger than the pooled buffers goes in pieces rather than through a new buffer
+      ByteBuffer buffer = acquireBuffer((int) Math.min(alignedEnd - alignDown(offset), bufferSize));
+      try {
+        while (dstBuffer.hasRemaining()) {
+          long position = offset + dstBuffer.position();
+          long start = alignDown(position);
+          int span = (int) Math.min(alignedEnd - start, bufferSize);
+          buffer.clear();
+          buffer.limit(span);
+          readFully(buffer, start);
+          buffer.position((int) (position - start));
+          buffer.limit((int) Math.min(span, end - start));
+          dstBuffer.put(buffer);
+        }
+        dstBuffer.flip();
+      } finally {
+        releaseBuffer(buffer);
+      }
+    }
+    // The data is copied out of the pooled buffer, there is no shared memory to protect
+    return deserializer.deserialize(new SingleByteBuff(dstBuffer), true, MemoryType.EXCLUSIVE);
+  }
+
+  @Override
+  public void write(ByteBuffer srcBuffer, long offset) throws IOException {
+    if (!srcBuffer.hasRemaining()) {
+      return;
+    }
+    ByteBuffer src = srcBuffer.duplicate();
+    write(offset, src.remaining(), buffer -> buffer.put(src));
+    srcBuffer.position(srcBuffer.limit());
+  }
+
+  @Override
+  public void write(ByteBuff srcBuffer, long offset) throws IOException {
+    if (!srcBuffer.hasRemaining()) {
+      return;
+    }
+    int length = srcBuffer.remaining();
+    write(offset, length, buffer -> srcBuffer.get(buffer, srcBuffer.position(), length));
+  }
+
+  private void write(long offset, int length, DataCopier copier) throws IOException {
+    long end = offset + length;
+    long start = alignDown(offset);
+    long alignedEnd = alignUp(end);
+    int span = (int) (alignedEnd - start);
+    ByteBuffer buffer = acquireBuffer(span);
+    // The first and last pages are the only ones a concurrent write of another block can touch.
+    // The stripes are always taken in the same order so that two writes can't deadlock.
+    int firstStripe = (int) ((start / alignment) % LOCK_STRIPES);
+    int lastStripe = (int) (((alignedEnd - 1) / alignment) % LOCK_STRIPES);
+    ReentrantLock first = pageLocks[Math.min(firstStripe, lastStripe)];
+    ReentrantLock last = pageLocks[Math.max(firstStripe, lastStripe)];
+    boolean partial = start != offset || alignedEnd != end;
+    if (partial) {
+      first.lock();
+      last.lock();
+    }
+    try {
+      if (start != offset) {
+        readPage(buffer, 0, start);
+      }
+      if (alignedEnd != end && (alignedEnd - alignment > start || start == offset)) {
+        readPage(buffer, span - alignment, alignedEnd - alignment);
+      }
+      buffer.clear();
+      buffer.position((int) (offset - start));
+      copier.copyTo(buffer);
+      buffer.clear();
+      buffer.limit(span);
+      writeFully(buffer, start);
+    } finally {
+      if (partial) {
+        last.unlock();
+        first.unlock();
+      }
+      releaseBuffer(buffer);
+    }
+  }
+
+  private void readPage(ByteBuffer buffer, int position, long fileOffset) throws IOException {
+    buffer.clear();
+    buffer.position(position);
+    buffer.limit(position + alignment);
+    readFully(buffer, fileOffset);
+  }
+
+  private void readFully(ByteBuffer buffer, long fileOffset) throws IOException {
+    long position = fileOffset;
+    while (buffer.hasRemaining()) {
+      int read = fileChannel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of " + filePath + " at " + position
+            + " where capacity=" + capacity);
+      }
+      position += read;
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer, long fileOffset) throws IOException {
+    if (fileOffset + buffer.remaining() > alignUp(capacity)) {
+      throw new IOException("Write of " + buffer.remaining() + " bytes at " + fileOffset
+          + " exceeds the engine's capacity " + capacity);
+    }
+    long position = fileOffset;
+    while (buffer.hasRemaining()) {
+      position += fileChannel.write(buffer, position);
+    }
+  }
+
+  private long alignDown(long offset) {
+    return offset & -alignment;
+  }
+
+  private long alignUp(long offset) {
+    return (offset + alignment - 1) & -alignment;
+  }
+
+  /**
+   * @return a buffer of at least the given length, aligned in memory, with its limit set to the
+   *         length. Buffers of the pool size come from the pool, larger ones are allocated.
+   */
+  private ByteBuffer acquireBuffer(int length) {
+    ByteBuffer buffer = null;
+    if (length <= bufferSize) {
+      buffer = bufferPool.poll();
+      if (buffer != null) {
+        pooledBuffers.decrementAndGet();
+      }
+    }
+    if (buffer == null) {
+      buffer = allocateAligned(Math.max(length, bufferSize));
+    }
+    buffer.clear();
+    buffer.limit(length);
+    return buffer;
+  }
+
+  private void releaseBuffer(ByteBuffer buffer) {
+    if (buffer.capacity() != bufferSize) {
+      return;
+    }
+    if (pooledBuffers.incrementAndGet() <= maxPooledBuffers) {
+      bufferPool.offer(buffer);
+    } else {
+      pooledBuffers.decrementAndGet();
+    }
+  }
+
+  private ByteBuffer allocateAligned(int length) {
+    allocatedBuffers.increment();
+    if (!direct) {
+      return ByteBuffer.allocateDirect(length);
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(length + alignment);
+    try {
+      ByteBuffer aligned = (ByteBuffer) ALIGNED_SLICE.invoke(buffer, alignment);
+      aligned.limit(length);
+      return aligned.slice();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Can not align buffers for direct IO", e);
+    }
+  }
+
+  @VisibleForTesting
+  int getPooledBufferCount() {
+    return bufferPool.size();
+  }
+
+  @VisibleForTesting
+  long getAllocatedBufferCount() {
+    return allocatedBuffers.sum();
+  }
+
+  @Override
+  public void sync() throws IOException {
+    try {
+      fileChannel.force(true);
+    } catch (IOException ie) {
+      LOG.warn("Failed syncing data to " + this.filePath);
+      throw ie;
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    try {
+      fileChannel.close();
+      raf.close();
+    } catch (IOException ex) {
+      LOG.error("Failed closing " + filePath + " when shudown the IOEngine", ex);
+    }
+    bufferPool.clear();
+  }
+
+  @FunctionalInterface
+  private interface DataCopier {
+    void copyTo(ByteBuffer buffer);
+  }
+}
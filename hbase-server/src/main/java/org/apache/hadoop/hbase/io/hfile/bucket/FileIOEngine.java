@@ -115,6 +115,11 @@ public class FileIOEngine implements IOEngine {
     return true;
   }
 
+  @Override
+  public boolean prefersSequentialWrites() {
+    return true;
+  }
+
   /**
    * Transfers data from file to the given byte buffer
    * @param offset The offset in the file where the first byte to be read
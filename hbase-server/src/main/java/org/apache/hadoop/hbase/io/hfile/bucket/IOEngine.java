@@ -37,6 +37,14 @@ public interface IOEngine {
    */
   boolean isPersistent();
 
+  /**
+   * @return true if writing adjacent blocks with a single call is cheaper than writing them one
+   *         by one, in which case the writer threads coalesce the blocks they drain
+   */
+  default boolean prefersSequentialWrites() {
+    return false;
+  }
+
   /**
    * Transfers data from IOEngine to a Cacheable object.
    * @param length How many bytes to be read from the offset
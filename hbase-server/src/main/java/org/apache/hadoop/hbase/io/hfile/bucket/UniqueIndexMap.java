@@ -48,6 +48,14 @@ public final class UniqueIndexMap<T> implements Serializable {
     return nexti;
   }
 
+  // Re-establish a mapping read back from a persisted cache. Indices handed out afterwards are
+  // larger than any restored one.
+  void restore(int index, T parameter) {
+    mForwardMap.put(parameter, index);
+    mReverseMap.put(index, parameter);
+    mIndex.accumulateAndGet(index, Math::max);
+  }
+
   T unmap(int leni) {
     Integer len = Integer.valueOf(leni);
     assert mReverseMap.containsKey(len);
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Stages the blocks drained by a {@link BucketCache} writer thread and writes them to the
+ * {@link IOEngine} in offset order. Blocks that are adjacent in the cache are copied into one
+ * staging buffer so that they go out as a single sequential write, rather than one or two writes
+ * per block. Allocations within a bucket are contiguous and bucket offsets are multiples of 256,
+ * so the coalesced writes are large and aligned.
+ * <p>
+ * Only used for the IOEngines that {@link IOEngine#prefersSequentialWrites()}. Not thread safe,
+ * each writer thread has its own batch.
+ */
+@InterfaceAudience.Private
+final class WriteBatch {
+
+  private final IOEngine ioEngine;
+  private final ByteBuffer staging;
+  private final List<PendingWrite> pending = new ArrayList<>();
+  private long writes = 0;
+
+  /**
+   * @param ioEngine the engine to write to
+   * @param stagingSize the largest write to issue; larger blocks are written on their own
+   */
+  WriteBatch(IOEngine ioEngine, int stagingSize) {
+    this.ioEngine = ioEngine;
+    this.staging = ByteBuffer.allocateDirect(stagingSize);
+  }
+
+  /**
+   * Adds a block to write at the given offset, made of the data followed by an optional trailer.
+   * The buffers must not change until the batch is flushed.
+   */
+  void add(long offset, ByteBuff data, ByteBuffer trailer) {
+    pending.add(new PendingWrite(offset, data, trailer));
+  }
+
+  boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  /**
+   * Writes all the blocks added since the last flush. The batch is empty afterwards, even when
+   * the write failed, in which case the caller must free all the blocks it added.
+   */
+  void flush() throws IOException {
+    try {
+      pending.sort(Comparator.comparingLong(w -> w.offset));
+      long runOffset = -1;
+      long runEnd = -1;
+      for (PendingWrite write : pending) {
+        int length = write.length();
+        if (staging.position() > 0 && (write.offset != runEnd || staging.remaining() < length)) {
+          writeStaged(runOffset);
+        }
+        if (length > staging.capacity()) {
+          write.writeTo(ioEngine);
+          writes++;
+          continue;
+        }
+        if (staging.position() == 0) {
+          runOffset = write.offset;
+        }
+        write.copyTo(staging);
+        runEnd = write.offset + length;
+      }
+      writeStaged(runOffset);
+    } finally {
+      pending.clear();
+      staging.clear();
+    }
+  }
+
+  private void writeStaged(long offset) throws IOException {
+    if (staging.position() == 0) {
+      return;
+    }
+    staging.flip();
+    ioEngine.write(staging, offset);
+    writes++;
+    staging.clear();
+  }
+
+  /**
+   * @return the number of writes issued to the IOEngine so far
+   */
+  @VisibleForTesting
+  long getWrites() {
+    return writes;
+  }
+
+  private static final class PendingWrite {
+    private final long offset;
+    private final ByteBuff data;
+    private final ByteBuffer trailer;
+
+    PendingWrite(long offset, ByteBuff data, ByteBuffer trailer) {
+      this.offset = offset;
+      this.data = data;
+      this.trailer = trailer;
+    }
+
+    int length() {
+      return data.remaining() + (trailer == null ? 0 : trailer.remaining());
+    }
+
+    void copyTo(ByteBuffer out) {
+      data.get(out, data.position(), data.remaining());
+      if (trailer != null) {
+        out.put(trailer.duplicate());
+      }
+    }
+
+    void writeTo(IOEngine ioEngine) throws IOException {
+      ioEngine.write(data, offset);
+      if (trailer != null) {
+        ioEngine.write(trailer, offset + data.remaining());
+      }
+    }
+  }
+}
@@ -59,6 +59,7 @@ import org.apache.hadoop.hbase.ClusterId;
 import org.apache.hadoop.hbase.ClusterMetrics;
 import org.apache.hadoop.hbase.ClusterMetrics.Option;
 import org.apache.hadoop.hbase.ClusterMetricsBuilder;
+import org.apache.hadoop.hbase.CompoundConfiguration;
 import org.apache.hadoop.hbase.CoordinatedStateException;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HBaseIOException;
@@ -172,6 +173,7 @@ import org.apache.hadoop.hbase.security.AccessDeniedException;
 import org.apache.hadoop.hbase.security.UserProvider;
 import org.apache.hadoop.hbase.trace.TraceUtil;
 import org.apache.hadoop.hbase.util.Addressing;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CompressionTest;
 import org.apache.hadoop.hbase.util.EncryptionTest;
@@ -1887,6 +1889,8 @@ public class HMaster extends HRegionServer implements MasterServices {
 
       // check replication scope
       checkReplicationScope(hcd);
+      // check bloom filter type
+      checkBloomFilterType(htd, hcd);
 
       // check data replication factor, it can be 0(default value) when user has not explicitly
       // set the value, in this case we use default replication factor set in the file system.
@@ -1912,6 +1916,23 @@ public class HMaster extends HRegionServer implements MasterServices {
     }
   }
 
+  private void checkBloomFilterType(TableDescriptor htd, ColumnFamilyDescriptor cfd)
+      throws IOException {
+    // row prefix bloom filters need their param in the configuration the stores are opened with,
+    // layered the way HStore does it
+    Configuration conf = new CompoundConfiguration().add(this.conf)
+        .addBytesMap(htd.getValues()).addStringMap(cfd.getConfiguration())
+        .addBytesMap(cfd.getValues());
+    try {
+      BloomFilterUtil.getBloomFilterParam(cfd.getBloomFilterType(), conf);
+    } catch (IllegalArgumentException e) {
+      String message = "Bloom filter for column family " + cfd.getNameAsString()
+          + " is misconfigured: " + e.getMessage();
+      LOG.error(message);
+      throw new DoNotRetryIOException(message, e);
+    }
+  }
+
   private void checkCompactionPolicy(Configuration conf, TableDescriptor htd)
       throws IOException {
     // FIFO compaction has some requirements
@@ -103,6 +103,15 @@ public class TaskMonitor {
     return proxy;
   }
 
+  /**
+   * @return a task not listed by the monitor, for a part of a listed task run by another thread
+   */
+  public MonitoredTask createUnlistedStatus(String description) {
+    MonitoredTask stat = new MonitoredTaskImpl();
+    stat.setDescription(description);
+    return stat;
+  }
+
   public synchronized MonitoredRPCHandler createRPCStatus(String description) {
     MonitoredRPCHandler stat = new MonitoredRPCHandlerImpl();
     stat.setDescription(description);
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScanAggregation;
+import org.apache.hadoop.hbase.client.ScanAggregation.Aggregate;
+import org.apache.hadoop.hbase.regionserver.HRegion.RegionScannerImpl;
+import org.apache.hadoop.hbase.regionserver.ScannerContext.LimitScope;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * AggregatingRegionScannerImpl extends from RegionScannerImpl, and is used for scans with a
+ * {@link ScanAggregation}. The rows read are folded into the aggregate of their group and never
+ * returned. Every call returns the partial aggregates of the rows read since the previous one,
+ * as one result of the last row read, holding a cell per group of the group key as qualifier and
+ * of the serialized aggregate as value. The rows are read until a limit of the scanner context
+ * is reached, so an RPC ships a partial aggregate for the rows it scanned, and heartbeats still
+ * go out.
+ * <p>
+ * The limits are only checked between rows. As the result of a partial aggregate is of its last
+ * row, the scanner of the client reopened after it restarts at the first row not aggregated.
+ */
+@InterfaceAudience.Private
+class AggregatingRegionScannerImpl extends RegionScannerImpl {
+
+  private final ScanAggregation aggregation;
+  private final Map<byte[], Aggregate> aggregates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  private final List<Cell> row = new ArrayList<>();
+
+  // a cell of the last row aggregated, null if none since the last partial aggregates. The
+  // blocks of the cells read are only given back once the results of the RPC are shipped.
+  private Cell lastRow;
+
+  // the columns of the previous row grouped by column and their aggregates, in the order of the
+  // row. The rows mostly have the same columns, which are matched without building their key.
+  private List<Cell> columns = new ArrayList<>();
+  private List<Aggregate> columnAggregates = new ArrayList<>();
+  private List<Cell> rowColumns = new ArrayList<>();
+  private List<Aggregate> rowColumnAggregates = new ArrayList<>();
+
+  AggregatingRegionScannerImpl(Scan scan, List<KeyValueScanner> additionalScanners,
+      HRegion region, ScanAggregation aggregation, long nonceGroup, long nonce)
+      throws IOException {
+    region.super(scan, additionalScanners, region, nonceGroup, nonce);
+    this.aggregation = aggregation;
+  }
+
+  /**
+   * @throws DoNotRetryIOException if the rows of the scan cannot be aggregated
+   */
+  static void checkAggregation(Scan scan) throws DoNotRetryIOException {
+    if (scan.isReversed() || scan.isRaw() || scan.getBatch() > 0) {
+      throw new DoNotRetryIOException(
+          "Aggregation of reversed, raw or batched scans is not supported: " + scan);
+    }
+  }
+
+  @Override
+  public boolean nextRaw(List<Cell> outResults, ScannerContext scannerContext)
+      throws IOException {
+    // a partial aggregate covers whole rows only
+    scannerContext.setSizeLimitScope(LimitScope.BETWEEN_ROWS);
+    scannerContext.setTimeLimitScope(LimitScope.BETWEEN_ROWS);
+    boolean moreValues;
+    do {
+      row.clear();
+      moreValues = super.nextRaw(row, scannerContext);
+      if (!row.isEmpty()) {
+        aggregate(row);
+      }
+    } while (moreValues && !scannerContext.checkAnyLimitReached(LimitScope.BETWEEN_ROWS));
+    row.clear();
+    // the aggregates are cleared, and the cells may not outlive the RPC
+    columns.clear();
+    columnAggregates.clear();
+    if (lastRow != null) {
+      byte[] rowKey = CellUtil.cloneRow(lastRow);
+      for (Map.Entry<byte[], Aggregate> entry : aggregates.entrySet()) {
+        outResults.add(new KeyValue(rowKey, HConstants.EMPTY_BYTE_ARRAY, entry.getKey(),
+            HConstants.LATEST_TIMESTAMP, entry.getValue().toByteArray()));
+      }
+      aggregates.clear();
+      lastRow = null;
+    }
+    return moreValues;
+  }
+
+  private void aggregate(List<Cell> cells) {
+    Cell first = cells.get(0);
+    switch (aggregation.getGroupBy()) {
+      case COLUMN:
+        aggregateColumns(cells);
+        break;
+      case ROW_PREFIX:
+        int length = Math.min(aggregation.getPrefixLength(), first.getRowLength());
+        aggregateRow(getAggregate(Arrays.copyOfRange(first.getRowArray(), first.getRowOffset(),
+          first.getRowOffset() + length)), cells);
+        break;
+      default:
+        aggregateRow(getAggregate(HConstants.EMPTY_BYTE_ARRAY), cells);
+        break;
+    }
+    lastRow = first;
+  }
+
+  private void aggregateColumns(List<Cell> cells) {
+    int previous = 0;
+    Cell column = null;
+    Aggregate aggregate = null;
+    for (Cell cell : cells) {
+      if (column == null || !CellUtil.matchingColumn(column, cell)) {
+        // the columns of a row are sorted, walk the ones of the previous row along
+        while (previous < columns.size()
+            && CellComparatorImpl.COMPARATOR.compareColumns(columns.get(previous), cell) < 0) {
+          previous++;
+        }
+        if (previous < columns.size() && CellUtil.matchingColumn(columns.get(previous), cell)) {
+          aggregate = columnAggregates.get(previous++);
+        } else {
+          aggregate = getAggregate(CellUtil.makeColumn(CellUtil.cloneFamily(cell),
+            CellUtil.cloneQualifier(cell)));
+        }
+        column = cell;
+        rowColumns.add(cell);
+        rowColumnAggregates.add(aggregate);
+      }
+      aggregate.increment();
+      aggregate.add(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+    List<Cell> swappedColumns = columns;
+    columns = rowColumns;
+    rowColumns = swappedColumns;
+    rowColumns.clear();
+    List<Aggregate> swappedAggregates = columnAggregates;
+    columnAggregates = rowColumnAggregates;
+    rowColumnAggregates = swappedAggregates;
+    rowColumnAggregates.clear();
+  }
+
+  private static void aggregateRow(Aggregate aggregate, List<Cell> cells) {
+    aggregate.increment();
+    for (Cell cell : cells) {
+      aggregate.add(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+  }
+
+  private Aggregate getAggregate(byte[] group) {
+    Aggregate aggregate = aggregates.get(group);
+    if (aggregate == null) {
+      aggregate = new Aggregate();
+      aggregates.put(group, aggregate);
+    }
+    return aggregate;
+  }
+}
@@ -0,0 +1,849 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.ExtendedCell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.UnsafeAccess;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * CellChunkSkipListMap is the mutable counterpart of {@link CellChunkMap}: a concurrent skip list
+ * of Cells whose nodes are serialized on Chunks, so the index of the active segment can be
+ * allocated off-heap together with the Cell data it points to.
+ * <p>
+ * Every node is written on an index chunk taken from the MemStoreLAB of the segment, and refers to
+ * the Cell data the same way a CellChunkMap entry does. A node is laid out as:
+ * <pre>
+ * data chunk ID (int) | offset (int) | length (int) | level (int) | seqID (long) |
+ * state (long) | one next pointer (long) per level
+ * </pre>
+ * A pointer holds the position of the index chunk in this map (plus one, so zero means null) in
+ * its high integer and the offset inside that chunk in its low integer. New nodes are linked with
+ * compare-and-swap, bottom level first, so readers and writers never wait for each other.
+ * <p>
+ * Nodes are never unlinked. A removed node only has its state marked as deleted, and its space is
+ * released with the chunks when the segment is closed, as it is for the Cell data. Putting a key
+ * which is already present writes a new (chunk ID, offset, length, seqID) record and points the
+ * state of the node at it.
+ * <p>
+ * Only Cells allocated on MSLAB chunks can be indexed, big Cells included (see
+ * {@link MemStoreLAB#forceCopyOfBigCellInto(Cell)}). The atomic accesses to the chunks rely on
+ * {@link UnsafeAccess}, so the map must not be used when Unsafe is not available.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListMap implements NavigableMap<Cell, Cell> {
+
+  /** Highest level of a node, each level holds a quarter of the nodes of the level below */
+  static final int MAX_LEVEL = 16;
+
+  // node and record layout
+  private static final int DATA_CHUNK_ID_OFFSET = 0;
+  private static final int DATA_OFFSET_OFFSET = Bytes.SIZEOF_INT;
+  private static final int LENGTH_OFFSET = 2 * Bytes.SIZEOF_INT;
+  private static final int LEVEL_OFFSET = 3 * Bytes.SIZEOF_INT;
+  private static final int SEQ_ID_OFFSET = 4 * Bytes.SIZEOF_INT;
+  private static final int STATE_OFFSET = SEQ_ID_OFFSET + Bytes.SIZEOF_LONG;
+  private static final int NEXT_OFFSET = STATE_OFFSET + Bytes.SIZEOF_LONG;
+  // a replacement record is the head of a node, up to the seqID
+  static final int RECORD_SIZE = STATE_OFFSET;
+
+  private static final long NULL = 0L;
+  // state of a removed node, any other non null state points to the record of the current Cell
+  private static final long DELETED = -1L;
+
+  private final SkipList list;
+  // bounds and order of this view, the ones of the whole map are all null and ascending
+  private final Cell lo;
+  private final boolean loInclusive;
+  private final Cell hi;
+  private final boolean hiInclusive;
+  private final boolean descending;
+
+  public CellChunkSkipListMap(Comparator<? super Cell> comparator, MemStoreLAB memStoreLAB) {
+    this(new SkipList(comparator, memStoreLAB), null, false, null, false, false);
+  }
+
+  private CellChunkSkipListMap(SkipList list, Cell lo, boolean loInclusive, Cell hi,
+      boolean hiInclusive, boolean descending) {
+    this.list = list;
+    this.lo = lo;
+    this.loInclusive = loInclusive;
+    this.hi = hi;
+    this.hiInclusive = hiInclusive;
+    this.descending = descending;
+  }
+
+  @VisibleForTesting
+  int getNumberOfIndexChunks() {
+    return list.numChunks;
+  }
+
+  /* ---------------------------- bounds of the view ---------------------------- */
+
+  private boolean isBounded() {
+    return lo != null || hi != null;
+  }
+
+  private boolean tooLow(Cell key) {
+    if (lo == null) {
+      return false;
+    }
+    int c = list.comparator.compare(key, lo);
+    return c < 0 || (c == 0 && !loInclusive);
+  }
+
+  private boolean tooHigh(Cell key) {
+    if (hi == null) {
+      return false;
+    }
+    int c = list.comparator.compare(key, hi);
+    return c > 0 || (c == 0 && !hiInclusive);
+  }
+
+  private boolean inBounds(Cell key) {
+    return !tooLow(key) && !tooHigh(key);
+  }
+
+  // the lowest and highest cells of the view, and the neighbours of a key inside the view,
+  // in the order of the comparator whether the view is descending or not
+  private Cell absLowest() {
+    Cell c = list.ceiling(lo, lo == null || loInclusive);
+    return (c == null || tooHigh(c)) ? null : c;
+  }
+
+  private Cell absHighest() {
+    Cell c = list.floor(hi, hi == null || hiInclusive);
+    return (c == null || tooLow(c)) ? null : c;
+  }
+
+  private Cell absCeiling(Cell key, boolean inclusive) {
+    if (tooLow(key)) {
+      return absLowest();
+    }
+    Cell c = list.ceiling(key, inclusive);
+    return (c == null || tooHigh(c)) ? null : c;
+  }
+
+  private Cell absFloor(Cell key, boolean inclusive) {
+    if (tooHigh(key)) {
+      return absHighest();
+    }
+    Cell c = list.floor(key, inclusive);
+    return (c == null || tooLow(c)) ? null : c;
+  }
+
+  private CellChunkSkipListMap newView(Cell fromKey, boolean fromInclusive, Cell toKey,
+      boolean toInclusive, boolean descending) {
+    // a view of a view keeps the tighter bounds
+    if (lo != null && (fromKey == null || tooLow(fromKey))) {
+      fromKey = lo;
+      fromInclusive = loInclusive;
+    }
+    if (hi != null && (toKey == null || tooHigh(toKey))) {
+      toKey = hi;
+      toInclusive = hiInclusive;
+    }
+    return new CellChunkSkipListMap(list, fromKey, fromInclusive, toKey, toInclusive, descending);
+  }
+
+  private static Entry<Cell, Cell> entry(Cell cell) {
+    return cell == null ? null : new AbstractMap.SimpleImmutableEntry<>(cell, cell);
+  }
+
+  private static Cell key(Cell cell) {
+    if (cell == null) {
+      throw new NoSuchElementException();
+    }
+    return cell;
+  }
+
+  /* ---------------------------- NavigableMap ---------------------------- */
+
+  @Override
+  public Comparator<? super Cell> comparator() {
+    return descending ? Collections.reverseOrder(list.comparator) : list.comparator;
+  }
+
+  @Override
+  public int size() {
+    if (!isBounded()) {
+      return list.size.get();
+    }
+    int count = 0;
+    for (Iterator<Cell> it = values().iterator(); it.hasNext(); it.next()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return isBounded() ? absLowest() == null : list.size.get() == 0;
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> subMap(Cell fromKey, boolean fromInclusive, Cell toKey,
+      boolean toInclusive) {
+    if (descending) {
+      return newView(toKey, toInclusive, fromKey, fromInclusive, true);
+    }
+    return newView(fromKey, fromInclusive, toKey, toInclusive, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> headMap(Cell toKey, boolean inclusive) {
+    if (descending) {
+      return newView(toKey, inclusive, null, false, true);
+    }
+    return newView(null, false, toKey, inclusive, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> tailMap(Cell fromKey, boolean inclusive) {
+    if (descending) {
+      return newView(null, false, fromKey, inclusive, true);
+    }
+    return newView(fromKey, inclusive, null, false, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> descendingMap() {
+    return new CellChunkSkipListMap(list, lo, loInclusive, hi, hiInclusive, !descending);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> subMap(Cell fromKey, Cell toKey) {
+    return subMap(fromKey, true, toKey, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> headMap(Cell toKey) {
+    return headMap(toKey, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> tailMap(Cell fromKey) {
+    return tailMap(fromKey, true);
+  }
+
+  @Override
+  public Cell firstKey() {
+    return key(descending ? absHighest() : absLowest());
+  }
+
+  @Override
+  public Cell lastKey() {
+    return key(descending ? absLowest() : absHighest());
+  }
+
+  @Override
+  public Cell lowerKey(Cell k) {
+    return descending ? absCeiling(k, false) : absFloor(k, false);
+  }
+
+  @Override
+  public Cell floorKey(Cell k) {
+    return descending ? absCeiling(k, true) : absFloor(k, true);
+  }
+
+  @Override
+  public Cell ceilingKey(Cell k) {
+    return descending ? absFloor(k, true) : absCeiling(k, true);
+  }
+
+  @Override
+  public Cell higherKey(Cell k) {
+    return descending ? absFloor(k, false) : absCeiling(k, false);
+  }
+
+  @Override
+  public Entry<Cell, Cell> lowerEntry(Cell k) {
+    return entry(lowerKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> floorEntry(Cell k) {
+    return entry(floorKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> ceilingEntry(Cell k) {
+    return entry(ceilingKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> higherEntry(Cell k) {
+    return entry(higherKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> firstEntry() {
+    return entry(descending ? absHighest() : absLowest());
+  }
+
+  @Override
+  public Entry<Cell, Cell> lastEntry() {
+    return entry(descending ? absLowest() : absHighest());
+  }
+
+  @Override
+  public Entry<Cell, Cell> pollFirstEntry() {
+    return pollEntry(true);
+  }
+
+  @Override
+  public Entry<Cell, Cell> pollLastEntry() {
+    return pollEntry(false);
+  }
+
+  private Entry<Cell, Cell> pollEntry(boolean first) {
+    while (true) {
+      Entry<Cell, Cell> e = first ? firstEntry() : lastEntry();
+      if (e == null || list.remove(e.getKey()) != null) {
+        return e;
+      }
+      // raced with another remove, try the new first/last one
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object o) {
+    return get(o) != null;
+  }
+
+  @Override
+  public boolean containsValue(Object o) { // use containsKey(Object o) instead
+    throw new UnsupportedOperationException("Use containsKey(Object o) instead");
+  }
+
+  @Override
+  public Cell get(Object o) {
+    Cell key = (Cell) o;
+    return inBounds(key) ? list.get(key) : null;
+  }
+
+  /**
+   * The key and the value must be the same Cell, as in {@link CellSet}.
+   */
+  @Override
+  public Cell put(Cell k, Cell v) {
+    if (k != v) {
+      throw new IllegalArgumentException("CellChunkSkipListMap maps a Cell to itself only");
+    }
+    if (!inBounds(k)) {
+      throw new IllegalArgumentException("key out of range");
+    }
+    return list.put(k);
+  }
+
+  @Override
+  public Cell remove(Object o) {
+    Cell key = (Cell) o;
+    return inBounds(key) ? list.remove(key) : null;
+  }
+
+  @Override
+  public void putAll(Map<? extends Cell, ? extends Cell> map) {
+    for (Entry<? extends Cell, ? extends Cell> e : map.entrySet()) {
+      put(e.getKey(), e.getValue());
+    }
+  }
+
+  @Override
+  public void clear() {
+    for (Iterator<Cell> it = values().iterator(); it.hasNext();) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  // -------------------------------- Key's Set --------------------------------
+  @Override
+  public NavigableSet<Cell> navigableKeySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NavigableSet<Cell> descendingKeySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NavigableSet<Cell> keySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Collection<Cell> values() {
+    return new AbstractCollection<Cell>() {
+      @Override
+      public Iterator<Cell> iterator() {
+        return descending ? new DescendingIterator() : new AscendingIterator();
+      }
+
+      @Override
+      public int size() {
+        return CellChunkSkipListMap.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Set<Entry<Cell, Cell>> entrySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  // -------------------------------- Iterators --------------------------------
+  // walks the bottom level of the list
+  private final class AscendingIterator implements Iterator<Cell> {
+    private long node;
+    private Cell next;
+    private long lastReturned = NULL;
+
+    private AscendingIterator() {
+      node = list.ceilingNode(lo, lo == null || loInclusive);
+      advance();
+    }
+
+    // move to the first node from the current one which is not removed
+    private void advance() {
+      next = null;
+      for (; node != NULL; node = list.next(node, 0)) {
+        Cell c = list.cellOf(node);
+        if (c != null) {
+          if (tooHigh(c)) {
+            node = NULL;
+          } else {
+            next = c;
+          }
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Cell next() {
+      Cell result = key(next);
+      lastReturned = node;
+      node = list.next(node, 0);
+      advance();
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == NULL) {
+        throw new IllegalStateException();
+      }
+      list.delete(lastReturned);
+      lastReturned = NULL;
+    }
+  }
+
+  // there are no backward pointers, every step searches the list like ConcurrentSkipListMap does
+  private final class DescendingIterator implements Iterator<Cell> {
+    private Cell next = absHighest();
+    private Cell lastReturned;
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Cell next() {
+      Cell result = key(next);
+      lastReturned = result;
+      next = absFloor(result, false);
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == null) {
+        throw new IllegalStateException();
+      }
+      list.remove(lastReturned);
+      lastReturned = null;
+    }
+  }
+
+  /* ---------------------------- the skip list in the chunks ---------------------------- */
+
+  private static final class SkipList {
+    private final Comparator<? super Cell> comparator;
+    private final MemStoreLAB memStoreLAB;
+    private final AtomicInteger size = new AtomicInteger();
+
+    // index chunks, published by the volatile write of the array after a chunk is added
+    private volatile Chunk[] chunks = new Chunk[8];
+    private volatile int curChunkIdx = -1;
+    private volatile long head = NULL;
+    private int numChunks; // written under the lock of this list
+
+    private SkipList(Comparator<? super Cell> comparator, MemStoreLAB memStoreLAB) {
+      this.comparator = comparator;
+      this.memStoreLAB = memStoreLAB;
+    }
+
+    /* ------------ pointers and chunk space ------------ */
+
+    private ByteBuffer buffer(long pointer) {
+      return chunks[(int) (pointer >>> 32) - 1].getData();
+    }
+
+    private static int offset(long pointer) {
+      return (int) pointer;
+    }
+
+    private long allocate(int size) {
+      while (true) {
+        int idx = curChunkIdx;
+        if (idx >= 0) {
+          int offset = chunks[idx].alloc(size);
+          if (offset >= 0) {
+            return ((long) (idx + 1) << 32) | offset;
+          }
+        }
+        newChunk(idx);
+      }
+    }
+
+    private synchronized void newChunk(int exhaustedIdx) {
+      if (curChunkIdx != exhaustedIdx) {
+        return; // another thread already replaced the chunk
+      }
+      Chunk chunk = memStoreLAB.getNewExternalChunk();
+      // skip the chunk header so that the longs of the nodes are 8 byte aligned
+      chunk.alloc(ChunkCreator.SIZEOF_CHUNK_HEADER);
+      Chunk[] array = chunks;
+      if (numChunks == array.length) {
+        array = Arrays.copyOf(array, array.length * 2);
+      }
+      array[numChunks] = chunk;
+      chunks = array;
+      curChunkIdx = numChunks++;
+    }
+
+    private long ensureHead() {
+      long h = head;
+      if (h == NULL) {
+        synchronized (this) {
+          h = head;
+          if (h == NULL) {
+            // the head never holds a Cell, its entry is left unset
+            h = allocate(NEXT_OFFSET + MAX_LEVEL * Bytes.SIZEOF_LONG);
+            for (int i = 0; i < MAX_LEVEL; i++) {
+              setNext(h, i, NULL);
+            }
+            head = h;
+          }
+        }
+      }
+      return h;
+    }
+
+    /* ------------ nodes ------------ */
+
+    // write the (chunk ID, offset, length, seqID) reference of a cell, as in CellChunkMap
+    private void writeEntry(Cell cell, long pointer) {
+      ByteBufferKeyValue bbCell = (ByteBufferKeyValue) cell;
+      ByteBuffer buf = buffer(pointer);
+      int offset = offset(pointer);
+      ByteBufferUtils.putInt(buf, offset + DATA_CHUNK_ID_OFFSET, bbCell.getChunkId());
+      ByteBufferUtils.putInt(buf, offset + DATA_OFFSET_OFFSET, bbCell.getOffset());
+      ByteBufferUtils.putInt(buf, offset + LENGTH_OFFSET, KeyValueUtil.length(bbCell));
+      ByteBufferUtils.putLong(buf, offset + SEQ_ID_OFFSET, bbCell.getSequenceId());
+    }
+
+    // read the cell whose reference is written at the pointer
+    private Cell readEntry(long pointer) {
+      ByteBuffer buf = buffer(pointer);
+      int offset = offset(pointer);
+      int chunkId = ByteBufferUtils.toInt(buf, offset + DATA_CHUNK_ID_OFFSET);
+      Chunk chunk = ChunkCreator.getInstance().getChunk(chunkId);
+      if (chunk == null) {
+        // this should not happen
+        throw new IllegalArgumentException("In CellChunkSkipListMap, cell must be associated with"
+            + " chunk. We were looking for chunk " + chunkId);
+      }
+      return new ByteBufferChunkKeyValue(chunk.getData(),
+          ByteBufferUtils.toInt(buf, offset + DATA_OFFSET_OFFSET),
+          ByteBufferUtils.toInt(buf, offset + LENGTH_OFFSET),
+          ByteBufferUtils.toLong(buf, offset + SEQ_ID_OFFSET));
+    }
+
+    private long newNode(Cell cell, int level) {
+      long node = allocate(NEXT_OFFSET + level * Bytes.SIZEOF_LONG);
+      writeEntry(cell, node);
+      ByteBufferUtils.putInt(buffer(node), offset(node) + LEVEL_OFFSET, level);
+      // chunks may come back from the pool, so nothing can be assumed to be zeroed
+      UnsafeAccess.putLongVolatile(buffer(node), offset(node) + STATE_OFFSET, NULL);
+      return node;
+    }
+
+    long next(long node, int level) {
+      return UnsafeAccess.getLongVolatile(buffer(node),
+          offset(node) + NEXT_OFFSET + level * Bytes.SIZEOF_LONG);
+    }
+
+    private void setNext(long node, int level, long next) {
+      UnsafeAccess.putLongVolatile(buffer(node),
+          offset(node) + NEXT_OFFSET + level * Bytes.SIZEOF_LONG, next);
+    }
+
+    private boolean casNext(long node, int level, long expected, long next) {
+      return UnsafeAccess.compareAndSwapLong(buffer(node),
+          offset(node) + NEXT_OFFSET + level * Bytes.SIZEOF_LONG, expected, next);
+    }
+
+    private long state(long node) {
+      return UnsafeAccess.getLongVolatile(buffer(node), offset(node) + STATE_OFFSET);
+    }
+
+    private boolean casState(long node, long expected, long state) {
+      return UnsafeAccess.compareAndSwapLong(buffer(node), offset(node) + STATE_OFFSET, expected,
+        state);
+    }
+
+    // the cell a node is sorted by, whether it was removed or not
+    private Cell keyOf(long node) {
+      return readEntry(node);
+    }
+
+    private Cell cellOf(long node, long state) {
+      if (state == DELETED) {
+        return null;
+      }
+      return readEntry(state == NULL ? node : state);
+    }
+
+    /**
+     * @return the current cell of the node, null if the node was removed
+     */
+    Cell cellOf(long node) {
+      return cellOf(node, state(node));
+    }
+
+    private static int randomLevel() {
+      int rnd = ThreadLocalRandom.current().nextInt();
+      int level = 1;
+      while ((rnd & 3) == 0 && level < MAX_LEVEL) {
+        level++;
+        rnd >>>= 2;
+      }
+      return level;
+    }
+
+    /* ------------ search ------------ */
+
+    /**
+     * Find the last node before the key, or the head if there is none.
+     * @param key the key, null to find the last node of the list
+     * @param inclusive whether a node equal to the key is before it
+     * @param preds if not null, filled with the predecessor at each level
+     * @param succs if not null, filled with the node following the predecessor at each level
+     */
+    private long findPredecessor(Cell key, boolean inclusive, long[] preds, long[] succs) {
+      long x = head;
+      for (int i = MAX_LEVEL - 1; i >= 0; i--) {
+        long next = next(x, i);
+        while (next != NULL && isBefore(next, key, inclusive)) {
+          x = next;
+          next = next(x, i);
+        }
+        if (preds != null) {
+          preds[i] = x;
+          succs[i] = next;
+        }
+      }
+      return x;
+    }
+
+    private boolean isBefore(long node, Cell key, boolean inclusive) {
+      if (key == null) {
+        return true;
+      }
+      int c = comparator.compare(keyOf(node), key);
+      return c < 0 || (inclusive && c == 0);
+    }
+
+    // the node equal to the key, whether it was removed or not
+    private long findNode(Cell key) {
+      long n = next(findPredecessor(key, false, null, null), 0);
+      return (n != NULL && comparator.compare(keyOf(n), key) == 0) ? n : NULL;
+    }
+
+    /**
+     * @return the first node after the key, removed or not; the first one of the list for a null
+     *         key
+     */
+    long ceilingNode(Cell key, boolean inclusive) {
+      if (head == NULL) {
+        return NULL;
+      }
+      long pred = key == null ? head : findPredecessor(key, !inclusive, null, null);
+      return next(pred, 0);
+    }
+
+    Cell ceiling(Cell key, boolean inclusive) {
+      for (long n = ceilingNode(key, inclusive); n != NULL; n = next(n, 0)) {
+        Cell c = cellOf(n);
+        if (c != null) {
+          return c;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return the last live cell before the key; the last one of the list for a null key
+     */
+    Cell floor(Cell key, boolean inclusive) {
+      if (head == NULL) {
+        return null;
+      }
+      while (true) {
+        long n = findPredecessor(key, inclusive, null, null);
+        if (n == head) {
+          return null;
+        }
+        Cell c = cellOf(n);
+        if (c != null) {
+          return c;
+        }
+        // removed, look before it
+        key = keyOf(n);
+        inclusive = false;
+      }
+    }
+
+    Cell get(Cell key) {
+      if (head == NULL) {
+        return null;
+      }
+      long n = findNode(key);
+      return n == NULL ? null : cellOf(n);
+    }
+
+    /* ------------ updates ------------ */
+
+    Cell put(Cell cell) {
+      if (!(cell instanceof ByteBufferKeyValue)
+          || ((ExtendedCell) cell).getChunkId() == ExtendedCell.CELL_NOT_BASED_ON_CHUNK) {
+        throw new IllegalArgumentException("CellChunkSkipListMap only indexes cells allocated "
+            + "on MSLAB chunks");
+      }
+      ensureHead();
+      long[] preds = new long[MAX_LEVEL];
+      long[] succs = new long[MAX_LEVEL];
+      int level = randomLevel();
+      long node = NULL;
+      while (true) {
+        findPredecessor(cell, false, preds, succs);
+        long succ = succs[0];
+        if (succ != NULL && comparator.compare(keyOf(succ), cell) == 0) {
+          return replace(succ, cell);
+        }
+        if (node == NULL) {
+          node = newNode(cell, level);
+        }
+        for (int i = 0; i < level; i++) {
+          setNext(node, i, succs[i]);
+        }
+        if (casNext(preds[0], 0, succ, node)) {
+          break;
+        }
+        // another node was linked after the predecessor, search again
+      }
+      size.incrementAndGet();
+      // the node is in the list once on the bottom level, the upper levels only speed up searches
+      for (int i = 1; i < level; i++) {
+        while (!casNext(preds[i], i, succs[i], node)) {
+          findPredecessor(cell, false, preds, succs);
+          setNext(node, i, succs[i]);
+        }
+      }
+      return null;
+    }
+
+    private Cell replace(long node, Cell cell) {
+      long record = allocate(RECORD_SIZE);
+      writeEntry(cell, record);
+      while (true) {
+        long state = state(node);
+        if (casState(node, state, record)) {
+          if (state == DELETED) {
+            size.incrementAndGet();
+          }
+          return cellOf(node, state);
+        }
+      }
+    }
+
+    Cell remove(Cell key) {
+      if (head == NULL) {
+        return null;
+      }
+      long n = findNode(key);
+      return n == NULL ? null : delete(n);
+    }
+
+    Cell delete(long node) {
+      while (true) {
+        long state = state(node);
+        if (state == DELETED) {
+          return null;
+        }
+        if (casState(node, state, DELETED)) {
+          size.decrementAndGet();
+          return cellOf(node, state);
+        }
+      }
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesti
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -357,6 +358,20 @@ public class CompactingMemStore extends AbstractMemStore {
     return Bytes.toString(getFamilyNameInBytes());
   }
 
+  /**
+   * Account a user get or scan served by this memstore's store, for the compaction strategy.
+   */
+  public void recordRead(boolean isGet) {
+    compactor.recordRead(isGet);
+  }
+
+  /**
+   * @return the number of times the in-memory compaction chose each action, by action name
+   */
+  public Map<String, Long> getCompactionDecisions() {
+    return compactor.getDecisions();
+  }
+
   @Override
   /*
    * Scanners are ordered from 0 (oldest) to newest in increasing order.
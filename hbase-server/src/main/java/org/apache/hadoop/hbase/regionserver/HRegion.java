@@ -19,7 +19,6 @@ package org.apache.hadoop.hbase.regionserver;
 
 import static org.apache.hadoop.hbase.HConstants.REPLICATION_SCOPE_LOCAL;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.MAJOR_COMPACTION_KEY;
-import static org.apache.hadoop.hbase.util.CollectionUtils.computeIfAbsent;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -35,6 +34,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +57,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -116,6 +117,7 @@ import org.apache.hadoop.hbase.client.RegionReplicaUtil;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScanAggregation;
 import org.apache.hadoop.hbase.client.TableDescriptor;
 import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
 import org.apache.hadoop.hbase.conf.ConfigurationManager;
@@ -131,7 +133,9 @@ import org.apache.hadoop.hbase.filter.IncompatibleFilterException;
 import org.apache.hadoop.hbase.io.HFileLink;
 import org.apache.hadoop.hbase.io.HeapSize;
 import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
 import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.PrefetchExecutor;
 import org.apache.hadoop.hbase.ipc.CallerDisconnectedException;
 import org.apache.hadoop.hbase.ipc.CoprocessorRpcUtils;
 import org.apache.hadoop.hbase.ipc.RpcCall;
@@ -181,7 +185,6 @@ import org.apache.hadoop.hbase.util.CompressionTest;
 import org.apache.hadoop.hbase.util.EncryptionTest;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.FSUtils;
-import org.apache.hadoop.hbase.util.HashedBytes;
 import org.apache.hadoop.hbase.util.NonceKey;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.ServerRegionReplicaUtil;
@@ -232,6 +235,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       "hbase.regionserver.minibatch.size";
   public static final int DEFAULT_HBASE_REGIONSERVER_MINIBATCH_SIZE = 20000;
 
+  /**
+   * Whether a region closing lists the hot blocks of its store files in the block cache, and the
+   * server opening it next prefetches them, so a moved region does not start cold.
+   */
+  public static final String HOT_BLOCKS_HANDOFF_KEY = "hbase.hregion.hot.blocks.handoff";
+  public static final boolean DEFAULT_HOT_BLOCKS_HANDOFF = false;
+
   /**
    * This is the global default value for durability. All tables/mutations not
    * defining a durability or using USE_DEFAULT will default to this value.
@@ -272,13 +282,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // Members
   //////////////////////////////////////////////////////////////////////////////
 
-  // map from a locked row to the context for that lock including:
-  // - CountDownLatch for threads waiting on that row
-  // - the thread that owns the lock (allow reentrancy)
-  // - reference count of (reentrant) locks held by the thread
+  // table from a locked row to the context for that lock including:
+  // - the read/write lock of the row
+  // - the thread that owns the lock
+  // - reference count of the locks held or waited for on the row
   // - the row itself
-  private final ConcurrentHashMap<HashedBytes, RowLockContext> lockedRows =
-      new ConcurrentHashMap<>();
+  private final RowLockTable lockedRows = new RowLockTable();
+  // contention on the row locks
+  private final LongAdder rowLockContendedCount = new LongAdder();
+  private final LongAdder rowLockWaitTime = new LongAdder();
+  private final LongAdder rowLockTimeoutCount = new LongAdder();
+
+  // rows of repeated scans, null unless configured
+  private final RegionScanCache scanCache;
 
   protected final Map<byte[], HStore> stores =
       new ConcurrentSkipListMap<>(Bytes.BYTES_RAWCOMPARATOR);
@@ -745,6 +761,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
     this.rowLockWaitDuration = conf.getInt("hbase.rowlock.wait.duration",
                     DEFAULT_ROWLOCK_WAIT_DURATION);
+    // a secondary replica changes its store files on refreshes and replayed markers
+    this.scanCache = RegionScanCache.isEnabled(conf)
+        && ServerRegionReplicaUtil.isDefaultReplica(fs.getRegionInfo())
+            ? new RegionScanCache(conf) : null;
 
     this.isLoadingCfsOnDemandDefault = conf.getBoolean(LOAD_CFS_ON_DEMAND_CONFIG_KEY, true);
     this.htableDescriptor = htd;
@@ -873,6 +893,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // nextSeqid will be -1 if the initialization fails.
       // At least it will be 0 otherwise.
       if (nextSeqId == -1) {
+        // Forget the region and the prefetches of the stores opened before the failure
+        PrefetchExecutor.cancelRegion(getRegionInfo().getEncodedName());
         status.abort("Exception during region " + getRegionInfo().getRegionNameAsString() +
           " initialization.");
       }
@@ -897,18 +919,33 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       }
     }
 
+    if (this.metricsRegionWrapper != null) {
+      // Prefetch the files of the regions clients read most first. Registered before the stores
+      // open as they submit their prefetches, cancelled by initialize if the open fails.
+      PrefetchExecutor.registerRegion(getRegionInfo().getEncodedName(),
+        this.metricsRegionWrapper::getReadRequestRate);
+    }
+
     // Initialize all the HStores
     status.setStatus("Initializing all the Stores");
     long maxSeqId = initializeStores(reporter, status);
     this.mvcc.advanceTo(maxSeqId);
+    if (isHotBlocksHandoffEnabled()) {
+      status.setStatus("Warming the block cache with the hot blocks of the last server");
+      warmUpHotBlocks();
+    }
     if (ServerRegionReplicaUtil.shouldReplayRecoveredEdits(this)) {
       Collection<HStore> stores = this.stores.values();
       try {
         // update the stores that we are replaying
         stores.forEach(HStore::startReplayingFromWAL);
-        // Recover any edits if available.
+        // Recover any edits if available. A WAL split writing HFiles still writes the compaction
+        // markers to recovered edits, they are replayed before the HFiles raise the sequence ids
+        // of the stores over theirs.
         maxSeqId = Math.max(maxSeqId,
           replayRecoveredEditsIfAny(this.fs.getRegionDir(), maxSeqIdInStores, reporter, status));
+        // Load the HFiles the WAL split wrote for the stores, if any.
+        maxSeqId = Math.max(maxSeqId, loadRecoveredHFilesIfAny(stores));
         // Make sure mvcc is up to max.
         this.mvcc.advanceTo(maxSeqId);
       } finally {
@@ -974,6 +1011,60 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return nextSeqid;
   }
 
+  /**
+   * Move the HFiles the WAL split wrote for the stores into the stores, see
+   * {@link WALSplitter#WAL_SPLIT_TO_HFILE}. The max sequence ids of the stores are updated so the
+   * recovered edits older than these files are skipped.
+   * @return the highest sequence id of the stores that loaded files, -1 if there were none
+   */
+  private long loadRecoveredHFilesIfAny(Collection<HStore> stores) throws IOException {
+    FileSystem fileSystem = this.fs.getFileSystem();
+    Path regionDir = this.fs.getRegionDir();
+    long maxSeqId = -1;
+    Map<byte[], List<Path>> storeFiles = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    Map<String, Long> storeFilesSizes = new HashMap<>();
+    for (HStore store : stores) {
+      String familyName = store.getColumnFamilyName();
+      FileStatus[] files = WALSplitter.getRecoveredHFiles(fileSystem, regionDir, familyName);
+      if (files == null) {
+        continue;
+      }
+      for (FileStatus file : files) {
+        if (isZeroLengthThenDelete(fileSystem, file.getPath())) {
+          continue;
+        }
+        byte[] family = store.getColumnFamilyDescriptor().getName();
+        Pair<Path, Path> paths = store.preBulkLoadHFile(file.getPath().toString(), -1);
+        Path committedStoreFile =
+            store.bulkLoadHFile(family, paths.getFirst().toString(), paths.getSecond());
+        storeFiles.computeIfAbsent(family, f -> new ArrayList<>()).add(committedStoreFile);
+        storeFilesSizes.put(committedStoreFile.getName(), file.getLen());
+      }
+      long storeMaxSequenceId = store.getMaxSequenceId().orElse(0L);
+      maxSeqIdInStores.put(Bytes.toBytes(familyName), storeMaxSequenceId);
+      maxSeqId = Math.max(maxSeqId, storeMaxSequenceId);
+      // Also drops the temporary files of a split that did not complete
+      Path dir = WALSplitter.getRecoveredHFilesDir(regionDir, familyName);
+      if (!fileSystem.delete(dir, true)) {
+        LOG.warn("Failed delete of {}", dir);
+      }
+      LOG.info("Loaded {} recovered hfiles into {}, max sequenceid={}", files.length, store,
+        storeMaxSequenceId);
+    }
+    if (wal != null && !storeFiles.isEmpty()) {
+      // Write a bulk load event for the loaded hfiles, so the secondary replicas and the
+      // replication see them as they see the hfiles of a bulk load
+      this.mvcc.advanceTo(maxSeqId);
+      WALProtos.BulkLoadDescriptor loadDescriptor =
+          ProtobufUtil.toBulkLoadDescriptor(this.getRegionInfo().getTable(),
+            UnsafeByteOperations.unsafeWrap(this.getRegionInfo().getEncodedNameAsBytes()),
+            storeFiles, storeFilesSizes, maxSeqId);
+      WALUtil.writeBulkLoadMarkerAndSync(this.wal, this.getReplicationScope(), getRegionInfo(),
+        loadDescriptor, mvcc);
+    }
+    return maxSeqId;
+  }
+
   /**
    * Open all Stores.
    * @param reporter
@@ -1459,6 +1550,75 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     this.timeoutForWriteLock = timeoutForWriteLock;
   }
 
+  private boolean isHotBlocksHandoffEnabled() {
+    // Secondary replicas share the region directory of the primary, and it is read only to them
+    return conf.getBoolean(HOT_BLOCKS_HANDOFF_KEY, DEFAULT_HOT_BLOCKS_HANDOFF)
+        && ServerRegionReplicaUtil.isDefaultReplica(getRegionInfo());
+  }
+
+  /**
+   * Lists the hot blocks of the store files in the block cache, for the server opening the region
+   * next. Best effort, failing only loses the warm up.
+   */
+  private void saveHotBlocks() {
+    // The stores share the block cache of the server, so it is gone over once for all the files
+    Map<BlockCache, Set<String>> hfileNames = new IdentityHashMap<>();
+    for (HStore store : stores.values()) {
+      BlockCache blockCache = store.getCacheConfig().getBlockCache();
+      if (blockCache == null) {
+        continue;
+      }
+      for (HStoreFile storeFile : store.getStorefiles()) {
+        StoreFileReader reader = storeFile.getReader();
+        if (reader != null) {
+          hfileNames.computeIfAbsent(blockCache, cache -> new HashSet<>())
+              .add(reader.getHFileReader().getName());
+        }
+      }
+    }
+    Map<String, long[]> hotBlocks = new HashMap<>();
+    for (Map.Entry<BlockCache, Set<String>> entry : hfileNames.entrySet()) {
+      hotBlocks.putAll(entry.getKey().getHotBlockOffsets(entry.getValue()));
+    }
+    if (hotBlocks.isEmpty()) {
+      return;
+    }
+    try {
+      fs.writeHotBlocks(hotBlocks);
+      LOG.debug("Saved the hot blocks of {} store files of {}", hotBlocks.size(), this);
+    } catch (IOException e) {
+      LOG.warn("Failed to save the hot blocks of " + this, e);
+    }
+  }
+
+  /**
+   * Prefetches the blocks listed as hot by the last close of the region, in the background.
+   */
+  private void warmUpHotBlocks() {
+    Map<String, long[]> hotBlocks;
+    try {
+      hotBlocks = fs.readAndDeleteHotBlocks();
+    } catch (IOException e) {
+      LOG.warn("Failed to read the hot blocks of " + this, e);
+      return;
+    }
+    if (hotBlocks.isEmpty()) {
+      return;
+    }
+    int files = 0;
+    for (HStore store : stores.values()) {
+      for (HStoreFile storeFile : store.getStorefiles()) {
+        StoreFileReader reader = storeFile.getReader();
+        long[] offsets = reader == null ? null : hotBlocks.get(reader.getHFileReader().getName());
+        if (offsets != null) {
+          reader.getHFileReader().prefetchBlocks(offsets);
+          files++;
+        }
+      }
+    }
+    LOG.debug("Prefetching the hot blocks of {} store files of {}", files, this);
+  }
+
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value="UL_UNRELEASED_LOCK_EXCEPTION_PATH",
       justification="I think FindBugs is confused")
   private Map<byte[], List<HStoreFile>> doClose(boolean abort, MonitoredTask status)
@@ -1468,6 +1628,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       return null;
     }
 
+    // Stop warming the block cache with the files of a region going away
+    PrefetchExecutor.cancelRegion(getRegionInfo().getEncodedName());
+
     if (coprocessorHost != null) {
       status.setStatus("Running coprocessor pre-close hooks");
       this.coprocessorHost.preClose(abort);
@@ -1495,6 +1658,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         status.setStatus("Failed pre-flush " + this + "; " + ioe.getMessage());
       }
     }
+    if (!abort && isHotBlocksHandoffEnabled()) {
+      // Compactions are done and the bulk of the memstore is flushed, so the store files are
+      // mostly the ones the next server opens. The cache is gone over before reads are blocked.
+      status.setStatus("Saving the hot blocks for the next server");
+      saveHotBlocks();
+    }
 
     if (timeoutForWriteLock == null
         || timeoutForWriteLock == Long.MAX_VALUE) {
@@ -2073,6 +2242,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           // method because Store#compact will clean up unconditionally
           requestNeedsCancellation = false;
           store.compact(compaction, throughputController, user);
+          clearScanCache();
         } catch (InterruptedIOException iioe) {
           String msg = "compaction interrupted";
           LOG.info(msg, iioe);
@@ -2607,11 +2777,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // A.  Flush memstore to all the HStores.
       // Keep running vector of all store files that includes both old and the
       // just-made new flush store file. The new flushed file is still in the
-      // tmp directory.
-
-      for (StoreFlushContext flush : storeFlushCtxs.values()) {
-        flush.flushCache(status);
-      }
+      // tmp directory. The stores are written in parallel when the regionserver has a pool for
+      // it, none of them is committed before all of them are written.
+      flushStores(storeFlushCtxs, status);
 
       // Switch snapshot (in memstore) -> new hfile (thus causing
       // all the store scanners to reset/reseek).
@@ -2633,6 +2801,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         flushedOutputFileSize += flush.getOutputFileSize();
       }
       storeFlushCtxs.clear();
+      clearScanCache();
 
       // Set down the memstore size by amount of flush.
       this.decrMemStoreSize(prepareResult.totalFlushableSize);
@@ -2723,6 +2892,74 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           FlushResult.Result.FLUSHED_NO_COMPACTION_NEEDED, flushOpSeqId);
   }
 
+  /**
+   * Writes the snapshots of the stores to files, on the store flush pool of the regionserver when
+   * there is one and more than one store to flush, in this thread otherwise. Returns once every
+   * store is done, even when one of them failed, so none is still writing when the flush aborts.
+   * The status of the flush is only updated by this thread, the pool threads report to their own.
+   */
+  private void flushStores(Map<byte[], StoreFlushContext> flushCtxs, MonitoredTask status)
+      throws IOException {
+    ThreadPoolExecutor pool = rsServices == null ? null : rsServices.getStoreFlushPool();
+    if (pool == null || flushCtxs.size() < 2) {
+      for (StoreFlushContext flush : flushCtxs.values()) {
+        flush.flushCache(status);
+      }
+      return;
+    }
+    List<Future<Void>> futures = new ArrayList<>(flushCtxs.size());
+    List<String> families = new ArrayList<>(flushCtxs.size());
+    IOException error = null;
+    for (Map.Entry<byte[], StoreFlushContext> entry : flushCtxs.entrySet()) {
+      StoreFlushContext flush = entry.getValue();
+      String family = Bytes.toString(entry.getKey());
+      MonitoredTask storeStatus = TaskMonitor.get()
+          .createUnlistedStatus("Flushing " + this + ", store " + family);
+      try {
+        futures.add(pool.submit(() -> {
+          flush.flushCache(storeStatus);
+          return null;
+        }));
+        families.add(family);
+      } catch (RejectedExecutionException e) {
+        // the pool is shut down while the regions close, write the store here
+        try {
+          flush.flushCache(status);
+        } catch (IOException ioe) {
+          error = ioe;
+          break;
+        }
+      }
+    }
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      Future<Void> future = futures.get(i);
+      while (true) {
+        try {
+          future.get();
+          status.setStatus("Flushing " + this + ": store " + families.get(i) + " written, "
+              + (i + 1) + " of " + futures.size());
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (error == null) {
+            Throwable cause = e.getCause();
+            error = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      // every store was waited for, leave the interrupt to the caller
+      Thread.currentThread().interrupt();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
   /**
    * Method to safely get the next sequence number.
    * @return Next sequence number unassociated with any actual edit.
@@ -2779,15 +3016,92 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   protected RegionScannerImpl instantiateRegionScanner(Scan scan,
       List<KeyValueScanner> additionalScanners, long nonceGroup, long nonce) throws IOException {
+    ScanAggregation aggregation = getAggregation(scan);
+    if (aggregation != null) {
+      AggregatingRegionScannerImpl.checkAggregation(scan);
+      return new AggregatingRegionScannerImpl(scan, additionalScanners, this, aggregation,
+          nonceGroup, nonce);
+    }
     if (scan.isReversed()) {
       if (scan.getFilter() != null) {
         scan.getFilter().setReversed(true);
       }
       return new ReversedRegionScannerImpl(scan, additionalScanners, this);
     }
+    if (scanCache != null && isScanCacheable(scan, additionalScanners)) {
+      RegionScanCache.Key key = RegionScanCache.toKey(scan);
+      if (key != null) {
+        List<List<Cell>> rows = scanCache.get(key);
+        if (rows != null) {
+          return new RegionScanCache.CachedRegionScannerImpl(scan, this, rows);
+        }
+        // started before the read point of the scanner, so the mutations it misses mark it stale
+        RegionScanCache.Recording recording = scanCache.startRecording(key);
+        try {
+          return new RegionScanCache.RecordingRegionScannerImpl(scan, this, scanCache, recording,
+              nonceGroup, nonce);
+        } catch (IOException | RuntimeException e) {
+          scanCache.endRecording(recording);
+          throw e;
+        }
+      }
+    }
+    ThreadPoolExecutor parallelScanPool =
+        rsServices == null ? null : rsServices.getParallelScanPool();
+    if (parallelScanPool != null
+        && ParallelRegionScannerImpl.canScanInParallel(scan, additionalScanners)) {
+      List<byte[]> splitRows = ParallelRegionScannerImpl.getSplitRows(this, scan,
+        parallelScanPool.getMaximumPoolSize());
+      if (!splitRows.isEmpty()) {
+        return new ParallelRegionScannerImpl(scan, this, parallelScanPool, splitRows, nonceGroup,
+            nonce);
+      }
+    }
     return new RegionScannerImpl(scan, additionalScanners, this, nonceGroup, nonce);
   }
 
+  private static ScanAggregation getAggregation(Scan scan) throws DoNotRetryIOException {
+    try {
+      return scan.getAggregation();
+    } catch (IllegalArgumentException e) {
+      throw new DoNotRetryIOException(e);
+    }
+  }
+
+  private boolean isScanCacheable(Scan scan, List<KeyValueScanner> additionalScanners) {
+    if (!RegionScanCache.isCacheable(scan)
+        || (additionalScanners != null && !additionalScanners.isEmpty())) {
+      return false;
+    }
+    // expired cells would stay in the cached rows
+    for (byte[] family : scan.getFamilyMap().keySet()) {
+      HStore store = stores.get(family);
+      if (store == null || store.getScanInfo().getTtl() != Long.MAX_VALUE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops the cached rows of the scans covering the rows once their mutations are visible. Called
+   * once for all the rows of a batch, after their locks are released.
+   */
+  private void invalidateScanCache(List<byte[]> rows) {
+    if (scanCache != null) {
+      scanCache.invalidate(rows);
+    }
+  }
+
+  /**
+   * Drops the cached rows of all the scans once the store files changed.
+   */
+  private void clearScanCache() {
+    if (scanCache != null) {
+      scanCache.clear();
+    }
+  }
+
   /**
    * Prepare a delete for a row mutation processor
    * @param delete The passed delete is modified by this method. WARNING!
@@ -3816,21 +4130,213 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return batchOp.retCodeDetails;
   }
 
+  /**
+   * Applies the batches of mutations of several regions with a single sync per WAL. The regions
+   * are taken one WAL at a time. A mini batch of every region of a WAL is locked and appended
+   * first, then the WAL is synced once, then the mini batches are written to the memstores and
+   * their locks released. What is left of a batch after its first mini batch is applied region by
+   * region as in {@link #batchMutate(Mutation[], long, long)}, before the regions of the next WAL
+   * are locked, so a slow region or sync only holds back the regions sharing its WAL.
+   * <p>
+   * The regions of a WAL are locked in the order of their encoded names, so two such batches can
+   * not wait on each other.
+   * @param errors set to the exception a batch failed with as a whole, its statuses are null then
+   * @return the status of every mutation of every batch, in the order of the regions
+   */
+  static OperationStatus[][] batchMutate(List<HRegion> regions, List<Mutation[]> batches,
+      IOException[] errors) {
+    int numRegions = regions.size();
+    Integer[] order = new Integer[numRegions];
+    for (int i = 0; i < numRegions; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (i1, i2) -> regions.get(i1).getRegionInfo().getEncodedName()
+        .compareTo(regions.get(i2).getRegionInfo().getEncodedName()));
+    // The regions of every WAL, in the order of their encoded names
+    Map<WAL, List<Integer>> groups = new IdentityHashMap<>();
+    List<List<Integer>> orderedGroups = new ArrayList<>();
+    for (int i : order) {
+      groups.computeIfAbsent(regions.get(i).getWAL(), w -> {
+        List<Integer> group = new ArrayList<>();
+        orderedGroups.add(group);
+        return group;
+      }).add(i);
+    }
+
+    OperationStatus[][] statuses = new OperationStatus[numRegions][];
+    for (List<Integer> group : orderedGroups) {
+      batchMutate(regions, batches, group, statuses, errors);
+    }
+    return statuses;
+  }
+
+  /**
+   * Applies the batches of the regions of a group sharing a WAL, with a single sync of the WAL.
+   */
+  private static void batchMutate(List<HRegion> regions, List<Mutation[]> batches,
+      List<Integer> group, OperationStatus[][] statuses, IOException[] errors) {
+    int numRegions = regions.size();
+    MutationBatchOperation[] batchOps = new MutationBatchOperation[numRegions];
+    boolean[] started = new boolean[numRegions];
+    PendingMiniBatch[] pendings = new PendingMiniBatch[numRegions];
+    // the region operations are closed whatever fails, or the regions could never close
+    try {
+      try {
+        // Lock and append a mini batch of every region
+        boolean needsSync = false;
+        for (int i : group) {
+          HRegion region = regions.get(i);
+          MutationBatchOperation batchOp = new MutationBatchOperation(region, batches.get(i), false,
+              HConstants.NO_NONCE, HConstants.NO_NONCE);
+          batchOps[i] = batchOp;
+          try {
+            batchOp.startRegionOperation();
+            started[i] = true;
+            region.checkReadOnly();
+            region.checkResources();
+            region.writeRequestsCount.add(batchOp.size());
+            batchOp.checkAndPrepare();
+            PendingMiniBatch pending = region.new PendingMiniBatch(batchOp);
+            pendings[i] = pending;
+            if (!pending.append(false)) {
+              closePending(pendings, i, errors);
+            } else {
+              needsSync |= pending.needsSync;
+            }
+          } catch (IOException e) {
+            errors[i] = e;
+            closePending(pendings, i, errors);
+          }
+        }
+
+        // One sync of the WAL
+        if (needsSync) {
+          try {
+            regions.get(group.get(0)).getWAL().sync();
+          } catch (IOException ioe) {
+            for (int i : group) {
+              if (pendings[i] != null && pendings[i].needsSync) {
+                errors[i] = ioe;
+                closePending(pendings, i, errors);
+              }
+            }
+          }
+        }
+
+        // Write the synced mini batches to the memstores
+        for (int i : group) {
+          if (pendings[i] == null) {
+            continue;
+          }
+          try {
+            pendings[i].apply();
+          } catch (IOException e) {
+            errors[i] = e;
+          } finally {
+            closePending(pendings, i, errors);
+          }
+        }
+      } finally {
+        for (int i : group) {
+          closePending(pendings, i, errors);
+        }
+      }
+
+      // The rest of every batch, one region at a time
+      for (int i : group) {
+        HRegion region = regions.get(i);
+        MutationBatchOperation batchOp = batchOps[i];
+        try {
+          if (errors[i] == null) {
+            while (!batchOp.isDone()) {
+              region.checkReadOnly();
+              region.checkResources();
+              region.doMiniBatchMutate(batchOp);
+            }
+            region.requestFlushIfNeeded(region.getMemStoreSize());
+            statuses[i] = batchOp.retCodeDetails;
+          }
+        } catch (IOException e) {
+          errors[i] = e;
+        }
+      }
+    } finally {
+      for (int i : group) {
+        if (started[i]) {
+          try {
+            batchOps[i].closeRegionOperation();
+          } catch (IOException e) {
+            if (errors[i] == null) {
+              errors[i] = e;
+            }
+          }
+        }
+        if (errors[i] != null) {
+          statuses[i] = null;
+        }
+      }
+    }
+  }
+
+  private static void closePending(PendingMiniBatch[] pendings, int i, IOException[] errors) {
+    if (pendings[i] == null) {
+      return;
+    }
+    try {
+      pendings[i].close();
+    } catch (IOException e) {
+      if (errors[i] == null) {
+        errors[i] = e;
+      }
+    } finally {
+      pendings[i] = null;
+    }
+  }
+
   /**
    * Called to do a piece of the batch that came in to {@link #batchMutate(Mutation[], long, long)}
    * In here we also handle replay of edits on region recover.
-   * @return Change in size brought about by applying <code>batchOp</code>
    */
   private void doMiniBatchMutate(BatchOperation<?> batchOp) throws IOException {
-    boolean success = false;
-    WALEdit walEdit = null;
-    WriteEntry writeEntry = null;
-    boolean locked = false;
-    // We try to set up a batch in the range [batchOp.nextIndexToProcess,lastIndexExclusive)
-    MiniBatchOperationInProgress<Mutation> miniBatchOp = null;
-    /** Keep track of the locks we hold so we can release them in finally clause */
-    List<RowLock> acquiredRowLocks = Lists.newArrayListWithCapacity(batchOp.size());
+    PendingMiniBatch miniBatch = new PendingMiniBatch(batchOp);
     try {
+      if (miniBatch.append(true)) {
+        miniBatch.apply();
+      }
+    } finally {
+      miniBatch.close();
+    }
+  }
+
+  /**
+   * A piece of a batch of mutations, from the lock of its rows to the write of its edits to the
+   * memstore. The row locks and the read lock on the region updates are held until it is closed,
+   * so its edits can wait in the WAL for a sync shared with other regions.
+   */
+  private final class PendingMiniBatch {
+    private final BatchOperation<?> batchOp;
+    /** Keep track of the locks we hold so we can release them in close() */
+    private final List<RowLock> acquiredRowLocks;
+    // We try to set up a batch in the range [batchOp.nextIndexToProcess,lastIndexExclusive)
+    private MiniBatchOperationInProgress<Mutation> miniBatchOp = null;
+    private WALEdit walEdit = null;
+    private WriteEntry writeEntry = null;
+    private boolean locked = false;
+    private boolean success = false;
+    // whether the appended edits wait for a sync
+    private boolean needsSync = false;
+
+    PendingMiniBatch(BatchOperation<?> batchOp) {
+      this.batchOp = batchOp;
+      this.acquiredRowLocks = Lists.newArrayListWithCapacity(batchOp.size());
+    }
+
+    /**
+     * Locks the rows of the mini batch and appends its edits to the WAL.
+     * @param sync whether to sync the WAL, the caller syncs it before {@link #apply()} otherwise
+     * @return false if there is nothing to write
+     */
+    boolean append(boolean sync) throws IOException {
       // STEP 1. Try to acquire as many locks as we can and build mini-batch of operations with
       // locked rows
       miniBatchOp = batchOp.lockRowsAndBuildMiniBatch(acquiredRowLocks);
@@ -3839,10 +4345,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // Ensure we acquire at least one.
       if (miniBatchOp.getReadyToWriteCount() <= 0) {
         // Nothing to put/delete -- an exception in the above such as NoSuchColumnFamily?
-        return;
+        return false;
       }
 
-      lock(this.updatesLock.readLock(), miniBatchOp.getReadyToWriteCount());
+      lock(updatesLock.readLock(), miniBatchOp.getReadyToWriteCount());
       locked = true;
 
       // STEP 2. Update mini batch of all operations in progress with  LATEST_TIMESTAMP timestamp
@@ -3862,7 +4368,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
         if (walEdit != null && !walEdit.isEmpty()) {
           writeEntry = doWALAppend(walEdit, batchOp.durability, batchOp.getClusterIds(), now,
-              nonceKey.getNonceGroup(), nonceKey.getNonce(), batchOp.getOrigLogSeqNum());
+              nonceKey.getNonceGroup(), nonceKey.getNonce(), batchOp.getOrigLogSeqNum(), sync);
+          needsSync |= !sync && shouldSyncWAL(batchOp.durability);
         }
 
         // Complete mvcc for all but last writeEntry (for replay case)
@@ -3871,7 +4378,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           writeEntry = null;
         }
       }
+      return true;
+    }
 
+    /**
+     * Writes the appended, synced if needed, mini batch to the memstore.
+     */
+    void apply() throws IOException {
       // STEP 5. Write back to memStore
       // NOTE: writeEntry can be null here
       writeEntry = batchOp.writeMiniBatchOperationsToMemStore(miniBatchOp, writeEntry);
@@ -3881,17 +4394,36 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       batchOp.completeMiniBatchOperations(miniBatchOp, writeEntry);
       writeEntry = null;
       success = true;
-    } finally {
+    }
+
+    /**
+     * Releases the locks and sets the status of the operations of the mini batch.
+     */
+    void close() throws IOException {
       // Call complete rather than completeAndWait because we probably had error if walKey != null
       if (writeEntry != null) mvcc.complete(writeEntry);
 
+      final int finalLastIndexExclusive =
+          miniBatchOp != null ? miniBatchOp.getLastIndexExclusive() : batchOp.size();
+      List<byte[]> mutatedRows = null;
+      if (scanCache != null && locked) {
+        // some of the edits may be in the memstore even if the mini batch failed
+        List<byte[]> rows = new ArrayList<>();
+        batchOp.visitBatchOperations(true, finalLastIndexExclusive, (int i) -> {
+          rows.add(batchOp.getMutation(i).getRow());
+          return true;
+        });
+        mutatedRows = rows;
+      }
+
       if (locked) {
-        this.updatesLock.readLock().unlock();
+        updatesLock.readLock().unlock();
       }
       releaseRowLocks(acquiredRowLocks);
+      if (mutatedRows != null) {
+        invalidateScanCache(mutatedRows);
+      }
 
-      final int finalLastIndexExclusive =
-          miniBatchOp != null ? miniBatchOp.getLastIndexExclusive() : batchOp.size();
       final boolean finalSuccess = success;
       batchOp.visitBatchOperations(true, finalLastIndexExclusive, (int i) -> {
         batchOp.retCodeDetails[i] =
@@ -5412,6 +5944,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           this.lastReplayedOpenRegionSeqId = smallestSeqIdInStores;
         }
       }
+      // the store files may have been replaced
+      clearScanCache();
       if (!map.isEmpty()) {
         for (Map.Entry<HStore, Long> entry : map.entrySet()) {
           // Drop the memstore contents if they are now smaller than the latest seen flushed file
@@ -5575,34 +6109,31 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   protected RowLock getRowLockInternal(byte[] row, boolean readLock, final RowLock prevRowLock)
       throws IOException {
-    // create an object to use a a key in the row lock map
-    HashedBytes rowKey = new HashedBytes(row);
-
-    RowLockContext rowLockContext = null;
+    RowLockTable.RowLockContext rowLockContext = null;
     RowLockImpl result = null;
 
     boolean success = false;
     try (TraceScope scope = TraceUtil.createTrace("HRegion.getRowLock")) {
       TraceUtil.addTimelineAnnotation("Getting a " + (readLock?"readLock":"writeLock"));
-      // Keep trying until we have a lock or error out.
-      // TODO: do we need to add a time component here?
-      while (result == null) {
-        rowLockContext = computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
-        // Now try an get the lock.
-        // This can fail as
-        if (readLock) {
-          // For read lock, if the caller has locked the same row previously, it will not try
-          // to acquire the same read lock. It simply returns the previous row lock.
-          RowLockImpl prevRowLockImpl = (RowLockImpl)prevRowLock;
-          if ((prevRowLockImpl != null) && (prevRowLockImpl.getLock() ==
-              rowLockContext.readWriteLock.readLock())) {
-            success = true;
-            return prevRowLock;
-          }
-          result = rowLockContext.newReadLock();
-        } else {
-          result = rowLockContext.newWriteLock();
-        }
+      rowLockContext = lockedRows.acquire(row);
+      // Now try an get the lock.
+      result = readLock ? rowLockContext.newReadLock() : rowLockContext.newWriteLock();
+      // If the caller has locked the same row previously with the same lock, it will not try
+      // to acquire the lock again. It simply returns the previous row lock, which is released
+      // once. A context hands the same RowLockImpl to all its users, so a lock taken twice could
+      // not be told apart from the previous one, and would be released once only.
+      if (prevRowLock == result) {
+        // the context is counted once per lock held
+        rowLockContext.release();
+        rowLockContext = null;
+        success = true;
+        return prevRowLock;
+      }
+      // a zero timeout respects the fairness of the lock, unlike tryLock()
+      if (result.getLock().tryLock(0, TimeUnit.MILLISECONDS)) {
+        rowLockContext.setThreadName(Thread.currentThread().getName());
+        success = true;
+        return result;
       }
 
       int timeout = rowLockWaitDuration;
@@ -5619,10 +6150,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         }
       }
 
-      if (timeout <= 0 || !result.getLock().tryLock(timeout, TimeUnit.MILLISECONDS)) {
+      rowLockContendedCount.increment();
+      long waitStart = EnvironmentEdgeManager.currentTime();
+      boolean locked;
+      try {
+        locked = timeout > 0 && result.getLock().tryLock(timeout, TimeUnit.MILLISECONDS);
+      } finally {
+        rowLockWaitTime.add(EnvironmentEdgeManager.currentTime() - waitStart);
+      }
+      if (!locked) {
+        rowLockTimeoutCount.increment();
         TraceUtil.addTimelineAnnotation("Failed to get row lock");
-        String message = "Timed out waiting for lock for row: " + rowKey + " in region "
-            + getRegionInfo().getEncodedName();
+        String message = "Timed out waiting for lock for row: " + Bytes.toStringBinary(row)
+            + " in region " + getRegionInfo().getEncodedName();
         if (reachDeadlineFirst) {
           throw new TimeoutIOException(message);
         } else {
@@ -5634,7 +6174,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       success = true;
       return result;
     } catch (InterruptedException ie) {
-      LOG.warn("Thread interrupted waiting for lock on row: " + rowKey);
+      LOG.warn("Thread interrupted waiting for lock on row: " + Bytes.toStringBinary(row));
       InterruptedIOException iie = new InterruptedIOException();
       iie.initCause(ie);
       TraceUtil.addTimelineAnnotation("Interrupted exception getting row lock");
@@ -5652,7 +6192,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     } finally {
       // Clean up the counts just in case this was the thing keeping the context alive.
       if (!success && rowLockContext != null) {
-        rowLockContext.cleanUp();
+        rowLockContext.release();
       }
     }
   }
@@ -5671,79 +6211,67 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return lock.getReadLockCount();
   }
 
-  public ConcurrentHashMap<HashedBytes, RowLockContext> getLockedRows() {
+  public RowLockTable getLockedRows() {
     return lockedRows;
   }
 
-  @VisibleForTesting
-  class RowLockContext {
-    private final HashedBytes row;
-    final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
-    final AtomicBoolean usable = new AtomicBoolean(true);
-    final AtomicInteger count = new AtomicInteger(0);
-    final Object lock = new Object();
-    private String threadName;
+  /**
+   * @return the milliseconds spent waiting for row locks held by others
+   */
+  public long getRowLockWaitTime() {
+    return rowLockWaitTime.sum();
+  }
 
-    RowLockContext(HashedBytes row) {
-      this.row = row;
-    }
+  /**
+   * @return the number of row locks that could not be taken right away
+   */
+  public long getRowLockContendedCount() {
+    return rowLockContendedCount.sum();
+  }
 
-    RowLockImpl newWriteLock() {
-      Lock l = readWriteLock.writeLock();
-      return getRowLock(l);
-    }
-    RowLockImpl newReadLock() {
-      Lock l = readWriteLock.readLock();
-      return getRowLock(l);
-    }
+  /**
+   * @return the number of row locks given up after waiting too long
+   */
+  public long getRowLockTimeoutCount() {
+    return rowLockTimeoutCount.sum();
+  }
 
-    private RowLockImpl getRowLock(Lock l) {
-      count.incrementAndGet();
-      synchronized (lock) {
-        if (usable.get()) {
-          return new RowLockImpl(this, l);
-        } else {
-          return null;
-        }
-      }
-    }
+  /**
+   * @return the number of scans answered with cached rows
+   */
+  public long getScanCacheHitCount() {
+    return scanCache == null ? 0 : scanCache.getHitCount();
+  }
 
-    void cleanUp() {
-      long c = count.decrementAndGet();
-      if (c <= 0) {
-        synchronized (lock) {
-          if (count.get() <= 0 && usable.get()){ // Don't attempt to remove row if already removed
-            usable.set(false);
-            RowLockContext removed = lockedRows.remove(row);
-            assert removed == this: "we should never remove a different context";
-          }
-        }
-      }
-    }
+  /**
+   * @return the number of cacheable scans that found no cached rows
+   */
+  public long getScanCacheMissCount() {
+    return scanCache == null ? 0 : scanCache.getMissCount();
+  }
 
-    public void setThreadName(String threadName) {
-      this.threadName = threadName;
-    }
+  /**
+   * @return the number of cached scans evicted to make room for others
+   */
+  public long getScanCacheEvictedCount() {
+    return scanCache == null ? 0 : scanCache.getEvictedCount();
+  }
 
-    @Override
-    public String toString() {
-      return "RowLockContext{" +
-          "row=" + row +
-          ", readWriteLock=" + readWriteLock +
-          ", count=" + count +
-          ", threadName=" + threadName +
-          '}';
-    }
+  /**
+   * @return the bytes taken by the cached rows of the scans
+   */
+  public long getScanCacheSize() {
+    return scanCache == null ? 0 : scanCache.getSize();
   }
 
   /**
    * Class used to represent a lock on a row.
    */
   public static class RowLockImpl implements RowLock {
-    private final RowLockContext context;
+    private final RowLockTable.RowLockContext context;
     private final Lock lock;
 
-    public RowLockImpl(RowLockContext context, Lock lock) {
+    public RowLockImpl(RowLockTable.RowLockContext context, Lock lock) {
       this.context = context;
       this.lock = lock;
     }
@@ -5753,14 +6281,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
 
     @VisibleForTesting
-    public RowLockContext getContext() {
+    public RowLockTable.RowLockContext getContext() {
       return context;
     }
 
     @Override
     public void release() {
       lock.unlock();
-      context.cleanUp();
+      context.release();
     }
 
     @Override
@@ -6024,6 +6552,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
       isSuccessful = true;
     } finally {
+      if (!storeFiles.isEmpty()) {
+        clearScanCache();
+      }
       if (wal != null && !storeFiles.isEmpty()) {
         // Write a bulk load event for hfiles that are loaded
         try {
@@ -7398,6 +7929,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
           // STEP 11. Release row lock(s)
           releaseRowLocks(acquiredRowLocks);
+          invalidateScanCache(new ArrayList<>(rowsToLock));
         }
         success = true;
       } finally {
@@ -7568,6 +8100,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       if (rowLock != null) {
         rowLock.release();
       }
+      invalidateScanCache(Collections.singletonList(mutation.getRow()));
       // Request a cache flush if over the limit.  Do it outside update lock.
       if (isFlushSize(addAndGetMemStoreSize(memstoreAccounting))) {
         requestFlush();
@@ -7598,14 +8131,16 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   private WriteEntry doWALAppend(WALEdit walEdit, Durability durability, List<UUID> clusterIds,
       long now, long nonceGroup, long nonce) throws IOException {
     return doWALAppend(walEdit, durability, clusterIds, now, nonceGroup, nonce,
-        SequenceId.NO_SEQUENCE_ID);
+        SequenceId.NO_SEQUENCE_ID, true);
   }
 
   /**
+   * @param sync whether to sync the edit as its durability asks, the caller syncs it otherwise
    * @return writeEntry associated with this append
    */
   private WriteEntry doWALAppend(WALEdit walEdit, Durability durability, List<UUID> clusterIds,
-      long now, long nonceGroup, long nonce, long origLogSeqNum) throws IOException {
+      long now, long nonceGroup, long nonce, long origLogSeqNum, boolean sync)
+      throws IOException {
     Preconditions.checkArgument(walEdit != null && !walEdit.isEmpty(),
         "WALEdit is null or empty!");
     Preconditions.checkArgument(!walEdit.isReplay() || origLogSeqNum != SequenceId.NO_SEQUENCE_ID,
@@ -7627,7 +8162,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     try {
       long txid = this.wal.append(this.getRegionInfo(), walKey, walEdit, true);
       // Call sync on our edit.
-      if (txid != 0) {
+      if (txid != 0 && sync) {
         sync(txid, durability);
       }
       writeEntry = walKey.getWriteEntry();
@@ -7880,7 +8415,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   public static final long FIXED_OVERHEAD = ClassSize.align(
       ClassSize.OBJECT +
       ClassSize.ARRAY +
-      50 * ClassSize.REFERENCE + 3 * Bytes.SIZEOF_INT +
+      54 * ClassSize.REFERENCE + 3 * Bytes.SIZEOF_INT +
       (14 * Bytes.SIZEOF_LONG) +
       3 * Bytes.SIZEOF_BOOLEAN);
 
@@ -7900,6 +8435,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       (4 * ClassSize.ATOMIC_LONG) + // memStoreSize, numPutsWithoutWAL, dataInMemoryWithoutWAL,
                                     // compactionsFailed
       (2 * ClassSize.CONCURRENT_HASHMAP) +  // lockedRows, scannerReadPoints
+      (3 * ClassSize.OBJECT) + // rowLockContendedCount, rowLockWaitTime, rowLockTimeoutCount
       WriteState.HEAP_SIZE + // writestate
       ClassSize.CONCURRENT_SKIPLISTMAP + ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY + // stores
       (2 * ClassSize.REENTRANT_LOCK) + // lock, updatesLock
@@ -8252,30 +8788,34 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
    * @throws IOException If anything goes wrong with DFS
    */
   private void sync(long txid, Durability durability) throws IOException {
-    if (this.getRegionInfo().isMetaRegion()) {
+    if (shouldSyncWAL(durability)) {
       this.wal.sync(txid);
-    } else {
-      switch(durability) {
-      case USE_DEFAULT:
-        // do what table defaults to
-        if (shouldSyncWAL()) {
-          this.wal.sync(txid);
-        }
-        break;
-      case SKIP_WAL:
-        // nothing do to
-        break;
-      case ASYNC_WAL:
-        // nothing do to
-        break;
-      case SYNC_WAL:
-      case FSYNC_WAL:
-        // sync the WAL edit (SYNC and FSYNC treated the same for now)
-        this.wal.sync(txid);
-        break;
-      default:
-        throw new RuntimeException("Unknown durability " + durability);
-      }
+    }
+  }
+
+  /**
+   * Check whether an edit with the given durability has to be synced to the WAL
+   */
+  private boolean shouldSyncWAL(Durability durability) {
+    if (this.getRegionInfo().isMetaRegion()) {
+      return true;
+    }
+    switch(durability) {
+    case USE_DEFAULT:
+      // do what table defaults to
+      return shouldSyncWAL();
+    case SKIP_WAL:
+      // nothing do to
+      return false;
+    case ASYNC_WAL:
+      // nothing do to
+      return false;
+    case SYNC_WAL:
+    case FSYNC_WAL:
+      // sync the WAL edit (SYNC and FSYNC treated the same for now)
+      return true;
+    default:
+      throw new RuntimeException("Unknown durability " + durability);
     }
   }
 
@@ -24,7 +24,10 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.apache.hadoop.conf.Configuration;
@@ -69,6 +72,14 @@ public class HRegionFileSystem {
   /** Name of the region info file that resides just under the region directory. */
   public final static String REGION_INFO_FILE = ".regioninfo";
 
+  /**
+   * Name of the file listing the hot cached blocks of the store files, left by the last close of
+   * the region for the server opening it next.
+   */
+  public static final String REGION_HOT_BLOCKS_FILE = ".hotblocks";
+
+  private static final int HOT_BLOCKS_FILE_VERSION = 1;
+
   /** Temporary subdirectory of the region directory used for merges. */
   public static final String REGION_MERGES_DIR = ".merges";
 
@@ -956,6 +967,70 @@ public class HRegionFileSystem {
     }
   }
 
+  /**
+   * Writes the offsets of the hot cached blocks of the store files under the region directory,
+   * replacing any previous list.
+   * @param hotBlocks the offsets of the blocks by store file name
+   */
+  void writeHotBlocks(final Map<String, long[]> hotBlocks) throws IOException {
+    Path hotBlocksFile = new Path(getRegionDir(), REGION_HOT_BLOCKS_FILE);
+    // Write in the .tmp dir and move into place, so a crash never leaves a partial list
+    Path tmpPath = new Path(getTempDir(), REGION_HOT_BLOCKS_FILE);
+    if (FSUtils.isExists(fs, tmpPath)) {
+      FSUtils.delete(fs, tmpPath, true);
+    }
+    FsPermission perms = FSUtils.getFilePermissions(fs, conf, HConstants.DATA_FILE_UMASK_KEY);
+    try (FSDataOutputStream out = FSUtils.create(conf, fs, tmpPath, perms, null)) {
+      out.writeInt(HOT_BLOCKS_FILE_VERSION);
+      out.writeInt(hotBlocks.size());
+      for (Map.Entry<String, long[]> entry : hotBlocks.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().length);
+        for (long offset : entry.getValue()) {
+          out.writeLong(offset);
+        }
+      }
+    }
+    if (FSUtils.isExists(fs, hotBlocksFile)) {
+      FSUtils.delete(fs, hotBlocksFile, false);
+    }
+    if (!rename(tmpPath, hotBlocksFile)) {
+      throw new IOException("Unable to rename " + tmpPath + " to " + hotBlocksFile);
+    }
+  }
+
+  /**
+   * Reads the list of hot blocks left by the last close of the region, and deletes it so a stale
+   * list is never read twice.
+   * @return the offsets of the blocks by store file name, empty if there is no list
+   */
+  Map<String, long[]> readAndDeleteHotBlocks() throws IOException {
+    Path hotBlocksFile = new Path(getRegionDir(), REGION_HOT_BLOCKS_FILE);
+    if (!FSUtils.isExists(fs, hotBlocksFile)) {
+      return Collections.emptyMap();
+    }
+    Map<String, long[]> hotBlocks = new HashMap<>();
+    try (FSDataInputStream in = fs.open(hotBlocksFile)) {
+      int version = in.readInt();
+      if (version != HOT_BLOCKS_FILE_VERSION) {
+        LOG.warn("Skipping " + hotBlocksFile + " of unknown version " + version);
+        return Collections.emptyMap();
+      }
+      int files = in.readInt();
+      for (int i = 0; i < files; i++) {
+        String name = in.readUTF();
+        long[] offsets = new long[in.readInt()];
+        for (int j = 0; j < offsets.length; j++) {
+          offsets[j] = in.readLong();
+        }
+        hotBlocks.put(name, offsets);
+      }
+    } finally {
+      FSUtils.delete(fs, hotBlocksFile, false);
+    }
+    return hotBlocks;
+  }
+
   /**
    * Create a new Region on file-system.
    * @param conf the {@link Configuration} to use
@@ -43,6 +43,8 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -512,6 +514,26 @@ public class HRegionServer extends HasThread implements
 
   private volatile ThroughputController flushThroughputController;
 
+  /**
+   * Max number of threads writing the store files of flushing regions. The stores of a region are
+   * flushed one after the other when it is 1 or less, the default.
+   */
+  public static final String STORE_FLUSH_THREADS_KEY = "hbase.regionserver.flush.store.threads";
+  public static final int DEFAULT_STORE_FLUSH_THREADS = 1;
+
+  // shared by all the regions, so the stores of a region are flushed in parallel
+  private ThreadPoolExecutor storeFlushPool;
+
+  /**
+   * Max number of threads scanning ranges of regions in parallel for the scans of clients. The
+   * regions are scanned by the RPC handler alone when it is 1 or less.
+   */
+  public static final String PARALLEL_SCAN_THREADS_KEY = "hbase.regionserver.scan.parallel.threads";
+  public static final int DEFAULT_PARALLEL_SCAN_THREADS = 0;
+
+  // shared by all the regions, so a scan runs over several ranges of its region at once
+  private ThreadPoolExecutor parallelScanPool;
+
   protected SecureBulkLoadManager secureBulkLoadManager;
 
   protected FileSystemUtilizationChore fsUtilizationChore;
@@ -1889,6 +1911,17 @@ public class HRegionServer extends HasThread implements
 
     this.walRoller = new LogRoller(this, this);
     this.flushThroughputController = FlushThroughputControllerFactory.create(this, conf);
+    int storeFlushThreads = conf.getInt(STORE_FLUSH_THREADS_KEY, DEFAULT_STORE_FLUSH_THREADS);
+    if (storeFlushThreads > 1) {
+      this.storeFlushPool = Threads.getBoundedCachedThreadPool(storeFlushThreads, 60L,
+        TimeUnit.SECONDS, Threads.newDaemonThreadFactory(getName() + "-StoreFlusher"));
+    }
+    int parallelScanThreads =
+        conf.getInt(PARALLEL_SCAN_THREADS_KEY, DEFAULT_PARALLEL_SCAN_THREADS);
+    if (parallelScanThreads > 1) {
+      this.parallelScanPool = Threads.getBoundedCachedThreadPool(parallelScanThreads, 60L,
+        TimeUnit.SECONDS, Threads.newDaemonThreadFactory(getName() + "-ParallelScanner"));
+    }
     this.procedureResultReporter = new RemoteProcedureResultReporter(this);
 
     // Create the CompactedFileDischarger chore executorService. This chore helps to
@@ -2447,6 +2480,12 @@ public class HRegionServer extends HasThread implements
     if (this.cacheFlusher != null) {
       this.cacheFlusher.join();
     }
+    if (this.storeFlushPool != null) {
+      this.storeFlushPool.shutdown();
+    }
+    if (this.parallelScanPool != null) {
+      this.parallelScanPool.shutdown();
+    }
 
     if (this.spanReceiverHost != null) {
       this.spanReceiverHost.closeReceivers();
@@ -3657,6 +3696,16 @@ public class HRegionServer extends HasThread implements
     return flushThroughputController;
   }
 
+  @Override
+  public ThreadPoolExecutor getStoreFlushPool() {
+    return storeFlushPool;
+  }
+
+  @Override
+  public ThreadPoolExecutor getParallelScanPool() {
+    return parallelScanPool;
+  }
+
   @Override
   public double getFlushPressure() {
     if (getRegionServerAccounting() == null || cacheFlusher == null) {
@@ -64,6 +64,7 @@ import org.apache.hadoop.hbase.MemoryCompactionPolicy;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.backup.FailedArchiveException;
 import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.conf.ConfigurationManager;
@@ -296,6 +297,11 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
 
     // Setting up cache configuration for this family
     createCacheConf(family);
+    if (cacheConf.getCachePartition() == null && region.getTableDescriptor() != null) {
+      // A table wide cache partition applies to the families that do not pick their own
+      cacheConf.setCachePartition(region.getTableDescriptor()
+          .getValue(ColumnFamilyDescriptorBuilder.BLOCKCACHE_PARTITION));
+    }
 
     this.verifyBulkLoads = conf.getBoolean("hbase.hstore.bulkload.verify", false);
 
@@ -2100,6 +2106,26 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
     return getStoreFileFieldSize(StoreFileReader::getTotalBloomSize);
   }
 
+  /**
+   * Account a user get or scan on this store, for the in-memory compaction strategy.
+   */
+  void recordRead(boolean isGet) {
+    if (this.memstore instanceof CompactingMemStore) {
+      ((CompactingMemStore) this.memstore).recordRead(isGet);
+    }
+  }
+
+  /**
+   * @return the number of times the in-memory compaction of this store chose each action, by
+   *         action name; empty when the store does not compact in memory
+   */
+  public Map<String, Long> getMemStoreCompactionDecisions() {
+    if (this.memstore instanceof CompactingMemStore) {
+      return ((CompactingMemStore) this.memstore).getCompactionDecisions();
+    }
+    return Collections.emptyMap();
+  }
+
   @Override
   public MemStoreSize getMemStoreSize() {
     return this.memstore.size();
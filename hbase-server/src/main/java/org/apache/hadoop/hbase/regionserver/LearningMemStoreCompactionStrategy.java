@@ -0,0 +1,226 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Learning is a cost based strategy. For every in-memory flush it estimates, in cells visited,
+ * what flattening, merging and compacting the pipeline cost now and what each of them saves to
+ * the reads expected until the next in-memory flush, and applies the action with the best payoff.
+ *
+ * The estimates are made of:
+ *  - the fraction of unique keys u, counted while flattening and merging the segments, so the
+ *    average number of versions of a key is 1/u;
+ *  - the number of versions the store keeps, m, which bounds the fraction of the cells a data
+ *    compaction can remove to 1-m*u. This bound is corrected by the ratio between the cells
+ *    actually removed by the previous compactions and their estimate;
+ *  - the number of reads served by the store between two in-memory flushes and the fraction of
+ *    gets among them, both kept as decaying averages.
+ *
+ * A get seeks every segment and reads the versions of its key, a scan goes through the versions
+ * of many keys while merging the segments. Merging the pipeline saves the seeks and merges of
+ * every read, compacting it saves the versions it removes as well and avoids flushing them to
+ * disk later. Flattening is the baseline every other action is compared to. When the pipeline
+ * holds more segments than allowed one of the other two actions is chosen anyway.
+ */
+@InterfaceAudience.Private
+public class LearningMemStoreCompactionStrategy extends MemStoreCompactionStrategy {
+
+  private static final String name = "LEARNING";
+
+  /** Cells a scan is assumed to read, in units of memstore cell visits */
+  public static final String LEARNING_SCAN_LENGTH_KEY =
+      "hbase.hregion.compacting.memstore.learning.scan.length";
+  private static final int LEARNING_SCAN_LENGTH_DEFAULT = 100;
+  /** Cost of compacting a cell relatively to merging its index entry */
+  public static final String LEARNING_COMPACTION_COST_KEY =
+      "hbase.hregion.compacting.memstore.learning.compaction.cost";
+  private static final double LEARNING_COMPACTION_COST_DEFAULT = 3.0;
+  /** Cost saved by not flushing a cell to disk, relatively to merging its index entry */
+  public static final String LEARNING_FLUSH_COST_KEY =
+      "hbase.hregion.compacting.memstore.learning.flush.cost";
+  private static final double LEARNING_FLUSH_COST_DEFAULT = 2.0;
+
+  // weight of the past in the decaying averages
+  private static final double DECAY = 0.7;
+  // bounds of the correction of the estimated removal, so it can always recover
+  private static final double MIN_ACCURACY = 0.1;
+  private static final double MAX_ACCURACY = 10;
+
+  private final int maxVersions;
+  private final int scanLength;
+  private final double compactionCost;
+  private final double flushCost;
+
+  private final LongAdder gets = new LongAdder();
+  private final LongAdder scans = new LongAdder();
+  private long lastGets;
+  private long lastScans;
+
+  // decaying averages, negative until known
+  private double readsPerFlush = -1;
+  private double getFraction = -1;
+  // ratio between the cells removed by a compaction and the estimated ones
+  private double removalAccuracy = 1.0;
+
+  // the last compaction and what it was expected to do
+  private boolean compacted = false;
+  private int numCellsBeforeCompaction;
+  private double modelRemoval;
+
+  public LearningMemStoreCompactionStrategy(Configuration conf, String cfName, int maxVersions) {
+    super(conf, cfName);
+    this.maxVersions = Math.max(1, maxVersions);
+    this.scanLength = conf.getInt(LEARNING_SCAN_LENGTH_KEY, LEARNING_SCAN_LENGTH_DEFAULT);
+    this.compactionCost =
+        conf.getDouble(LEARNING_COMPACTION_COST_KEY, LEARNING_COMPACTION_COST_DEFAULT);
+    this.flushCost = conf.getDouble(LEARNING_FLUSH_COST_KEY, LEARNING_FLUSH_COST_DEFAULT);
+  }
+
+  @Override
+  public void recordRead(boolean isGet) {
+    if (isGet) {
+      gets.increment();
+    } else {
+      scans.increment();
+    }
+  }
+
+  @Override
+  public Action getAction(VersionedSegmentsList versionedList) {
+    updateReadStats();
+    int numOfCells = versionedList.getNumOfCells();
+    int numOfSegments = versionedList.getNumOfSegments();
+    double uniquesFrac = versionedList.getEstimatedUniquesFrac();
+    double removal = estimateRemoval(uniquesFrac);
+
+    double mergePayoff = getMergePayoff(numOfCells, numOfSegments, uniquesFrac);
+    double compactPayoff = getCompactPayoff(numOfCells, numOfSegments, uniquesFrac, removal);
+    String info = name + " (merge payoff=" + (long) mergePayoff + ", compaction payoff="
+        + (long) compactPayoff + ", estimated removal=" + removal + ")";
+
+    compacted = false;
+    boolean mustMerge = numOfSegments > pipelineThreshold;
+    if (compactPayoff > mergePayoff && (compactPayoff > 0 || mustMerge)) {
+      compacted = true;
+      numCellsBeforeCompaction = numOfCells;
+      modelRemoval = getModelRemoval(uniquesFrac);
+      return compact(versionedList, info);
+    }
+    if (mergePayoff > 0 || mustMerge) {
+      LOG.debug("{} in-memory compaction of {}; merging {} segments", info, cfName,
+          numOfSegments);
+      return getMergingAction();
+    }
+    LOG.debug("{} in-memory compaction of {}; flattening a segment", info, cfName);
+    return getFlattenAction();
+  }
+
+  @Override
+  public void updateStats(Segment replacement) {
+    if (!compacted || numCellsBeforeCompaction == 0) {
+      return;
+    }
+    compacted = false;
+    double removed = 1.0 - (double) replacement.getCellsCount() / numCellsBeforeCompaction;
+    if (modelRemoval > 0) {
+      removalAccuracy = DECAY * removalAccuracy + (1 - DECAY) * (removed / modelRemoval);
+      removalAccuracy = Math.min(MAX_ACCURACY, Math.max(MIN_ACCURACY, removalAccuracy));
+    }
+  }
+
+  @Override
+  protected Action getMergingAction() {
+    return Action.MERGE_COUNT_UNIQUE_KEYS;
+  }
+
+  @Override
+  protected Action getFlattenAction() {
+    return Action.FLATTEN_COUNT_UNIQUE_KEYS;
+  }
+
+  private void updateReadStats() {
+    long g = gets.sum();
+    long s = scans.sum();
+    long newGets = g - lastGets;
+    long newScans = s - lastScans;
+    lastGets = g;
+    lastScans = s;
+    long reads = newGets + newScans;
+    readsPerFlush = readsPerFlush < 0 ? reads : DECAY * readsPerFlush + (1 - DECAY) * reads;
+    if (reads > 0) {
+      double frac = (double) newGets / reads;
+      getFraction = getFraction < 0 ? frac : DECAY * getFraction + (1 - DECAY) * frac;
+    }
+  }
+
+  /**
+   * @return the fraction of the cells a compaction is expected to remove
+   */
+  @VisibleForTesting
+  double estimateRemoval(double uniquesFrac) {
+    return Math.min(1.0, getModelRemoval(uniquesFrac) * removalAccuracy);
+  }
+
+  // the versions beyond the ones kept by the store
+  private double getModelRemoval(double uniquesFrac) {
+    return Math.max(0, 1.0 - maxVersions * uniquesFrac);
+  }
+
+  // cells visited by the expected reads on a pipeline of the given shape
+  private double readCost(double numOfCells, int numOfSegments, double versions) {
+    double reads = Math.max(0, readsPerFlush);
+    double getFrac = getFraction < 0 ? 0.5 : getFraction;
+    double cellsPerSegment = Math.max(1, numOfCells / numOfSegments);
+    double getCost = numOfSegments * log2(1 + cellsPerSegment) + versions;
+    double scanCost = scanLength * (log2(1 + numOfSegments) + versions);
+    return reads * (getFrac * getCost + (1 - getFrac) * scanCost);
+  }
+
+  @VisibleForTesting
+  double getMergePayoff(int numOfCells, int numOfSegments, double uniquesFrac) {
+    double versions = 1.0 / Math.max(uniquesFrac, Double.MIN_VALUE);
+    double saved =
+        readCost(numOfCells, numOfSegments, versions) - readCost(numOfCells, 1, versions);
+    // the youngest segment would be flattened anyway, the merge goes over the others as well
+    double cost = numOfCells - (double) numOfCells / numOfSegments;
+    return saved - cost;
+  }
+
+  @VisibleForTesting
+  double getCompactPayoff(int numOfCells, int numOfSegments, double uniquesFrac,
+      double removal) {
+    double versions = 1.0 / Math.max(uniquesFrac, Double.MIN_VALUE);
+    double saved = readCost(numOfCells, numOfSegments, versions)
+        - readCost(numOfCells * (1 - removal), 1, Math.max(1, versions * (1 - removal)))
+        + flushCost * removal * numOfCells;
+    double cost = compactionCost * numOfCells - (double) numOfCells / numOfSegments;
+    return saved - cost;
+  }
+
+  private static double log2(double x) {
+    return Math.log(x) / Math.log(2);
+  }
+}
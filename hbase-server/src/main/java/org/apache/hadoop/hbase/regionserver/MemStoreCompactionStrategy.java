@@ -18,6 +18,11 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
@@ -61,7 +66,8 @@ public abstract class MemStoreCompactionStrategy {
   protected final String cfName;
   // The limit on the number of the segments in the pipeline
   protected final int pipelineThreshold;
-
+  // The number of times each action was chosen
+  private final Map<Action, LongAdder> decisions = new EnumMap<>(Action.class);
 
   public MemStoreCompactionStrategy(Configuration conf, String cfName) {
     this.cfName = cfName;
@@ -71,6 +77,9 @@ public abstract class MemStoreCompactionStrategy {
       pipelineThreshold =         // get the limit on the number of the segments in the pipeline
           conf.getInt(COMPACTING_MEMSTORE_THRESHOLD_KEY, COMPACTING_MEMSTORE_THRESHOLD_DEFAULT);
     }
+    for (Action action : Action.values()) {
+      decisions.put(action, new LongAdder());
+    }
   }
 
   // get next compaction action to apply on compaction pipeline
@@ -80,6 +89,24 @@ public abstract class MemStoreCompactionStrategy {
   public void updateStats(Segment replacement) {}
   // resets policy stats
   public void resetStats() {}
+  // update policy stats with a user get or scan served by the store
+  public void recordRead(boolean isGet) {}
+
+  // account the action returned by getAction() in the decision histogram
+  public void recordDecision(Action action) {
+    decisions.get(action).increment();
+  }
+
+  /**
+   * @return the number of times each action was chosen, by action name
+   */
+  public Map<String, Long> getDecisions() {
+    Map<String, Long> histogram = new LinkedHashMap<>();
+    for (Map.Entry<Action, LongAdder> e : decisions.entrySet()) {
+      histogram.put(e.getKey().name(), e.getValue().sum());
+    }
+    return histogram;
+  }
 
   protected Action simpleMergeOrFlatten(VersionedSegmentsList versionedList, String strategy) {
     int numOfSegments = versionedList.getNumOfSegments();
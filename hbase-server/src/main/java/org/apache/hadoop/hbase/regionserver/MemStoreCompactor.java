@@ -19,6 +19,7 @@
 package org.apache.hadoop.hbase.regionserver;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
@@ -123,6 +124,17 @@ public class MemStoreCompactor {
     strategy.resetStats();
   }
 
+  public void recordRead(boolean isGet) {
+    strategy.recordRead(isGet);
+  }
+
+  /**
+   * @return the number of times the compaction strategy chose each action, by action name
+   */
+  public Map<String, Long> getDecisions() {
+    return strategy.getDecisions();
+  }
+
   /**----------------------------------------------------------------------
   * Reset the interruption indicator and clear the pointers in order to allow good
   * garbage collection
@@ -145,6 +157,7 @@ public class MemStoreCompactor {
     }
 
     MemStoreCompactionStrategy.Action nextStep = strategy.getAction(versionedList);
+    strategy.recordDecision(nextStep);
     boolean merge =
         (nextStep == MemStoreCompactionStrategy.Action.MERGE ||
             nextStep == MemStoreCompactionStrategy.Action.MERGE_COUNT_UNIQUE_KEYS);
@@ -245,6 +258,11 @@ public class MemStoreCompactor {
         break;
       case ADAPTIVE: strategy = new AdaptiveMemStoreCompactionStrategy(configuration, cfName);
         break;
+      case LEARNING:
+        HStore store = compactingMemStore.getStore();
+        strategy = new LearningMemStoreCompactionStrategy(configuration, cfName,
+            store == null ? 1 : store.getColumnFamilyDescriptor().getMaxVersions());
+        break;
       default:
         // sanity check
         throw new IllegalArgumentIOException("Unknown memory compaction type " + compType);
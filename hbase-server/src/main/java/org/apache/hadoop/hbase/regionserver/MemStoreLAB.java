@@ -56,6 +56,13 @@ public interface MemStoreLAB {
   int MAX_ALLOC_DEFAULT = 256 * 1024; // allocs bigger than this don't go through
                                                    // allocator
 
+  /**
+   * Whether the active segment indexes its cells with a {@link CellChunkSkipListMap} on the chunks
+   * of its MSLAB instead of an on-heap ConcurrentSkipListMap.
+   */
+  String CHUNK_INDEX_KEY = "hbase.hregion.memstore.mslab.chunk.index";
+  boolean CHUNK_INDEX_DEFAULT = false;
+
   // MSLAB pool related configs
   String CHUNK_POOL_MAXSIZE_KEY = "hbase.hregion.memstore.chunkpool.maxsize";
   String CHUNK_POOL_INITIALSIZE_KEY = "hbase.hregion.memstore.chunkpool.initialsize";
@@ -18,12 +18,15 @@
 package org.apache.hadoop.hbase.regionserver;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.OptionalDouble;
 import java.util.OptionalLong;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
@@ -33,6 +36,7 @@ import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
 import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.CachePartitions;
 import org.apache.hadoop.hbase.io.hfile.CacheStats;
 import org.apache.hadoop.hbase.mob.MobCacheConfig;
 import org.apache.hadoop.hbase.mob.MobFileCache;
@@ -386,6 +390,71 @@ class MetricsRegionServerWrapperImpl
     return this.cacheStats.getFailedInserts();
   }
 
+  @Override
+  public long getBlockCacheDeferredInsertions() {
+    if (this.cacheStats == null) {
+      return 0;
+    }
+    return this.cacheStats.getDeferredInserts();
+  }
+
+  /**
+   * @return the partitions of each level of the block cache that is partitioned
+   */
+  private List<CachePartitions> getBlockCachePartitions() {
+    List<CachePartitions> result = new ArrayList<>();
+    if (this.blockCache == null) {
+      return result;
+    }
+    BlockCache[] caches = this.blockCache.getBlockCaches();
+    if (caches == null) {
+      caches = new BlockCache[] { this.blockCache };
+    }
+    for (BlockCache cache : caches) {
+      if (cache != null && cache.getPartitions() != null) {
+        result.add(cache.getPartitions());
+      }
+    }
+    return result;
+  }
+
+  private long sumBlockCachePartition(String name, ToLongFunction<CachePartitions.Partition> f) {
+    long sum = 0;
+    for (CachePartitions partitions : getBlockCachePartitions()) {
+      CachePartitions.Partition partition = partitions.get(name);
+      if (partition != null) {
+        sum += f.applyAsLong(partition);
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public Collection<String> getBlockCachePartitionNames() {
+    Collection<String> names = new LinkedHashSet<>();
+    for (CachePartitions partitions : getBlockCachePartitions()) {
+      for (CachePartitions.Partition partition : partitions.getPartitions()) {
+        names.add(partition.getName());
+      }
+    }
+    return names;
+  }
+
+  @Override
+  public long getBlockCachePartitionSize(String partition) {
+    return sumBlockCachePartition(partition, CachePartitions.Partition::getSize);
+  }
+
+  @Override
+  public long getBlockCachePartitionHitCount(String partition) {
+    return sumBlockCachePartition(partition, CachePartitions.Partition::getHitCount);
+  }
+
+  @Override
+  public long getBlockCachePartitionMissCount(String partition) {
+    return sumBlockCachePartition(partition, CachePartitions.Partition::getMissCount);
+  }
+
   @Override
   public long getL1CacheHitCount() {
     if (this.l1Stats == null) {
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.OptionalDouble;
 import java.util.OptionalLong;
+import java.util.TreeMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.io.hfile.PrefetchExecutor;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.metrics2.MetricsExecutor;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -56,6 +58,9 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
   private long numReferenceFiles;
   private long maxFlushQueueSize;
   private long maxCompactionQueueSize;
+  private final long createTime = EnvironmentEdgeManager.currentTime();
+  private long lastReadRequestCount;
+  private volatile double readRequestRate = -1;
 
   private ScheduledFuture<?> regionMetricsUpdateTask;
 
@@ -124,6 +129,19 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return this.region.getReadRequestsCount();
   }
 
+  /**
+   * @return the read requests per second over the last metrics period, or since the region was
+   *         opened until the first period is over
+   */
+  public double getReadRequestRate() {
+    double rate = readRequestRate;
+    if (rate >= 0) {
+      return rate;
+    }
+    long elapsed = EnvironmentEdgeManager.currentTime() - createTime;
+    return this.region.getReadRequestsCount() * 1000.0 / Math.max(1000, elapsed);
+  }
+
   @Override
   public long getFilteredReadRequestCount() {
     return this.region.getFilteredReadRequestsCount();
@@ -206,6 +224,63 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return numReferenceFiles;
   }
 
+  @Override
+  public long getPrefetchedBytes() {
+    return PrefetchExecutor.getPrefetchedBytes(getRegionName());
+  }
+
+  @Override
+  public long getPrefetchPendingBytes() {
+    return PrefetchExecutor.getPendingBytes(getRegionName());
+  }
+
+  @Override
+  public Map<String, Map<String, Long>> getMemStoreCompactionDecisions() {
+    Map<String, Map<String, Long>> decisions = new TreeMap<>();
+    for (HStore store : this.region.stores.values()) {
+      Map<String, Long> storeDecisions = store.getMemStoreCompactionDecisions();
+      if (!storeDecisions.isEmpty()) {
+        decisions.put(store.getColumnFamilyName(), storeDecisions);
+      }
+    }
+    return decisions;
+  }
+
+  @Override
+  public long getRowLockContendedCount() {
+    return this.region.getRowLockContendedCount();
+  }
+
+  @Override
+  public long getRowLockWaitTime() {
+    return this.region.getRowLockWaitTime();
+  }
+
+  @Override
+  public long getRowLockTimeoutCount() {
+    return this.region.getRowLockTimeoutCount();
+  }
+
+  @Override
+  public long getScanCacheHitCount() {
+    return this.region.getScanCacheHitCount();
+  }
+
+  @Override
+  public long getScanCacheMissCount() {
+    return this.region.getScanCacheMissCount();
+  }
+
+  @Override
+  public long getScanCacheEvictedCount() {
+    return this.region.getScanCacheEvictedCount();
+  }
+
+  @Override
+  public long getScanCacheSize() {
+    return this.region.getScanCacheSize();
+  }
+
   @Override
   public int getRegionHashCode() {
     return this.region.hashCode();
@@ -275,6 +350,9 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       if (tempMaxFlushQueueSize > maxFlushQueueSize) {
         maxFlushQueueSize = tempMaxFlushQueueSize;
       }
+      long tempReadRequestCount = getReadRequestCount();
+      readRequestRate = (double) (tempReadRequestCount - lastReadRequestCount) / PERIOD;
+      lastReadRequestCount = tempReadRequestCount;
     }
   }
 
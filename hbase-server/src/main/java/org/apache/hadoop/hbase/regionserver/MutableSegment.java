@@ -42,9 +42,19 @@ public class MutableSegment extends Segment {
         + ClassSize.CONCURRENT_SKIPLISTMAP
         + ClassSize.SYNC_TIMERANGE_TRACKER;
 
+  // whether the index is a CellChunkSkipListMap, which can only refer to cells on MSLAB chunks
+  private final boolean chunkIndex;
+
   protected MutableSegment(CellSet cellSet, CellComparator comparator, MemStoreLAB memStoreLAB) {
     super(cellSet, comparator, memStoreLAB, TimeRangeTracker.create(TimeRangeTracker.Type.SYNC));
     incSize(0,DEEP_OVERHEAD); // update the mutable segment metadata
+    this.chunkIndex = cellSet.getDelegatee() instanceof CellChunkSkipListMap;
+  }
+
+  @Override
+  public Cell maybeCloneWithAllocator(Cell cell, boolean forceCloneOfBigCell) {
+    // big cells go to the MSLAB as well when the index is chunk based
+    return super.maybeCloneWithAllocator(cell, forceCloneOfBigCell || chunkIndex);
   }
 
   /**
@@ -56,8 +66,25 @@ public class MutableSegment extends Segment {
     internalAdd(cell, mslabUsed, memStoreSizing);
   }
 
+  /**
+   * Adds the given cell into the segment and removes the older versions of its row and column that
+   * no scanner can see any more.
+   * <p>
+   * With a chunk based index the cell is copied into the MSLAB, and removing a version only marks
+   * its node as deleted, so neither the data nor the node of the removed versions are released
+   * before the segment is closed. They stay counted in the size of the segment, so a store whose
+   * cells are upserted again and again flushes as its chunks fill up rather than running over them.
+   * @param cell the cell to add
+   * @param readpoint the smallest read point of the scanners of the region
+   */
   public void upsert(Cell cell, long readpoint, MemStoreSizing memStoreSizing) {
-    internalAdd(cell, false, memStoreSizing);
+    if (chunkIndex) {
+      // a chunk based index can not refer to the cell where it is, so the MSLAB has to be used
+      cell = maybeCloneWithAllocator(cell, true);
+      internalAdd(cell, true, memStoreSizing);
+    } else {
+      internalAdd(cell, false, memStoreSizing);
+    }
 
     // Get the Cells for the row/family/qualifier regardless of timestamp.
     // For this case we want to clean up any other puts
@@ -69,7 +96,8 @@ public class MutableSegment extends Segment {
     while (it.hasNext()) {
       Cell cur = it.next();
 
-      if (cell == cur) {
+      // a chunk based index hands out new instances of its cells
+      if (cell == cur || (chunkIndex && getComparator().compare(cell, cur) == 0)) {
         // ignore the one just put in
         continue;
       }
@@ -86,11 +114,13 @@ public class MutableSegment extends Segment {
             // area. Only the Cell object as such going way. We need to consider cellLen to be
             // decreased there as 0 only. Just keeping it as existing code now. We need to know the
             // removed cell is from MSLAB or not. Will do once HBASE-16438 is in
-            int cellLen = getCellLength(cur);
-            long heapSize = heapSizeChange(cur, true);
-            this.incSize(-cellLen, -heapSize);
-            if (memStoreSizing != null) {
-              memStoreSizing.decMemStoreSize(cellLen, heapSize);
+            if (!chunkIndex) {
+              int cellLen = getCellLength(cur);
+              long heapSize = heapSizeChange(cur, true);
+              this.incSize(-cellLen, -heapSize);
+              if (memStoreSizing != null) {
+                memStoreSizing.decMemStoreSize(cellLen, heapSize);
+              }
             }
             it.remove();
           } else {
@@ -104,6 +134,14 @@ public class MutableSegment extends Segment {
     }
   }
 
+  /**
+   * @return true if the cells of the segment are indexed on its MSLAB chunks
+   */
+  @VisibleForTesting
+  boolean isChunkIndex() {
+    return chunkIndex;
+  }
+
   /**
    * Returns the first cell in the segment
    * @return the first cell in the segment
@@ -113,6 +151,15 @@ public class MutableSegment extends Segment {
     return this.getCellSet().first();
   }
 
+  @Override
+  protected long heapSizeChange(Cell cell, boolean succ) {
+    if (!succ && chunkIndex) {
+      // a chunk based index writes a new record for the cell replacing the one already there
+      return CellChunkSkipListMap.RECORD_SIZE;
+    }
+    return super.heapSizeChange(cell, succ);
+  }
+
   @Override protected long indexEntrySize() {
       return ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY;
   }
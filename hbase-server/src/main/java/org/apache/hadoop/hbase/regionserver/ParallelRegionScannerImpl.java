@@ -0,0 +1,442 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.PackagePrivateFieldAccessor;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.ColumnCountGetFilter;
+import org.apache.hadoop.hbase.filter.ColumnPaginationFilter;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.ColumnRangeFilter;
+import org.apache.hadoop.hbase.filter.DependentColumnFilter;
+import org.apache.hadoop.hbase.filter.FamilyFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.InclusiveStopFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.QualifierFilter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueExcludeFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.SkipFilter;
+import org.apache.hadoop.hbase.filter.TimestampsFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.regionserver.HRegion.RegionScannerImpl;
+import org.apache.hadoop.hbase.regionserver.Region.Operation;
+import org.apache.hadoop.hbase.regionserver.ScannerContext.LimitScope;
+import org.apache.hadoop.hbase.regionserver.ScannerContext.NextState;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+
+/**
+ * ParallelRegionScannerImpl extends from RegionScannerImpl, and is used to scan several ranges
+ * of a region at once. The range of the scan is split at the first rows of blocks of the block
+ * indexes of the store files. Every range is scanned by its own {@link RegionScannerImpl} on a
+ * pool of the region server, all at the same read point, and the rows read are buffered until
+ * the RPC handler takes them.
+ * <p>
+ * The rows are returned in order, the rows of a range after the rows of the previous one, or in
+ * the order they are read when the scan has the {@link Scan#SCAN_ATTRIBUTES_UNORDERED}
+ * attribute. Every range scanner gets its own copy of the filter of the scan, so only the scans
+ * whose filters are all known to decide on each row alone are split, not the ones with filters
+ * spanning rows, as {@link PageFilter} and {@link WhileMatchFilter}, or with custom filters.
+ */
+@InterfaceAudience.Private
+class ParallelRegionScannerImpl extends RegionScannerImpl {
+
+  /** Rows buffered for every range before its scanner waits for them to be taken */
+  static final String PARALLEL_SCAN_BUFFERED_ROWS_KEY =
+      "hbase.regionserver.scan.parallel.buffered.rows";
+  static final int DEFAULT_PARALLEL_SCAN_BUFFERED_ROWS = 128;
+
+  private final ThreadPoolExecutor pool;
+  private final boolean ordered;
+  private final int bufferedRows;
+  private final Range[] ranges;
+
+  // guards the rows and the state of all the ranges
+  private final Object lock = new Object();
+  private boolean closed = false;
+  // the range rows are taken from when ordered, the next one to look at otherwise
+  private int current = 0;
+
+  /**
+   * @param splitRows the rows starting a range, besides the first one
+   */
+  ParallelRegionScannerImpl(Scan scan, HRegion region, ThreadPoolExecutor pool,
+      List<byte[]> splitRows, long nonceGroup, long nonce) throws IOException {
+    region.super(scan, null, region, nonceGroup, nonce);
+    this.pool = pool;
+    byte[] unordered = scan.getAttribute(Scan.SCAN_ATTRIBUTES_UNORDERED);
+    this.ordered = unordered == null || !Bytes.toBoolean(unordered);
+    this.bufferedRows = Math.max(1, region.getBaseConf().getInt(PARALLEL_SCAN_BUFFERED_ROWS_KEY,
+      DEFAULT_PARALLEL_SCAN_BUFFERED_ROWS));
+    this.ranges = new Range[splitRows.size() + 1];
+    try {
+      for (int i = 0; i < ranges.length; i++) {
+        Scan rangeScan = new Scan(scan);
+        if (scan.hasFilter()) {
+          rangeScan.setFilter(ProtobufUtil.toFilter(ProtobufUtil.toFilter(scan.getFilter())));
+        }
+        if (i > 0) {
+          rangeScan.withStartRow(splitRows.get(i - 1), true);
+        }
+        if (i < splitRows.size()) {
+          rangeScan.withStopRow(splitRows.get(i), false);
+        }
+        PackagePrivateFieldAccessor.setMvccReadPoint(rangeScan, getMvccReadPoint());
+        ranges[i] = new Range(region.new RegionScannerImpl(rangeScan, null, region));
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+    synchronized (lock) {
+      for (Range range : ranges) {
+        schedule(range);
+      }
+    }
+  }
+
+  /**
+   * @return true if the scan can be split in ranges scanned on their own
+   */
+  /**
+   * The filters which only look at the row they are given, so every range of a split scan can run
+   * its own copy. Any other filter, a custom one or one like PageFilter, WhileMatchFilter or
+   * FuzzyRowFilter whose state goes from a row to the next, keeps the scan whole.
+   */
+  private static final Set<Class<? extends Filter>> ROW_INDEPENDENT_FILTERS =
+      new HashSet<>(Arrays.asList(ColumnCountGetFilter.class, ColumnPaginationFilter.class,
+        ColumnPrefixFilter.class, ColumnRangeFilter.class, DependentColumnFilter.class,
+        FamilyFilter.class, FirstKeyOnlyFilter.class, InclusiveStopFilter.class,
+        KeyOnlyFilter.class, MultipleColumnPrefixFilter.class, PrefixFilter.class,
+        QualifierFilter.class, RowFilter.class, SingleColumnValueExcludeFilter.class,
+        SingleColumnValueFilter.class, TimestampsFilter.class, ValueFilter.class));
+
+  static boolean canScanInParallel(Scan scan, List<KeyValueScanner> additionalScanners) {
+    if (scan.isReversed() || scan.isGetScan() || scan.getBatch() > 0
+        || (additionalScanners != null && !additionalScanners.isEmpty())) {
+      return false;
+    }
+    return !scan.hasFilter() || isRowIndependent(scan.getFilter());
+  }
+
+  // whether the filter decides on every row whatever the rows before it were
+  private static boolean isRowIndependent(Filter filter) {
+    if (filter instanceof SkipFilter) {
+      return isRowIndependent(((SkipFilter) filter).getFilter());
+    }
+    if (filter instanceof FilterList) {
+      for (Filter f : ((FilterList) filter).getFilters()) {
+        if (!isRowIndependent(f)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // the exact class, a subclass may keep state from a row to the next
+    return ROW_INDEPENDENT_FILTERS.contains(filter.getClass());
+  }
+
+  /**
+   * Picks the rows splitting the range of the scan in the region among the first rows of the
+   * root level blocks of the block indexes of the store files, as evenly spread as they are.
+   * @return at most maxRanges - 1 rows, in order
+   */
+  static List<byte[]> getSplitRows(HRegion region, Scan scan, int maxRanges) {
+    byte[] start = scan.getStartRow();
+    byte[] stop = scan.getStopRow();
+    byte[] regionStart = region.getRegionInfo().getStartKey();
+    byte[] regionEnd = region.getRegionInfo().getEndKey();
+    if (Bytes.compareTo(regionStart, start) > 0) {
+      start = regionStart;
+    }
+    if (stop.length == 0 || (regionEnd.length > 0 && Bytes.compareTo(regionEnd, stop) < 0)) {
+      stop = regionEnd;
+    }
+    NavigableSet<byte[]> rows = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    for (byte[] family : scan.getFamilyMap().keySet()) {
+      HStore store = region.getStore(family);
+      if (store == null) {
+        continue;
+      }
+      for (HStoreFile sf : store.getStorefiles()) {
+        StoreFileReader reader = sf.getReader();
+        if (reader == null) {
+          continue;
+        }
+        for (Cell key : reader.getHFileReader().getRootIndexKeys()) {
+          byte[] row = CellUtil.cloneRow(key);
+          if (Bytes.compareTo(row, start) > 0
+              && (stop.length == 0 || Bytes.compareTo(row, stop) < 0)) {
+            rows.add(row);
+          }
+        }
+      }
+    }
+    List<byte[]> candidates = new ArrayList<>(rows);
+    int numSplits = Math.min(maxRanges - 1, candidates.size());
+    List<byte[]> splitRows = new ArrayList<>(Math.max(0, numSplits));
+    for (int i = 1; i <= numSplits; i++) {
+      splitRows.add(candidates.get((int) ((long) i * candidates.size() / (numSplits + 1))));
+    }
+    return splitRows;
+  }
+
+  @Override
+  protected void initializeScanners(Scan scan, List<KeyValueScanner> additionalScanners) {
+    // every range has its own scanners
+  }
+
+  @Override
+  public boolean nextRaw(List<Cell> outResults, ScannerContext scannerContext)
+      throws IOException {
+    List<Cell> row;
+    synchronized (lock) {
+      while (true) {
+        if (closed) {
+          throw new UnknownScannerException("Scanner was closed");
+        }
+        Range range = ordered ? nextOrderedRange() : nextUnorderedRange();
+        if (range == null) {
+          return scannerContext.setScannerState(NextState.NO_MORE_VALUES).hasMoreValues();
+        }
+        row = range.rows.poll();
+        if (row != null) {
+          schedule(range);
+          break;
+        }
+        // none of the ranges that can be taken from has a row yet
+        if (scannerContext.checkTimeLimit(LimitScope.BETWEEN_ROWS)) {
+          return scannerContext.setScannerState(NextState.TIME_LIMIT_REACHED).hasMoreValues();
+        }
+        try {
+          if (scannerContext.hasTimeLimit(LimitScope.BETWEEN_ROWS)) {
+            lock.wait(Math.max(1, scannerContext.getTimeLimit() - System.currentTimeMillis()));
+          } else {
+            lock.wait();
+          }
+        } catch (InterruptedException e) {
+          throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+        }
+      }
+    }
+    outResults.addAll(row);
+    scannerContext.incrementBatchProgress(row.size());
+    for (Cell cell : row) {
+      scannerContext.incrementSizeProgress(PrivateCellUtil.estimatedSerializedSizeOf(cell),
+        PrivateCellUtil.estimatedHeapSizeOf(cell));
+    }
+    incrementCountOfRowsScannedMetric(scannerContext);
+    return scannerContext.setScannerState(NextState.MORE_VALUES).hasMoreValues();
+  }
+
+  /**
+   * @return the range to take the next row from, or null when all of them are done
+   */
+  private Range nextOrderedRange() throws IOException {
+    while (current < ranges.length) {
+      Range range = ranges[current];
+      if (range.error != null) {
+        throw range.error;
+      }
+      if (!range.done || !range.rows.isEmpty()) {
+        return range;
+      }
+      current++;
+    }
+    return null;
+  }
+
+  /**
+   * @return a range with a row to take if any, a range not done otherwise, or null when all of
+   *         them are done
+   */
+  private Range nextUnorderedRange() throws IOException {
+    Range pending = null;
+    for (int i = 0; i < ranges.length; i++) {
+      Range range = ranges[(current + i) % ranges.length];
+      if (range.error != null) {
+        throw range.error;
+      }
+      if (!range.rows.isEmpty()) {
+        // go round the ranges so all of them are drained
+        current = (current + i + 1) % ranges.length;
+        return range;
+      }
+      if (!range.done && pending == null) {
+        pending = range;
+      }
+    }
+    return pending;
+  }
+
+  // must be called holding the lock
+  private void schedule(Range range) {
+    if (closed || range.scheduled || range.done || range.rows.size() >= bufferedRows) {
+      return;
+    }
+    range.scheduled = true;
+    try {
+      range.future = pool.submit(range);
+    } catch (RejectedExecutionException e) {
+      range.scheduled = false;
+      range.fail(new DoNotRetryIOException("Can not scan in parallel", e));
+    }
+  }
+
+  @Override
+  public boolean reseek(byte[] row) throws IOException {
+    throw new DoNotRetryIOException("Reseek is not supported when scanning in parallel");
+  }
+
+  @Override
+  public void close() {
+    synchronized (lock) {
+      closed = true;
+      lock.notifyAll();
+      // the ranges still queued never run, the others see the scanner closed after their row
+      for (Range range : ranges) {
+        if (range != null && range.scheduled && range.future.cancel(false)) {
+          pool.remove((Runnable) range.future);
+          range.scheduled = false;
+        }
+      }
+      // the scanner of a range is closed once it is not used any more
+      boolean interrupted = false;
+      for (Range range : ranges) {
+        while (range != null && range.scheduled) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (Range range : ranges) {
+      if (range != null) {
+        range.scanner.close();
+      }
+    }
+    super.close();
+  }
+
+  /**
+   * A range of the scan and the rows read from it. Its scanner reads rows from the pool until
+   * enough of them are buffered, and is scheduled again once some of them are taken.
+   */
+  private final class Range implements Runnable {
+    private final RegionScannerImpl scanner;
+
+    // guarded by the lock
+    private final ArrayDeque<List<Cell>> rows = new ArrayDeque<>();
+    private boolean scheduled = false;
+    // the last submission of the range to the pool, set when scheduled
+    private Future<?> future;
+    private boolean done = false;
+    private IOException error;
+
+    Range(RegionScannerImpl scanner) {
+      this.scanner = scanner;
+    }
+
+    // must be called holding the lock
+    void fail(IOException e) {
+      error = e;
+      done = true;
+      lock.notifyAll();
+    }
+
+    @Override
+    public void run() {
+      try {
+        region.startRegionOperation(Operation.SCAN);
+        try {
+          boolean more = true;
+          while (more) {
+            synchronized (lock) {
+              if (closed || rows.size() >= bufferedRows) {
+                break;
+              }
+            }
+            List<Cell> cells = new ArrayList<>();
+            more = scanner.nextRaw(cells);
+            // copy the cells out of the blocks, which are given back when the scanner ships
+            List<Cell> row = new ArrayList<>(cells.size());
+            for (Cell cell : cells) {
+              row.add(KeyValueUtil.copyToNewKeyValue(cell));
+            }
+            synchronized (lock) {
+              if (!row.isEmpty()) {
+                rows.add(row);
+              }
+              done = !more;
+              lock.notifyAll();
+            }
+          }
+          scanner.shipped();
+        } finally {
+          region.closeRegionOperation(Operation.SCAN);
+        }
+      } catch (Throwable t) {
+        synchronized (lock) {
+          fail(t instanceof IOException ? (IOException) t : new IOException(t));
+        }
+      } finally {
+        synchronized (lock) {
+          scheduled = false;
+          // rows may have been taken after this run saw its buffer full
+          schedule(this);
+          lock.notifyAll();
+        }
+      }
+    }
+  }
+}
@@ -114,7 +114,7 @@ public class RSDumpServlet extends StateDumpServlet {
     for (Region region : hrs.getRegions()) {
       HRegion hRegion = (HRegion)region;
       if (hRegion.getLockedRows().size() > 0) {
-        for (HRegion.RowLockContext rowLockContext : hRegion.getLockedRows().values()) {
+        for (RowLockTable.RowLockContext rowLockContext : hRegion.getLockedRows().values()) {
           sb.setLength(0);
           sb.append(hRegion.getTableDescriptor().getTableName()).append(",")
             .append(hRegion.getRegionInfo().getEncodedName()).append(",");
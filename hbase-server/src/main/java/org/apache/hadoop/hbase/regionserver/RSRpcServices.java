@@ -264,6 +264,14 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
    */
   static final int BATCH_ROWS_THRESHOLD_DEFAULT = 5000;
 
+  /**
+   * Whether the puts and deletes of a multi request over several regions are applied with a single
+   * sync of the WAL shared by the regions.
+   */
+  public static final String MULTI_CROSS_REGION_BATCH_KEY =
+      "hbase.regionserver.multi.cross.region.batch";
+  static final boolean MULTI_CROSS_REGION_BATCH_DEFAULT = false;
+
   protected static final String RESERVOIR_ENABLED_KEY = "hbase.ipc.server.reservoir.enabled";
 
   // Request counter. (Includes requests that are not serviced by regions.)
@@ -317,6 +325,7 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
    * Row size threshold for multi requests above which a warning is logged
    */
   private final int rowSizeWarnThreshold;
+  private final boolean crossRegionBatch;
 
   final AtomicBoolean clearCompactionQueues = new AtomicBoolean(false);
 
@@ -932,94 +941,225 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       final OperationQuota quota, final List<ClientProtos.Action> mutations,
       final CellScanner cells, ActivePolicyEnforcement spaceQuotaEnforcement, boolean atomic)
       throws IOException {
-    Mutation[] mArray = new Mutation[mutations.size()];
-    long before = EnvironmentEdgeManager.currentTime();
-    boolean batchContainsPuts = false, batchContainsDelete = false;
+    BatchOpMutations batch = new BatchOpMutations(mutations.size());
     try {
-      /** HBASE-17924
-       * mutationActionMap is a map to map the relation between mutations and actions
-       * since mutation array may have been reoredered.In order to return the right
-       * result or exception to the corresponding actions, We need to know which action
-       * is the mutation belong to. We can't sort ClientProtos.Action array, since they
-       * are bonded to cellscanners.
-       */
-      Map<Mutation, ClientProtos.Action> mutationActionMap = new HashMap<>();
-      int i = 0;
-      for (ClientProtos.Action action: mutations) {
-        MutationProto m = action.getMutation();
-        Mutation mutation;
-        if (m.getMutateType() == MutationType.PUT) {
-          mutation = ProtobufUtil.toPut(m, cells);
-          batchContainsPuts = true;
-        } else {
-          mutation = ProtobufUtil.toDelete(m, cells);
-          batchContainsDelete = true;
-        }
-        mutationActionMap.put(mutation, action);
-        mArray[i++] = mutation;
-        checkCellSizeLimit(region, mutation);
-        // Check if a space quota disallows this mutation
-        spaceQuotaEnforcement.getPolicyEnforcement(region).check(mutation);
-        quota.addMutation(mutation);
+      prepareBatchOp(batch, region, quota, mutations, cells, spaceQuotaEnforcement, atomic);
+      OperationStatus[] codes = region.batchMutate(batch.mArray, atomic, HConstants.NO_NONCE,
+        HConstants.NO_NONCE);
+      addBatchOpResults(builder, batch, codes, atomic);
+    } catch (IOException ie) {
+      if (atomic) {
+        throw ie;
       }
-
-      if (!region.getRegionInfo().isMetaRegion()) {
-        regionServer.cacheFlusher.reclaimMemStoreMemory();
+      for (Action mutation : mutations) {
+        builder.addResultOrException(getResultOrException(ie, mutation.getIndex()));
       }
+    }
+    updateBatchOpMetrics(region, batch);
+  }
 
-      // HBASE-17924
-      // Sort to improve lock efficiency for non-atomic batch of operations. If atomic (mostly
-      // called from mutateRows()), order is preserved as its expected from the client
-      if (!atomic) {
-        Arrays.sort(mArray, (v1, v2) -> Row.COMPARATOR.compare(v1, v2));
+  /**
+   * The mutations of a batch operation and what is needed to map their status back to the actions
+   * they came from.
+   */
+  private static final class BatchOpMutations {
+    final Mutation[] mArray;
+    /** HBASE-17924
+     * mutationActionMap is a map to map the relation between mutations and actions
+     * since mutation array may have been reoredered.In order to return the right
+     * result or exception to the corresponding actions, We need to know which action
+     * is the mutation belong to. We can't sort ClientProtos.Action array, since they
+     * are bonded to cellscanners.
+     */
+    final Map<Mutation, ClientProtos.Action> mutationActionMap = new HashMap<>();
+    final long before = EnvironmentEdgeManager.currentTime();
+    boolean batchContainsPuts = false;
+    boolean batchContainsDelete = false;
+
+    BatchOpMutations(int size) {
+      mArray = new Mutation[size];
+    }
+  }
+
+  private void prepareBatchOp(final BatchOpMutations batch, final HRegion region,
+      final OperationQuota quota, final List<ClientProtos.Action> mutations,
+      final CellScanner cells, ActivePolicyEnforcement spaceQuotaEnforcement, boolean atomic)
+      throws IOException {
+    int i = 0;
+    for (ClientProtos.Action action: mutations) {
+      MutationProto m = action.getMutation();
+      Mutation mutation;
+      if (m.getMutateType() == MutationType.PUT) {
+        mutation = ProtobufUtil.toPut(m, cells);
+        batch.batchContainsPuts = true;
+      } else {
+        mutation = ProtobufUtil.toDelete(m, cells);
+        batch.batchContainsDelete = true;
       }
+      batch.mutationActionMap.put(mutation, action);
+      batch.mArray[i++] = mutation;
+      checkCellSizeLimit(region, mutation);
+      // Check if a space quota disallows this mutation
+      spaceQuotaEnforcement.getPolicyEnforcement(region).check(mutation);
+      quota.addMutation(mutation);
+    }
 
-      OperationStatus[] codes = region.batchMutate(mArray, atomic, HConstants.NO_NONCE,
-        HConstants.NO_NONCE);
-      for (i = 0; i < codes.length; i++) {
-        Mutation currentMutation = mArray[i];
-        ClientProtos.Action currentAction = mutationActionMap.get(currentMutation);
-        int index = currentAction.hasIndex() || !atomic ? currentAction.getIndex() : i;
-        Exception e = null;
-        switch (codes[i].getOperationStatusCode()) {
-          case BAD_FAMILY:
-            e = new NoSuchColumnFamilyException(codes[i].getExceptionMsg());
-            builder.addResultOrException(getResultOrException(e, index));
-            break;
+    if (!region.getRegionInfo().isMetaRegion()) {
+      regionServer.cacheFlusher.reclaimMemStoreMemory();
+    }
 
-          case SANITY_CHECK_FAILURE:
-            e = new FailedSanityCheckException(codes[i].getExceptionMsg());
-            builder.addResultOrException(getResultOrException(e, index));
-            break;
+    // HBASE-17924
+    // Sort to improve lock efficiency for non-atomic batch of operations. If atomic (mostly
+    // called from mutateRows()), order is preserved as its expected from the client
+    if (!atomic) {
+      Arrays.sort(batch.mArray, (v1, v2) -> Row.COMPARATOR.compare(v1, v2));
+    }
+  }
 
-          default:
-            e = new DoNotRetryIOException(codes[i].getExceptionMsg());
-            builder.addResultOrException(getResultOrException(e, index));
-            break;
+  private void addBatchOpResults(final RegionActionResult.Builder builder,
+      final BatchOpMutations batch, OperationStatus[] codes, boolean atomic) {
+    for (int i = 0; i < codes.length; i++) {
+      Mutation currentMutation = batch.mArray[i];
+      ClientProtos.Action currentAction = batch.mutationActionMap.get(currentMutation);
+      int index = currentAction.hasIndex() || !atomic ? currentAction.getIndex() : i;
+      Exception e = null;
+      switch (codes[i].getOperationStatusCode()) {
+        case BAD_FAMILY:
+          e = new NoSuchColumnFamilyException(codes[i].getExceptionMsg());
+          builder.addResultOrException(getResultOrException(e, index));
+          break;
 
-          case SUCCESS:
-            builder.addResultOrException(getResultOrException(
-              ClientProtos.Result.getDefaultInstance(), index));
-            break;
-        }
-      }
-    } catch (IOException ie) {
-      if (atomic) {
-        throw ie;
-      }
-      for (Action mutation : mutations) {
-        builder.addResultOrException(getResultOrException(ie, mutation.getIndex()));
+        case SANITY_CHECK_FAILURE:
+          e = new FailedSanityCheckException(codes[i].getExceptionMsg());
+          builder.addResultOrException(getResultOrException(e, index));
+          break;
+
+        default:
+          e = new DoNotRetryIOException(codes[i].getExceptionMsg());
+          builder.addResultOrException(getResultOrException(e, index));
+          break;
+
+        case SUCCESS:
+          builder.addResultOrException(getResultOrException(
+            ClientProtos.Result.getDefaultInstance(), index));
+          break;
       }
     }
+  }
+
+  private void updateBatchOpMetrics(final HRegion region, final BatchOpMutations batch) {
     if (regionServer.metricsRegionServer != null) {
       long after = EnvironmentEdgeManager.currentTime();
-      if (batchContainsPuts) {
+      if (batch.batchContainsPuts) {
         regionServer.metricsRegionServer.updatePutBatch(
-            region.getTableDescriptor().getTableName(), after - before);
+            region.getTableDescriptor().getTableName(), after - batch.before);
       }
-      if (batchContainsDelete) {
+      if (batch.batchContainsDelete) {
         regionServer.metricsRegionServer.updateDeleteBatch(
-            region.getTableDescriptor().getTableName(), after - before);
+            region.getTableDescriptor().getTableName(), after - batch.before);
+      }
+    }
+  }
+
+  /**
+   * @return true if the request holds only puts and deletes, not atomic, over several regions,
+   *         so they can be applied with one WAL sync
+   */
+  private boolean isCrossRegionBatch(MultiRequest request) {
+    if (!crossRegionBatch || request.hasCondition() || request.getRegionActionCount() < 2) {
+      return false;
+    }
+    for (RegionAction regionAction : request.getRegionActionList()) {
+      if (regionAction.hasAtomic() && regionAction.getAtomic()) {
+        return false;
+      }
+      for (ClientProtos.Action action : regionAction.getActionList()) {
+        if (!action.hasMutation()) {
+          return false;
+        }
+        MutationType type = action.getMutation().getMutateType();
+        if (type != MutationType.PUT && type != MutationType.DELETE) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the puts and deletes of all the regions of a multi request together, so the regions
+   * sharing a WAL sync it once for the whole request. See
+   * {@link HRegion#batchMutate(List, List, IOException[])}.
+   */
+  private void doCrossRegionBatchOp(List<RegionAction> regionActions, CellScanner cellScanner,
+      MultiResponse.Builder responseBuilder,
+      Map<RegionSpecifier, ClientProtos.RegionLoadStats> regionStats,
+      ActivePolicyEnforcement spaceQuotaEnforcement) {
+    int numActions = regionActions.size();
+    RegionActionResult.Builder[] builders = new RegionActionResult.Builder[numActions];
+    HRegion[] actionRegions = new HRegion[numActions];
+    OperationQuota[] quotas = new OperationQuota[numActions];
+    BatchOpMutations[] actionBatches = new BatchOpMutations[numActions];
+    List<HRegion> regions = new ArrayList<>(numActions);
+    List<Mutation[]> batches = new ArrayList<>(numActions);
+    List<Integer> batchActions = new ArrayList<>(numActions);
+    for (int i = 0; i < numActions; i++) {
+      RegionAction regionAction = regionActions.get(i);
+      builders[i] = RegionActionResult.newBuilder();
+      try {
+        actionRegions[i] = getRegion(regionAction.getRegion());
+        quotas[i] = getRpcQuotaManager().checkQuota(actionRegions[i],
+          regionAction.getActionList());
+      } catch (IOException e) {
+        rpcServer.getMetrics().exception(e);
+        builders[i].setException(ResponseConverter.buildException(e));
+        actionRegions[i] = null;
+        // All Mutations in this RegionAction not executed as we can not see the Region online here
+        // in this RS. Will be retried from Client. Skipping all the Cells in CellScanner
+        // corresponding to these Mutations.
+        if (cellScanner != null) {
+          skipCellsForMutations(regionAction.getActionList(), cellScanner);
+        }
+        continue;
+      }
+      actionBatches[i] = new BatchOpMutations(regionAction.getActionCount());
+      try {
+        prepareBatchOp(actionBatches[i], actionRegions[i], quotas[i],
+          regionAction.getActionList(), cellScanner, spaceQuotaEnforcement, false);
+        regions.add(actionRegions[i]);
+        batches.add(actionBatches[i].mArray);
+        batchActions.add(i);
+      } catch (IOException ie) {
+        for (Action mutation : regionAction.getActionList()) {
+          builders[i].addResultOrException(getResultOrException(ie, mutation.getIndex()));
+        }
+      }
+    }
+
+    IOException[] errors = new IOException[regions.size()];
+    OperationStatus[][] codes = HRegion.batchMutate(regions, batches, errors);
+    for (int j = 0; j < batchActions.size(); j++) {
+      int i = batchActions.get(j);
+      if (errors[j] != null) {
+        for (Action mutation : regionActions.get(i).getActionList()) {
+          builders[i].addResultOrException(getResultOrException(errors[j], mutation.getIndex()));
+        }
+      } else {
+        addBatchOpResults(builders[i], actionBatches[i], codes[j], false);
+      }
+    }
+
+    for (int i = 0; i < numActions; i++) {
+      responseBuilder.addRegionActionResult(builders[i].build());
+      HRegion region = actionRegions[i];
+      if (region == null) {
+        continue;
+      }
+      updateBatchOpMetrics(region, actionBatches[i]);
+      quotas[i].close();
+      ClientProtos.RegionLoadStats regionLoadStats = region.getLoadStatistics();
+      if (regionLoadStats != null) {
+        regionStats.put(regionActions.get(i).getRegion(), regionLoadStats);
       }
     }
   }
@@ -1143,6 +1283,8 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     this.ld = ld;
     regionServer = rs;
     rowSizeWarnThreshold = rs.conf.getInt(BATCH_ROWS_THRESHOLD_NAME, BATCH_ROWS_THRESHOLD_DEFAULT);
+    crossRegionBatch =
+        rs.conf.getBoolean(MULTI_CROSS_REGION_BATCH_KEY, MULTI_CROSS_REGION_BATCH_DEFAULT);
     RpcSchedulerFactory rpcSchedulerFactory;
     try {
       Class<?> rpcSchedulerFactoryClass = rs.conf.getClass(
@@ -2530,7 +2672,13 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     Map<RegionSpecifier, ClientProtos.RegionLoadStats> regionStats = new HashMap<>(request
       .getRegionActionCount());
     ActivePolicyEnforcement spaceQuotaEnforcement = getSpaceQuotaManager().getActiveEnforcements();
-    for (RegionAction regionAction : request.getRegionActionList()) {
+    List<RegionAction> regionActions = request.getRegionActionList();
+    if (isCrossRegionBatch(request)) {
+      doCrossRegionBatchOp(regionActions, cellScanner, responseBuilder, regionStats,
+        spaceQuotaEnforcement);
+      regionActions = Collections.emptyList();
+    }
+    for (RegionAction regionAction : regionActions) {
       OperationQuota quota;
       HRegion region;
       regionActionResultBuilder.clear();
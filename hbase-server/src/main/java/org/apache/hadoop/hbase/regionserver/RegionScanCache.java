@@ -0,0 +1,457 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.TagType;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.IsolationLevel;
+import org.apache.hadoop.hbase.client.PackagePrivateFieldAccessor;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.ipc.RpcServer;
+import org.apache.hadoop.hbase.regionserver.HRegion.RegionScannerImpl;
+import org.apache.hadoop.hbase.regionserver.ScannerContext.NextState;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.UnsafeByteOperations;
+
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.NameBytesPair;
+
+/**
+ * Cache of the rows returned by the scans of a region, so a scan repeated with the same range,
+ * columns and filter is answered without merging the stores again. It is off unless
+ * {@link #SCAN_CACHE_SIZE_KEY} is set, for the server or in the descriptor of a table, and always
+ * off for the secondary replicas of a region, whose store files change under refreshes and
+ * replayed markers.
+ * <p>
+ * A scan is looked up by a fingerprint of the parts of the scan deciding what it returns, and of
+ * the user asking for it, as coprocessors may filter the rows per user. The rows of a scan not
+ * found are recorded as it goes and kept once it reaches the end of the region. Mutations drop
+ * the entries whose range holds one of their rows, and changes of the store files drop all of
+ * them. A drop also marks the recordings in progress over the same rows as stale, and stale rows
+ * are not kept, as they may miss what was dropped for.
+ * <p>
+ * The entries are evicted in least recently used order once they take more than the size of
+ * the cache.
+ */
+@InterfaceAudience.Private
+class RegionScanCache {
+
+  /** Bytes of rows cached for every region, 0 to not cache them */
+  static final String SCAN_CACHE_SIZE_KEY = "hbase.region.scan.cache.size";
+  /** Bytes of the rows of a scan at most to cache them */
+  static final String SCAN_CACHE_MAX_ENTRY_SIZE_KEY = "hbase.region.scan.cache.max.entry.size";
+  static final long DEFAULT_SCAN_CACHE_MAX_ENTRY_SIZE = 1024 * 1024;
+
+  private static final long ENTRY_OVERHEAD = ClassSize.align(ClassSize.OBJECT
+      + 4 * ClassSize.REFERENCE + Bytes.SIZEOF_LONG + ClassSize.ARRAYLIST);
+  private static final long ROW_OVERHEAD = ClassSize.align(ClassSize.ARRAYLIST
+      + ClassSize.REFERENCE);
+
+  private final long maxSize;
+  private final long maxEntrySize;
+
+  // guarded by this
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size = 0;
+  private final Set<Recording> recordings = new HashSet<>();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictedCount = new LongAdder();
+
+  RegionScanCache(Configuration conf) {
+    this.maxSize = conf.getLong(SCAN_CACHE_SIZE_KEY, 0);
+    this.maxEntrySize = Math.min(maxSize,
+      conf.getLong(SCAN_CACHE_MAX_ENTRY_SIZE_KEY, DEFAULT_SCAN_CACHE_MAX_ENTRY_SIZE));
+  }
+
+  /**
+   * @return true if the regions are configured to cache the rows of their scans
+   */
+  static boolean isEnabled(Configuration conf) {
+    return conf.getLong(SCAN_CACHE_SIZE_KEY, 0) > 0;
+  }
+
+  /**
+   * @return true if the scan returns the same rows every time until the region changes
+   */
+  static boolean isCacheable(Scan scan) {
+    return !scan.isReversed() && !scan.isRaw() && !scan.isGetScan() && scan.getBatch() <= 0
+        && scan.getIsolationLevel() == IsolationLevel.READ_COMMITTED
+        && PackagePrivateFieldAccessor.getMvccReadPoint(scan) <= 0;
+  }
+
+  /**
+   * @return the key of the scan for the user of the current request, or null if the scan can
+   *         not be told apart from others, as when its filter can not be serialized
+   */
+  static Key toKey(Scan scan) {
+    try {
+      ClientProtos.Scan.Builder builder = ProtobufUtil.toScan(scan).toBuilder();
+      // what does not change the rows returned
+      builder.clearCacheBlocks().clearBatchSize().clearMaxResultSize().clearSmall()
+          .clearAllowPartialResults().clearConsistency().clearCaching().clearMvccReadPoint()
+          .clearReadType().clearNeedCursorResult();
+      // the attributes of a scan are kept in a hash map
+      Map<String, byte[]> attributes = new TreeMap<>(scan.getAttributesMap());
+      builder.clearAttribute();
+      for (Map.Entry<String, byte[]> attribute : attributes.entrySet()) {
+        builder.addAttribute(NameBytesPair.newBuilder().setName(attribute.getKey())
+            .setValue(UnsafeByteOperations.unsafeWrap(attribute.getValue())));
+      }
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(baos);
+      out.writeUTF(RpcServer.getRequestUserName().orElse(""));
+      builder.build().writeTo(out);
+      out.flush();
+      return new Key(baos.toByteArray(), scan.getStartRow(), scan.getStopRow());
+    } catch (IOException | RuntimeException e) {
+      // filters meant for the server only do not serialize
+      return null;
+    }
+  }
+
+  /**
+   * Starts recording the rows of a scan. Call it before the read point of the scanner is taken,
+   * so the mutations the scanner does not see mark the recording stale.
+   */
+  synchronized Recording startRecording(Key key) {
+    Recording recording = new Recording(key);
+    recordings.add(recording);
+    return recording;
+  }
+
+  /**
+   * Stops a recording without keeping its rows.
+   */
+  synchronized void endRecording(Recording recording) {
+    recordings.remove(recording);
+  }
+
+  /**
+   * @return the rows cached for the scan, or null if none
+   */
+  synchronized List<List<Cell>> get(Key key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    return entry.rows;
+  }
+
+  /**
+   * Ends a recording, keeping its rows unless it went stale.
+   */
+  synchronized void put(Recording recording, List<List<Cell>> rows, long heapSize) {
+    if (!recordings.remove(recording) || recording.stale || heapSize > maxEntrySize) {
+      return;
+    }
+    Entry previous = entries.put(recording.key, new Entry(rows, heapSize));
+    size += heapSize;
+    if (previous != null) {
+      size -= previous.heapSize;
+    }
+    Iterator<Entry> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().heapSize;
+      it.remove();
+      evictedCount.increment();
+    }
+  }
+
+  /**
+   * Drops the rows of the scans whose range holds one of the rows, and marks the recordings over
+   * them stale. Call it once the mutations of the rows are visible, after their locks are
+   * released, once for all the rows of a batch.
+   */
+  void invalidate(List<byte[]> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    byte[][] sorted = rows.toArray(new byte[rows.size()][]);
+    Arrays.sort(sorted, Bytes.BYTES_COMPARATOR);
+    synchronized (this) {
+      for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<Key, Entry> entry = it.next();
+        if (entry.getKey().containsAny(sorted)) {
+          size -= entry.getValue().heapSize;
+          it.remove();
+        }
+      }
+      for (Recording recording : recordings) {
+        if (!recording.stale && recording.key.containsAny(sorted)) {
+          recording.stale = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the rows of all the scans, and marks all the recordings stale.
+   */
+  synchronized void clear() {
+    entries.clear();
+    size = 0;
+    for (Recording recording : recordings) {
+      recording.stale = true;
+    }
+  }
+
+  synchronized long getSize() {
+    return size;
+  }
+
+  long getHitCount() {
+    return hitCount.sum();
+  }
+
+  long getMissCount() {
+    return missCount.sum();
+  }
+
+  long getEvictedCount() {
+    return evictedCount.sum();
+  }
+
+  /**
+   * The fingerprint of a scan, with the range of rows it covers.
+   */
+  static final class Key {
+    private final byte[] fingerprint;
+    private final byte[] startRow;
+    private final byte[] stopRow;
+    private final int hash;
+
+    Key(byte[] fingerprint, byte[] startRow, byte[] stopRow) {
+      this.fingerprint = fingerprint;
+      this.startRow = startRow;
+      this.stopRow = stopRow;
+      this.hash = Bytes.hashCode(fingerprint);
+    }
+
+    // the stop row is taken as included, whether the scan includes it or not
+    boolean contains(byte[] row) {
+      return Bytes.compareTo(row, startRow) >= 0
+          && (stopRow.length == 0 || Bytes.compareTo(row, stopRow) <= 0);
+    }
+
+    /**
+     * @param rows sorted rows
+     */
+    boolean containsAny(byte[][] rows) {
+      int i = Arrays.binarySearch(rows, startRow, Bytes.BYTES_COMPARATOR);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      return i < rows.length && contains(rows[i]);
+    }
+
+    long heapSize() {
+      return ClassSize.align(ClassSize.OBJECT + 3 * ClassSize.REFERENCE + Bytes.SIZEOF_INT)
+          + ClassSize.align(ClassSize.ARRAY + fingerprint.length);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Key && Bytes.equals(fingerprint, ((Key) obj).fingerprint);
+    }
+  }
+
+  /**
+   * The rows of a scan being recorded. Stale once a change the scanner may miss is made to its
+   * range.
+   */
+  static final class Recording {
+    private final Key key;
+    // guarded by the cache
+    private boolean stale = false;
+
+    Recording(Key key) {
+      this.key = key;
+    }
+  }
+
+  private static final class Entry {
+    private final List<List<Cell>> rows;
+    private final long heapSize;
+
+    Entry(List<List<Cell>> rows, long heapSize) {
+      this.rows = rows;
+      this.heapSize = heapSize;
+    }
+  }
+
+  /**
+   * Scans a region as {@link RegionScannerImpl} does, recording the rows it returns. The rows
+   * are given to the cache once the scanner reaches the end of the region, unless they grew too
+   * large before.
+   */
+  static final class RecordingRegionScannerImpl extends RegionScannerImpl {
+    private final RegionScanCache cache;
+    private final Recording recording;
+
+    // null once the rows are not to be cached
+    private List<List<Cell>> rows = new ArrayList<>();
+    private List<Cell> row = new ArrayList<>();
+    private long heapSize;
+
+    RecordingRegionScannerImpl(Scan scan, HRegion region, RegionScanCache cache,
+        Recording recording, long nonceGroup, long nonce) throws IOException {
+      region.super(scan, null, region, nonceGroup, nonce);
+      this.cache = cache;
+      this.recording = recording;
+      this.heapSize = ENTRY_OVERHEAD + recording.key.heapSize();
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> outResults, ScannerContext scannerContext)
+        throws IOException {
+      int from = outResults.size();
+      boolean moreValues = super.nextRaw(outResults, scannerContext);
+      if (rows != null) {
+        record(outResults.subList(from, outResults.size()),
+          scannerContext.mayHaveMoreCellsInRow());
+        if (!moreValues && rows != null) {
+          cache.put(recording, rows, heapSize);
+          rows = null;
+        }
+      }
+      return moreValues;
+    }
+
+    private void record(List<Cell> cells, boolean mayHaveMoreCellsInRow) {
+      for (Cell cell : cells) {
+        // cells expiring on their own would stay in the cache
+        if (cell.getTagsLength() > 0
+            && PrivateCellUtil.getTag(cell, TagType.TTL_TAG_TYPE).isPresent()) {
+          rows = null;
+          return;
+        }
+        // copy the cells out of the blocks, which are given back when the scanner ships
+        KeyValue kv = KeyValueUtil.copyToNewKeyValue(cell);
+        row.add(kv);
+        heapSize += kv.heapSize() + ClassSize.REFERENCE;
+      }
+      if (!mayHaveMoreCellsInRow && !row.isEmpty()) {
+        rows.add(row);
+        row = new ArrayList<>();
+        heapSize += ROW_OVERHEAD;
+      }
+      if (heapSize > cache.maxEntrySize) {
+        rows = null;
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      super.close();
+      // the rows of a scanner closed before the end of the region are not kept
+      cache.endRecording(recording);
+    }
+  }
+
+  /**
+   * Returns the rows cached for a scan, the whole of a row at a time, without reading the
+   * stores.
+   */
+  static final class CachedRegionScannerImpl extends RegionScannerImpl {
+    private final List<List<Cell>> rows;
+    private int next = 0;
+    private boolean closed = false;
+
+    CachedRegionScannerImpl(Scan scan, HRegion region, List<List<Cell>> rows)
+        throws IOException {
+      region.super(scan, null, region);
+      this.rows = rows;
+    }
+
+    @Override
+    protected void initializeScanners(Scan scan, List<KeyValueScanner> additionalScanners) {
+      // the rows are not read from the stores
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> outResults, ScannerContext scannerContext)
+        throws IOException {
+      if (closed) {
+        throw new UnknownScannerException("Scanner was closed");
+      }
+      if (next == rows.size()) {
+        return scannerContext.setScannerState(NextState.NO_MORE_VALUES).hasMoreValues();
+      }
+      List<Cell> row = rows.get(next++);
+      outResults.addAll(row);
+      scannerContext.incrementBatchProgress(row.size());
+      for (Cell cell : row) {
+        scannerContext.incrementSizeProgress(PrivateCellUtil.estimatedSerializedSizeOf(cell),
+          PrivateCellUtil.estimatedHeapSizeOf(cell));
+      }
+      region.readRequestsCount.increment();
+      incrementCountOfRowsScannedMetric(scannerContext);
+      return scannerContext.setScannerState(
+        next < rows.size() ? NextState.MORE_VALUES : NextState.NO_MORE_VALUES).hasMoreValues();
+    }
+
+    @Override
+    public boolean isFilterDone() {
+      return next == rows.size();
+    }
+
+    @Override
+    public boolean reseek(byte[] row) throws IOException {
+      throw new DoNotRetryIOException("Reseek is not supported on cached rows");
+    }
+
+    @Override
+    public synchronized void close() {
+      closed = true;
+      super.close();
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.hadoop.hbase.regionserver;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.hadoop.hbase.Abortable;
 import org.apache.hadoop.hbase.Server;
@@ -206,6 +207,18 @@ public interface RegionServerServices extends Server, MutableOnlineRegions, Favo
    */
   ThroughputController getFlushThroughputController();
 
+  /**
+   * @return the pool the stores of a flushing region write their files on in parallel, or null
+   *         when the stores are flushed one after the other
+   */
+  ThreadPoolExecutor getStoreFlushPool();
+
+  /**
+   * @return the pool the ranges of a region are scanned on in parallel, or null when every scan
+   *         runs in its RPC handler alone
+   */
+  ThreadPoolExecutor getParallelScanPool();
+
   /**
    * @return the flush pressure of all stores on this regionserver. The value should be greater than
    *         or equal to 0.0, and any value greater than 1.0 means we enter the emergency state that
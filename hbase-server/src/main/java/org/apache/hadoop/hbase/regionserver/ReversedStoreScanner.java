@@ -87,6 +87,12 @@ public class ReversedStoreScanner extends StoreScanner implements KeyValueScanne
     return seekToPreviousRow(kv);
   }
 
+  @Override
+  protected boolean trySkipToHint(Cell hint) throws IOException {
+    // the hints of a reversed scan are behind the current cell
+    return false;
+  }
+
   /**
    * Do a backwardSeek in a reversed StoreScanner(scan backward)
    */
@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The table of the rows of a region that are locked or waited for. Every such row has a
+ * {@link RowLockContext} holding its read/write lock, found by the hash of the row bytes in one
+ * of a fixed number of stripes. A stripe is a small chained hash table guarded by its own
+ * monitor, held only to find, count and unlink contexts, never while waiting for a row lock.
+ * <p>
+ * The rows are looked up by their bytes in place, with no key object allocated. A context, its
+ * lock and its two {@link HRegion.RowLockImpl} are put back in a pool of the stripe once no one
+ * holds or waits for the row, and reused for the next row locked in the stripe.
+ */
+@InterfaceAudience.Private
+public class RowLockTable {
+
+  private static final int DEFAULT_STRIPES = 64;
+  // contexts kept for reuse by a stripe
+  private static final int MAX_POOLED_PER_STRIPE = 16;
+
+  private final Stripe[] stripes;
+  private final int mask;
+
+  public RowLockTable() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * @param numStripes rounded up to a power of 2
+   */
+  public RowLockTable(int numStripes) {
+    int n = Integer.highestOneBit(Math.max(1, numStripes - 1) << 1);
+    this.stripes = new Stripe[n];
+    for (int i = 0; i < n; i++) {
+      stripes[i] = new Stripe();
+    }
+    this.mask = n - 1;
+  }
+
+  private static int hash(byte[] row, int offset, int length) {
+    int h = Bytes.hashCode(row, offset, length);
+    // spread the bits used to pick a stripe to the bits used to pick a bucket
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Finds or adds the context of the row and counts one more user of it, who must
+   * {@link RowLockContext#release()} it once done.
+   */
+  public RowLockContext acquire(byte[] row, int offset, int length) {
+    int hash = hash(row, offset, length);
+    return stripes[hash & mask].acquire(hash, row, offset, length);
+  }
+
+  public RowLockContext acquire(byte[] row) {
+    return acquire(row, 0, row.length);
+  }
+
+  /**
+   * @return the number of rows locked or waited for
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return a snapshot of the contexts of the rows locked or waited for
+   */
+  public List<RowLockContext> values() {
+    List<RowLockContext> values = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        for (RowLockContext head : stripe.buckets) {
+          for (RowLockContext c = head; c != null; c = c.next) {
+            values.add(c);
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  @VisibleForTesting
+  int getPooledCount() {
+    int pooled = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        pooled += stripe.pooled;
+      }
+    }
+    return pooled;
+  }
+
+  /**
+   * A chained hash table of contexts plus a free list of contexts to reuse. Everything is
+   * accessed under the monitor of the stripe.
+   */
+  private final class Stripe {
+    private RowLockContext[] buckets = new RowLockContext[4];
+    private int size;
+    private RowLockContext free;
+    private int pooled;
+
+    synchronized RowLockContext acquire(int hash, byte[] row, int offset, int length) {
+      int idx = (hash >>> 8) & (buckets.length - 1);
+      for (RowLockContext c = buckets[idx]; c != null; c = c.next) {
+        if (c.hash == hash && Bytes.equals(c.row, 0, c.row.length, row, offset, length)) {
+          c.count++;
+          return c;
+        }
+      }
+      RowLockContext c = free;
+      if (c != null) {
+        free = c.next;
+        pooled--;
+      } else {
+        c = new RowLockContext(this);
+      }
+      c.hash = hash;
+      c.row = offset == 0 && length == row.length ? row : Bytes.copy(row, offset, length);
+      c.count = 1;
+      c.next = buckets[idx];
+      buckets[idx] = c;
+      if (++size > buckets.length) {
+        resize();
+      }
+      return c;
+    }
+
+    synchronized void release(RowLockContext context) {
+      if (--context.count > 0) {
+        return;
+      }
+      int idx = (context.hash >>> 8) & (buckets.length - 1);
+      RowLockContext prev = null;
+      for (RowLockContext c = buckets[idx]; c != null; prev = c, c = c.next) {
+        if (c == context) {
+          if (prev == null) {
+            buckets[idx] = c.next;
+          } else {
+            prev.next = c.next;
+          }
+          size--;
+          break;
+        }
+      }
+      context.row = null;
+      context.threadName = null;
+      if (pooled < MAX_POOLED_PER_STRIPE) {
+        context.next = free;
+        free = context;
+        pooled++;
+      } else {
+        context.next = null;
+      }
+    }
+
+    private void resize() {
+      RowLockContext[] old = buckets;
+      buckets = new RowLockContext[old.length << 1];
+      for (RowLockContext head : old) {
+        RowLockContext c = head;
+        while (c != null) {
+          RowLockContext next = c.next;
+          int idx = (c.hash >>> 8) & (buckets.length - 1);
+          c.next = buckets[idx];
+          buckets[idx] = c;
+          c = next;
+        }
+      }
+    }
+  }
+
+  /**
+   * The lock of a row and the count of its users, holding or waiting for the lock.
+   */
+  public static final class RowLockContext {
+    private final Stripe stripe;
+    final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
+    private final HRegion.RowLockImpl readLock;
+    private final HRegion.RowLockImpl writeLock;
+
+    // guarded by the stripe
+    private byte[] row;
+    private int hash;
+    private int count;
+    private RowLockContext next;
+
+    private volatile String threadName;
+
+    private RowLockContext(Stripe stripe) {
+      this.stripe = stripe;
+      this.readLock = new HRegion.RowLockImpl(this, readWriteLock.readLock());
+      this.writeLock = new HRegion.RowLockImpl(this, readWriteLock.writeLock());
+    }
+
+    /**
+     * @return the read lock of the row, the same object for every user of the context
+     */
+    HRegion.RowLockImpl newReadLock() {
+      return readLock;
+    }
+
+    /**
+     * @return the write lock of the row, the same object for every user of the context
+     */
+    HRegion.RowLockImpl newWriteLock() {
+      return writeLock;
+    }
+
+    /**
+     * Counts one user less, the context goes back to the pool when there is none left.
+     */
+    void release() {
+      stripe.release(this);
+    }
+
+    public void setThreadName(String threadName) {
+      this.threadName = threadName;
+    }
+
+    @Override
+    public String toString() {
+      byte[] r;
+      int c;
+      synchronized (stripe) {
+        r = row;
+        c = count;
+      }
+      return "RowLockContext{" +
+          "row=" + (r == null ? "null" : Bytes.toStringBinary(r)) +
+          ", readWriteLock=" + readWriteLock +
+          ", count=" + c +
+          ", threadName=" + threadName +
+          '}';
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.util.UnsafeAvailChecker;
 import org.apache.yetus.audience.InterfaceAudience;
 
 import java.io.IOException;
@@ -136,8 +137,14 @@ public final class SegmentFactory {
 
   private MutableSegment generateMutableSegment(final Configuration conf, CellComparator comparator,
       MemStoreLAB memStoreLAB) {
-    // TBD use configuration to set type of segment
-    CellSet set = new CellSet(comparator);
+    CellSet set;
+    if (memStoreLAB instanceof MemStoreLABImpl && UnsafeAvailChecker.isAvailable()
+        && conf.getBoolean(MemStoreLAB.CHUNK_INDEX_KEY, MemStoreLAB.CHUNK_INDEX_DEFAULT)) {
+      // the index is written on the chunks of the MSLAB, next to the cells
+      set = new CellSet(new CellChunkSkipListMap(comparator, memStoreLAB));
+    } else {
+      set = new CellSet(comparator);
+    }
     return new MutableSegment(set, comparator, memStoreLAB);
   }
 
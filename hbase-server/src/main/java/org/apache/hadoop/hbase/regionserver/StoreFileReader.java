@@ -17,12 +17,15 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_PARAM_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_TYPE_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.DELETE_FAMILY_COUNT;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.LAST_BLOOM_KEY;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.SortedSet;
@@ -38,6 +41,8 @@ import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter.RowRange;
 import org.apache.hadoop.hbase.io.FSDataInputStreamWrapper;
 import org.apache.hadoop.hbase.io.TimeRange;
 import org.apache.hadoop.hbase.io.hfile.BlockType;
@@ -48,6 +53,7 @@ import org.apache.hadoop.hbase.io.hfile.HFileScanner;
 import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.util.BloomFilter;
 import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.yetus.audience.InterfaceStability;
@@ -66,6 +72,7 @@ public class StoreFileReader {
   protected BloomFilter generalBloomFilter = null;
   protected BloomFilter deleteFamilyBloomFilter = null;
   protected BloomType bloomFilterType;
+  private byte[] bloomFilterParam;
   private final HFile.Reader reader;
   protected long sequenceID = -1;
   protected TimeRange timeRange = null;
@@ -109,6 +116,7 @@ public class StoreFileReader {
     this.generalBloomFilter = reader.generalBloomFilter;
     this.deleteFamilyBloomFilter = reader.deleteFamilyBloomFilter;
     this.bloomFilterType = reader.bloomFilterType;
+    this.bloomFilterParam = reader.bloomFilterParam;
     this.sequenceID = reader.sequenceID;
     this.timeRange = reader.timeRange;
     this.lastBloomKey = reader.lastBloomKey;
@@ -221,7 +229,8 @@ public class StoreFileReader {
 
   /**
    * Checks whether the given scan passes the Bloom filter (if present). Only
-   * checks Bloom filters for single-row or single-row-column scans. Bloom
+   * checks Bloom filters for single-row or single-row-column scans, and for
+   * scans within a single row prefix in case of row prefix Bloom filters. Bloom
    * filter checking for multi-gets is implemented as part of the store
    * scanner system (see {@link StoreFileScanner#seek(Cell)} and uses
    * the lower-level API {@link #passesGeneralRowBloomFilter(byte[], int, int)}
@@ -236,18 +245,21 @@ public class StoreFileReader {
    *         False if the Bloom filter is applicable and the scan fails it.
    */
   boolean passesBloomFilter(Scan scan, final SortedSet<byte[]> columns) {
-    // Multi-column non-get scans will use Bloom filters through the
-    // lower-level API function that this function calls.
-    if (!scan.isGetScan()) {
-      return true;
-    }
-
     byte[] row = scan.getStartRow();
     switch (this.bloomFilterType) {
       case ROW:
+        // Multi-row non-get scans can not use the Bloom filter
+        if (!scan.isGetScan()) {
+          return true;
+        }
         return passesGeneralRowBloomFilter(row, 0, row.length);
 
       case ROWCOL:
+        // Multi-column non-get scans will use Bloom filters through the
+        // lower-level API function that this function calls.
+        if (!scan.isGetScan()) {
+          return true;
+        }
         if (columns != null && columns.size() == 1) {
           byte[] column = columns.first();
           // create the required fake key
@@ -259,11 +271,84 @@ public class StoreFileReader {
         // seekExact operation.
         return true;
 
+      case ROWPREFIX_FIXED_LENGTH:
+      case ROWPREFIX_DELIMITED:
+        return passesGeneralRowPrefixBloomFilter(scan);
+
       default:
         return true;
     }
   }
 
+  /**
+   * A method for checking row prefix Bloom filters. A get checks the prefix of its row, other
+   * scans are only checked when all the rows they may return share the same complete prefix.
+   *
+   * @return True if passes
+   */
+  private boolean passesGeneralRowPrefixBloomFilter(Scan scan) {
+    BloomFilter bloomFilter = this.generalBloomFilter;
+    if (bloomFilter == null || bloomFilterParam == null) {
+      return true;
+    }
+
+    byte[] prefix;
+    if (scan.isGetScan()) {
+      prefix = BloomFilterUtil.getRowPrefix(scan.getStartRow(), bloomFilterType, bloomFilterParam);
+    } else {
+      prefix = getScanRowPrefix(scan);
+      if (prefix == null) {
+        return true;
+      }
+    }
+    return checkGeneralBloomFilter(prefix, null, bloomFilter);
+  }
+
+  /**
+   * @return the complete row prefix shared by all the rows of the scan range, or null if the
+   *         range spans more than one prefix
+   */
+  private byte[] getScanRowPrefix(Scan scan) {
+    byte[] smallestScanRow = scan.isReversed() ? scan.getStopRow() : scan.getStartRow();
+    byte[] largestScanRow = scan.isReversed() ? scan.getStartRow() : scan.getStopRow();
+    if (largestScanRow.length == 0) {
+      return null;
+    }
+    byte[] prefix = BloomFilterUtil.getRowPrefix(smallestScanRow, bloomFilterType,
+        bloomFilterParam);
+    if (!BloomFilterUtil.isCompleteRowPrefix(prefix, bloomFilterType, bloomFilterParam)) {
+      return null;
+    }
+    // The rows starting with the prefix are contiguous, so the range is within the prefix when
+    // both ends are. An exclusive stop row may also be the first row after the prefix, as set by
+    // Scan#setRowPrefixFilter.
+    if (Bytes.startsWith(largestScanRow, prefix)) {
+      return prefix;
+    }
+    if (!scan.isReversed() && !scan.includeStopRow()
+        && Bytes.equals(largestScanRow, getNextRowPrefix(prefix))) {
+      return prefix;
+    }
+    return null;
+  }
+
+  /**
+   * @return the smallest row larger than all the rows starting with the given prefix, empty if
+   *         there is none
+   */
+  private static byte[] getNextRowPrefix(byte[] prefix) {
+    int offset = prefix.length;
+    while (offset > 0 && prefix[offset - 1] == (byte) 0xFF) {
+      offset--;
+    }
+    if (offset == 0) {
+      return HConstants.EMPTY_END_ROW;
+    }
+    byte[] next = Arrays.copyOf(prefix, offset);
+    next[offset - 1]++;
+    return next;
+  }
+
   public boolean passesDeleteFamilyBloomFilter(byte[] row, int rowOffset,
       int rowLen) {
     // Cache Bloom filter as a local variable in case it is set to null by
@@ -367,10 +452,10 @@ public class StoreFileReader {
         // hbase:meta does not have blooms. So we need not have special interpretation
         // of the hbase:meta cells.  We can safely use Bytes.BYTES_RAWCOMPARATOR for ROW Bloom
         if (keyIsAfterLast) {
-          if (bloomFilterType == BloomType.ROW) {
-            keyIsAfterLast = (Bytes.BYTES_RAWCOMPARATOR.compare(key, lastBloomKey) > 0);
-          } else {
+          if (bloomFilterType == BloomType.ROWCOL) {
             keyIsAfterLast = (CellComparator.getInstance().compare(kvKey, lastBloomKeyOnlyKV)) > 0;
+          } else {
+            keyIsAfterLast = (Bytes.BYTES_RAWCOMPARATOR.compare(key, lastBloomKey) > 0);
           }
         }
 
@@ -438,6 +523,63 @@ public class StoreFileReader {
     return !nonOverLapping;
   }
 
+  /**
+   * Checks whether the file may hold rows of the ranges the filter of the scan gives as
+   * {@link Filter#getRowRangesHint()}. The ranges are sorted, so the first one not before the
+   * file is searched for and the ranges are then walked up to the last row of the file. A range
+   * of a single row is only taken if the row Bloom filter of the file may hold the row.
+   * @param scan the scan specification. Used to get the ranges of its filter.
+   * @return true if a row of a range may be in the file, false otherwise
+   */
+  boolean passesRowRangesFilter(Scan scan) {
+    List<RowRange> ranges = scan.hasFilter() ? scan.getFilter().getRowRangesHint() : null;
+    if (ranges == null || ranges.isEmpty()) {
+      return true;
+    }
+    Optional<Cell> firstKeyKV = this.getFirstKey();
+    Optional<Cell> lastKeyKV = this.getLastKey();
+    if (!firstKeyKV.isPresent() || !lastKeyKV.isPresent()) {
+      return true;
+    }
+    CellComparator comparator = getComparator();
+    Cell firstKey = firstKeyKV.get();
+    Cell lastKey = lastKeyKV.get();
+    int low = 0;
+    int high = ranges.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      RowRange range = ranges.get(mid);
+      byte[] stopRow = range.getStopRow();
+      // the first row of the file compared with the end of the range, which may be unbounded
+      int c = stopRow.length == 0 ? -1
+          : comparator.compareRows(firstKey, stopRow, 0, stopRow.length);
+      if (c > 0 || (c == 0 && !range.isStopRowInclusive())) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    for (int i = low; i < ranges.size(); i++) {
+      RowRange range = ranges.get(i);
+      byte[] startRow = range.getStartRow();
+      int c = comparator.compareRows(lastKey, startRow, 0, startRow.length);
+      if (c < 0 || (c == 0 && !range.isStartRowInclusive())) {
+        // this range and the ones after it are past the file
+        return false;
+      }
+      if (bloomFilterType != BloomType.ROW || !isSingleRow(range)
+          || passesGeneralRowBloomFilter(startRow, 0, startRow.length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSingleRow(RowRange range) {
+    return range.getStartRow().length > 0 && range.isStartRowInclusive()
+        && range.isStopRowInclusive() && Bytes.equals(range.getStartRow(), range.getStopRow());
+  }
+
   public Map<byte[], byte[]> loadFileInfo() throws IOException {
     Map<byte [], byte []> fi = reader.loadFileInfo();
 
@@ -445,6 +587,7 @@ public class StoreFileReader {
     if (b != null) {
       bloomFilterType = BloomType.valueOf(Bytes.toString(b));
     }
+    bloomFilterParam = fi.get(BLOOM_FILTER_PARAM_KEY);
 
     lastBloomKey = fi.get(LAST_BLOOM_KEY);
     if(bloomFilterType == BloomType.ROWCOL) {
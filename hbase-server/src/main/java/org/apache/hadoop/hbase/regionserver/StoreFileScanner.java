@@ -499,7 +499,8 @@ public class StoreFileScanner implements KeyValueScanner {
       timeRange = scan.getTimeRange();
     }
     return reader.passesTimerangeFilter(timeRange, oldestUnexpiredTS) && reader
-        .passesKeyRangeFilter(scan) && reader.passesBloomFilter(scan, scan.getFamilyMap().get(cf));
+        .passesKeyRangeFilter(scan) && reader.passesBloomFilter(scan, scan.getFamilyMap().get(cf))
+        && reader.passesRowRangesFilter(scan);
   }
 
   @Override
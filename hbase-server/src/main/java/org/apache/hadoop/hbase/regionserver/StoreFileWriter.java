@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_PARAM_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_TYPE_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.DELETE_FAMILY_COUNT;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.EARLIEST_PUT_TS;
@@ -44,11 +45,13 @@ import org.apache.hadoop.hbase.io.hfile.HFile;
 import org.apache.hadoop.hbase.io.hfile.HFileContext;
 import org.apache.hadoop.hbase.util.BloomContext;
 import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.BloomFilterWriter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.RowBloomContext;
 import org.apache.hadoop.hbase.util.RowColBloomContext;
+import org.apache.hadoop.hbase.util.RowPrefixBloomContext;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +68,7 @@ public class StoreFileWriter implements CellSink, ShipperListener {
   private final BloomFilterWriter generalBloomFilterWriter;
   private final BloomFilterWriter deleteFamilyBloomFilterWriter;
   private final BloomType bloomType;
+  private byte[] bloomParam = null;
   private long earliestPutTs = HConstants.LATEST_TIMESTAMP;
   private long deleteFamilyCnt = 0;
   private BloomContext bloomContext = null;
@@ -122,9 +126,19 @@ public class StoreFileWriter implements CellSink, ShipperListener {
       case ROWCOL:
         bloomContext = new RowColBloomContext(generalBloomFilterWriter, comparator);
         break;
+      case ROWPREFIX_FIXED_LENGTH:
+      case ROWPREFIX_DELIMITED:
+        try {
+          bloomParam = BloomFilterUtil.getBloomFilterParam(bloomType, conf);
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Invalid Bloom filter configuration for " + path, e);
+        }
+        bloomContext = new RowPrefixBloomContext(generalBloomFilterWriter, comparator, bloomType,
+            bloomParam);
+        break;
       default:
-        throw new IOException(
-            "Invalid Bloom filter type: " + bloomType + " (ROW or ROWCOL expected)");
+        throw new IOException("Invalid Bloom filter type: " + bloomType
+            + " (ROW, ROWCOL, ROWPREFIX_FIXED_LENGTH or ROWPREFIX_DELIMITED expected)");
       }
     } else {
       // Not using Bloom filters.
@@ -280,6 +294,9 @@ public class StoreFileWriter implements CellSink, ShipperListener {
     if (hasGeneralBloom) {
       writer.addGeneralBloomFilter(generalBloomFilterWriter);
       writer.appendFileInfo(BLOOM_FILTER_TYPE_KEY, Bytes.toBytes(bloomType.toString()));
+      if (bloomParam != null) {
+        writer.appendFileInfo(BLOOM_FILTER_PARAM_KEY, bloomParam);
+      }
       bloomContext.addLastBloomKey(writer);
     }
     return hasGeneralBloom;
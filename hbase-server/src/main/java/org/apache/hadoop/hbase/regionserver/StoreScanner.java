@@ -233,6 +233,7 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
       store.getCoprocessorHost());
 
     store.addChangedReaderObserver(this);
+    store.recordRead(get);
 
     try {
       // Pass columns to try to filter out unnecessary StoreFiles.
@@ -674,7 +675,7 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
         case SEEK_NEXT_USING_HINT:
           Cell nextKV = matcher.getNextKeyHint(cell);
           if (nextKV != null) {
-            seekAsDirection(nextKV);
+            seekOrSkipToHint(nextKV);
             NextState stateAfterSeekByHint = needToReturn(outResult);
             if (stateAfterSeekByHint != null) {
               return scannerContext.setScannerState(stateAfterSeekByHint).hasMoreValues();
@@ -733,6 +734,12 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     }
   }
 
+  private void seekOrSkipToHint(Cell hint) throws IOException {
+    if (!trySkipToHint(hint)) {
+      seekAsDirection(hint);
+    }
+  }
+
   /**
    * See if we should actually SEEK or rather just SKIP to the next Cell (see HBASE-13109).
    * ScanQueryMatcher may issue SEEK hints, such as seek to next column, next row,
@@ -819,6 +826,30 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     return true;
   }
 
+  /**
+   * See {@link org.apache.hadoop.hbase.regionserver.StoreScanner#trySkipToNextRow(Cell)}. A
+   * filter hint, as the next row a {@link org.apache.hadoop.hbase.filter.FuzzyRowFilter} may
+   * match, often lands in the block already loaded, where it is cheaper to skip to than to
+   * reseek all the scanners of the heap.
+   * @param hint the cell the filter asks to seek to
+   * @return true means skipped to the hint, false means not
+   */
+  @VisibleForTesting
+  protected boolean trySkipToHint(Cell hint) throws IOException {
+    Cell nextCell = null;
+    while ((nextCell = this.heap.peek()) != null && comparator.compare(nextCell, hint) < 0) {
+      Cell nextIndexedKey = getNextIndexedKey();
+      if (nextIndexedKey != null && nextIndexedKey != KeyValueScanner.NO_NEXT_INDEXED_KEY
+          && comparator.compare(nextIndexedKey, hint) > 0) {
+        this.heap.next();
+        ++kvsScanned;
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public long getReadPoint() {
     return this.readPt;
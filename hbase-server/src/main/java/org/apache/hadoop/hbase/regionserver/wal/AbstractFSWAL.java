@@ -178,6 +178,9 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
 
   protected final long slowSyncNs;
 
+  /** Chooses how long to wait for more appends before a filesystem sync. */
+  protected final GroupCommitController groupCommitController;
+
   private final long walSyncTimeoutNs;
 
   // If > than this size, roll the log.
@@ -429,6 +432,7 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
         .toNanos(conf.getInt("hbase.regionserver.hlog.slowsync.ms", DEFAULT_SLOW_SYNC_TIME_MS));
     this.walSyncTimeoutNs = TimeUnit.MILLISECONDS
         .toNanos(conf.getLong("hbase.regionserver.hlog.sync.timeout", DEFAULT_WAL_SYNC_TIMEOUT_MS));
+    this.groupCommitController = new GroupCommitController(conf);
     int maxHandlersCount = conf.getInt(HConstants.REGION_SERVER_HANDLER_COUNT, 200);
     // Presize our map of SyncFutures by handler objects.
     this.syncFuturesByHandler = new ConcurrentHashMap<>(maxHandlersCount);
@@ -931,14 +935,24 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
         i.visitLogEntryBeforeWrite(entry.getKey(), entry.getEdit());
       }
     }
+    long heapBufferSize = writer.getHeapBufferSize();
+    long directBufferSize = writer.getDirectBufferSize();
     doAppend(writer, entry);
     assert highestUnsyncedTxid < entry.getTxid();
     highestUnsyncedTxid = entry.getTxid();
+    groupCommitController.appended();
     sequenceIdAccounting.update(encodedRegionName, entry.getFamilyNames(), regionSequenceId,
       entry.isInMemStore());
     coprocessorHost.postWALWrite(entry.getRegionInfo(), entry.getKey(), entry.getEdit());
     // Update metrics.
     postAppend(entry, EnvironmentEdgeManager.currentTime() - start);
+    if (!listeners.isEmpty()) {
+      heapBufferSize = writer.getHeapBufferSize() - heapBufferSize;
+      directBufferSize = writer.getDirectBufferSize() - directBufferSize;
+      for (WALActionsListener listener : listeners) {
+        listener.postAppendBuffers(heapBufferSize, directBufferSize);
+      }
+    }
     numEntries.incrementAndGet();
     return true;
   }
@@ -963,9 +977,12 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
       TraceUtil.addTimelineAnnotation(msg);
       LOG.info(msg);
     }
+    long batchedAppends = groupCommitController.synced(timeInNanos);
     if (!listeners.isEmpty()) {
+      long lingerNanos = groupCommitController.getChosenLingerNanos();
       for (WALActionsListener listener : listeners) {
         listener.postSync(timeInNanos, handlerSyncs);
+        listener.postGroupCommit(batchedAppends, lingerNanos);
       }
     }
   }
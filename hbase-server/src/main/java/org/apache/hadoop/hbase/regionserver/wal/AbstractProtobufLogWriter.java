@@ -37,6 +37,7 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.crypto.Cipher;
 import org.apache.hadoop.hbase.io.crypto.Encryption;
 import org.apache.hadoop.hbase.io.crypto.Encryptor;
@@ -70,6 +71,25 @@ public abstract class AbstractProtobufLogWriter {
 
   protected AtomicLong length = new AtomicLong();
 
+  /**
+   * The WAL keys are serialized into a buffer kept by the writer for the next key, unless the
+   * buffer had to grow beyond this size.
+   */
+  protected static final int MAX_KEY_BUFFER_SIZE = 64 * 1024;
+  protected static final int INITIAL_KEY_BUFFER_SIZE = 512;
+
+  // Only updated by the thread appending to the writer
+  protected long heapBufferSize;
+  protected long directBufferSize;
+
+  public long getHeapBufferSize() {
+    return heapBufferSize;
+  }
+
+  public long getDirectBufferSize() {
+    return directBufferSize;
+  }
+
   private WALCellCodec getCodec(Configuration conf, CompressionContext compressionContext)
       throws IOException {
     return WALCellCodec.create(conf, null, compressionContext);
@@ -77,7 +97,7 @@ public abstract class AbstractProtobufLogWriter {
 
   private WALHeader buildWALHeader0(Configuration conf, WALHeader.Builder builder) {
     if (!builder.hasWriterClsName()) {
-      builder.setWriterClsName(getWriterClassName());
+      builder.setWriterClsName(getHeaderWriterClassName(builder));
     }
     if (!builder.hasCellCodecClsName()) {
       builder.setCellCodecClsName(WALCellCodec.getWALCellCodecClass(conf));
@@ -95,7 +115,7 @@ public abstract class AbstractProtobufLogWriter {
   // method to init your encryptor.
   protected final WALHeader buildSecureWALHeader(Configuration conf, WALHeader.Builder builder)
       throws IOException {
-    builder.setWriterClsName(getWriterClassName());
+    builder.setWriterClsName(getHeaderWriterClassName(builder));
     if (conf.getBoolean(HConstants.ENABLE_WAL_ENCRYPTION, false)) {
       EncryptionTest.testKeyProvider(conf);
       EncryptionTest.testCipherProvider(conf);
@@ -139,13 +159,23 @@ public abstract class AbstractProtobufLogWriter {
     return getClass().getSimpleName();
   }
 
+  private String getHeaderWriterClassName(WALHeader.Builder builder) {
+    // Readers without value compression support reject the unknown writer class
+    return builder.getHasValueCompression()
+        ? getWriterClassName() + ProtobufLogReader.VALUE_COMPRESSION_WRITER_CLS_SUFFIX
+        : getWriterClassName();
+  }
+
   private boolean initializeCompressionContext(Configuration conf, Path path) throws IOException {
     boolean doCompress = conf.getBoolean(HConstants.ENABLE_WAL_COMPRESSION, false);
     if (doCompress) {
       try {
         this.compressionContext = new CompressionContext(LRUDictionary.class,
             FSUtils.isRecoveredEdits(path),
-            conf.getBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true));
+            conf.getBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true),
+            CompressionContext.getValueCompressionType(conf),
+            conf.getInt(CompressionContext.WAL_VALUE_COMPRESSION_MIN_SIZE,
+              CompressionContext.DEFAULT_WAL_VALUE_COMPRESSION_MIN_SIZE));
       } catch (Exception e) {
         throw new IOException("Failed to initiate CompressionContext", e);
       }
@@ -168,15 +198,24 @@ public abstract class AbstractProtobufLogWriter {
 
     boolean doTagCompress = doCompress
         && conf.getBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true);
-    length.set(writeMagicAndWALHeader(ProtobufLogReader.PB_WAL_MAGIC, buildWALHeader(conf,
-      WALHeader.newBuilder().setHasCompression(doCompress).setHasTagCompression(doTagCompress))));
+    WALHeader.Builder headerBuilder =
+        WALHeader.newBuilder().setHasCompression(doCompress).setHasTagCompression(doTagCompress);
+    Compression.Algorithm valueCompressionType =
+        doCompress ? compressionContext.getValueCompressionType() : null;
+    if (valueCompressionType != null) {
+      headerBuilder.setHasValueCompression(true)
+          .setValueCompressionAlgorithm(valueCompressionType.ordinal());
+    }
+    length.set(writeMagicAndWALHeader(ProtobufLogReader.PB_WAL_MAGIC,
+      buildWALHeader(conf, headerBuilder)));
 
     initAfterHeader(doCompress);
 
     // instantiate trailer to default value.
     trailer = WALTrailer.newBuilder().build();
     if (LOG.isTraceEnabled()) {
-      LOG.trace("Initialized protobuf WAL=" + path + ", compression=" + doCompress);
+      LOG.trace("Initialized protobuf WAL=" + path + ", compression=" + doCompress
+          + ", valueCompression=" + valueCompressionType);
     }
   }
 
@@ -198,6 +198,10 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
 
   private long highestProcessedAppendTxidAtLastSync;
 
+  // whether a sync is scheduled at the end of the group commit window, only accessed in the
+  // consumer thread
+  private boolean lingerScheduled;
+
   private final int waitOnShutdownInSeconds;
 
   public AsyncFSWAL(FileSystem fs, Path rootDir, String logDir, String archiveDir,
@@ -530,7 +534,7 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
           if (writer.getLength() > fileLengthAtLastSync && !syncFutures.isEmpty() &&
             syncFutures.last().getTxid() > highestProcessedAppendTxidAtLastSync) {
             // no new data in the ringbuffer and we have at least one sync request
-            sync(writer);
+            syncOrLinger(writer);
           }
           return;
         } else {
@@ -545,6 +549,44 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     consumeExecutor.execute(consumer);
   }
 
+  /**
+   * Issue a sync now, or after the window chosen by the {@link GroupCommitController} so the
+   * appends arriving in the meantime are committed by the same sync. A sync for a full batch is
+   * still issued by {@link #appendAndSync()} right away.
+   */
+  private void syncOrLinger(AsyncWriter writer) {
+    long lingerNanos = groupCommitController.getLingerNanos();
+    if (lingerNanos <= 0) {
+      sync(writer);
+      return;
+    }
+    if (lingerScheduled) {
+      return;
+    }
+    lingerScheduled = true;
+    eventLoopGroup.schedule(() -> consumeExecutor.execute(this::lingerExpired), lingerNanos,
+      TimeUnit.NANOSECONDS);
+  }
+
+  private void lingerExpired() {
+    lingerScheduled = false;
+    consumeLock.lock();
+    try {
+      int currentEpochAndState = epochAndState;
+      if (writerBroken(currentEpochAndState) || waitingRoll(currentEpochAndState)) {
+        // the roll will sync or rewrite what is pending
+        return;
+      }
+    } finally {
+      consumeLock.unlock();
+    }
+    AsyncWriter writer = this.writer;
+    if (writer.getLength() > fileLengthAtLastSync && !syncFutures.isEmpty() &&
+      syncFutures.last().getTxid() > highestProcessedAppendTxidAtLastSync) {
+      sync(writer);
+    }
+  }
+
   private boolean shouldScheduleConsumer() {
     int currentEpochAndState = epochAndState;
     if (writerBroken(currentEpochAndState) || waitingRoll(currentEpochAndState)) {
@@ -39,8 +39,12 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hbase.thirdparty.com.google.common.base.Throwables;
+import org.apache.hbase.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.hbase.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.hbase.thirdparty.io.netty.buffer.ByteBufAllocator;
 import org.apache.hbase.thirdparty.io.netty.channel.Channel;
 import org.apache.hbase.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALHeader;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALTrailer;
 
@@ -102,6 +106,9 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
 
   private OutputStream asyncOutputWrapper;
 
+  /** Pooled off-heap buffer the WAL keys are serialized into */
+  private ByteBuf keyBuffer;
+
   public AsyncProtobufLogWriter(EventLoopGroup eventLoopGroup,
       Class<? extends Channel> channelClass) {
     this.eventLoopGroup = eventLoopGroup;
@@ -113,9 +120,8 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
     int buffered = output.buffered();
     entry.setCompressionContext(compressionContext);
     try {
-      entry.getKey().
-        getBuilder(compressor).setFollowingKvCount(entry.getEdit().size()).build()
-          .writeDelimitedTo(asyncOutputWrapper);
+      writeKey(entry.getKey().
+        getBuilder(compressor).setFollowingKvCount(entry.getEdit().size()).build());
     } catch (IOException e) {
       throw new AssertionError("should not happen", e);
     }
@@ -129,6 +135,36 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
     length.addAndGet(output.buffered() - buffered);
   }
 
+  /**
+   * Writes the key delimited like {@code writeDelimitedTo} does. The key is serialized straight
+   * into a pooled direct buffer, kept for the next key, instead of a new heap buffer per key, and
+   * copied from there into the output buffer, which is direct too.
+   */
+  private void writeKey(WALProtos.WALKey key) throws IOException {
+    int size = key.getSerializedSize();
+    int length = CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    if (keyBuffer == null || keyBuffer.capacity() < length) {
+      releaseKeyBuffer();
+      keyBuffer = ByteBufAllocator.DEFAULT.directBuffer(Math.max(length, INITIAL_KEY_BUFFER_SIZE));
+    }
+    CodedOutputStream out = CodedOutputStream.newInstance(keyBuffer.internalNioBuffer(0, length));
+    out.writeUInt32NoTag(size);
+    key.writeTo(out);
+    out.checkNoSpaceLeft();
+    output.write(keyBuffer.internalNioBuffer(0, length));
+    directBufferSize += length;
+    if (keyBuffer.capacity() > MAX_KEY_BUFFER_SIZE) {
+      releaseKeyBuffer();
+    }
+  }
+
+  private void releaseKeyBuffer() {
+    if (keyBuffer != null) {
+      keyBuffer.release();
+      keyBuffer = null;
+    }
+  }
+
   @Override
   public CompletableFuture<Long> sync() {
     return output.flush(false);
@@ -147,6 +183,10 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
       output.recoverAndClose(null);
     }
     this.output = null;
+    releaseKeyBuffer();
+    if (compressionContext != null) {
+      compressionContext.close();
+    }
   }
 
   public AsyncFSOutput getOutput() {
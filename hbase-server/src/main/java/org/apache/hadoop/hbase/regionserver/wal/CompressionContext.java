@@ -21,9 +21,11 @@ package org.apache.hadoop.hbase.regionserver.wal;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.io.TagCompressionContext;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.util.Dictionary;
 
 /**
@@ -35,6 +37,19 @@ public class CompressionContext {
   static final String ENABLE_WAL_TAGS_COMPRESSION =
       "hbase.regionserver.wal.tags.enablecompression";
 
+  /** Whether to compress the cell values too, on top of the dictionary compression of keys */
+  static final String ENABLE_WAL_VALUE_COMPRESSION =
+      "hbase.regionserver.wal.value.enablecompression";
+
+  /** The {@link Compression.Algorithm} the cell values are compressed with */
+  static final String WAL_VALUE_COMPRESSION_TYPE =
+      "hbase.regionserver.wal.value.compression.type";
+
+  /** Values smaller than this many bytes are written uncompressed */
+  static final String WAL_VALUE_COMPRESSION_MIN_SIZE =
+      "hbase.regionserver.wal.value.compression.min.size";
+  static final int DEFAULT_WAL_VALUE_COMPRESSION_MIN_SIZE = 64;
+
   // visible only for WALKey, until we move everything into o.a.h.h.wal
   public final Dictionary regionDict;
   public final Dictionary tableDict;
@@ -43,10 +58,25 @@ public class CompressionContext {
   final Dictionary rowDict;
   // Context used for compressing tags
   TagCompressionContext tagCompressionContext = null;
+  // Compressor of the cell values, null if they are not compressed
+  ValueCompressor valueCompressor = null;
 
   public CompressionContext(Class<? extends Dictionary> dictType, boolean recoveredEdits,
       boolean hasTagCompression) throws SecurityException, NoSuchMethodException,
       InstantiationException, IllegalAccessException, InvocationTargetException {
+    this(dictType, recoveredEdits, hasTagCompression, null, 0);
+  }
+
+  /**
+   * @param valueCompressionType the algorithm to compress the cell values with, null or
+   *          {@link Compression.Algorithm#NONE} to leave them uncompressed
+   * @param valueCompressionMinSize values smaller than this are not compressed, only used when
+   *          writing
+   */
+  public CompressionContext(Class<? extends Dictionary> dictType, boolean recoveredEdits,
+      boolean hasTagCompression, Compression.Algorithm valueCompressionType,
+      int valueCompressionMinSize) throws SecurityException, NoSuchMethodException,
+      InstantiationException, IllegalAccessException, InvocationTargetException {
     Constructor<? extends Dictionary> dictConstructor =
         dictType.getConstructor();
     regionDict = dictConstructor.newInstance();
@@ -68,6 +98,37 @@ public class CompressionContext {
     if (hasTagCompression) {
       tagCompressionContext = new TagCompressionContext(dictType, Short.MAX_VALUE);
     }
+    if (valueCompressionType != null && valueCompressionType != Compression.Algorithm.NONE) {
+      valueCompressor = new ValueCompressor(valueCompressionType, valueCompressionMinSize);
+    }
+  }
+
+  /**
+   * @return the algorithm the cell values are compressed with, null if they are not compressed
+   */
+  public Compression.Algorithm getValueCompressionType() {
+    return valueCompressor == null ? null : valueCompressor.getAlgorithm();
+  }
+
+  /**
+   * Releases the compressor of the cell values, if any.
+   */
+  void close() {
+    if (valueCompressor != null) {
+      valueCompressor.close();
+    }
+  }
+
+  /**
+   * @return the algorithm to compress the cell values of a new WAL with, null if they should not
+   *         be compressed
+   */
+  static Compression.Algorithm getValueCompressionType(Configuration conf) {
+    if (!conf.getBoolean(ENABLE_WAL_VALUE_COMPRESSION, false)) {
+      return null;
+    }
+    return Compression.getCompressionAlgorithmByName(
+      conf.get(WAL_VALUE_COMPRESSION_TYPE, Compression.Algorithm.GZ.getName()));
   }
 
   void clear() {
@@ -34,6 +34,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -546,8 +547,9 @@ public class FSHLog extends AbstractFSWAL<Writer> {
     @Override
     public void run() {
       long currentSequence;
+      // the futures released without a sync of their own are reported with the next sync
+      int syncCount = 0;
       while (!isInterrupted()) {
-        int syncCount = 0;
 
         try {
           while (true) {
@@ -569,6 +571,21 @@ public class FSHLog extends AbstractFSWAL<Writer> {
             }
             break;
           }
+          // Linger so the handlers arriving in the meantime are released by this sync too. They
+          // are offered to the other runners, but we sync up to the highest sequence offered to
+          // us, so the runners that take them later may find them synced already.
+          long lingerNanos = groupCommitController.getLingerNanos();
+          if (lingerNanos > 0) {
+            LockSupport.parkNanos(lingerNanos);
+            currentSequence = this.sequence;
+            long currentHighestSyncedSequence = highestSyncedTxid.get();
+            if (currentSequence <= currentHighestSyncedSequence) {
+              // another runner synced all we have while we lingered
+              syncCount += releaseSyncFuture(takeSyncFuture, currentHighestSyncedSequence, null);
+              syncCount += releaseSyncFutures(currentHighestSyncedSequence, null);
+              continue;
+            }
+          }
           // I got something. Lets run. Save off current sequence number in case it changes
           // while we run.
           //TODO handle htrace API change, see HBASE-18895
@@ -601,6 +618,7 @@ public class FSHLog extends AbstractFSWAL<Writer> {
             }
           }
           postSync(System.nanoTime() - start, syncCount);
+          syncCount = 0;
         } catch (InterruptedException e) {
           // Presume legit interrupt.
           Thread.currentThread().interrupt();
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Decides how long a WAL waits for more appends before it issues a filesystem sync.
+ * <p>
+ * The controller keeps decaying averages of the sync latency and of the time between two appends,
+ * both fed by the WAL. The linger window is the time it takes to collect
+ * "hbase.regionserver.wal.groupcommit.target.batch" appends at the current arrival rate, bounded by
+ * what is left of "hbase.regionserver.wal.groupcommit.latency.slo.ms" once the sync itself is
+ * paid. When fewer than two appends would arrive in that budget, e.g. on a lightly loaded server,
+ * the window is zero and the WAL syncs as soon as it can, as it does without the controller.
+ * <p>
+ * The averages are always kept so the batch sizes can be published, the window is only applied if
+ * "hbase.regionserver.wal.groupcommit.adaptive" is set.
+ */
+@InterfaceAudience.Private
+public class GroupCommitController {
+
+  public static final String ADAPTIVE_GROUP_COMMIT = "hbase.regionserver.wal.groupcommit.adaptive";
+  public static final boolean DEFAULT_ADAPTIVE_GROUP_COMMIT = false;
+
+  public static final String LATENCY_SLO_MS = "hbase.regionserver.wal.groupcommit.latency.slo.ms";
+  public static final int DEFAULT_LATENCY_SLO_MS = 10;
+
+  public static final String TARGET_BATCH = "hbase.regionserver.wal.groupcommit.target.batch";
+  public static final int DEFAULT_TARGET_BATCH = 32;
+
+  /** Weight of the past in the decaying averages */
+  private static final double DECAY = 0.8;
+
+  private final boolean enabled;
+  private final long latencySloNs;
+  private final int targetBatch;
+
+  private final LongAdder appends = new LongAdder();
+
+  // guarded by this
+  private long appendsAtLastSync;
+  private long lastSyncTimeNs;
+  private double avgSyncNs = -1;
+  private double avgAppendIntervalNs = -1;
+
+  private volatile long lingerNs;
+
+  public GroupCommitController(Configuration conf) {
+    this(conf.getBoolean(ADAPTIVE_GROUP_COMMIT, DEFAULT_ADAPTIVE_GROUP_COMMIT),
+      TimeUnit.MILLISECONDS.toNanos(conf.getInt(LATENCY_SLO_MS, DEFAULT_LATENCY_SLO_MS)),
+      conf.getInt(TARGET_BATCH, DEFAULT_TARGET_BATCH), System.nanoTime());
+  }
+
+  @VisibleForTesting
+  GroupCommitController(boolean enabled, long latencySloNs, int targetBatch, long nowNs) {
+    this.enabled = enabled;
+    this.latencySloNs = latencySloNs;
+    this.targetBatch = Math.max(1, targetBatch);
+    this.lastSyncTimeNs = nowNs;
+  }
+
+  /**
+   * Count an entry appended to the writer.
+   */
+  public void appended() {
+    appends.increment();
+  }
+
+  /**
+   * Account a completed filesystem sync and choose the window for the next ones.
+   * @param syncNs how long the filesystem sync took
+   * @return the number of appends since the previous sync, i.e. the appends this sync committed
+   */
+  public long synced(long syncNs) {
+    return synced(syncNs, System.nanoTime());
+  }
+
+  @VisibleForTesting
+  synchronized long synced(long syncNs, long nowNs) {
+    long totalAppends = appends.sum();
+    long batch = totalAppends - appendsAtLastSync;
+    long elapsedNs = nowNs - lastSyncTimeNs;
+    appendsAtLastSync = totalAppends;
+    lastSyncTimeNs = nowNs;
+    avgSyncNs = avgSyncNs < 0 ? syncNs : DECAY * avgSyncNs + (1 - DECAY) * syncNs;
+    if (batch > 0 && elapsedNs > 0) {
+      double intervalNs = (double) elapsedNs / batch;
+      avgAppendIntervalNs = avgAppendIntervalNs < 0 ? intervalNs
+          : DECAY * avgAppendIntervalNs + (1 - DECAY) * intervalNs;
+    } else if (avgAppendIntervalNs > 0 && elapsedNs > 0) {
+      // nothing arrived since the previous sync, the arrival rate is at most one per elapsed time
+      avgAppendIntervalNs = Math.max(avgAppendIntervalNs, (double) elapsedNs);
+    }
+    lingerNs = computeLingerNs();
+    return batch;
+  }
+
+  private long computeLingerNs() {
+    if (avgAppendIntervalNs <= 0) {
+      return 0;
+    }
+    double budgetNs = latencySloNs - avgSyncNs;
+    if (budgetNs < 2 * avgAppendIntervalNs) {
+      // waiting would not bring in enough appends to save a sync
+      return 0;
+    }
+    return (long) Math.min(budgetNs, targetBatch * avgAppendIntervalNs);
+  }
+
+  /**
+   * @return the chosen window whether or not it is applied, in nanoseconds
+   */
+  public long getChosenLingerNanos() {
+    return lingerNs;
+  }
+
+  /**
+   * @return how long to wait for more appends before a sync, zero to sync right away
+   */
+  public long getLingerNanos() {
+    return enabled ? lingerNs : 0;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+}
@@ -53,6 +53,13 @@ public class MetricsWAL implements WALActionsListener {
   @Override
   public void postSync(final long timeInNanos, final int handlerSyncs) {
     source.incrementSyncTime(timeInNanos/1000000L);
+    source.incrementSyncBatchSize(handlerSyncs);
+  }
+
+  @Override
+  public void postGroupCommit(final long batchedAppends, final long lingerNanos) {
+    source.incrementSyncAppendBatchSize(batchedAppends);
+    source.setSyncLingerTime(lingerNanos / 1000L);
   }
 
   @Override
@@ -72,6 +79,16 @@ public class MetricsWAL implements WALActionsListener {
     }
   }
 
+  @Override
+  public void postAppendBuffers(final long heapBufferSize, final long directBufferSize) {
+    if (heapBufferSize > 0) {
+      source.incrementAppendHeapBufferSize(heapBufferSize);
+    }
+    if (directBufferSize > 0) {
+      source.incrementAppendDirectBufferSize(directBufferSize);
+    }
+  }
+
   @Override
   public void logRollRequested(boolean underReplicated) {
     source.incrementLogRollRequested();
@@ -32,6 +32,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.hbase.codec.Codec;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALHeader.Builder;
@@ -69,6 +70,13 @@ public class ProtobufLogReader extends ReaderBase {
   // public for TestWALSplit
   @InterfaceAudience.Private
   public static final byte[] PB_WAL_COMPLETE_MAGIC = Bytes.toBytes("LAWP");
+  /**
+   * Suffix of the writer class name in the header of a WAL with compressed cell values, so that
+   * readers without value compression support fail on the unknown writer class instead of
+   * returning the compressed values.
+   */
+  @InterfaceAudience.Private
+  public static final String VALUE_COMPRESSION_WRITER_CLS_SUFFIX = "+ValueCompression";
   /**
    * Configuration name of WAL Trailer's warning size. If a waltrailer's size is greater than the
    * configured size, providers should log a warning. e.g. this is used with Protobuf reader/writer.
@@ -81,6 +89,8 @@ public class ProtobufLogReader extends ReaderBase {
   protected WALCellCodec.ByteStringUncompressor byteStringUncompressor;
   protected boolean hasCompression = false;
   protected boolean hasTagCompression = false;
+  protected boolean hasValueCompression = false;
+  protected Compression.Algorithm valueCompressionType = null;
   // walEditsStopOffset is the position of the last byte to read. After reading the last WALEdit
   // entry in the wal, the inputstream's position is equal to walEditsStopOffset.
   private long walEditsStopOffset;
@@ -192,7 +202,7 @@ public class ProtobufLogReader extends ReaderBase {
      boolean res = builder.mergeDelimitedFrom(stream);
      if (!res) return new WALHdrContext(WALHdrResult.EOF, null);
      if (builder.hasWriterClsName() &&
-         !getWriterClsNames().contains(builder.getWriterClsName())) {
+         !getWriterClsNames().contains(getWriterClsName(builder))) {
        return new WALHdrContext(WALHdrResult.UNKNOWN_WRITER_CLS, null);
      }
      String clsName = null;
@@ -202,6 +212,16 @@ public class ProtobufLogReader extends ReaderBase {
      return new WALHdrContext(WALHdrResult.SUCCESS, clsName);
   }
 
+  private static String getWriterClsName(Builder builder) {
+    String writerClsName = builder.getWriterClsName();
+    if (builder.getHasValueCompression()
+        && writerClsName.endsWith(VALUE_COMPRESSION_WRITER_CLS_SUFFIX)) {
+      return writerClsName.substring(0,
+        writerClsName.length() - VALUE_COMPRESSION_WRITER_CLS_SUFFIX.length());
+    }
+    return writerClsName;
+  }
+
   private String initInternal(FSDataInputStream stream, boolean isFirst)
       throws IOException {
     close();
@@ -227,6 +247,15 @@ public class ProtobufLogReader extends ReaderBase {
       WALProtos.WALHeader header = builder.build();
       this.hasCompression = header.hasHasCompression() && header.getHasCompression();
       this.hasTagCompression = header.hasHasTagCompression() && header.getHasTagCompression();
+      this.hasValueCompression =
+          header.hasHasValueCompression() && header.getHasValueCompression();
+      if (this.hasValueCompression) {
+        int algorithm = header.getValueCompressionAlgorithm();
+        if (algorithm < 0 || algorithm >= Compression.Algorithm.values().length) {
+          throw new IOException("Unknown value compression algorithm " + algorithm);
+        }
+        this.valueCompressionType = Compression.Algorithm.values()[algorithm];
+      }
     }
     this.inputStream = stream;
     this.walEditsStopOffset = this.fileLength;
@@ -325,6 +354,11 @@ public class ProtobufLogReader extends ReaderBase {
     return this.hasTagCompression;
   }
 
+  @Override
+  protected Compression.Algorithm getValueCompressionType() {
+    return this.hasValueCompression ? this.valueCompressionType : null;
+  }
+
   @Override
   protected boolean readNext(Entry entry) throws IOException {
     while (true) {
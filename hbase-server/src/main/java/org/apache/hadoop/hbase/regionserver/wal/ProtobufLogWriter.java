@@ -28,6 +28,8 @@ import org.apache.hadoop.hbase.Cell;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.hbase.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALHeader;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALTrailer;
 import org.apache.hadoop.hbase.util.CommonFSUtils;
@@ -46,11 +48,13 @@ public class ProtobufLogWriter extends AbstractProtobufLogWriter
 
   protected FSDataOutputStream output;
 
+  private byte[] keyBuffer;
+
   @Override
   public void append(Entry entry) throws IOException {
     entry.setCompressionContext(compressionContext);
-    entry.getKey().getBuilder(compressor).
-        setFollowingKvCount(entry.getEdit().size()).build().writeDelimitedTo(output);
+    writeKey(entry.getKey().getBuilder(compressor).
+        setFollowingKvCount(entry.getEdit().size()).build());
     for (Cell cell : entry.getEdit().getCells()) {
       // cellEncoder must assume little about the stream, since we write PB and cells in turn.
       cellEncoder.write(cell);
@@ -58,6 +62,27 @@ public class ProtobufLogWriter extends AbstractProtobufLogWriter
     length.set(output.getPos());
   }
 
+  /**
+   * Writes the key delimited like {@code writeDelimitedTo} does, through a buffer reused from one
+   * key to the next rather than a new one per key.
+   */
+  private void writeKey(WALProtos.WALKey key) throws IOException {
+    int size = key.getSerializedSize();
+    int length = CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    if (keyBuffer == null || keyBuffer.length < length) {
+      keyBuffer = new byte[Math.max(length, INITIAL_KEY_BUFFER_SIZE)];
+      heapBufferSize += keyBuffer.length;
+    }
+    CodedOutputStream out = CodedOutputStream.newInstance(keyBuffer, 0, length);
+    out.writeUInt32NoTag(size);
+    key.writeTo(out);
+    out.checkNoSpaceLeft();
+    output.write(keyBuffer, 0, length);
+    if (keyBuffer.length > MAX_KEY_BUFFER_SIZE) {
+      keyBuffer = null;
+    }
+  }
+
   @Override
   public void close() throws IOException {
     if (this.output != null) {
@@ -69,6 +94,9 @@ public class ProtobufLogWriter extends AbstractProtobufLogWriter
         LOG.warn(npe.toString(), npe);
       }
       this.output = null;
+      if (compressionContext != null) {
+        compressionContext.close();
+      }
     }
   }
 
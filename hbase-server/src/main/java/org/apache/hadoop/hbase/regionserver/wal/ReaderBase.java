@@ -27,6 +27,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.util.LRUDictionary;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.wal.AbstractFSWALProvider;
@@ -70,7 +71,7 @@ public abstract class ReaderBase implements AbstractFSWALProvider.Reader {
       try {
         if (compressionContext == null) {
           compressionContext = new CompressionContext(LRUDictionary.class,
-              FSUtils.isRecoveredEdits(path), hasTagCompression());
+              FSUtils.isRecoveredEdits(path), hasTagCompression(), getValueCompressionType(), 0);
         } else {
           compressionContext.clear();
         }
@@ -155,6 +156,11 @@ public abstract class ReaderBase implements AbstractFSWALProvider.Reader {
    */
   protected abstract boolean hasTagCompression();
 
+  /**
+   * @return The algorithm the cell values of this log are compressed with, null if they are not.
+   */
+  protected abstract Compression.Algorithm getValueCompressionType();
+
   /**
    * Read next entry.
    * @param e The entry to read into.
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.util.StreamUtils;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Compresses the values of the cells written to a compressed WAL with a
+ * {@link Compression.Algorithm}. Each value is compressed on its own, so a value can be read
+ * back without the ones before it, and is preceded by its compressed length as a vint. Values
+ * smaller than the minimum size, or that do not shrink, are written as they are after a 0
+ * length.
+ */
+@InterfaceAudience.Private
+class ValueCompressor {
+
+  private final Compression.Algorithm algorithm;
+  private final int minSize;
+  private Compressor compressor;
+  private ByteArrayOutputStream compressedStream;
+  private CompressionOutputStream compressionStream;
+
+  ValueCompressor(Compression.Algorithm algorithm, int minSize) {
+    this.algorithm = algorithm;
+    this.minSize = minSize;
+  }
+
+  Compression.Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  void writeValue(OutputStream out, Cell cell) throws IOException {
+    int valueLength = cell.getValueLength();
+    if (valueLength > 0 && valueLength >= minSize) {
+      if (compressionStream == null) {
+        compressor = algorithm.getCompressor();
+        compressedStream = new ByteArrayOutputStream();
+        compressionStream = algorithm.createPlainCompressionStream(compressedStream, compressor);
+      }
+      compressedStream.reset();
+      compressionStream.resetState();
+      PrivateCellUtil.writeValue(compressionStream, cell, valueLength);
+      compressionStream.flush();
+      compressionStream.finish();
+      if (compressedStream.size() < valueLength) {
+        StreamUtils.writeRawVInt32(out, compressedStream.size());
+        compressedStream.writeTo(out);
+        return;
+      }
+    }
+    StreamUtils.writeRawVInt32(out, 0);
+    PrivateCellUtil.writeValue(out, cell, valueLength);
+  }
+
+  void readValue(InputStream in, byte[] dest, int offset, int length) throws IOException {
+    int compressedLength = StreamUtils.readRawVarint32(in);
+    if (compressedLength == 0) {
+      IOUtils.readFully(in, dest, offset, length);
+      return;
+    }
+    byte[] compressed = new byte[compressedLength];
+    IOUtils.readFully(in, compressed, 0, compressedLength);
+    Compression.decompress(dest, offset, new ByteArrayInputStream(compressed), compressedLength,
+      length, algorithm);
+  }
+
+  void close() {
+    algorithm.returnCompressor(compressor);
+    compressor = null;
+    compressionStream = null;
+    compressedStream = null;
+  }
+}
@@ -99,6 +99,14 @@ public interface WALActionsListener {
   default void postAppend(final long entryLen, final long elapsedTimeMillis, final WALKey logKey,
       final WALEdit logEdit) throws IOException {}
 
+  /**
+   * For notification of the buffers the writer used to serialize an entry. Used by metrics
+   * system at least.
+   * @param heapBufferSize Size of the heap buffers allocated to serialize the entry.
+   * @param directBufferSize Size of the entry data serialized into pooled off-heap buffers.
+   */
+  default void postAppendBuffers(final long heapBufferSize, final long directBufferSize) {}
+
   /**
    * For notification post writer sync.  Used by metrics system at least.
    * @param timeInNanos How long the filesystem sync took in nanoseconds.
@@ -106,4 +114,12 @@ public interface WALActionsListener {
    * sync.
    */
   default void postSync(final long timeInNanos, final int handlerSyncs) {}
+
+  /**
+   * For notification of the group commit done by a writer sync. Used by metrics system at least.
+   * @param batchedAppends How many appends were committed by this call to filesystem sync.
+   * @param lingerNanos The window, in nanoseconds, the WAL now waits for more appends before a
+   * sync.
+   */
+  default void postGroupCommit(final long batchedAppends, final long lingerNanos) {}
 }
@@ -212,10 +212,14 @@ public class WALCellCodec implements Codec {
       PrivateCellUtil.compressRow(out, cell, compression.rowDict);
       PrivateCellUtil.compressFamily(out, cell, compression.familyDict);
       PrivateCellUtil.compressQualifier(out, cell, compression.qualifierDict);
-      // Write timestamp, type and value as uncompressed.
+      // Write timestamp and type as uncompressed, and the value compressed if asked for.
       StreamUtils.writeLong(out, cell.getTimestamp());
       out.write(cell.getTypeByte());
-      PrivateCellUtil.writeValue(out, cell, cell.getValueLength());
+      if (compression.valueCompressor != null) {
+        compression.valueCompressor.writeValue(out, cell);
+      } else {
+        PrivateCellUtil.writeValue(out, cell, cell.getValueLength());
+      }
       if (tagsLength > 0) {
         if (compression.tagCompressionContext != null) {
           // Write tags using Dictionary compression
@@ -271,12 +275,19 @@ public class WALCellCodec implements Codec {
       pos += elemLen;
 
       // timestamp, type and value
-      int tsTypeValLen = length - pos;
-      if (tagsLength > 0) {
-        tsTypeValLen = tsTypeValLen - tagsLength - KeyValue.TAGS_LENGTH_SIZE;
+      if (compression.valueCompressor != null) {
+        IOUtils.readFully(in, backingArray, pos, KeyValue.TIMESTAMP_TYPE_SIZE);
+        pos += KeyValue.TIMESTAMP_TYPE_SIZE;
+        compression.valueCompressor.readValue(in, backingArray, pos, vlength);
+        pos += vlength;
+      } else {
+        int tsTypeValLen = length - pos;
+        if (tagsLength > 0) {
+          tsTypeValLen = tsTypeValLen - tagsLength - KeyValue.TAGS_LENGTH_SIZE;
+        }
+        IOUtils.readFully(in, backingArray, pos, tsTypeValLen);
+        pos += tsTypeValLen;
       }
-      IOUtils.readFully(in, backingArray, pos, tsTypeValLen);
-      pos += tsTypeValLen;
 
       // tags
       if (tagsLength > 0) {
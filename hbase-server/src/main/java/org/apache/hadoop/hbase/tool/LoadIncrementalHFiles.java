@@ -54,6 +54,7 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hbase.CompoundConfiguration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
@@ -1083,7 +1084,10 @@ public class LoadIncrementalHFiles extends Configured implements Tool {
           .withBytesPerCheckSum(HStore.getBytesPerChecksum(conf)).withBlockSize(blocksize)
           .withDataBlockEncoding(familyDescriptor.getDataBlockEncoding()).withIncludesTags(true)
           .build();
-      halfWriter = new StoreFileWriter.Builder(conf, cacheConf, fs).withFilePath(outFile)
+      // The family configuration holds the parameters of row prefix bloom filters
+      Configuration writerConf = new CompoundConfiguration().add(conf)
+          .addStringMap(familyDescriptor.getConfiguration());
+      halfWriter = new StoreFileWriter.Builder(writerConf, cacheConf, fs).withFilePath(outFile)
           .withBloomType(bloomFilterType).withFileContext(hFileContext).build();
       HFileScanner scanner = halfReader.getScanner(false, false, false);
       scanner.seekTo();
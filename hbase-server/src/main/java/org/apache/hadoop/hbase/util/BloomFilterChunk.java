@@ -187,12 +187,12 @@ public class BloomFilterChunk implements BloomFilterBase {
     int hash1;
     int hash2;
     HashKey<Cell> hashKey;
-    if (this.bloomType == BloomType.ROW) {
-      hashKey = new RowBloomHashKey(cell);
+    if (this.bloomType == BloomType.ROWCOL) {
+      hashKey = new RowColBloomHashKey(cell);
       hash1 = this.hash.hash(hashKey, 0);
       hash2 = this.hash.hash(hashKey, hash1);
     } else {
-      hashKey = new RowColBloomHashKey(cell);
+      hashKey = new RowBloomHashKey(cell);
       hash1 = this.hash.hash(hashKey, 0);
       hash2 = this.hash.hash(hashKey, hash1);
     }
@@ -18,9 +18,12 @@
 package org.apache.hadoop.hbase.util;
 
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Random;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.regionserver.BloomType;
@@ -33,6 +36,10 @@ public final class BloomFilterUtil {
 
   /** Record separator for the Bloom filter statistics human-readable string */
   public static final String STATS_RECORD_SEP = "; ";
+  /** Length of the row prefix of a {@link BloomType#ROWPREFIX_FIXED_LENGTH} Bloom filter */
+  public static final String PREFIX_LENGTH_KEY = "RowPrefixBloomFilter.prefix_length";
+  /** Delimiter ending the row prefix of a {@link BloomType#ROWPREFIX_DELIMITED} Bloom filter */
+  public static final String DELIMITER_KEY = "RowPrefixDelimitedBloomFilter.delimiter";
   /**
    * Used in computing the optimal Bloom filter size. This approximately equals
    * 0.480453.
@@ -232,8 +239,8 @@ public final class BloomFilterUtil {
 
   public static boolean contains(Cell cell, ByteBuff bloomBuf, int bloomOffset, int bloomSize,
       Hash hash, int hashCount, BloomType type) {
-    HashKey<Cell> hashKey = type == BloomType.ROW ? new RowBloomHashKey(cell)
-        : new RowColBloomHashKey(cell);
+    HashKey<Cell> hashKey = type == BloomType.ROWCOL ? new RowColBloomHashKey(cell)
+        : new RowBloomHashKey(cell);
     return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
   }
 
@@ -273,6 +280,91 @@ public final class BloomFilterUtil {
     return sb.toString();
   }
 
+  /**
+   * Gets the parameter of a row prefix Bloom filter from the configuration of its column family:
+   * the prefix length for {@link BloomType#ROWPREFIX_FIXED_LENGTH}, as an int, and the delimiter
+   * for {@link BloomType#ROWPREFIX_DELIMITED}.
+   * @return the parameter, or null if the Bloom filter type takes none
+   * @throws IllegalArgumentException if the parameter is missing or invalid
+   */
+  public static byte[] getBloomFilterParam(BloomType bloomFilterType, Configuration conf) {
+    String message = "Bloom filter type is " + bloomFilterType + ", ";
+    switch (bloomFilterType) {
+      case ROWPREFIX_FIXED_LENGTH:
+        String prefixLengthString = conf.get(PREFIX_LENGTH_KEY);
+        if (prefixLengthString == null) {
+          throw new IllegalArgumentException(message + PREFIX_LENGTH_KEY + " not specified.");
+        }
+        int prefixLength;
+        try {
+          prefixLength = Integer.parseInt(prefixLengthString);
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException(message + "the value of " + PREFIX_LENGTH_KEY
+              + " is not an integer: " + prefixLengthString, e);
+        }
+        if (prefixLength <= 0 || prefixLength > HConstants.MAX_ROW_LENGTH) {
+          throw new IllegalArgumentException(message + PREFIX_LENGTH_KEY + " should be between 1"
+              + " and " + HConstants.MAX_ROW_LENGTH + ", but it is " + prefixLength);
+        }
+        return Bytes.toBytes(prefixLength);
+      case ROWPREFIX_DELIMITED:
+        String delimiter = conf.get(DELIMITER_KEY);
+        if (delimiter == null || delimiter.isEmpty()) {
+          throw new IllegalArgumentException(message + DELIMITER_KEY + " not specified.");
+        }
+        return Bytes.toBytes(delimiter);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return whether the Bloom filter type keys on a prefix of the row
+   */
+  public static boolean isRowPrefixBloomType(BloomType bloomFilterType) {
+    return bloomFilterType == BloomType.ROWPREFIX_FIXED_LENGTH
+        || bloomFilterType == BloomType.ROWPREFIX_DELIMITED;
+  }
+
+  /**
+   * Gets the length of the prefix of a row that a row prefix Bloom filter keys on. A fixed length
+   * prefix is cut at the prefix length, a delimited prefix ends with the first delimiter. A row
+   * shorter than the prefix length, or without the delimiter, is its own prefix. Keeping the
+   * delimiter in the prefix makes the prefixes of sorted rows sorted as well.
+   * @param bloomParam the parameter returned by {@link #getBloomFilterParam}
+   */
+  public static int getRowPrefixLength(byte[] row, BloomType bloomFilterType,
+      byte[] bloomParam) {
+    if (bloomFilterType == BloomType.ROWPREFIX_FIXED_LENGTH) {
+      return Math.min(row.length, Bytes.toInt(bloomParam));
+    }
+    int index = Bytes.indexOf(row, bloomParam);
+    return index < 0 ? row.length : index + bloomParam.length;
+  }
+
+  /**
+   * @return the row prefix that a row prefix Bloom filter keys on for the given row
+   * @see #getRowPrefixLength(byte[], BloomType, byte[])
+   */
+  public static byte[] getRowPrefix(byte[] row, BloomType bloomFilterType, byte[] bloomParam) {
+    int length = getRowPrefixLength(row, bloomFilterType, bloomParam);
+    return length == row.length ? row : Arrays.copyOf(row, length);
+  }
+
+  /**
+   * Whether the given prefix of a row is complete, that is, every row starting with it has it as
+   * its Bloom key. This is the case when the prefix has the full prefix length, or ends with the
+   * delimiter.
+   */
+  public static boolean isCompleteRowPrefix(byte[] prefix, BloomType bloomFilterType,
+      byte[] bloomParam) {
+    if (bloomFilterType == BloomType.ROWPREFIX_FIXED_LENGTH) {
+      return prefix.length == Bytes.toInt(bloomParam);
+    }
+    return prefix.length >= bloomParam.length && Bytes.equals(prefix,
+      prefix.length - bloomParam.length, bloomParam.length, bloomParam, 0, bloomParam.length);
+  }
+
   public static String toString(BloomFilterChunk bloomFilter) {
     return formatStats(bloomFilter) + STATS_RECORD_SEP + "Actual error rate: "
         + String.format("%.8f", bloomFilter.actualErrorRate());
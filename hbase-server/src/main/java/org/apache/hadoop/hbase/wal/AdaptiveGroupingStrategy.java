@@ -0,0 +1,191 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.RegionGroupingStrategy;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A WAL grouping strategy that spreads regions over "hbase.wal.regiongrouping.numgroups" groups
+ * by their append rate rather than round robin.
+ * <p>
+ * The strategy listens to the appends of all the groups and keeps a decaying average of the bytes
+ * each region appends per second. At a log roll, at most once per
+ * "hbase.wal.regiongrouping.adaptive.rebalance.interval", the regions are planned again over the
+ * groups, hottest first, each to the group with the least load so far, so the hot regions end up
+ * on different WALs. A region without history goes to the least loaded group.
+ * <p>
+ * A region keeps the WAL it was opened with, its unflushed edits and sequence ids are tracked by
+ * that WAL, so a new plan only applies to the regions opened after it, e.g. when they are moved,
+ * split or merged, or when the server restarts. The plan only remembers the regions with a rate,
+ * the closed and idle ones are dropped from it at a rebalance so they do not count as load.
+ */
+@InterfaceAudience.Private
+public class AdaptiveGroupingStrategy implements RegionGroupingStrategy, WALActionsListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AdaptiveGroupingStrategy.class);
+
+  static final String REBALANCE_INTERVAL = "hbase.wal.regiongrouping.adaptive.rebalance.interval";
+  static final long DEFAULT_REBALANCE_INTERVAL = 5 * 60 * 1000L;
+
+  /** Weight of the past in the average append rate of a region */
+  private static final double DECAY = 0.5;
+
+  /** Regions appending less than this many bytes per second are forgotten */
+  private static final double MIN_RATE = 1.0;
+
+  private final ConcurrentHashMap<String, String> groupOfRegion = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, LongAdder> appendedBytes = new ConcurrentHashMap<>();
+  /** Bytes per second of each region, guarded by this */
+  private final Map<String, Double> rates = new HashMap<>();
+  private String[] groupNames;
+  private long rebalanceInterval;
+  private volatile long lastRebalance;
+
+  @Override
+  public void init(Configuration config, String providerId) {
+    int regionGroupNumber = config.getInt(BoundedGroupingStrategy.NUM_REGION_GROUPS,
+      BoundedGroupingStrategy.DEFAULT_NUM_REGION_GROUPS);
+    groupNames = new String[regionGroupNumber];
+    for (int i = 0; i < regionGroupNumber; i++) {
+      groupNames[i] = providerId + GROUP_NAME_DELIMITER + "regiongroup-" + i;
+    }
+    rebalanceInterval = config.getLong(REBALANCE_INTERVAL, DEFAULT_REBALANCE_INTERVAL);
+    lastRebalance = EnvironmentEdgeManager.currentTime();
+  }
+
+  @Override
+  public String group(byte[] identifier, byte[] namespace) {
+    String region = Bytes.toString(identifier);
+    String group = groupOfRegion.get(region);
+    if (group != null) {
+      return group;
+    }
+    synchronized (this) {
+      return groupOfRegion.computeIfAbsent(region, r -> leastLoadedGroup());
+    }
+  }
+
+  /**
+   * @return the group with the lowest planned append rate, or with the fewest regions if the rates
+   *         are equal
+   */
+  private String leastLoadedGroup() {
+    Map<String, double[]> loads = new HashMap<>();
+    for (String group : groupNames) {
+      loads.put(group, new double[2]);
+    }
+    for (Map.Entry<String, String> entry : groupOfRegion.entrySet()) {
+      double[] load = loads.get(entry.getValue());
+      if (load != null) {
+        load[0] += rates.getOrDefault(entry.getKey(), 0.0);
+        load[1]++;
+      }
+    }
+    String best = groupNames[0];
+    for (String group : groupNames) {
+      double[] load = loads.get(group);
+      double[] bestLoad = loads.get(best);
+      if (load[0] < bestLoad[0] || (load[0] == bestLoad[0] && load[1] < bestLoad[1])) {
+        best = group;
+      }
+    }
+    return best;
+  }
+
+  @Override
+  public void postAppend(long entryLen, long elapsedTimeMillis, WALKey logKey, WALEdit logEdit) {
+    byte[] region = logKey.getEncodedRegionName();
+    if (region == null) {
+      return;
+    }
+    appendedBytes.computeIfAbsent(Bytes.toString(region), r -> new LongAdder()).add(entryLen);
+  }
+
+  @Override
+  public void postLogRoll(Path oldPath, Path newPath) {
+    long now = EnvironmentEdgeManager.currentTime();
+    if (now - lastRebalance >= rebalanceInterval) {
+      rebalance(now);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void rebalance(long now) {
+    double seconds = Math.max(now - lastRebalance, 1) / 1000.0;
+    lastRebalance = now;
+    for (Map.Entry<String, LongAdder> entry : appendedBytes.entrySet()) {
+      rates.putIfAbsent(entry.getKey(), 0.0);
+    }
+    for (Map.Entry<String, Double> entry : rates.entrySet()) {
+      LongAdder bytes = appendedBytes.get(entry.getKey());
+      double recent = bytes == null ? 0 : bytes.sumThenReset() / seconds;
+      entry.setValue(DECAY * entry.getValue() + (1 - DECAY) * recent);
+    }
+    rates.values().removeIf(rate -> rate < MIN_RATE);
+    appendedBytes.keySet().retainAll(rates.keySet());
+    // Closed regions never ask for their group again, forget them with the idle ones
+    groupOfRegion.keySet().retainAll(rates.keySet());
+    List<Map.Entry<String, Double>> active = new ArrayList<>(rates.entrySet());
+    active.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+
+    // Longest processing time first, each region to the least loaded group so far
+    double[] loads = new double[groupNames.length];
+    for (Map.Entry<String, Double> entry : active) {
+      int best = 0;
+      for (int i = 1; i < loads.length; i++) {
+        if (loads[i] < loads[best]) {
+          best = i;
+        }
+      }
+      loads[best] += entry.getValue();
+      String previous = groupOfRegion.put(entry.getKey(), groupNames[best]);
+      if (LOG.isDebugEnabled() && !groupNames[best].equals(previous)) {
+        LOG.debug("Planned region {} appending {} bytes/s on {}, was {}", entry.getKey(),
+          (long) entry.getValue().doubleValue(), groupNames[best], previous);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getNumPlannedRegions() {
+    return groupOfRegion.size();
+  }
+
+  @VisibleForTesting
+  synchronized double getAppendRate(String region) {
+    return rates.getOrDefault(region, 0.0);
+  }
+}
@@ -52,8 +52,11 @@ import org.slf4j.LoggerFactory;
  *                                  "bounded".</li>
  *   <li><em>identity</em> : each region belongs to its own group.</li>
  *   <li><em>bounded</em> : bounded number of groups and region evenly assigned to each group.</li>
+ *   <li><em>adaptive</em> : bounded number of groups and regions spread over the groups by their
+ *                           append rate, see {@link AdaptiveGroupingStrategy}.</li>
  * </ul>
- * Optionally, a FQCN to a custom implementation may be given.
+ * Optionally, a FQCN to a custom implementation may be given. A strategy that is also a
+ * {@link WALActionsListener} is registered on the WALs of all the groups.
  */
 @InterfaceAudience.Private
 public class RegionGroupingProvider implements WALProvider {
@@ -79,6 +82,7 @@ public class RegionGroupingProvider implements WALProvider {
     defaultStrategy(BoundedGroupingStrategy.class),
     identity(IdentityGroupingStrategy.class),
     bounded(BoundedGroupingStrategy.class),
+    adaptive(AdaptiveGroupingStrategy.class),
     namespace(NamespaceGroupingStrategy.class);
 
     final Class<? extends RegionGroupingStrategy> clazz;
@@ -143,7 +147,6 @@ public class RegionGroupingProvider implements WALProvider {
       throw new IllegalStateException("WALProvider.init should only be called once.");
     }
     this.factory = factory;
-    this.listeners = null == listeners ? null : Collections.unmodifiableList(listeners);
     StringBuilder sb = new StringBuilder().append(factory.factoryId);
     if (providerId != null) {
       if (providerId.startsWith(WAL_FILE_NAME_DELIMITER)) {
@@ -154,6 +157,16 @@ public class RegionGroupingProvider implements WALProvider {
     }
     this.providerId = sb.toString();
     this.strategy = getStrategy(conf, REGION_GROUPING_STRATEGY, DEFAULT_REGION_GROUPING_STRATEGY);
+    if (strategy instanceof WALActionsListener) {
+      List<WALActionsListener> all = new ArrayList<>();
+      if (listeners != null) {
+        all.addAll(listeners);
+      }
+      all.add((WALActionsListener) strategy);
+      this.listeners = Collections.unmodifiableList(all);
+    } else {
+      this.listeners = null == listeners ? null : Collections.unmodifiableList(listeners);
+    }
     this.providerClass = factory.getProviderClass(DELEGATE_PROVIDER, DEFAULT_DELEGATE_PROVIDER);
   }
 
@@ -77,6 +77,20 @@ public interface WALProvider {
 
   interface WriterBase extends Closeable {
     long getLength();
+
+    /**
+     * @return the total size of the heap buffers allocated to serialize the entries so far
+     */
+    default long getHeapBufferSize() {
+      return 0;
+    }
+
+    /**
+     * @return the total size of the entry data serialized into pooled off-heap buffers so far
+     */
+    default long getDirectBufferSize() {
+      return 0;
+    }
   }
 
   // Writers are used internally. Users outside of the WAL should be relying on the
@@ -59,27 +59,40 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.CellComparatorImpl;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.CompoundConfiguration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.TableDescriptor;
 import org.apache.hadoop.hbase.coordination.SplitLogWorkerCoordination;
 import org.apache.hadoop.hbase.io.HeapSize;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
 import org.apache.hadoop.hbase.log.HBaseMarkers;
 import org.apache.hadoop.hbase.master.SplitLogManager;
 import org.apache.hadoop.hbase.monitoring.MonitoredTask;
 import org.apache.hadoop.hbase.monitoring.TaskMonitor;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
 import org.apache.hadoop.hbase.regionserver.LastSequenceId;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
 import org.apache.hadoop.hbase.regionserver.wal.AbstractFSWAL;
 import org.apache.hadoop.hbase.regionserver.wal.WALCellCodec;
+import org.apache.hadoop.hbase.security.EncryptionUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CancelableProgressable;
 import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.FSTableDescriptors;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.Threads;
@@ -147,6 +160,20 @@ public class WALSplitter {
 
   public final static String SPLIT_WRITER_CREATION_BOUNDED = "hbase.split.writer.creation.bounded";
 
+  /**
+   * Write the edits of the regions to HFiles the regions load on open, instead of recovered edits
+   * they replay through the memstore.
+   */
+  public final static String WAL_SPLIT_TO_HFILE = "hbase.wal.split.to.hfile";
+  public final static boolean DEFAULT_WAL_SPLIT_TO_HFILE = false;
+
+  /**
+   * When splitting to HFiles, the size of the buffered edits of a region at which a writer thread
+   * writes them out, while the WAL is still being read.
+   */
+  public final static String WAL_SPLIT_TO_HFILE_CHUNK_SIZE = "hbase.wal.split.to.hfile.chunk.size";
+  public final static long DEFAULT_WAL_SPLIT_TO_HFILE_CHUNK_SIZE = 16L * 1024 * 1024;
+
 
   @VisibleForTesting
   WALSplitter(final WALFactory factory, Configuration conf, Path rootDir,
@@ -164,14 +191,20 @@ public class WALSplitter {
     this.walFactory = factory;
     PipelineController controller = new PipelineController();
 
-    this.splitWriterCreationBounded = conf.getBoolean(SPLIT_WRITER_CREATION_BOUNDED, false);
+    boolean splitToHFile = conf.getBoolean(WAL_SPLIT_TO_HFILE, DEFAULT_WAL_SPLIT_TO_HFILE);
+    // Splitting to HFiles writes one set of files per buffer, so it bounds the writers as well
+    this.splitWriterCreationBounded =
+        splitToHFile || conf.getBoolean(SPLIT_WRITER_CREATION_BOUNDED, false);
 
     entryBuffers = new EntryBuffers(controller,
         this.conf.getInt("hbase.regionserver.hlog.splitlog.buffersize", 128 * 1024 * 1024),
-        splitWriterCreationBounded);
+        splitWriterCreationBounded, splitToHFile ? this.conf.getLong(
+          WAL_SPLIT_TO_HFILE_CHUNK_SIZE, DEFAULT_WAL_SPLIT_TO_HFILE_CHUNK_SIZE) : 0);
 
     int numWriterThreads = this.conf.getInt("hbase.regionserver.hlog.splitlog.writer.threads", 3);
-    if(splitWriterCreationBounded){
+    if (splitToHFile) {
+      outputSink = new BoundedRecoveredHFilesOutputSink(controller, entryBuffers, numWriterThreads);
+    } else if (splitWriterCreationBounded) {
       outputSink = new BoundedLogWriterCreationOutputSink(
           controller, entryBuffers, numWriterThreads);
     }else {
@@ -543,6 +576,25 @@ public class WALSplitter {
     return new Path(regiondir, HConstants.RECOVERED_EDITS_DIR);
   }
 
+  /**
+   * @param regiondir This regions directory in the filesystem.
+   * @param familyName The column family of the region.
+   * @return The directory that holds the HFiles split for the family of the region
+   */
+  public static Path getRecoveredHFilesDir(final Path regiondir, final String familyName) {
+    return new Path(new Path(regiondir, familyName), HConstants.RECOVERED_HFILES_DIR);
+  }
+
+  /**
+   * @return The HFiles split for the family of the region, excluding files with '.temp' suffix,
+   *         or null if there are none
+   */
+  public static FileStatus[] getRecoveredHFiles(final FileSystem fs, final Path regiondir,
+      final String familyName) throws IOException {
+    Path dir = getRecoveredHFilesDir(regiondir, familyName);
+    return FSUtils.listStatus(fs, dir, p -> !p.getName().endsWith(RECOVERED_LOG_TMPFILE_SUFFIX));
+  }
+
   /**
    * Returns sorted set of edit files made by splitter, excluding files
    * with '.temp' suffix.
@@ -850,6 +902,8 @@ public class WALSplitter {
     long totalBuffered = 0;
     long maxHeapUsage;
     boolean splitWriterCreationBounded;
+    /* With bounded writers, the size at which a region buffer is written before the heap is full */
+    long chunkSize;
 
     public EntryBuffers(PipelineController controller, long maxHeapUsage) {
       this(controller, maxHeapUsage, false);
@@ -857,9 +911,15 @@ public class WALSplitter {
 
     public EntryBuffers(PipelineController controller, long maxHeapUsage,
         boolean splitWriterCreationBounded){
+      this(controller, maxHeapUsage, splitWriterCreationBounded, 0);
+    }
+
+    public EntryBuffers(PipelineController controller, long maxHeapUsage,
+        boolean splitWriterCreationBounded, long chunkSize) {
       this.controller = controller;
       this.maxHeapUsage = maxHeapUsage;
       this.splitWriterCreationBounded = splitWriterCreationBounded;
+      this.chunkSize = chunkSize;
     }
 
     /**
@@ -903,7 +963,10 @@ public class WALSplitter {
       // heap size is over maxHeapUsage. Thus it doesn't need to create a writer for each
       // region during splitting. It will flush all the logs in the buffer after splitting
       // through a threadpool, which means the number of writers it created is under control.
-      if (splitWriterCreationBounded && totalBuffered < maxHeapUsage) {
+      // A chunk size lets the writers stream out the regions whose buffers are big enough while
+      // the WAL is still being read.
+      boolean heapFull = !splitWriterCreationBounded || totalBuffered >= maxHeapUsage;
+      if (!heapFull && chunkSize <= 0) {
         return null;
       }
       long biggestSize = 0;
@@ -916,7 +979,7 @@ public class WALSplitter {
           biggestBufferKey = entry.getKey();
         }
       }
-      if (biggestBufferKey == null) {
+      if (biggestBufferKey == null || (!heapFull && biggestSize < chunkSize)) {
         return null;
       }
 
@@ -1615,7 +1678,7 @@ public class WALSplitter {
    */
   class BoundedLogWriterCreationOutputSink extends LogRecoveredEditsOutputSink {
 
-    private ConcurrentHashMap<String, Long> regionRecoverStatMap = new ConcurrentHashMap<>();
+    ConcurrentHashMap<String, Long> regionRecoverStatMap = new ConcurrentHashMap<>();
 
     public BoundedLogWriterCreationOutputSink(PipelineController controller,
         EntryBuffers entryBuffers, int numWriters) {
@@ -1697,7 +1760,7 @@ public class WALSplitter {
       writeThenClose(buffer);
     }
 
-    private Path writeThenClose(RegionEntryBuffer buffer) throws IOException {
+    Path writeThenClose(RegionEntryBuffer buffer) throws IOException {
       WriterAndPath wap = appendBuffer(buffer, false);
       if(wap != null) {
         String encodedRegionName = Bytes.toString(buffer.encodedRegionName);
@@ -1720,6 +1783,158 @@ public class WALSplitter {
     }
   }
 
+  /**
+   * Writes the edits of each region straight into HFiles, one per column family, under
+   * region/family/recovered.hfiles. The cells of a family are sorted and carry the sequence id of
+   * their edit. When the region is opened it moves these files into its stores, so it does not
+   * replay the edits through the memstore and flush them. The edits of hbase:meta still go to
+   * recovered edits, as do the compaction markers of every region, which the region replays to
+   * archive the input files of a compaction interrupted before it archived them.
+   */
+  class BoundedRecoveredHFilesOutputSink extends BoundedLogWriterCreationOutputSink {
+
+    private final ConcurrentHashMap<TableName, TableDescriptor> tableDescriptors =
+        new ConcurrentHashMap<>();
+
+    public BoundedRecoveredHFilesOutputSink(PipelineController controller,
+        EntryBuffers entryBuffers, int numWriters) {
+      super(controller, entryBuffers, numWriters);
+    }
+
+    @Override
+    Path writeThenClose(RegionEntryBuffer buffer) throws IOException {
+      if (TableName.isMetaTableName(buffer.tableName)) {
+        return super.writeThenClose(buffer);
+      }
+      List<Entry> entries = buffer.entryBuffer;
+      if (entries.isEmpty()) {
+        LOG.warn("got an empty buffer, skipping");
+        return null;
+      }
+      String encodedRegionName = Bytes.toString(buffer.encodedRegionName);
+      Path regionDir =
+          HRegion.getRegionDir(FSUtils.getTableDir(rootDir, buffer.tableName), encodedRegionName);
+      if (!fs.exists(regionDir)) {
+        LOG.info("This region's directory does not exist: {}. It is very likely that it was "
+            + "already split so it is safe to discard those edits.", regionDir);
+        return null;
+      }
+      TableDescriptor tableDescriptor = getTableDescriptor(buffer.tableName);
+      long startTime = System.nanoTime();
+      Map<byte[], List<Cell>> familyCells = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      Map<byte[], Long> familyMaxSeqIds = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      RegionEntryBuffer regionEvents =
+          new RegionEntryBuffer(buffer.tableName, buffer.encodedRegionName);
+      int editsCount = 0;
+      for (Entry logEntry : entries) {
+        if (logEntry.getEdit().isMetaEdit()) {
+          // the compaction markers are replayed from recovered edits
+          regionEvents.appendEntry(logEntry);
+          continue;
+        }
+        filterCellByStore(logEntry);
+        long seqId = logEntry.getKey().getSequenceId();
+        boolean kept = false;
+        for (Cell cell : logEntry.getEdit().getCells()) {
+          if (CellUtil.matchingFamily(cell, WALEdit.METAFAMILY)) {
+            continue;
+          }
+          byte[] family = CellUtil.cloneFamily(cell);
+          if (!tableDescriptor.hasColumnFamily(family)) {
+            // the family has been dropped since
+            continue;
+          }
+          PrivateCellUtil.setSequenceId(cell, seqId);
+          familyCells.computeIfAbsent(family, f -> new ArrayList<>()).add(cell);
+          familyMaxSeqIds.merge(family, seqId, Math::max);
+          kept = true;
+        }
+        if (kept) {
+          updateRegionMaximumEditLogSeqNum(logEntry);
+          editsCount++;
+        } else {
+          skippedEdits.incrementAndGet();
+        }
+      }
+      Path dst = null;
+      if (!regionEvents.entryBuffer.isEmpty()) {
+        dst = super.writeThenClose(regionEvents);
+      }
+      for (Map.Entry<byte[], List<Cell>> entry : familyCells.entrySet()) {
+        dst = writeRecoveredHFile(regionDir, tableDescriptor.getColumnFamily(entry.getKey()),
+          entry.getValue(), familyMaxSeqIds.get(entry.getKey()));
+      }
+      regionRecoverStatMap.merge(encodedRegionName, (long) editsCount, Long::sum);
+      LOG.debug("Wrote {} edits of region {} to {} recovered hfiles in {}ms", editsCount,
+        encodedRegionName, familyCells.size(), (System.nanoTime() - startTime) / 1000 / 1000);
+      return dst;
+    }
+
+    private Path writeRecoveredHFile(Path regionDir, ColumnFamilyDescriptor family,
+        List<Cell> cells, long maxSeqId) throws IOException {
+      cells.sort(CellComparatorImpl.COMPARATOR);
+      Path dir = getRecoveredHFilesDir(regionDir, family.getNameAsString());
+      if (!fs.exists(dir) && !fs.mkdirs(dir)) {
+        throw new IOException("Failed creating " + dir);
+      }
+      // Append fileBeingSplit to prevent name conflict, a retried split overwrites its own files
+      Path dst = new Path(dir, maxSeqId + "-" + fileBeingSplit.getPath().getName());
+      Path tmp = new Path(dir, getTmpRecoveredEditsFileName(dst.getName()));
+      HFileContext fileContext = new HFileContextBuilder()
+          .withIncludesMvcc(true)
+          .withIncludesTags(true)
+          .withCompression(family.getCompressionType())
+          .withCompressTags(family.isCompressTags())
+          .withChecksumType(HStore.getChecksumType(conf))
+          .withBytesPerCheckSum(HStore.getBytesPerChecksum(conf))
+          .withBlockSize(family.getBlocksize())
+          .withHBaseCheckSum(true)
+          .withDataBlockEncoding(family.getDataBlockEncoding())
+          .withEncryptionContext(EncryptionUtil.createEncryptionContext(conf, family))
+          .withCreateTime(EnvironmentEdgeManager.currentTime())
+          .build();
+      // The family configuration holds the parameters of row prefix bloom filters
+      Configuration writerConf = new CompoundConfiguration().add(conf)
+          .addStringMap(family.getConfiguration());
+      StoreFileWriter writer = new StoreFileWriter.Builder(writerConf, CacheConfig.DISABLED, fs)
+          .withFilePath(tmp)
+          .withComparator(CellComparatorImpl.COMPARATOR)
+          .withBloomType(family.getBloomFilterType())
+          .withMaxKeyCount(cells.size())
+          .withFileContext(fileContext)
+          .build();
+      try {
+        for (Cell cell : cells) {
+          writer.append(cell);
+        }
+        writer.appendMetadata(maxSeqId, false);
+      } finally {
+        writer.close();
+      }
+      if (fs.exists(dst)) {
+        LOG.warn("Found old recovered hfile. It could be the result of a previous failed split "
+            + "attempt. Deleting {}, length={}", dst, fs.getFileStatus(dst).getLen());
+        if (!fs.delete(dst, false)) {
+          throw new IOException("Failed deleting of old " + dst);
+        }
+      }
+      if (!fs.rename(tmp, dst)) {
+        throw new IOException("Failed renaming " + tmp + " to " + dst);
+      }
+      LOG.info("Wrote {} cells of {} to {}", cells.size(), family.getNameAsString(), dst);
+      return dst;
+    }
+
+    private TableDescriptor getTableDescriptor(TableName tableName) throws IOException {
+      TableDescriptor tableDescriptor = tableDescriptors.get(tableName);
+      if (tableDescriptor == null) {
+        tableDescriptor = FSTableDescriptors.getTableDescriptorFromFs(fs, rootDir, tableName);
+        tableDescriptors.put(tableName, tableDescriptor);
+      }
+      return tableDescriptor;
+    }
+  }
+
   /**
    * Class wraps the actual writer which writes data out and related statistics
    */
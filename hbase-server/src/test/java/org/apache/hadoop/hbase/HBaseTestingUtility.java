@@ -118,6 +118,7 @@ import org.apache.hadoop.hbase.security.HBaseKerberosUtils;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.security.visibility.VisibilityLabelsCache;
 import org.apache.hadoop.hbase.trace.TraceUtil;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.FSTableDescriptors;
 import org.apache.hadoop.hbase.util.FSUtils;
@@ -4004,6 +4005,11 @@ public class HBaseTestingUtility extends HBaseZKTestingUtility {
           htd.setCompressionType(compressionType);
           htd.setDataBlockEncoding(encodingType);
           htd.setBloomFilterType(bloomType);
+          if (bloomType == BloomType.ROWPREFIX_FIXED_LENGTH) {
+            htd.setConfiguration(BloomFilterUtil.PREFIX_LENGTH_KEY, "10");
+          } else if (bloomType == BloomType.ROWPREFIX_DELIMITED) {
+            htd.setConfiguration(BloomFilterUtil.DELIMITER_KEY, "#");
+          }
           htds.add(htd);
           familyId++;
         }
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
@@ -300,6 +301,16 @@ public class MockRegionServerServices implements RegionServerServices {
     return null;
   }
 
+  @Override
+  public ThreadPoolExecutor getStoreFlushPool() {
+    return null;
+  }
+
+  @Override
+  public ThreadPoolExecutor getParallelScanPool() {
+    return null;
+  }
+
   @Override
   public double getFlushPressure() {
     return 0;
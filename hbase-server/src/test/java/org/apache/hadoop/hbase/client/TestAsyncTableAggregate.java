@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ScanAggregation.Aggregate;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.RegionObserver;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Runs {@link AsyncTable#aggregate(Scan)} over the regions of a table, with the partial
+ * aggregates cut by the size and time limits of the scan RPCs, and with a region scanner reopened
+ * after a partial aggregate.
+ */
+@Category({ MediumTests.class, ClientTests.class })
+public class TestAsyncTableAggregate {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestAsyncTableAggregate.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+
+  private static final TableName TABLE_NAME = TableName.valueOf("Aggregate");
+
+  private static final byte[] CF = Bytes.toBytes("cf");
+
+  private static final byte[] CQ = Bytes.toBytes("cq");
+
+  private static final int TIMEOUT = 2000;
+
+  private static final int ROWS = 60;
+
+  private static final byte[][] SPLIT_KEYS = new byte[][] { row(20), row(40) };
+
+  // the scan RPC fails once this many calls are made, disabled if negative
+  private static final AtomicInteger CALLS_BEFORE_FAILURE = new AtomicInteger(-1);
+
+  private static AsyncConnection CONN;
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%03d", i));
+  }
+
+  public static final class FailingScanObserver implements RegionCoprocessor, RegionObserver {
+
+    @Override
+    public Optional<RegionObserver> getRegionObserver() {
+      return Optional.of(this);
+    }
+
+    @Override
+    public boolean preScannerNext(ObserverContext<RegionCoprocessorEnvironment> c,
+        InternalScanner s, List<Result> result, int limit, boolean hasNext) throws IOException {
+      if (CALLS_BEFORE_FAILURE.getAndDecrement() == 0) {
+        // the region scanner is closed, and the client opens another one
+        throw new IOException("Injected failure");
+      }
+      return hasNext;
+    }
+  }
+
+  /**
+   * Reads every row slower than a tenth of the timeout, and keeps one row in ten only.
+   */
+  public static final class SlowSparseRowFilter extends FilterBase {
+
+    @Override
+    public boolean filterRowKey(Cell cell) throws IOException {
+      try {
+        Thread.sleep(TIMEOUT / 20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      int i = Integer.parseInt(Bytes.toString(cell.getRowArray(), cell.getRowOffset() + 3,
+        cell.getRowLength() - 3));
+      return i % 10 != 9;
+    }
+
+    public static Filter parseFrom(final byte[] pbBytes) {
+      return new SlowSparseRowFilter();
+    }
+  }
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Configuration conf = UTIL.getConfiguration();
+    conf.setInt(HConstants.HBASE_CLIENT_SCANNER_TIMEOUT_PERIOD, TIMEOUT);
+    conf.setInt(HConstants.HBASE_RPC_TIMEOUT_KEY, TIMEOUT);
+    UTIL.startMiniCluster(1);
+    UTIL.getAdmin().createTable(TableDescriptorBuilder.newBuilder(TABLE_NAME)
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(CF))
+        .setCoprocessor(FailingScanObserver.class.getName()).build(), SPLIT_KEYS);
+    UTIL.waitTableAvailable(TABLE_NAME);
+    try (Table table = UTIL.getConnection().getTable(TABLE_NAME)) {
+      List<Put> puts = new ArrayList<>();
+      for (int i = 0; i < ROWS; i++) {
+        puts.add(new Put(row(i)).addColumn(CF, CQ, Bytes.toBytes((long) i)));
+      }
+      table.put(puts);
+    }
+    CONN = ConnectionFactory.createAsyncConnection(conf).get();
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    IOUtils.closeQuietly(CONN);
+    UTIL.shutdownMiniCluster();
+  }
+
+  @Before
+  public void resetFailure() {
+    CALLS_BEFORE_FAILURE.set(-1);
+  }
+
+  private static void assertAggregate(long count, long sum, long min, long max,
+      Aggregate aggregate) {
+    assertEquals(count, aggregate.getCount());
+    assertEquals(sum, aggregate.getSum());
+    assertEquals(min, aggregate.getMin());
+    assertEquals(max, aggregate.getMax());
+  }
+
+  @Test
+  public void testAggregate() throws Exception {
+    NavigableMap<byte[], Aggregate> aggregates = CONN.getTable(TABLE_NAME)
+        .aggregate(new Scan().setAggregation(ScanAggregation.groupByRowPrefix(5))).get();
+    assertEquals(ROWS / 10, aggregates.size());
+    for (int group = 0; group < ROWS / 10; group++) {
+      assertAggregate(10, 100 * group + 45, 10 * group, 10 * group + 9,
+        aggregates.get(Bytes.toBytes("row0" + group)));
+    }
+  }
+
+  @Test
+  public void testPartialsCutBySize() throws Exception {
+    AsyncTable<?> table = CONN.getTable(TABLE_NAME);
+    Scan scan = new Scan().setAggregation(ScanAggregation.all()).setMaxResultSize(1);
+    // every row reaches the size limit, and is returned as a partial aggregate of its own
+    List<Result> partials = table.scanAll(scan).get();
+    assertEquals(ROWS, partials.size());
+    for (int i = 0; i < ROWS; i++) {
+      assertArrayEquals(row(i), partials.get(i).getRow());
+    }
+    assertAggregate(ROWS, ROWS * (ROWS - 1) / 2, 0, ROWS - 1,
+      ScanAggregation.merge(partials).get(HConstants.EMPTY_BYTE_ARRAY));
+    assertAggregate(ROWS, ROWS * (ROWS - 1) / 2, 0, ROWS - 1,
+      table.aggregate(scan).get().get(HConstants.EMPTY_BYTE_ARRAY));
+  }
+
+  @Test
+  public void testHeartbeats() throws Exception {
+    // a region takes twice the timeout to scan, its partial aggregates are cut by the time limit
+    List<Result> partials = CONN.getTable(TABLE_NAME).scanAll(new Scan()
+        .setAggregation(ScanAggregation.all()).setFilter(new SlowSparseRowFilter())).get();
+    assertTrue(partials.size() > SPLIT_KEYS.length + 1);
+    assertAggregate(ROWS / 10, 9 * ROWS / 10 + 10 * (ROWS / 10) * (ROWS / 10 - 1) / 2, 9,
+      ROWS - 1, ScanAggregation.merge(partials).get(HConstants.EMPTY_BYTE_ARRAY));
+  }
+
+  @Test
+  public void testScannerReopenedAfterPartial() throws Exception {
+    // the second scan RPC fails, once the first one returned the aggregate of the first row
+    CALLS_BEFORE_FAILURE.set(1);
+    NavigableMap<byte[], Aggregate> aggregates = CONN.getTable(TABLE_NAME).aggregate(
+      new Scan().setAggregation(ScanAggregation.all()).setMaxResultSize(1)).get();
+    assertTrue(CALLS_BEFORE_FAILURE.get() < 0);
+    // no row is left out or aggregated twice
+    assertAggregate(ROWS, ROWS * (ROWS - 1) / 2, 0, ROWS - 1,
+      aggregates.get(HConstants.EMPTY_BYTE_ARRAY));
+  }
+}
@@ -33,8 +33,10 @@ import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.master.HMaster;
+import org.apache.hadoop.hbase.regionserver.BloomType;
 import org.apache.hadoop.hbase.testclassification.ClientTests;
 import org.apache.hadoop.hbase.testclassification.LargeTests;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -152,6 +154,16 @@ public class TestIllegalTableDescriptor {
     hcd.setScope(0);
     checkTableIsLegal(htd);
 
+    // a row prefix bloom filter needs its param, which may be set for the whole table
+    hcd.setBloomFilterType(BloomType.ROWPREFIX_FIXED_LENGTH);
+    checkTableIsIllegal(htd);
+    htd.setConfiguration(BloomFilterUtil.PREFIX_LENGTH_KEY, "0");
+    checkTableIsIllegal(htd);
+    htd.setConfiguration(BloomFilterUtil.PREFIX_LENGTH_KEY, "10");
+    checkTableIsLegal(htd);
+    hcd.setBloomFilterType(BloomType.ROW);
+    htd.removeConfiguration(BloomFilterUtil.PREFIX_LENGTH_KEY);
+
     try {
       hcd.setDFSReplication((short) -1);
       fail("Illegal value for setDFSReplication did not throw");
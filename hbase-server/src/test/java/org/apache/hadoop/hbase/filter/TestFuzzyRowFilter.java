@@ -17,12 +17,16 @@
  */
 package org.apache.hadoop.hbase.filter;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.hadoop.hbase.HBaseClassTestRule;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.testclassification.FilterTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -467,6 +471,38 @@ public class TestFuzzyRowFilter {
       new byte[]{-1, -1, 0, -1}));
   }
 
+  @Test
+  public void testRowRangesHint() {
+    FuzzyRowFilter filter = new FuzzyRowFilter(Arrays.asList(
+        new Pair<>(new byte[]{1, 2, 0, 3}, new byte[]{0, 0, 1, 0}),
+        new Pair<>(new byte[]{5, (byte) 0xFF, 0}, new byte[]{0, 0, 1})));
+    List<MultiRowRangeFilter.RowRange> ranges = filter.getRowRangesHint();
+    Assert.assertTrue(contains(ranges, new byte[]{1}));
+    Assert.assertTrue(contains(ranges, new byte[]{1, 2}));
+    Assert.assertTrue(contains(ranges, new byte[]{1, 2, 7, 3, 9}));
+    Assert.assertTrue(contains(ranges, new byte[]{5, (byte) 0xFF, 1}));
+    Assert.assertFalse(contains(ranges, new byte[]{0, 1}));
+    Assert.assertFalse(contains(ranges, new byte[]{1, 1, 0, 3}));
+    Assert.assertFalse(contains(ranges, new byte[]{1, 3}));
+    Assert.assertFalse(contains(ranges, new byte[]{4}));
+    Assert.assertFalse(contains(ranges, new byte[]{6}));
+
+    // no range when a key may match any first byte
+    filter = new FuzzyRowFilter(Arrays.asList(
+        new Pair<>(new byte[]{1, 2, 0, 3}, new byte[]{0, 0, 1, 0}),
+        new Pair<>(new byte[]{0, 2}, new byte[]{1, 0})));
+    Assert.assertNull(filter.getRowRangesHint());
+  }
+
+  private static boolean contains(List<MultiRowRangeFilter.RowRange> ranges, byte[] row) {
+    for (MultiRowRangeFilter.RowRange range : ranges) {
+      if (range.contains(row)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private static void assertNext(boolean reverse, byte[] fuzzyRow, byte[] mask, byte[] current,
       byte[] expected) {
     KeyValue kv = KeyValueUtil.createFirstOnRow(current);
@@ -123,6 +123,29 @@ public class TestMultiRowRangeFilter {
     assertEquals(Filter.ReturnCode.INCLUDE, filter.filterCell(null));
   }
 
+  @Test
+  public void testRowRangesHint() {
+    List<RowRange> ranges = Arrays.asList(
+        new RowRange(Bytes.toBytes("d"), true, Bytes.toBytes("e"), false),
+        new RowRange(Bytes.toBytes("b"), true, Bytes.toBytes("c"), true));
+    MultiRowRangeFilter filter = new MultiRowRangeFilter(ranges);
+    assertRangesEqual(MultiRowRangeFilter.sortAndMerge(ranges), filter.getRowRangesHint());
+    // an AND list is within the ranges of any of its filters
+    FilterList and = new FilterList(FilterList.Operator.MUST_PASS_ALL, new KeyOnlyFilter(), filter);
+    assertRangesEqual(filter.getRowRangesHint(), and.getRowRangesHint());
+    // an OR list is within the ranges of all its filters, unless one of them has none
+    MultiRowRangeFilter other = new MultiRowRangeFilter(Arrays.asList(
+        new RowRange(Bytes.toBytes("bb"), true, Bytes.toBytes("cc"), false)));
+    FilterList or = new FilterList(FilterList.Operator.MUST_PASS_ONE, filter, other);
+    List<RowRange> expected = new ArrayList<>();
+    expected.add(new RowRange(Bytes.toBytes("b"), true, Bytes.toBytes("cc"), false));
+    expected.add(new RowRange(Bytes.toBytes("d"), true, Bytes.toBytes("e"), false));
+    assertRangesEqual(expected, or.getRowRangesHint());
+    or.addFilter(new KeyOnlyFilter());
+    Assert.assertNull(or.getRowRangesHint());
+    Assert.assertNull(new KeyOnlyFilter().getRowRangesHint());
+  }
+
   @Test
   public void testMergeAndSortWithEmptyStartRow() throws IOException {
     List<RowRange> ranges = new ArrayList<>();
@@ -281,6 +281,36 @@ public class TestCacheConfig {
     assertTrue(cc.getBlockCache() instanceof LruBlockCache);
   }
 
+  @Test
+  public void testCacheConfigTinyLfuBlockCache() {
+    this.conf.set(CacheConfig.BLOCKCACHE_POLICY_KEY, "TinyLFU");
+    CacheConfig cc = new CacheConfig(this.conf);
+    assertTrue(cc.isBlockCacheEnabled());
+    basicBlockCacheOps(cc, false, true);
+    assertTrue(cc.getBlockCache() instanceof TinyLfuBlockCache);
+    assertEquals(TinyLfuBlockCache.class.getSimpleName(), cc.getOnHeapCacheStats().getName());
+  }
+
+  @Test
+  public void testTinyLfuBucketCacheConfig() {
+    this.conf.set(CacheConfig.BLOCKCACHE_POLICY_KEY, "TinyLFU");
+    this.conf.set(HConstants.BUCKET_CACHE_IOENGINE_KEY, "offheap");
+    this.conf.setInt(HConstants.BUCKET_CACHE_SIZE_KEY, 100);
+    CacheConfig cc = new CacheConfig(this.conf);
+    basicBlockCacheOps(cc, false, false);
+    assertTrue(cc.getBlockCache() instanceof CombinedBlockCache);
+    BlockCache[] bcs = ((CombinedBlockCache) cc.getBlockCache()).getBlockCaches();
+    assertTrue(bcs[0] instanceof TinyLfuBlockCache);
+    assertEquals(MemorySizeUtil.getOnHeapCacheSize(this.conf), bcs[0].getMaxSize());
+    assertTrue(bcs[1] instanceof BucketCache);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownBlockCachePolicy() {
+    this.conf.set(CacheConfig.BLOCKCACHE_POLICY_KEY, "FIFO");
+    new CacheConfig(this.conf);
+  }
+
   /**
    * Assert that the caches are deployed with CombinedBlockCache and of the appropriate sizes.
    */
@@ -343,7 +373,7 @@ public class TestCacheConfig {
     assertTrue(cc.getBlockCache() instanceof CombinedBlockCache);
     // TODO: Assert sizes allocated are right and proportions.
     CombinedBlockCache cbc = (CombinedBlockCache)cc.getBlockCache();
-    LruBlockCache lbc = cbc.onHeapCache;
+    LruBlockCache lbc = (LruBlockCache) cbc.onHeapCache;
     assertEquals(lruExpectedSize, lbc.getMaxSize());
     BlockCache bc = cbc.l2Cache;
     // getMaxSize comes back in bytes but we specified size in MB
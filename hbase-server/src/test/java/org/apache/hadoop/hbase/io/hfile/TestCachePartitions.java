@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.Waiter;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests that the LRU and bucket caches keep their partitions between the configured floor and
+ * ceiling, and account the hits and misses of each partition.
+ */
+@Category({ IOTests.class, SmallTests.class })
+public class TestCachePartitions {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestCachePartitions.class);
+
+  private static final int BLOCK_SIZE = 1024;
+
+  private static Configuration createConf() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(CachePartitions.PARTITIONS_KEY, "serving, analytics");
+    conf.setFloat(String.format(CachePartitions.MIN_FACTOR_KEY_FORMAT, "serving"), 0.4f);
+    conf.setFloat(String.format(CachePartitions.MAX_FACTOR_KEY_FORMAT, "analytics"), 0.3f);
+    return conf;
+  }
+
+  private static CachedItem[] generate(String hfileName, String partition, int count) {
+    CachedItem[] items = new CachedItem[count];
+    for (int i = 0; i < count; i++) {
+      items[i] = new CachedItem(new BlockCacheKey(hfileName, i, true, BlockType.DATA, partition));
+    }
+    return items;
+  }
+
+  @Test
+  public void testConfiguration() {
+    assertNull(CachePartitions.create(HBaseConfiguration.create()));
+    CachePartitions partitions = CachePartitions.create(createConf());
+    assertEquals(3, partitions.getPartitions().size());
+    CachePartitions.Partition serving = partitions.get("serving");
+    assertEquals(0.4f, serving.getMinFactor(), 0.001f);
+    assertEquals(1.0f, serving.getMaxFactor(), 0.001f);
+    assertSame(serving, partitions.get(new BlockCacheKey("f", 0, true, BlockType.DATA,
+        "serving")));
+    // Blocks without a partition, or with an unknown one, go to the default partition
+    CachePartitions.Partition defaultPartition = partitions.get(CachePartitions.DEFAULT_PARTITION);
+    assertSame(defaultPartition, partitions.get(new BlockCacheKey("f", 0)));
+    assertSame(defaultPartition, partitions.get(new BlockCacheKey("f", 0, true, BlockType.DATA,
+        "unknown")));
+
+    Configuration conf = createConf();
+    conf.setFloat(String.format(CachePartitions.MIN_FACTOR_KEY_FORMAT, "analytics"), 0.7f);
+    try {
+      CachePartitions.create(conf);
+      throw new AssertionError("Floors over the cache size should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLruBlockCachePartitions() {
+    CachedItem[] servingBlocks = generate("serving", "serving", 100);
+    long blockHeapSize = new LruCachedBlock(servingBlocks[0].cacheKey, servingBlocks[0], 0)
+        .heapSize();
+    long maxSize = 200 * blockHeapSize;
+    LruBlockCache cache = new LruBlockCache(maxSize, BLOCK_SIZE, false, createConf());
+    CachePartitions partitions = cache.getPartitions();
+    CachePartitions.Partition serving = partitions.get("serving");
+    CachePartitions.Partition analytics = partitions.get("analytics");
+
+    for (CachedItem block : servingBlocks) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    for (int i = 0; i < 10; i++) {
+      assertNotNull(cache.getBlock(servingBlocks[i].cacheKey, true, false, true));
+    }
+    assertEquals(10, serving.getHitCount());
+    assertEquals(100 * blockHeapSize, serving.getSize());
+
+    // A large scan of an analytics table never takes more than its ceiling
+    for (CachedItem block : generate("analytics", "analytics", 1000)) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+      cache.cacheBlock(block.cacheKey, block);
+      assertTrue(analytics.getSize() <= 0.3 * maxSize);
+    }
+    assertEquals(1000, analytics.getMissCount());
+    assertEquals(0, analytics.getHitCount());
+    assertEquals(100 * blockHeapSize, serving.getSize());
+
+    // Flooding the default partition evicts serving blocks, but no further than the floor
+    for (CachedItem block : generate("other", null, 1000)) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    assertTrue(serving.getSize() < 100 * blockHeapSize);
+    assertTrue(serving.getSize() >= 0.4 * maxSize);
+    assertTrue(cache.getCurrentSize() <= maxSize);
+
+    long total = 0;
+    for (CachePartitions.Partition partition : partitions.getPartitions()) {
+      total += partition.getSize();
+    }
+    assertEquals(cache.getCurrentSize() - cache.getOverhead(), total);
+  }
+
+  @Test
+  public void testBucketCachePartitionCeiling() throws Exception {
+    long capacity = 32 * 1024 * 1024;
+    Configuration conf = createConf();
+    conf.setFloat(String.format(CachePartitions.MAX_FACTOR_KEY_FORMAT, "analytics"), 0.1f);
+    BucketCache cache = new BucketCache("offheap", capacity, 8192, null, 1,
+        64, null, 60 * 1000, conf);
+    try {
+      CachePartitions.Partition analytics = cache.getPartitions().get("analytics");
+      HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(4 * 1024, 1500);
+      for (HFileBlockPair block : blocks) {
+        BlockCacheKey key = new BlockCacheKey(block.getBlockName().getHfileName(), 0, true,
+            BlockType.DATA, "analytics");
+        cache.cacheBlock(key, block.getBlock(), false, true);
+      }
+      // Wait for the writer to drain the queue, the ceiling is enforced after each drain
+      Waiter.waitFor(conf, 30000,
+        () -> analytics.getSize() > 0 && analytics.getSize() <= 0.1 * capacity);
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  @Test
+  public void testBucketCacheEvictionByKeyWithoutPartition() throws Exception {
+    Configuration conf = createConf();
+    BucketCache cache = new BucketCache("offheap", 32 * 1024 * 1024, 8192, null, 1,
+        64, null, 60 * 1000, conf);
+    try {
+      CachePartitions.Partition analytics = cache.getPartitions().get("analytics");
+      HFileBlockPair block = CacheTestUtils.generateHFileBlocks(4 * 1024, 1)[0];
+      String hfileName = block.getBlockName().getHfileName();
+      cache.cacheBlock(new BlockCacheKey(hfileName, 0, true, BlockType.DATA, "analytics"),
+        block.getBlock(), false, true);
+      Waiter.waitFor(conf, 30000, () -> analytics.getSize() > 0);
+      // Files are evicted by keys of their name and offset only
+      assertTrue(cache.evictBlock(new BlockCacheKey(hfileName, 0)));
+      assertEquals(0, analytics.getSize());
+      assertEquals(0, cache.getPartitions().get(CachePartitions.DEFAULT_PARTITION).getSize());
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  private static class CachedItem implements Cacheable {
+    private final BlockCacheKey cacheKey;
+
+    CachedItem(BlockCacheKey cacheKey) {
+      this.cacheKey = cacheKey;
+    }
+
+    @Override
+    public long heapSize() {
+      return ClassSize.align(BLOCK_SIZE);
+    }
+
+    @Override
+    public int getSerializedLength() {
+      return 0;
+    }
+
+    @Override
+    public CacheableDeserializer<Cacheable> getDeserializer() {
+      return null;
+    }
+
+    @Override
+    public void serialize(ByteBuffer destination) {
+    }
+
+    @Override
+    public BlockType getBlockType() {
+      return BlockType.DATA;
+    }
+
+    @Override
+    public MemoryType getMemoryType() {
+      return MemoryType.EXCLUSIVE;
+    }
+  }
+}
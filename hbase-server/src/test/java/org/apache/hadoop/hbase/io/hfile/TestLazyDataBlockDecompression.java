@@ -19,6 +19,9 @@ package org.apache.hadoop.hbase.io.hfile;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -237,4 +240,106 @@ public class TestLazyDataBlockDecompression {
       "disabledEvictedCount=" + disabledEvictedCount + ", enabledEvictedCount=" +
       enabledEvictedCount, enabledEvictedCount < disabledEvictedCount);
   }
+  @Test
+  public void testDecompressedBlockCacheServesHotBlocks() throws Exception {
+    Path hfilePath = new Path(TEST_UTIL.getDataTestDir(),
+      "testDecompressedBlockCacheServesHotBlocks");
+    HFileContext context = new HFileContextBuilder()
+      .withCompression(Compression.Algorithm.GZ)
+      .build();
+    Configuration conf = HBaseConfiguration.create(TEST_UTIL.getConfiguration());
+    conf.setBoolean(CacheConfig.CACHE_BLOCKS_ON_WRITE_KEY, cacheOnWrite);
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, true);
+    CacheConfig.GLOBAL_BLOCK_CACHE_INSTANCE =
+      new LruBlockCache(HConstants.DEFAULT_BLOCKSIZE * 100, HConstants.DEFAULT_BLOCKSIZE, false,
+        conf);
+    CacheConfig cc = new CacheConfig(conf);
+    DecompressedBlockCache decompressedCache = cc.getDecompressedBlockCache();
+    assertNotNull(decompressedCache);
+    writeHFile(conf, cc, fs, hfilePath, context, 2000);
+
+    // Blocks read from disk are cached packed, and kept unpacked once found packed twice
+    if (!cacheOnWrite) {
+      cacheBlocks(conf, cc, fs, hfilePath, context);
+    }
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+    assertEquals(0, decompressedCache.getBlockCount());
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+    long blockCount = decompressedCache.getBlockCount();
+    assertTrue("hot blocks should be kept unpacked", blockCount > 0);
+    for (Map.Entry<BlockCacheKey, LruCachedBlock> e :
+        ((LruBlockCache) cc.getBlockCache()).getMapForTests().entrySet()) {
+      HFileBlock block = (HFileBlock) e.getValue().getBuffer();
+      if (block.getBlockType().isData()) {
+        assertFalse("found an unpacked block, block=" + block, block.isUnpacked());
+      }
+    }
+
+    // Then they are served unpacked, still counted as hits of the block cache
+    long hitCount = decompressedCache.getHitCount();
+    long blockCacheHitCount = cc.getBlockCache().getStats().getHitCount();
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+    assertEquals(hitCount + blockCount, decompressedCache.getHitCount());
+    assertTrue(cc.getBlockCache().getStats().getHitCount() - blockCacheHitCount >= blockCount);
+
+    // A new CacheConfig shares the cache, which is dropped when the file is evicted
+    assertSame(decompressedCache, new CacheConfig(conf).getDecompressedBlockCache());
+    assertEquals(blockCount, decompressedCache.evictBlocksByHfileName(hfilePath.getName()));
+    assertEquals(0, decompressedCache.getCurrentSize());
+  }
+
+  @Test
+  public void testDecompressedBlockCacheScanResistance() throws Exception {
+    Path hotPath = new Path(TEST_UTIL.getDataTestDir(), "testDecompressedBlockCacheHot");
+    Path scanPath = new Path(TEST_UTIL.getDataTestDir(), "testDecompressedBlockCacheScan");
+    HFileContext context = new HFileContextBuilder()
+      .withCompression(Compression.Algorithm.GZ)
+      .build();
+    Configuration conf = HBaseConfiguration.create(TEST_UTIL.getConfiguration());
+    conf.setBoolean(CacheConfig.CACHE_BLOCKS_ON_WRITE_KEY, cacheOnWrite);
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, true);
+    CacheConfig.GLOBAL_BLOCK_CACHE_INSTANCE =
+      new LruBlockCache(HConstants.DEFAULT_BLOCKSIZE * 100, HConstants.DEFAULT_BLOCKSIZE, false,
+        conf);
+    CacheConfig cc = new CacheConfig(conf);
+    DecompressedBlockCache decompressedCache = cc.getDecompressedBlockCache();
+    writeHFile(conf, cc, fs, hotPath, context, 500);
+    writeHFile(conf, cc, fs, scanPath, context, 2000);
+    if (!cacheOnWrite) {
+      cacheBlocks(conf, cc, fs, hotPath, context);
+      cacheBlocks(conf, cc, fs, scanPath, context);
+    }
+
+    // The hot blocks are read twice and kept unpacked
+    cacheBlocks(conf, cc, fs, hotPath, context);
+    cacheBlocks(conf, cc, fs, hotPath, context);
+    long hotBlockCount = decompressedCache.getBlockCount();
+    assertTrue(hotBlockCount > 0);
+
+    // A scan over the other blocks, found packed in the block cache, admits none of them
+    long rejectedCount = decompressedCache.getRejectedCount();
+    cacheBlocks(conf, cc, fs, scanPath, context);
+    assertEquals(hotBlockCount, decompressedCache.getBlockCount());
+    assertTrue(decompressedCache.getRejectedCount() > rejectedCount);
+
+    // The hot blocks are still served unpacked
+    long hitCount = decompressedCache.getHitCount();
+    cacheBlocks(conf, cc, fs, hotPath, context);
+    assertEquals(hitCount + hotBlockCount, decompressedCache.getHitCount());
+  }
+
+  @Test
+  public void testDecompressedBlockCacheSize() {
+    Configuration conf = HBaseConfiguration.create(TEST_UTIL.getConfiguration());
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, false);
+    assertNull(new CacheConfig(conf).getDecompressedBlockCache());
+
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, true);
+    conf.setLong(DecompressedBlockCache.SIZE_KEY, 0);
+    assertNull(new CacheConfig(conf).getDecompressedBlockCache());
+
+    conf.setLong(DecompressedBlockCache.SIZE_KEY, 1024 * 1024);
+    DecompressedBlockCache decompressedCache = new CacheConfig(conf).getDecompressedBlockCache();
+    assertEquals(1024 * 1024, decompressedCache.getMaxSize());
+  }
 }
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.apache.hadoop.hbase.regionserver.throttle.PrefetchThroughputController.HBASE_HFILE_PREFETCH_MAX_THROUGHPUT;
+import static org.apache.hadoop.hbase.regionserver.throttle.PrefetchThroughputController.HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the ordering, throttling, cancellation and progress of {@link PrefetchScheduler}
+ */
+@Category({ IOTests.class, SmallTests.class })
+public class TestPrefetchScheduler {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestPrefetchScheduler.class);
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  private PrefetchScheduler scheduler;
+
+  @After
+  public void tearDown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+  }
+
+  private static Configuration createConf() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(PrefetchScheduler.PREFETCH_DELAY_KEY, 0);
+    conf.setInt(PrefetchScheduler.PREFETCH_THREADS_KEY, 1);
+    return conf;
+  }
+
+  private static Path path(String region, String file) {
+    return new Path("/hbase/data/default/t/" + region + "/f/" + file);
+  }
+
+  private void waitCompleted(Path path) throws InterruptedException {
+    while (!scheduler.isCompleted(path)) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testHottestRegionFirst() throws Exception {
+    scheduler = new PrefetchScheduler(createConf());
+    scheduler.registerRegion("cold", () -> 1);
+    scheduler.registerRegion("warm", () -> 5);
+    scheduler.registerRegion("hot", () -> 10);
+    // Keep the only thread busy while the other requests queue up
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Path blocker = path("other", "blocker");
+    scheduler.request(blocker, 0, () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    started.await();
+
+    List<String> order = new CopyOnWriteArrayList<>();
+    String[][] requests = { { "cold", "a" }, { "unknown", "b" }, { "hot", "c" },
+      { "warm", "d" }, { "hot", "e" } };
+    for (String[] request : requests) {
+      String file = request[1];
+      scheduler.request(path(request[0], file), BLOCK_SIZE, () -> order.add(file));
+    }
+    assertEquals(2 * BLOCK_SIZE, scheduler.getPendingBytes("hot"));
+    assertEquals(BLOCK_SIZE, scheduler.getPendingBytes("unknown"));
+    release.countDown();
+    for (String[] request : requests) {
+      waitCompleted(path(request[0], request[1]));
+    }
+    // Same priority in request order, regions without a priority last
+    assertEquals("[c, e, d, a, b]", order.toString());
+    // Nothing was read, nothing is left to read
+    assertEquals(0, scheduler.getPendingBytes("hot"));
+    assertEquals(0, scheduler.getPrefetchedBytes("hot"));
+  }
+
+  @Test
+  public void testThroughputLimit() throws Exception {
+    Configuration conf = createConf();
+    conf.setInt(PrefetchScheduler.PREFETCH_THREADS_KEY, 2);
+    conf.setLong(HBASE_HFILE_PREFETCH_MAX_THROUGHPUT, 4L * 1024 * 1024);
+    conf.setLong(HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL, BLOCK_SIZE);
+    scheduler = new PrefetchScheduler(conf);
+    scheduler.registerRegion("r", () -> 1);
+    // Two files of 4MB each, read by two threads sharing the 4MB/s limit
+    int blocks = 64;
+    Path[] paths = { path("r", "a"), path("r", "b") };
+    long start = EnvironmentEdgeManager.currentTime();
+    for (Path path : paths) {
+      scheduler.request(path, (long) blocks * BLOCK_SIZE, () -> {
+        for (int i = 0; i < blocks && !Thread.currentThread().isInterrupted(); i++) {
+          scheduler.control(path, BLOCK_SIZE);
+        }
+      });
+    }
+    for (Path path : paths) {
+      waitCompleted(path);
+    }
+    long elapsed = EnvironmentEdgeManager.currentTime() - start;
+    assertTrue("Prefetch of 8MB at 4MB/s took " + elapsed + " ms", elapsed >= 1500);
+    assertEquals(2L * blocks * BLOCK_SIZE, scheduler.getPrefetchedBytes("r"));
+    assertEquals(0, scheduler.getPendingBytes("r"));
+  }
+
+  @Test
+  public void testCancelRegion() throws Exception {
+    scheduler = new PrefetchScheduler(createConf());
+    scheduler.registerRegion("closing", () -> 1);
+    scheduler.registerRegion("staying", () -> 0);
+    CountDownLatch started = new CountDownLatch(1);
+    Path running = path("closing", "running");
+    scheduler.request(running, 100L * BLOCK_SIZE, () -> {
+      started.countDown();
+      // Reads until cancelled
+      while (!Thread.currentThread().isInterrupted()) {
+        scheduler.control(running, 1);
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    started.await();
+    Path queued = path("closing", "queued");
+    List<Path> ran = new CopyOnWriteArrayList<>();
+    scheduler.request(queued, BLOCK_SIZE, () -> ran.add(queued));
+    Path other = path("staying", "other");
+    scheduler.request(other, BLOCK_SIZE, () -> ran.add(other));
+    assertEquals(101L * BLOCK_SIZE, scheduler.getPendingBytes("closing") +
+        scheduler.getPrefetchedBytes("closing"));
+
+    scheduler.cancelRegion("closing");
+    assertTrue(scheduler.isCompleted(running));
+    assertTrue(scheduler.isCompleted(queued));
+    assertEquals(0, scheduler.getPendingBytes("closing"));
+    waitCompleted(other);
+    while (ran.isEmpty()) {
+      Thread.sleep(10);
+    }
+    // The running prefetch stopped and the queued one of the closed region never ran
+    assertEquals(1, ran.size());
+    assertEquals(other, ran.get(0));
+  }
+}
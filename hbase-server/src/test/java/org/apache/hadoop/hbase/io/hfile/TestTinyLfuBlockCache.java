@@ -0,0 +1,252 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the W-TinyLFU on heap block cache: sizing, eviction, the admission filter keeping
+ * frequently read blocks through a scan, and handing evicted blocks to a victim cache.
+ */
+@Category({ IOTests.class, SmallTests.class })
+public class TestTinyLfuBlockCache {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestTinyLfuBlockCache.class);
+
+  private static final int BLOCK_SIZE = 1024;
+  private static final long MAX_BLOCK_SIZE = 16L * 1024 * 1024;
+
+  private static TinyLfuBlockCache newCache(int blocks) {
+    long maxSize = blocks * new CachedItem("hfile", BLOCK_SIZE, 0).cacheBlockHeapSize();
+    return new TinyLfuBlockCache(maxSize, BLOCK_SIZE, TinyLfuBlockCache.DEFAULT_WINDOW_FACTOR,
+        TinyLfuBlockCache.DEFAULT_PROTECTED_FACTOR, MAX_BLOCK_SIZE);
+  }
+
+  private static CachedItem[] generate(String hfileName, int count) {
+    CachedItem[] items = new CachedItem[count];
+    for (int i = 0; i < count; i++) {
+      items[i] = new CachedItem(hfileName, BLOCK_SIZE, i);
+    }
+    return items;
+  }
+
+  @Test
+  public void testCacheSimple() {
+    TinyLfuBlockCache cache = newCache(100);
+    CachedItem[] blocks = generate("hfile", 10);
+    long expectedSize = 0;
+    for (CachedItem block : blocks) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+      cache.cacheBlock(block.cacheKey, block);
+      expectedSize += block.cacheBlockHeapSize();
+    }
+    assertEquals(expectedSize, cache.getCurrentSize());
+    assertEquals(expectedSize, cache.getCurrentDataSize());
+    assertEquals(blocks.length, cache.getBlockCount());
+    assertEquals(blocks.length, cache.getDataBlockCount());
+    for (CachedItem block : blocks) {
+      assertSame(block, cache.getBlock(block.cacheKey, true, false, true));
+    }
+    // Caching the same block again is harmless
+    cache.cacheBlock(blocks[0].cacheKey, blocks[0]);
+    assertEquals(blocks.length, cache.getBlockCount());
+
+    assertTrue(cache.evictBlock(blocks[0].cacheKey));
+    assertNull(cache.getBlock(blocks[0].cacheKey, true, false, true));
+    assertEquals(expectedSize - blocks[0].cacheBlockHeapSize(), cache.getCurrentSize());
+
+    CacheStats stats = cache.getStats();
+    assertEquals(TinyLfuBlockCache.class.getSimpleName(), stats.getName());
+    assertEquals(blocks.length, stats.getHitCount());
+    assertEquals(blocks.length + 1, stats.getMissCount());
+    assertEquals(0, stats.getEvictedCount());
+    cache.shutdown();
+  }
+
+  @Test
+  public void testCacheEvictsToMaxSize() {
+    TinyLfuBlockCache cache = newCache(100);
+    for (CachedItem block : generate("hfile", 1000)) {
+      cache.cacheBlock(block.cacheKey, block);
+      assertTrue(cache.getCurrentSize() <= cache.getMaxSize());
+    }
+    assertEquals(100, cache.getBlockCount());
+    assertEquals(900, cache.getStats().getEvictedCount());
+
+    // Shrinking the cache evicts right away
+    cache.setMaxSize(cache.getMaxSize() / 2);
+    assertEquals(50, cache.getBlockCount());
+    assertTrue(cache.getCurrentSize() <= cache.getMaxSize());
+    cache.shutdown();
+  }
+
+  @Test
+  public void testScanResistance() {
+    TinyLfuBlockCache cache = newCache(100);
+    CachedItem[] hot = generate("hot", 50);
+    for (CachedItem block : hot) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    for (int i = 0; i < 3; i++) {
+      for (CachedItem block : hot) {
+        assertNotNull(cache.getBlock(block.cacheKey, true, false, true));
+      }
+    }
+    cache.cleanUp();
+
+    // A scan, much larger than the cache, over blocks that are read once, while the point gets
+    // keep reading the hot blocks
+    CachedItem[] scan = generate("scan", 1000);
+    for (int i = 0; i < scan.length; i++) {
+      assertNull(cache.getBlock(scan[i].cacheKey, true, false, true));
+      cache.cacheBlock(scan[i].cacheKey, scan[i]);
+      if (i % 100 == 99) {
+        for (CachedItem block : hot) {
+          assertNotNull(cache.getBlock(block.cacheKey, true, false, true));
+        }
+      }
+    }
+    cache.cleanUp();
+    for (CachedItem block : hot) {
+      assertNotNull("Frequently read block evicted by a scan " + block.cacheKey,
+        cache.getBlock(block.cacheKey, true, false, true));
+    }
+    assertTrue(cache.getStats().getRejectedAdmissionCount() > 0);
+    assertTrue(cache.getCurrentSize() <= cache.getMaxSize());
+    cache.shutdown();
+  }
+
+  @Test
+  public void testEvictBlocksByHfileName() {
+    TinyLfuBlockCache cache = newCache(100);
+    for (CachedItem block : generate("a", 10)) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    for (CachedItem block : generate("b", 5)) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    assertEquals(10, cache.evictBlocksByHfileName("a"));
+    assertEquals(5, cache.getBlockCount());
+    assertEquals(0, cache.evictBlocksByHfileName("a"));
+    cache.shutdown();
+  }
+
+  @Test
+  public void testVictimCache() {
+    TinyLfuBlockCache cache = newCache(10);
+    TinyLfuBlockCache victim = newCache(100);
+    cache.setVictimCache(victim);
+    CachedItem[] blocks = generate("hfile", 20);
+    for (CachedItem block : blocks) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    assertEquals(10, cache.getBlockCount());
+    assertEquals(10, victim.getBlockCount());
+    // Every block is served, those evicted from the victim cache
+    for (CachedItem block : blocks) {
+      assertSame(block, cache.getBlock(block.cacheKey, true, false, true));
+    }
+    // Blocks can be in both caches
+    assertTrue(cache.evictBlocksByHfileName("hfile") >= blocks.length);
+    assertEquals(0, cache.getBlockCount());
+    assertEquals(0, victim.getBlockCount());
+    cache.shutdown();
+  }
+
+  @Test
+  public void testFrequencySketch() {
+    FrequencySketch sketch = new FrequencySketch(512);
+    int item = "block".hashCode();
+    assertEquals(0, sketch.frequency(item));
+    for (int i = 0; i < 5; i++) {
+      sketch.increment(item);
+    }
+    assertEquals(5, sketch.frequency(item));
+    for (int i = 0; i < 20; i++) {
+      sketch.increment(item);
+    }
+    assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(item));
+
+    // Enough increments of other items halve the counters
+    for (int i = 0; i < 10 * 512; i++) {
+      sketch.increment(i);
+    }
+    assertTrue(sketch.frequency(item) <= FrequencySketch.MAX_FREQUENCY / 2 + 1);
+  }
+
+  private static class CachedItem implements Cacheable {
+    BlockCacheKey cacheKey;
+    int size;
+
+    CachedItem(String blockName, int size, int offset) {
+      this.cacheKey = new BlockCacheKey(blockName, offset);
+      this.size = size;
+    }
+
+    @Override
+    public long heapSize() {
+      return ClassSize.align(size);
+    }
+
+    /** Size of the cache block holding this item. Used for verification. */
+    long cacheBlockHeapSize() {
+      return TinyLfuBlockCache.NODE_OVERHEAD + ClassSize.align(cacheKey.heapSize())
+          + ClassSize.align(size);
+    }
+
+    @Override
+    public int getSerializedLength() {
+      return 0;
+    }
+
+    @Override
+    public CacheableDeserializer<Cacheable> getDeserializer() {
+      return null;
+    }
+
+    @Override
+    public void serialize(ByteBuffer destination) {
+    }
+
+    @Override
+    public BlockType getBlockType() {
+      return BlockType.DATA;
+    }
+
+    @Override
+    public MemoryType getMemoryType() {
+      return MemoryType.EXCLUSIVE;
+    }
+  }
+}
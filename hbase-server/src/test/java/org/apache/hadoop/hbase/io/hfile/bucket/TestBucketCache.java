@@ -17,8 +17,10 @@
  */
 package org.apache.hadoop.hbase.io.hfile.bucket;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.FileNotFoundException;
@@ -52,6 +54,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import org.apache.hbase.thirdparty.com.google.common.collect.ImmutableMap;
+import org.apache.hbase.thirdparty.com.google.common.collect.ImmutableSet;
 
 /**
  * Basic test of BucketCache.Puts and gets.
@@ -206,6 +209,26 @@ public class TestBucketCache {
     }
   }
 
+  @Test
+  public void testGetHotBlockOffsets() throws Exception {
+    for (long offset = 0; offset < 5; offset++) {
+      cacheAndWaitUntilFlushedToBucket(cache, new BlockCacheKey("hot", offset),
+        new CacheTestUtils.ByteArrayCacheable(new byte[10]));
+      cacheAndWaitUntilFlushedToBucket(cache, new BlockCacheKey("other", offset),
+        new CacheTestUtils.ByteArrayCacheable(new byte[10]));
+    }
+    // Blocks read after they were cached are hot
+    for (long offset : new long[] { 3, 1 }) {
+      assertNotNull(cache.getBlock(new BlockCacheKey("hot", offset), true, false, true));
+    }
+    assertNotNull(cache.getBlock(new BlockCacheKey("other", 2), true, false, true));
+    Map<String, long[]> hotBlocks =
+        cache.getHotBlockOffsets(ImmutableSet.of("hot", "other", "unknown"));
+    assertEquals(2, hotBlocks.size());
+    assertArrayEquals(new long[] { 1, 3 }, hotBlocks.get("hot"));
+    assertArrayEquals(new long[] { 2 }, hotBlocks.get("other"));
+  }
+
   @Test
   public void testMemoryLeak() throws Exception {
     final BlockCacheKey cacheKey = new BlockCacheKey("dummy", 1L);
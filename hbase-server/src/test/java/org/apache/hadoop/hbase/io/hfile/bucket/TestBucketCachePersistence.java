@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheUtil;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests persisting a file backed {@link BucketCache} and restoring it, after a clean shutdown
+ * and from the checkpoints written while it runs.
+ */
+@Category({ IOTests.class, MediumTests.class })
+public class TestBucketCachePersistence {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestBucketCachePersistence.class);
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static final long CAPACITY = 16 * 1024 * 1024;
+  private static final int BLOCK_SIZE = 1024;
+  // Small buckets so that a few thousand blocks span several persistence segments
+  private static final int[] BUCKET_SIZES = new int[] { 2 * 1024, 3 * 1024 };
+
+  private File dir;
+  private File persistenceFile;
+  private Configuration conf;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = new File(TEST_UTIL.getDataTestDir("bucketcache").toString());
+    assertTrue(dir.isDirectory() || dir.mkdirs());
+    persistenceFile = new File(dir, "bucket.persistence");
+    conf = HBaseConfiguration.create();
+    // Checkpoints are triggered by the tests
+    conf.setLong(BucketCache.PERSIST_INTERVAL_CONFIG_NAME, 0);
+    conf.setInt(BucketCache.RESTORE_THREADS_CONFIG_NAME, 4);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    TEST_UTIL.cleanupTestDir();
+  }
+
+  private BucketCache newCache() throws IOException {
+    // A single writer thread, so that blocks are allocated in the order they are cached
+    return new BucketCache("file:" + new File(dir, "bucket.cache"), CAPACITY, BLOCK_SIZE,
+        BUCKET_SIZES, 1, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS,
+        persistenceFile.getAbsolutePath(), BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+  }
+
+  private static void cacheAndWait(BucketCache cache, HFileBlockPair... blocks)
+      throws InterruptedException {
+    for (HFileBlockPair block : blocks) {
+      cache.cacheBlockWithWait(block.getBlockName(), block.getBlock(), false, true);
+      while (!cache.backingMap.containsKey(block.getBlockName())) {
+        Thread.sleep(1);
+      }
+    }
+  }
+
+  private static void assertCached(BucketCache cache, HFileBlockPair block) {
+    Cacheable cached = cache.getBlock(block.getBlockName(), false, false, false);
+    assertNotNull("Missing " + block.getBlockName(), cached);
+    assertEquals(0, BlockCacheUtil.compareCacheBlock(block.getBlock(), cached));
+    cache.returnBlock(block.getBlockName(), cached);
+  }
+
+  @Test
+  public void testRestoreAfterCleanShutdown() throws Exception {
+    BucketCache cache = newCache();
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 4000);
+    cacheAndWait(cache, blocks);
+    long usedSize = cache.getAllocator().getUsedSize();
+    long size = cache.size();
+    int lastSegment = 0;
+    for (BucketCache.BucketEntry entry : cache.backingMap.values()) {
+      lastSegment = Math.max(lastSegment, cache.getAllocator().getBucketIndex(entry.offset())
+          / BucketCachePersistence.BUCKETS_PER_SEGMENT);
+    }
+    assertTrue("Blocks should span several segments", lastSegment > 1);
+    cache.shutdown();
+    assertTrue(persistenceFile.exists());
+
+    cache = newCache();
+    assertFalse("Persistence file should be removed once restored", persistenceFile.exists());
+    assertEquals(usedSize, cache.getAllocator().getUsedSize());
+    assertEquals(size, cache.size());
+    assertEquals(blocks.length, cache.getBlockCount());
+    for (HFileBlockPair block : blocks) {
+      assertTrue(cache.backingMap.get(block.getBlockName()).isVerified());
+      assertCached(cache, block);
+    }
+    // The per file index is rebuilt as well
+    assertEquals(1, cache.evictBlocksByHfileName(blocks[0].getBlockName().getHfileName()));
+    assertEquals(blocks.length - 1, cache.getBlockCount());
+    // and the restored allocator keeps working
+    HFileBlockPair[] more = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 10);
+    cacheAndWait(cache, more);
+    for (HFileBlockPair block : more) {
+      assertCached(cache, block);
+    }
+    cache.shutdown();
+  }
+
+  @Test
+  public void testRestoreCheckpoints() throws Exception {
+    BucketCache cache = newCache();
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 3);
+    HFileBlockPair a = blocks[0];
+    HFileBlockPair b = blocks[1];
+    HFileBlockPair c = blocks[2];
+    cacheAndWait(cache, a, c);
+    assertTrue(cache.checkpoint());
+    assertFalse("Nothing changed since the last checkpoint", cache.checkpoint());
+    File first = new File(dir, "first");
+    Files.copy(persistenceFile.toPath(), first.toPath());
+
+    // b takes the space a had when the first checkpoint was written
+    long offset = cache.backingMap.get(a.getBlockName()).offset();
+    assertTrue(cache.evictBlock(a.getBlockName()));
+    cacheAndWait(cache, b);
+    assertEquals(offset, cache.backingMap.get(b.getBlockName()).offset());
+    assertTrue(cache.checkpoint());
+    File second = new File(dir, "second");
+    Files.copy(persistenceFile.toPath(), second.toPath());
+    cache.shutdown();
+
+    // Restore the incremental checkpoint, as if the server had died right after it
+    Files.move(second.toPath(), persistenceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    cache = newCache();
+    assertEquals(2, cache.getBlockCount());
+    assertFalse(cache.backingMap.get(b.getBlockName()).isVerified());
+    assertCached(cache, b);
+    assertCached(cache, c);
+    assertTrue(cache.backingMap.get(b.getBlockName()).isVerified());
+    assertNull(cache.getBlock(a.getBlockName(), false, false, false));
+    cache.shutdown();
+
+    // The first checkpoint still lists a, whose space now holds b
+    Files.move(first.toPath(), persistenceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    cache = newCache();
+    assertEquals(2, cache.getBlockCount());
+    assertNull("Overwritten block must not be served",
+      cache.getBlock(a.getBlockName(), false, false, false));
+    assertFalse(cache.backingMap.containsKey(a.getBlockName()));
+    assertEquals(1, cache.getBlockCount());
+    assertCached(cache, c);
+    cache.shutdown();
+  }
+
+  @Test
+  public void testCorruptSegmentIsDropped() throws Exception {
+    BucketCache cache = newCache();
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 10);
+    cacheAndWait(cache, blocks);
+    cache.shutdown();
+
+    // The first segment record follows the header
+    try (RandomAccessFile raf = new RandomAccessFile(persistenceFile, "rw")) {
+      long position = BucketCachePersistence.HEADER_SIZE + 16;
+      raf.seek(position);
+      int b = raf.read();
+      raf.seek(position);
+      raf.write(b ^ 0xFF);
+    }
+    cache = newCache();
+    assertEquals(0, cache.getBlockCount());
+    assertEquals(0, cache.getAllocator().getUsedSize());
+    assertFalse(persistenceFile.exists());
+    cacheAndWait(cache, blocks[0]);
+    assertCached(cache, blocks[0]);
+    cache.shutdown();
+  }
+}
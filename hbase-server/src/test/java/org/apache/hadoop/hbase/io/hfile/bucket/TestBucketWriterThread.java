@@ -172,6 +172,32 @@ public class TestBucketWriterThread {
     doDrainOfOneEntry(bc, wt, q);
   }
 
+  /**
+   * A block cached on write waits for room in a full writer queue, and is counted as deferred,
+   * while a block cached on read is dropped right away.
+   */
+  @Test (timeout=30000)
+  public void testDeferredInsertWhenQueueFull() throws InterruptedException {
+    int queued = 0;
+    while (q.remainingCapacity() > 0) {
+      bc.cacheBlock(new BlockCacheKey("f", queued++), this.plainCacheable);
+    }
+    assertEquals(0, bc.getStats().getFailedInserts());
+    // The writer is disabled so the queue never drains and the waiting insertion gives up
+    bc.cacheBlock(new BlockCacheKey("f", queued++), this.plainCacheable, false, true);
+    assertEquals(1, bc.getStats().getDeferredInserts());
+    assertEquals(1, bc.getStats().getFailedInserts());
+    bc.cacheBlock(new BlockCacheKey("f", queued++), this.plainCacheable, false, false);
+    assertEquals(1, bc.getStats().getDeferredInserts());
+    assertEquals(2, bc.getStats().getFailedInserts());
+    // Once the writer catches up the next insertion goes through
+    wt.doDrain(BucketCache.getRAMQueueEntries(q, new ArrayList<>()));
+    bc.cacheBlock(new BlockCacheKey("f", queued++), this.plainCacheable, false, true);
+    assertEquals(1, bc.getStats().getDeferredInserts());
+    assertEquals(2, bc.getStats().getFailedInserts());
+    assertEquals(1, q.size());
+  }
+
   private static void doDrainOfOneEntry(final BucketCache bc, final BucketCache.WriterThread wt,
       final BlockingQueue<RAMQueueEntry> q)
   throws InterruptedException {
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.io.hfile.bucket.TestByteBufferIOEngine.BufferGrabbingDeserializer;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Basic test for {@link DirectFileIOEngine}
+ */
+@Category({IOTests.class, SmallTests.class})
+public class TestDirectFileIOEngine {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestDirectFileIOEngine.class);
+
+  private static final long TOTAL_CAPACITY = 6 * 1024 * 1024 + 100; // not aligned on purpose
+  private static final String FILE_PATH = "testDirectFileIOEngine";
+  private static final int ALIGNMENT = 4096;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private DirectFileIOEngine ioEngine;
+
+  @Before
+  public void setUp() throws IOException {
+    ioEngine =
+        new DirectFileIOEngine(FILE_PATH, TOTAL_CAPACITY, false, ALIGNMENT, BUFFER_SIZE, 4, true);
+  }
+
+  @After
+  public void cleanUp() {
+    ioEngine.shutdown();
+    File file = new File(FILE_PATH);
+    if (file.exists()) {
+      file.delete();
+    }
+  }
+
+  private static byte[] randomBytes(int len) {
+    byte[] data = new byte[len];
+    ThreadLocalRandom.current().nextBytes(data);
+    return data;
+  }
+
+  private byte[] read(long offset, int len) throws IOException {
+    BufferGrabbingDeserializer deserializer = new BufferGrabbingDeserializer();
+    ioEngine.read(offset, len, deserializer);
+    return deserializer.getDeserializedByteBuff().array();
+  }
+
+  @Test
+  public void testDirectFileIOEngine() throws IOException {
+    for (int i = 0; i < 500; i++) {
+      // Up to a few pages, most of them neither starting nor ending on a page boundary
+      int len = ThreadLocalRandom.current().nextInt(3 * ALIGNMENT) + 1;
+      long offset = ThreadLocalRandom.current().nextLong(TOTAL_CAPACITY - len);
+      if (i == 0) {
+        offset = 0;
+      } else if (i == 1) {
+        offset = TOTAL_CAPACITY - len;
+      } else if (i % 3 == 0) {
+        offset = offset - offset % ALIGNMENT;
+      }
+      byte[] data1 = randomBytes(len);
+      ioEngine.write(ByteBuffer.wrap(data1), offset);
+      assertArrayEquals(data1, read(offset, len));
+    }
+  }
+
+  @Test
+  public void testNeighboursInSamePage() throws IOException {
+    // Blocks sharing pages, written out of order, keep each other's bytes
+    byte[] first = randomBytes(300);
+    byte[] second = randomBytes(ALIGNMENT);
+    byte[] third = randomBytes(700);
+    ioEngine.write(ByteBuffer.wrap(second), 300);
+    ioEngine.write(ByteBuffer.wrap(third), 300 + ALIGNMENT);
+    ioEngine.write(new SingleByteBuff(ByteBuffer.wrap(first)), 0);
+    assertArrayEquals(first, read(0, first.length));
+    assertArrayEquals(second, read(300, second.length));
+    assertArrayEquals(third, read(300 + ALIGNMENT, third.length));
+  }
+
+  @Test
+  public void testConcurrentWritesToSharedPages() throws Exception {
+    int blockSize = 1000;
+    int blocks = 200;
+    byte[][] data = new byte[blocks][];
+    for (int i = 0; i < blocks; i++) {
+      data[i] = randomBytes(blockSize);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        int thread = t;
+        futures.add(pool.submit(() -> {
+          for (int i = thread; i < blocks; i += 4) {
+            ioEngine.write(ByteBuffer.wrap(data[i]), (long) i * blockSize);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    for (int i = 0; i < blocks; i++) {
+      assertArrayEquals(data[i], read((long) i * blockSize, blockSize));
+    }
+  }
+
+  @Test
+  public void testLargerThanPooledBuffer() throws IOException {
+    byte[] data1 = randomBytes(3 * BUFFER_SIZE + 17);
+    ioEngine.write(ByteBuffer.wrap(data1), 123);
+    assertArrayEquals(data1, read(123, data1.length));
+    // Only buffers of the pool size are kept
+    assertTrue(ioEngine.getPooledBufferCount() <= 1);
+    // A large read goes through a pooled buffer in pieces
+    long allocated = ioEngine.getAllocatedBufferCount();
+    for (int i = 0; i < 10; i++) {
+      assertArrayEquals(data1, read(123, data1.length));
+    }
+    assertEquals(allocated, ioEngine.getAllocatedBufferCount());
+  }
+
+  @Test
+  public void testPooledBuffersReused() throws IOException {
+    byte[] data = randomBytes(ALIGNMENT + 17);
+    ioEngine.write(ByteBuffer.wrap(data), 123);
+    assertArrayEquals(data, read(123, data.length));
+    long allocated = ioEngine.getAllocatedBufferCount();
+    // many more cycles than buffers pooled
+    for (int i = 0; i < 10 * 4; i++) {
+      ioEngine.write(ByteBuffer.wrap(data), (long) i * BUFFER_SIZE);
+      assertArrayEquals(data, read((long) i * BUFFER_SIZE, data.length));
+    }
+    assertEquals(allocated, ioEngine.getAllocatedBufferCount());
+    assertTrue(ioEngine.getPooledBufferCount() > 0);
+    assertTrue(ioEngine.getPooledBufferCount() <= 4);
+  }
+
+  @Test
+  public void testFailsWithoutDirectIO() throws IOException {
+    String path = FILE_PATH + ".direct";
+    try {
+      DirectFileIOEngine engine =
+          new DirectFileIOEngine(path, TOTAL_CAPACITY, false, ALIGNMENT, BUFFER_SIZE, 4, false);
+      // O_DIRECT is available here, it is not silently replaced by buffered IO
+      assertTrue(engine.isDirect());
+      engine.shutdown();
+    } catch (IOException e) {
+      assertFalse(ioEngine.isDirect());
+    } finally {
+      new File(path).delete();
+    }
+  }
+
+  @Test
+  public void testHandlesZeroLengthInput() throws IOException {
+    byte[] data1 = new byte[0];
+    ioEngine.write(ByteBuffer.wrap(data1), 0);
+    BufferGrabbingDeserializer deserializer = new BufferGrabbingDeserializer();
+    ioEngine.read(0, 0, deserializer);
+    ByteBuff data2 = deserializer.getDeserializedByteBuff();
+    assertArrayEquals(data1, data2.array());
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.io.hfile.bucket.TestByteBufferIOEngine.BufferGrabbingDeserializer;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests that {@link WriteBatch} coalesces adjacent blocks into fewer writes and that the blocks
+ * read back as written.
+ */
+@Category({IOTests.class, SmallTests.class})
+public class TestWriteBatch {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestWriteBatch.class);
+
+  private static final long CAPACITY = 4 * 1024 * 1024;
+  private static final String FILE_PATH = "testWriteBatch";
+
+  private FileIOEngine fileIOEngine;
+
+  @Before
+  public void setUp() throws IOException {
+    fileIOEngine = new FileIOEngine(CAPACITY, false, FILE_PATH);
+  }
+
+  @After
+  public void cleanUp() {
+    fileIOEngine.shutdown();
+    File file = new File(FILE_PATH);
+    if (file.exists()) {
+      file.delete();
+    }
+  }
+
+  private static byte[] randomBytes(int length, int seed) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (seed * 31 + i);
+    }
+    return data;
+  }
+
+  private byte[] read(long offset, int length) throws IOException {
+    BufferGrabbingDeserializer deserializer = new BufferGrabbingDeserializer();
+    fileIOEngine.read(offset, length, deserializer);
+    return deserializer.getDeserializedByteBuff().array();
+  }
+
+  @Test
+  public void testAdjacentBlocksAreCoalesced() throws IOException {
+    WriteBatch batch = new WriteBatch(fileIOEngine, 64 * 1024);
+    int blockSize = 4096;
+    byte[][] blocks = new byte[10][];
+    // Added out of order, as the writer threads drain them
+    for (int i = blocks.length - 1; i >= 0; i--) {
+      blocks[i] = randomBytes(blockSize, i);
+      // The last 16 bytes go as a trailer, like the metadata of an HFileBlock
+      ByteBuffer data = ByteBuffer.wrap(blocks[i], 0, blockSize - 16).slice();
+      ByteBuffer trailer = ByteBuffer.wrap(blocks[i], blockSize - 16, 16).slice();
+      batch.add((long) i * blockSize, new SingleByteBuff(data), trailer);
+    }
+    batch.flush();
+    assertTrue(batch.isEmpty());
+    assertEquals(1, batch.getWrites());
+    for (int i = 0; i < blocks.length; i++) {
+      assertArrayEquals(blocks[i], read((long) i * blockSize, blockSize));
+    }
+  }
+
+  @Test
+  public void testGapsAndLargeBlocks() throws IOException {
+    WriteBatch batch = new WriteBatch(fileIOEngine, 8 * 1024);
+    byte[] first = randomBytes(1024, 1);
+    byte[] second = randomBytes(1024, 2);
+    byte[] afterGap = randomBytes(2048, 3);
+    byte[] large = randomBytes(20 * 1024, 4);
+    batch.add(0, new SingleByteBuff(ByteBuffer.wrap(first)), null);
+    batch.add(1024, new SingleByteBuff(ByteBuffer.wrap(second)), null);
+    batch.add(4096, new SingleByteBuff(ByteBuffer.wrap(afterGap)), null);
+    batch.add(64 * 1024, new SingleByteBuff(ByteBuffer.wrap(large)), null);
+    batch.flush();
+    // One write for the two adjacent blocks, one after the gap and one for the large block
+    assertEquals(3, batch.getWrites());
+    assertArrayEquals(first, read(0, first.length));
+    assertArrayEquals(second, read(1024, second.length));
+    assertArrayEquals(afterGap, read(4096, afterGap.length));
+    assertArrayEquals(large, read(64 * 1024, large.length));
+  }
+}
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -619,6 +620,16 @@ ClientProtos.ClientService.BlockingInterface, RegionServerServices {
     return null;
   }
 
+  @Override
+  public ThreadPoolExecutor getStoreFlushPool() {
+    return null;
+  }
+
+  @Override
+  public ThreadPoolExecutor getParallelScanPool() {
+    return null;
+  }
+
   @Override
   public double getFlushPressure() {
     return 0;
@@ -18,6 +18,9 @@
 
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Collection;
+import java.util.Collections;
+
 public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrapper {
 
   @Override
@@ -270,6 +273,31 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 36;
   }
 
+  @Override
+  public long getBlockCacheDeferredInsertions() {
+    return 12;
+  }
+
+  @Override
+  public Collection<String> getBlockCachePartitionNames() {
+    return Collections.singletonList("serving");
+  }
+
+  @Override
+  public long getBlockCachePartitionSize(String partition) {
+    return 1024;
+  }
+
+  @Override
+  public long getBlockCachePartitionHitCount(String partition) {
+    return 30;
+  }
+
+  @Override
+  public long getBlockCachePartitionMissCount(String partition) {
+    return 10;
+  }
+
   @Override
   public long getL1CacheHitCount() {
     return 200;
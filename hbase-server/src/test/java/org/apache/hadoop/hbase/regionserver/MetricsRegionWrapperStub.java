@@ -18,6 +18,10 @@
 
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
   int replicaid = 0;
 
@@ -162,4 +166,57 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
   public long getMaxFlushQueueSize() {
     return 6;
   }
+
+  @Override
+  public long getPrefetchedBytes() {
+    return 109;
+  }
+
+  @Override
+  public long getPrefetchPendingBytes() {
+    return 110;
+  }
+
+  @Override
+  public Map<String, Map<String, Long>> getMemStoreCompactionDecisions() {
+    Map<String, Long> decisions = new LinkedHashMap<>();
+    decisions.put("MERGE", 111L);
+    decisions.put("COMPACT", 112L);
+    return Collections.singletonMap("cf", decisions);
+  }
+
+  @Override
+  public long getRowLockContendedCount() {
+    return 113;
+  }
+
+  @Override
+  public long getRowLockWaitTime() {
+    return 114;
+  }
+
+  @Override
+  public long getRowLockTimeoutCount() {
+    return 115;
+  }
+
+  @Override
+  public long getScanCacheHitCount() {
+    return 116;
+  }
+
+  @Override
+  public long getScanCacheMissCount() {
+    return 117;
+  }
+
+  @Override
+  public long getScanCacheEvictedCount() {
+    return 118;
+  }
+
+  @Override
+  public long getScanCacheSize() {
+    return 119;
+  }
 }
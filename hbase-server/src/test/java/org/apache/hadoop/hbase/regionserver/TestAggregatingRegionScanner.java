@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScanAggregation;
+import org.apache.hadoop.hbase.client.ScanAggregation.Aggregate;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.ScannerContext.LimitScope;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Checks the rows of a scan with an aggregation are aggregated by the region, and the partial
+ * aggregates it returns merge into the aggregates of all the rows.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestAggregatingRegionScanner {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestAggregatingRegionScanner.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] LONG_QUALIFIER = Bytes.toBytes("l");
+  private static final byte[] STRING_QUALIFIER = Bytes.toBytes("s");
+  private static final int ROWS = 100;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private HRegion region;
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%05d", i));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    TableDescriptor td = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    region = HBaseTestingUtility.createRegionAndWAL(ri, rootDir, UTIL.getConfiguration(), td);
+    for (int i = 0; i < ROWS; i++) {
+      region.put(new Put(row(i)).addColumn(FAMILY, LONG_QUALIFIER, Bytes.toBytes((long) i))
+          .addColumn(FAMILY, STRING_QUALIFIER, Bytes.toBytes("v" + i)));
+      if (i == ROWS / 2) {
+        region.flush(true);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  /**
+   * Reads the partial aggregates of a scan as the RPC services do, with a size limit.
+   */
+  private List<Result> scan(Scan scan, long sizeLimit) throws IOException {
+    List<Result> partials = new ArrayList<>();
+    try (RegionScanner scanner = region.getScanner(scan)) {
+      assertTrue(scanner instanceof AggregatingRegionScannerImpl);
+      List<Cell> cells = new ArrayList<>();
+      boolean more;
+      do {
+        ScannerContext scannerContext = ScannerContext.newBuilder(true)
+            .setSizeLimit(LimitScope.BETWEEN_CELLS, sizeLimit, sizeLimit).build();
+        more = scanner.nextRaw(cells, scannerContext);
+        if (!cells.isEmpty()) {
+          partials.add(Result.create(cells));
+        }
+        cells.clear();
+      } while (more);
+    }
+    return partials;
+  }
+
+  @Test
+  public void testAggregateAll() throws IOException {
+    List<Result> partials =
+        scan(new Scan().setAggregation(ScanAggregation.all()), Long.MAX_VALUE);
+    assertEquals(1, partials.size());
+    assertArrayEquals(row(ROWS - 1), partials.get(0).getRow());
+    Aggregate aggregate = ScanAggregation.merge(partials).get(HConstants.EMPTY_BYTE_ARRAY);
+    assertEquals(ROWS, aggregate.getCount());
+    // the string values are left out
+    assertEquals(ROWS, aggregate.getValueCount());
+    assertEquals(ROWS * (ROWS - 1) / 2, aggregate.getSum());
+    assertEquals(0, aggregate.getMin());
+    assertEquals(ROWS - 1, aggregate.getMax());
+  }
+
+  @Test
+  public void testPartialAggregatesOfWholeRows() throws IOException {
+    List<Result> partials = scan(new Scan().withStartRow(row(10))
+        .setAggregation(ScanAggregation.groupByRowPrefix(7)), 1);
+    // every row reaches the limit
+    assertEquals(ROWS - 10, partials.size());
+    for (int i = 0; i < partials.size(); i++) {
+      assertArrayEquals(row(10 + i), partials.get(i).getRow());
+    }
+    NavigableMap<byte[], Aggregate> aggregates = ScanAggregation.merge(partials);
+    assertEquals(9, aggregates.size());
+    for (int group = 1; group < 10; group++) {
+      Aggregate aggregate = aggregates.get(Bytes.toBytes("row000" + group));
+      assertEquals(10, aggregate.getCount());
+      assertEquals(100 * group + 45, aggregate.getSum());
+      assertEquals(10 * group, aggregate.getMin());
+      assertEquals(10 * group + 9, aggregate.getMax());
+    }
+  }
+
+  @Test
+  public void testGroupByColumn() throws IOException {
+    // every tenth row has a column between the two of all the rows
+    byte[] middleQualifier = Bytes.toBytes("m");
+    for (int i = 0; i < ROWS; i += 10) {
+      region.put(new Put(row(i)).addColumn(FAMILY, middleQualifier, Bytes.toBytes((long) i)));
+    }
+    NavigableMap<byte[], Aggregate> aggregates = ScanAggregation.merge(
+      scan(new Scan().setAggregation(ScanAggregation.groupByColumn()), 256));
+    assertEquals(3, aggregates.size());
+    Aggregate middles = aggregates.get(CellUtil.makeColumn(FAMILY, middleQualifier));
+    assertEquals(ROWS / 10, middles.getCount());
+    assertEquals(ROWS * (ROWS - 10) / 20, middles.getSum());
+    Aggregate longs = aggregates.get(CellUtil.makeColumn(FAMILY, LONG_QUALIFIER));
+    assertEquals(ROWS, longs.getCount());
+    assertEquals(ROWS * (ROWS - 1) / 2, longs.getSum());
+    Aggregate strings = aggregates.get(CellUtil.makeColumn(FAMILY, STRING_QUALIFIER));
+    assertEquals(ROWS, strings.getCount());
+    assertEquals(0, strings.getValueCount());
+  }
+
+  @Test
+  public void testSelectedColumnAndFilteredRows() throws IOException {
+    Aggregate aggregate = ScanAggregation.merge(scan(new Scan().withStartRow(row(20))
+        .withStopRow(row(30)).addColumn(FAMILY, STRING_QUALIFIER)
+        .setAggregation(ScanAggregation.all()), Long.MAX_VALUE)).get(HConstants.EMPTY_BYTE_ARRAY);
+    assertEquals(10, aggregate.getCount());
+    assertEquals(0, aggregate.getValueCount());
+  }
+
+  @Test(expected = DoNotRetryIOException.class)
+  public void testReversedNotSupported() throws IOException {
+    region.getScanner(new Scan().setReversed(true).setAggregation(ScanAggregation.all()));
+  }
+}
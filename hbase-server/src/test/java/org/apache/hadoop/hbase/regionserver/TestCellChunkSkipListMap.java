@@ -0,0 +1,282 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ArrayBackedTag;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.Tag;
+import org.apache.hadoop.hbase.io.util.MemorySizeUtil;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestCellChunkSkipListMap {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestCellChunkSkipListMap.class);
+
+  private static final Configuration CONF = new Configuration();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int NUM_OF_CELLS = 1000;
+
+  private MemStoreLAB mslab;
+  private NavigableMap<Cell, Cell> map;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    long globalMemStoreLimit = (long) (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+        .getMax() * MemorySizeUtil.getGlobalMemStoreHeapPercent(CONF, false));
+    ChunkCreator.initialize(MemStoreLABImpl.CHUNK_SIZE_DEFAULT, false, globalMemStoreLimit, 0.2f,
+      MemStoreLAB.POOL_INITIAL_SIZE_DEFAULT, null);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    mslab = new MemStoreLABImpl(CONF);
+    map = new CellChunkSkipListMap(CellComparator.getInstance(), mslab);
+  }
+
+  private Cell cell(int row, long ts, byte[] value) {
+    return mslab.forceCopyOfBigCellInto(
+      new KeyValue(Bytes.toBytes(row), FAMILY, QUALIFIER, ts, value));
+  }
+
+  private Cell cell(int row) {
+    return cell(row, 1, Bytes.toBytes(row));
+  }
+
+  private void put(Cell c) {
+    map.put(c, c);
+  }
+
+  private static int row(Cell c) {
+    return Bytes.toInt(CellUtil.cloneRow(c));
+  }
+
+  @Test
+  public void testPutAndGet() {
+    List<Integer> rows = new ArrayList<>();
+    for (int i = 0; i < NUM_OF_CELLS; i++) {
+      rows.add(i * 2);
+    }
+    Collections.shuffle(rows);
+    for (int r : rows) {
+      put(cell(r));
+    }
+    assertEquals(NUM_OF_CELLS, map.size());
+    assertEquals(0, row(map.firstKey()));
+    assertEquals((NUM_OF_CELLS - 1) * 2, row(map.lastKey()));
+
+    int expected = 0;
+    for (Cell c : map.values()) {
+      assertEquals(expected, row(c));
+      assertArrayEquals(Bytes.toBytes(expected), CellUtil.cloneValue(c));
+      expected += 2;
+    }
+    expected = (NUM_OF_CELLS - 1) * 2;
+    for (Cell c : map.descendingMap().values()) {
+      assertEquals(expected, row(c));
+      expected -= 2;
+    }
+    assertEquals(-2, expected);
+
+    assertEquals(10, row(map.get(cell(10))));
+    assertNull(map.get(cell(11)));
+    assertEquals(12, row(map.ceilingKey(cell(11))));
+    assertEquals(10, row(map.floorKey(cell(11))));
+    assertEquals(12, row(map.higherKey(cell(10))));
+    assertEquals(8, row(map.lowerKey(cell(10))));
+  }
+
+  @Test
+  public void testBigCellsAndTags() {
+    // bigger than the default max allocation, so it is copied alone in a jumbo chunk
+    byte[] bigValue = new byte[MemStoreLAB.MAX_ALLOC_DEFAULT * 2];
+    Bytes.random(bigValue);
+    Cell big = cell(1, 1, bigValue);
+    Tag[] tags = new Tag[] { new ArrayBackedTag((byte) 1, Bytes.toBytes("tag")) };
+    Cell tagged = mslab.forceCopyOfBigCellInto(
+      new KeyValue(Bytes.toBytes(2), FAMILY, QUALIFIER, 1, Bytes.toBytes(2), tags));
+    put(big);
+    put(tagged);
+
+    Iterator<Cell> it = map.values().iterator();
+    assertArrayEquals(bigValue, CellUtil.cloneValue(it.next()));
+    Cell c = it.next();
+    assertFalse(it.hasNext());
+    List<Tag> readTags = PrivateCellUtil.getTags(c);
+    assertEquals(1, readTags.size());
+    assertArrayEquals(Bytes.toBytes("tag"), Tag.cloneValue(readTags.get(0)));
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    Cell first = cell(1, 1, Bytes.toBytes("a"));
+    Cell second = cell(1, 1, Bytes.toBytes("b"));
+    put(cell(0));
+    assertNull(map.put(first, first));
+    assertArrayEquals(Bytes.toBytes("a"), CellUtil.cloneValue(map.put(second, second)));
+    assertEquals(2, map.size());
+    assertArrayEquals(Bytes.toBytes("b"), CellUtil.cloneValue(map.get(first)));
+
+    assertArrayEquals(Bytes.toBytes("b"), CellUtil.cloneValue(map.remove(first)));
+    assertNull(map.remove(first));
+    assertNull(map.get(first));
+    assertEquals(1, map.size());
+    assertEquals(0, row(map.lastKey()));
+
+    // a removed key can come back
+    assertNull(map.put(first, first));
+    assertEquals(2, map.size());
+    assertEquals(1, row(map.lastKey()));
+
+    Iterator<Cell> it = map.values().iterator();
+    it.next();
+    it.remove();
+    assertEquals(1, map.size());
+    assertEquals(1, row(map.firstKey()));
+  }
+
+  @Test
+  public void testCellSetViews() {
+    CellSet cs = new CellSet(map);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(cs.add(cell(i)));
+    }
+    SortedSet<Cell> tail = cs.tailSet(cell(6));
+    assertEquals(4, tail.size());
+    assertEquals(6, row(tail.first()));
+    assertEquals(9, row(tail.last()));
+    SortedSet<Cell> head = cs.headSet(cell(3));
+    assertEquals(3, head.size());
+    assertEquals(2, row(head.last()));
+
+    NavigableMap<Cell, Cell> sub = map.subMap(cell(2), true, cell(5), true);
+    assertEquals(4, sub.size());
+    Iterator<Cell> desc = sub.descendingMap().values().iterator();
+    for (int i = 5; i >= 2; i--) {
+      assertEquals(i, row(desc.next()));
+    }
+    assertFalse(desc.hasNext());
+    assertNull(map.tailMap(cell(10), true).firstEntry());
+  }
+
+  @Test
+  public void testConcurrentPuts() throws Exception {
+    final int threads = 4;
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      writers.add(new Thread(() -> {
+        for (int i = id; i < NUM_OF_CELLS * threads; i += threads) {
+          put(cell(i));
+        }
+      }));
+    }
+    for (Thread t : writers) {
+      t.start();
+    }
+    for (Thread t : writers) {
+      t.join();
+    }
+    assertEquals(NUM_OF_CELLS * threads, map.size());
+    int expected = 0;
+    for (Cell c : map.values()) {
+      assertEquals(expected++, row(c));
+    }
+    assertEquals(NUM_OF_CELLS * threads, expected);
+  }
+
+  @Test
+  public void testActiveSegmentWithChunkIndex() {
+    Configuration conf = new Configuration(CONF);
+    conf.setBoolean(MemStoreLAB.CHUNK_INDEX_KEY, true);
+    MutableSegment segment =
+        SegmentFactory.instance().createMutableSegment(conf, CellComparator.getInstance());
+    assertTrue(segment.isChunkIndex());
+
+    byte[] bigValue = new byte[MemStoreLAB.MAX_ALLOC_DEFAULT * 2];
+    KeyValue kv = new KeyValue(Bytes.toBytes(1), FAMILY, QUALIFIER, 1, bigValue);
+    Cell added = segment.maybeCloneWithAllocator(kv, false);
+    // the big cell went to the MSLAB too
+    assertTrue(added != kv);
+    segment.add(added, true, null);
+    assertEquals(1, segment.getCellsCount());
+    assertArrayEquals(bigValue, CellUtil.cloneValue(segment.first()));
+    assertTrue(
+      ((CellChunkSkipListMap) segment.getCellSet().getDelegatee()).getNumberOfIndexChunks() > 0);
+  }
+
+  @Test
+  public void testUpsertKeepsRemovedCellsCounted() {
+    Configuration conf = new Configuration(CONF);
+    conf.setBoolean(MemStoreLAB.CHUNK_INDEX_KEY, true);
+    MutableSegment segment =
+        SegmentFactory.instance().createMutableSegment(conf, CellComparator.getInstance());
+    assertTrue(segment.isChunkIndex());
+
+    long dataSize = segment.getDataSize();
+    long heapSize = segment.getHeapSize();
+    for (int i = 1; i <= 10; i++) {
+      KeyValue kv = new KeyValue(Bytes.toBytes(1), FAMILY, QUALIFIER, i, Bytes.toBytes(i));
+      kv.setSequenceId(i);
+      segment.upsert(kv, Long.MAX_VALUE, null);
+      // the older versions are removed from the index but their space is still taken
+      assertTrue(segment.getCellsCount() <= 2);
+      assertEquals(dataSize + i * KeyValueUtil.length(kv), segment.getDataSize());
+      assertTrue(segment.getHeapSize() > heapSize);
+      heapSize = segment.getHeapSize();
+    }
+
+    // putting a cell again writes a new record on the index chunks
+    KeyValue kv = new KeyValue(Bytes.toBytes(1), FAMILY, QUALIFIER, 10, Bytes.toBytes(10));
+    kv.setSequenceId(10);
+    segment.upsert(kv, Long.MAX_VALUE, null);
+    assertEquals(heapSize + CellChunkSkipListMap.RECORD_SIZE, segment.getHeapSize());
+  }
+}
@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants.OperationStatusCode;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Checks a multi request over several regions of a server is applied with a single WAL sync, and
+ * the failure of a region or of the sync leaves the statuses and data of every region right.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestCrossRegionBatchMutate {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestCrossRegionBatchMutate.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final TableName TABLE_NAME = TableName.valueOf("TestCrossRegionBatchMutate");
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int REGIONS = 10;
+
+  private static Table table;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    UTIL.getConfiguration().setBoolean(RSRpcServices.MULTI_CROSS_REGION_BATCH_KEY, true);
+    UTIL.startMiniCluster(1);
+    byte[][] splitKeys = new byte[REGIONS - 1][];
+    for (int i = 1; i < REGIONS; i++) {
+      splitKeys[i - 1] = Bytes.toBytes(i);
+    }
+    table = UTIL.createTable(TABLE_NAME, new byte[][] { FAMILY }, splitKeys);
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    table.close();
+    UTIL.shutdownMiniCluster();
+  }
+
+  private static WAL getWAL() throws Exception {
+    HRegionServer rs = UTIL.getHBaseCluster().getRegionServer(0);
+    RegionInfo ri = rs.getRegions(TABLE_NAME).get(0).getRegionInfo();
+    return rs.getWAL(ri);
+  }
+
+  @Test
+  public void testSingleSyncForAllRegions() throws Exception {
+    assertEquals(REGIONS, UTIL.getHBaseCluster().getRegionServer(0).getRegions(TABLE_NAME).size());
+    AtomicInteger syncs = new AtomicInteger();
+    WALActionsListener listener = new WALActionsListener() {
+      @Override
+      public void postSync(long timeInNanos, int handlerSyncs) {
+        syncs.incrementAndGet();
+      }
+    };
+    WAL wal = getWAL();
+    wal.registerWALActionsListener(listener);
+    try {
+      List<Row> puts = new ArrayList<>();
+      for (int i = 0; i < REGIONS; i++) {
+        puts.add(new Put(Bytes.toBytes(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i)));
+      }
+      table.batch(puts, new Object[puts.size()]);
+    } finally {
+      wal.unregisterWALActionsListener(listener);
+    }
+    assertTrue("syncs=" + syncs.get(), syncs.get() < REGIONS);
+
+    for (int i = 0; i < REGIONS; i++) {
+      assertArrayEquals(Bytes.toBytes(i),
+        table.get(new Get(Bytes.toBytes(i))).getValue(FAMILY, QUALIFIER));
+    }
+  }
+
+  @Test
+  public void testPutsAndDeletes() throws Exception {
+    List<Row> actions = new ArrayList<>();
+    for (int i = 0; i < REGIONS; i++) {
+      byte[] row = Bytes.add(Bytes.toBytes(i), Bytes.toBytes("mixed"));
+      table.put(new Put(row).addColumn(FAMILY, QUALIFIER, row));
+      if (i % 2 == 0) {
+        actions.add(new Delete(row));
+      } else {
+        actions.add(new Put(row).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i)));
+      }
+    }
+    Object[] results = new Object[actions.size()];
+    table.batch(actions, results);
+    for (int i = 0; i < REGIONS; i++) {
+      byte[] row = Bytes.add(Bytes.toBytes(i), Bytes.toBytes("mixed"));
+      if (i % 2 == 0) {
+        assertFalse(table.exists(new Get(row)));
+      } else {
+        assertArrayEquals(Bytes.toBytes(i), table.get(new Get(row)).getValue(FAMILY, QUALIFIER));
+      }
+    }
+  }
+
+  private static Put put(String row) {
+    return new Put(Bytes.toBytes(row)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(row));
+  }
+
+  private static boolean exists(HRegion region, String row) throws IOException {
+    return !region.get(new Get(Bytes.toBytes(row))).isEmpty();
+  }
+
+  /**
+   * Creates two regions of a table and a region of a read only table, all on the given WAL.
+   */
+  private List<HRegion> createRegions(WAL wal, Path rootDir) throws IOException {
+    TableDescriptor td = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build();
+    TableDescriptor readOnly = TableDescriptorBuilder
+        .newBuilder(TableName.valueOf(name.getMethodName() + "ReadOnly"))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).setReadOnly(true).build();
+    List<HRegion> regions = new ArrayList<>();
+    regions.add(HRegion.createHRegion(RegionInfoBuilder.newBuilder(td.getTableName())
+        .setEndKey(Bytes.toBytes("m")).build(), rootDir, UTIL.getConfiguration(), td, wal));
+    regions.add(HRegion.createHRegion(RegionInfoBuilder.newBuilder(td.getTableName())
+        .setStartKey(Bytes.toBytes("m")).build(), rootDir, UTIL.getConfiguration(), td, wal));
+    regions.add(HRegion.createHRegion(RegionInfoBuilder.newBuilder(readOnly.getTableName())
+        .build(), rootDir, UTIL.getConfiguration(), readOnly, wal));
+    return regions;
+  }
+
+  private static void close(List<HRegion> regions, WAL wal) throws IOException {
+    for (HRegion region : regions) {
+      region.close();
+    }
+    wal.close();
+  }
+
+  @Test
+  public void testFailedRegionLeavesOthersApplied() throws Exception {
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    RegionInfo walInfo = RegionInfoBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .build();
+    WAL wal = HBaseTestingUtility.createWal(UTIL.getConfiguration(), rootDir, walInfo);
+    List<HRegion> regions = createRegions(wal, rootDir);
+    try {
+      List<Mutation[]> batches = new ArrayList<>();
+      batches.add(new Mutation[] { put("a"), put("b") });
+      // a put of a family the table does not have fails in checkAndPrepare
+      batches.add(new Mutation[] { put("n"), new Put(Bytes.toBytes("o"))
+          .addColumn(Bytes.toBytes("nosuchfamily"), QUALIFIER, Bytes.toBytes("o")) });
+      batches.add(new Mutation[] { put("x") });
+      IOException[] errors = new IOException[regions.size()];
+      OperationStatus[][] statuses = HRegion.batchMutate(regions, batches, errors);
+
+      assertNull(errors[0]);
+      assertEquals(OperationStatusCode.SUCCESS, statuses[0][0].getOperationStatusCode());
+      assertEquals(OperationStatusCode.SUCCESS, statuses[0][1].getOperationStatusCode());
+      assertTrue(exists(regions.get(0), "a"));
+      assertTrue(exists(regions.get(0), "b"));
+
+      assertNull(errors[1]);
+      assertEquals(OperationStatusCode.SUCCESS, statuses[1][0].getOperationStatusCode());
+      assertEquals(OperationStatusCode.BAD_FAMILY, statuses[1][1].getOperationStatusCode());
+      assertTrue(exists(regions.get(1), "n"));
+      assertFalse(exists(regions.get(1), "o"));
+
+      // the read only region fails as a whole
+      assertTrue(errors[2] instanceof DoNotRetryIOException);
+      assertNull(statuses[2]);
+      assertFalse(exists(regions.get(2), "x"));
+    } finally {
+      close(regions, wal);
+    }
+  }
+
+  @Test
+  public void testSyncFailure() throws Exception {
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    RegionInfo walInfo = RegionInfoBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .build();
+    WAL wal = spy(HBaseTestingUtility.createWal(UTIL.getConfiguration(), rootDir, walInfo));
+    AtomicBoolean failSync = new AtomicBoolean(true);
+    doAnswer(invocation -> {
+      if (failSync.get()) {
+        throw new IOException("Injected sync failure");
+      }
+      return invocation.callRealMethod();
+    }).when(wal).sync();
+    List<HRegion> allRegions = createRegions(wal, rootDir);
+    List<HRegion> regions = allRegions.subList(0, 2);
+    try {
+      List<Mutation[]> batches = new ArrayList<>();
+      batches.add(new Mutation[] { put("a") });
+      batches.add(new Mutation[] { put("n") });
+      IOException[] errors = new IOException[regions.size()];
+      OperationStatus[][] statuses = HRegion.batchMutate(regions, batches, errors);
+      for (int i = 0; i < regions.size(); i++) {
+        assertEquals("Injected sync failure", errors[i].getMessage());
+        assertNull(statuses[i]);
+      }
+      assertFalse(exists(regions.get(0), "a"));
+      assertFalse(exists(regions.get(1), "n"));
+
+      // the regions take writes again once the WAL syncs
+      failSync.set(false);
+      errors = new IOException[regions.size()];
+      statuses = HRegion.batchMutate(regions, batches, errors);
+      assertNull(errors[0]);
+      assertNull(errors[1]);
+      assertEquals(OperationStatusCode.SUCCESS, statuses[1][0].getOperationStatusCode());
+      assertTrue(exists(regions.get(0), "a"));
+      assertTrue(exists(regions.get(1), "n"));
+    } finally {
+      failSync.set(false);
+      close(allRegions, wal);
+    }
+  }
+
+  @Test
+  public void testRuntimeExceptionClosesRegionOperations() throws Exception {
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    RegionInfo walInfo = RegionInfoBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .build();
+    WAL wal = spy(HBaseTestingUtility.createWal(UTIL.getConfiguration(), rootDir, walInfo));
+    AtomicBoolean failSync = new AtomicBoolean(true);
+    doAnswer(invocation -> {
+      if (failSync.get()) {
+        throw new IllegalStateException("Injected sync failure");
+      }
+      return invocation.callRealMethod();
+    }).when(wal).sync();
+    List<HRegion> allRegions = createRegions(wal, rootDir);
+    List<HRegion> regions = allRegions.subList(0, 2);
+    try {
+      List<Mutation[]> batches = new ArrayList<>();
+      batches.add(new Mutation[] { put("a") });
+      batches.add(new Mutation[] { put("n") });
+      try {
+        HRegion.batchMutate(regions, batches, new IOException[regions.size()]);
+        fail("The sync failure should have been thrown");
+      } catch (IllegalStateException e) {
+        assertEquals("Injected sync failure", e.getMessage());
+      }
+      // the region operations of the regions started are closed, so the regions can close
+      for (HRegion region : regions) {
+        assertEquals(0, region.lock.getReadLockCount());
+      }
+    } finally {
+      failSync.set(false);
+      close(allRegions, wal);
+    }
+  }
+}
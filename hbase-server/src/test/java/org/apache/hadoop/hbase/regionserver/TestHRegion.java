@@ -6398,6 +6398,38 @@ public class TestHRegion {
       qual2, 0, qual2.length));
   }
 
+  @Test
+  public void testAtomicMutationsOfSameRowReleaseRowLock() throws Exception {
+    int prevLockTimeout = CONF.getInt("hbase.rowlock.wait.duration", 30000);
+    CONF.setInt("hbase.rowlock.wait.duration", 1000);
+    this.region = initHRegion(tableName, method, CONF, fam1);
+    ExecutorService exec = Executors.newSingleThreadExecutor();
+    try {
+      // two mutations of the row in one atomic batch, then the row locked twice
+      RowMutations rm = new RowMutations(row);
+      rm.add(new Put(row).addColumn(fam1, qual1, value1));
+      rm.add(new Delete(row).addColumns(fam1, qual2));
+      region.mutateRow(rm);
+      region.mutateRowsWithLocks(Arrays.asList(new Put(row).addColumn(fam1, qual2, value2)),
+        Arrays.asList(row, row), HConstants.NO_NONCE, HConstants.NO_NONCE);
+      assertEquals(0, region.getLockedRows().size());
+
+      // another thread gets the lock of the row
+      exec.submit(() -> {
+        region.getRowLock(row).release();
+        return null;
+      }).get(30, TimeUnit.SECONDS);
+      Result result = region.get(new Get(row));
+      assertArrayEquals(value1, result.getValue(fam1, qual1));
+      assertArrayEquals(value2, result.getValue(fam1, qual2));
+    } finally {
+      exec.shutdownNow();
+      HBaseTestingUtility.closeRegionAndWAL(this.region);
+      this.region = null;
+      CONF.setInt("hbase.rowlock.wait.duration", prevLockTimeout);
+    }
+  }
+
   HRegion initHRegion(TableName tableName, String callingMethod,
       byte[]... families) throws IOException {
     return initHRegion(tableName, callingMethod, HBaseConfiguration.create(),
@@ -49,6 +49,9 @@ import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
 import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FuzzyRowFilter;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter.RowRange;
 import org.apache.hadoop.hbase.io.HFileLink;
 import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
@@ -65,6 +68,7 @@ import org.apache.hadoop.hbase.util.BloomFilterFactory;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ChecksumType;
 import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.hbase.util.Pair;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -576,6 +580,96 @@ public class TestHStoreFile extends HBaseTestCase {
     bloomWriteRead(writer, fs);
   }
 
+  private static Scan rowRangesScan(String... startAndStopRows) {
+    List<RowRange> ranges = new ArrayList<>();
+    for (int i = 0; i < startAndStopRows.length; i += 2) {
+      ranges.add(new RowRange(startAndStopRows[i], true, startAndStopRows[i + 1], false));
+    }
+    return new Scan().setFilter(new MultiRowRangeFilter(ranges));
+  }
+
+  private static Scan singleRowScan(String row) {
+    return new Scan().setFilter(
+      new MultiRowRangeFilter(Collections.singletonList(new RowRange(row, true, row, true))));
+  }
+
+  @Test
+  public void testRowRangesFilter() throws Exception {
+    FileSystem fs = FileSystem.getLocal(conf);
+    conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, (float) 0.01);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_ENABLED, true);
+    Path f = new Path(ROOT_DIR, getName());
+    HFileContext meta = new HFileContextBuilder().withBlockSize(BLOCKSIZE_SMALL)
+        .withChecksumType(CKTYPE).withBytesPerCheckSum(CKBYTES).build();
+    StoreFileWriter writer = new StoreFileWriter.Builder(conf, cacheConf, this.fs)
+        .withFilePath(f).withBloomType(BloomType.ROW).withMaxKeyCount(1000)
+        .withFileContext(meta).build();
+    // the even rows from 1000 to 2998
+    long now = System.currentTimeMillis();
+    for (int i = 1000; i < 3000; i += 2) {
+      writer.append(new KeyValue(Bytes.toBytes(String.format(localFormatter, i)),
+          Bytes.toBytes("family"), Bytes.toBytes("col"), now, Bytes.toBytes("value")));
+    }
+    writer.close();
+
+    StoreFileReader reader =
+        new StoreFileReader(fs, f, cacheConf, true, new AtomicInteger(0), true, conf);
+    reader.loadFileInfo();
+    reader.loadBloomfilter();
+    StoreFileScanner scanner = getStoreFileScanner(reader, false, false);
+    HStore store = mock(HStore.class);
+    when(store.getColumnFamilyDescriptor()).thenReturn(ColumnFamilyDescriptorBuilder.of("family"));
+    try {
+      assertTrue(scanner.shouldUseScanner(new Scan(), store, Long.MIN_VALUE));
+      // ranges before, after or around the rows of the file
+      assertFalse(scanner.shouldUseScanner(rowRangesScan("0000000000", "0000000500"), store,
+        Long.MIN_VALUE));
+      assertFalse(scanner.shouldUseScanner(rowRangesScan("0000005000", "0000006000"), store,
+        Long.MIN_VALUE));
+      assertFalse(scanner.shouldUseScanner(
+        rowRangesScan("0000000000", "0000000010", "0000005000", "0000005001"), store,
+        Long.MIN_VALUE));
+      // the stop row is exclusive
+      assertFalse(scanner.shouldUseScanner(rowRangesScan("0000000000", "0000001000"), store,
+        Long.MIN_VALUE));
+      assertTrue(scanner.shouldUseScanner(rowRangesScan("0000000000", "0000001001"), store,
+        Long.MIN_VALUE));
+      assertTrue(scanner.shouldUseScanner(
+        rowRangesScan("0000000000", "0000000010", "0000001500", "0000001502"), store,
+        Long.MIN_VALUE));
+      assertTrue(scanner.shouldUseScanner(rowRangesScan("0000002998", "0000005000"), store,
+        Long.MIN_VALUE));
+
+      // the leading fixed bytes of the fuzzy keys
+      byte[] mask = new byte[] { 0, 0, 0, 0, 0, 0, 0, 1, 1, 1 };
+      assertFalse(scanner.shouldUseScanner(new Scan().setFilter(new FuzzyRowFilter(
+        Collections.singletonList(new Pair<>(Bytes.toBytes("0000003???"), mask)))), store,
+        Long.MIN_VALUE));
+      assertTrue(scanner.shouldUseScanner(new Scan().setFilter(new FuzzyRowFilter(
+        Collections.singletonList(new Pair<>(Bytes.toBytes("0000002???"), mask)))), store,
+        Long.MIN_VALUE));
+
+      // the ranges of single rows are checked against the row bloom
+      int falsePos = 0;
+      for (int i = 1000; i < 3000; i++) {
+        boolean exists = scanner.shouldUseScanner(singleRowScan(String.format(localFormatter, i)),
+          store, Long.MIN_VALUE);
+        if (i % 2 == 0) {
+          assertTrue("False negative for row " + i, exists);
+        } else if (exists) {
+          falsePos++;
+        }
+      }
+      float err = conf.getFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, 0);
+      int maxFalsePos = (int) (2 * 1000 * err);
+      assertTrue("Too many false positives: " + falsePos + " (err=" + err
+          + ", expected no more than " + maxFalsePos + ")", falsePos <= maxFalsePos);
+    } finally {
+      reader.close(true);
+      fs.delete(f, true);
+    }
+  }
+
   @Test
   public void testDeleteFamilyBloomFilter() throws Exception {
     FileSystem fs = FileSystem.getLocal(conf);
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests that a closing region lists its hot blocks and that the region opened again prefetches
+ * them, see {@link HRegion#HOT_BLOCKS_HANDOFF_KEY}.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestHotBlocksHandoff {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestHotBlocksHandoff.class);
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+
+  @After
+  public void tearDown() throws Exception {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  @Test
+  public void testHotBlocksHandoff() throws Exception {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setBoolean(HRegion.HOT_BLOCKS_HANDOFF_KEY, true);
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setBlocksize(1024)
+            .build())
+        .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    region = HBaseTestingUtility.createRegionAndWAL(info,
+      TEST_UTIL.getDataTestDir(name.getMethodName()), conf, htd);
+    BlockCache blockCache = new CacheConfig(conf).getBlockCache();
+
+    for (int i = 0; i < 1000; i++) {
+      Put put = new Put(Bytes.toBytes(String.format("row%04d", i)));
+      put.setDurability(Durability.SKIP_WAL);
+      put.addColumn(FAMILY, QUALIFIER, new byte[100]);
+      region.put(put);
+    }
+    region.flush(true);
+    HStoreFile storeFile = region.getStore(FAMILY).getStorefiles().iterator().next();
+    String hfileName = storeFile.getReader().getHFileReader().getName();
+
+    // Rows read twice make their blocks hot, blocks read once are not
+    for (int i = 0; i < 50; i++) {
+      Get get = new Get(Bytes.toBytes(String.format("row%04d", i)));
+      region.get(get);
+      region.get(get);
+    }
+    for (int i = 500; i < 1000; i += 100) {
+      region.get(new Get(Bytes.toBytes(String.format("row%04d", i))));
+    }
+    long[] hotOffsets =
+        blockCache.getHotBlockOffsets(Collections.singleton(hfileName)).get(hfileName);
+    assertTrue(hotOffsets.length > 0);
+    int dataBlocks = storeFile.getReader().getHFileReader().getTrailer().getDataIndexCount();
+    assertTrue(hotOffsets.length < dataBlocks / 2);
+
+    region.close();
+    Path hotBlocksFile = new Path(region.getRegionFileSystem().getRegionDir(),
+        HRegionFileSystem.REGION_HOT_BLOCKS_FILE);
+    assertTrue(region.getFilesystem().exists(hotBlocksFile));
+
+    // Open again with a cold cache, as on the server the region moves to
+    blockCache.evictBlocksByHfileName(hfileName);
+    assertTrue(blockCache.getHotBlockOffsets(Collections.singleton(hfileName)).isEmpty());
+    region = HRegion.openHRegion(region, null);
+    assertFalse(region.getFilesystem().exists(hotBlocksFile));
+    for (long offset : hotOffsets) {
+      BlockCacheKey key = new BlockCacheKey(hfileName, offset);
+      while (blockCache.getBlock(key, false, false, false) == null) {
+        Thread.sleep(100);
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.regionserver.MemStoreCompactionStrategy.Action;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestLearningMemStoreCompactionStrategy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestLearningMemStoreCompactionStrategy.class);
+
+  private static final Configuration CONF = new Configuration();
+  private static final int CELLS_PER_SEGMENT = 1000;
+
+  private static ImmutableSegment segment(int cells, int uniques) {
+    ImmutableSegment segment = mock(ImmutableSegment.class);
+    when(segment.getCellsCount()).thenReturn(cells);
+    when(segment.getNumUniqueKeys()).thenReturn(uniques);
+    return segment;
+  }
+
+  private static VersionedSegmentsList pipeline(int segments, double uniquesFrac) {
+    List<ImmutableSegment> list = new ArrayList<>();
+    for (int i = 0; i < segments; i++) {
+      list.add(segment(CELLS_PER_SEGMENT, (int) (CELLS_PER_SEGMENT * uniquesFrac)));
+    }
+    return new VersionedSegmentsList(list, 0);
+  }
+
+  private static LearningMemStoreCompactionStrategy strategy(int maxVersions, int gets) {
+    LearningMemStoreCompactionStrategy strategy =
+        new LearningMemStoreCompactionStrategy(CONF, "cf", maxVersions);
+    for (int i = 0; i < gets; i++) {
+      strategy.recordRead(true);
+    }
+    return strategy;
+  }
+
+  @Test
+  public void testEstimateRemoval() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 0);
+    assertEquals(0, strategy.estimateRemoval(1.0), 0.0001);
+    assertEquals(0.9, strategy.estimateRemoval(0.1), 0.0001);
+    // three versions are kept out of the ten of every key
+    strategy = strategy(3, 0);
+    assertEquals(0.7, strategy.estimateRemoval(0.1), 0.0001);
+    assertEquals(0, strategy.estimateRemoval(0.5), 0.0001);
+  }
+
+  @Test
+  public void testFlattenWithoutReads() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 0);
+    assertEquals(Action.FLATTEN_COUNT_UNIQUE_KEYS, strategy.getAction(pipeline(2, 0.1)));
+    assertEquals(Action.FLATTEN_COUNT_UNIQUE_KEYS, strategy.getAction(pipeline(2, 1.0)));
+  }
+
+  @Test
+  public void testMergeOverThreshold() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 0);
+    int segments = MemStoreCompactionStrategy.COMPACTING_MEMSTORE_THRESHOLD_DEFAULT + 1;
+    assertEquals(Action.MERGE_COUNT_UNIQUE_KEYS, strategy.getAction(pipeline(segments, 1.0)));
+  }
+
+  @Test
+  public void testMergeUniqueKeysUnderReads() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 1000);
+    VersionedSegmentsList pipeline = pipeline(2, 1.0);
+    assertEquals(Action.MERGE_COUNT_UNIQUE_KEYS, strategy.getAction(pipeline));
+    assertTrue(strategy.getMergePayoff(2 * CELLS_PER_SEGMENT, 2, 1.0) > 0);
+    assertTrue(strategy.getMergePayoff(2 * CELLS_PER_SEGMENT, 2, 1.0)
+        > strategy.getCompactPayoff(2 * CELLS_PER_SEGMENT, 2, 1.0, 0));
+  }
+
+  @Test
+  public void testCompactDuplicatesUnderReads() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 1000);
+    assertEquals(Action.COMPACT, strategy.getAction(pipeline(2, 0.1)));
+  }
+
+  @Test
+  public void testLearnRemovalAccuracy() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 1000);
+    assertEquals(Action.COMPACT, strategy.getAction(pipeline(2, 0.1)));
+    // 0.9 of the cells were expected to go, only half of that went
+    int left = (int) (2 * CELLS_PER_SEGMENT * (1 - 0.45));
+    strategy.updateStats(segment(left, left));
+    assertEquals(0.9 * (0.7 + 0.3 * 0.5), strategy.estimateRemoval(0.1), 0.001);
+
+    // a merge teaches nothing about the removal
+    double before = strategy.estimateRemoval(0.1);
+    strategy.updateStats(segment(0, 0));
+    assertEquals(before, strategy.estimateRemoval(0.1), 0.0001);
+  }
+
+  @Test
+  public void testDecisions() {
+    LearningMemStoreCompactionStrategy strategy = strategy(1, 0);
+    strategy.recordDecision(Action.COMPACT);
+    strategy.recordDecision(Action.COMPACT);
+    strategy.recordDecision(Action.MERGE_COUNT_UNIQUE_KEYS);
+    Map<String, Long> decisions = strategy.getDecisions();
+    assertEquals(Action.values().length, decisions.size());
+    assertEquals(2L, (long) decisions.get(Action.COMPACT.name()));
+    assertEquals(1L, (long) decisions.get(Action.MERGE_COUNT_UNIQUE_KEYS.name()));
+    assertEquals(0L, (long) decisions.get(Action.FLATTEN.name()));
+  }
+}
@@ -106,6 +106,11 @@ public class TestMetricsRegionServer {
     HELPER.assertGauge("blockCacheCountHitPercent", 98, serverSource);
     HELPER.assertGauge("blockCacheExpressHitPercent", 97, serverSource);
     HELPER.assertCounter("blockCacheFailedInsertionCount", 36, serverSource);
+    HELPER.assertCounter("blockCacheDeferredInsertionCount", 12, serverSource);
+    HELPER.assertGauge("blockCachePartition_serving_size", 1024, serverSource);
+    HELPER.assertCounter("blockCachePartition_serving_hitCount", 30, serverSource);
+    HELPER.assertCounter("blockCachePartition_serving_missCount", 10, serverSource);
+    HELPER.assertGauge("blockCachePartition_serving_hitPercent", 75, serverSource);
     HELPER.assertGauge("l1CacheHitCount", 200, serverSource);
     HELPER.assertGauge("l1CacheMissCount", 100, serverSource);
     HELPER.assertGauge("l1CacheHitRatio", 80, serverSource);
@@ -49,6 +49,7 @@ import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
 import org.apache.hadoop.hbase.testclassification.MediumTests;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -156,6 +157,8 @@ public class TestMultiColumnScanner {
             .setBloomFilterType(bloomType)
             .setMaxVersions(MAX_VERSIONS)
             .setDataBlockEncoding(dataBlockEncoding)
+            .setConfiguration(BloomFilterUtil.PREFIX_LENGTH_KEY, "4")
+            .setConfiguration(BloomFilterUtil.DELIMITER_KEY, "w")
     );
     List<String> rows = sequentialStrings("row", NUM_ROWS);
     List<String> qualifiers = sequentialStrings("qual", NUM_COLUMNS);
@@ -0,0 +1,281 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.FamilyFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Checks a scan split in ranges scanned on the parallel scan pool returns the rows of the
+ * region as a single scanner would.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestParallelRegionScanner {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestParallelRegionScanner.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] EVEN = Bytes.toBytes("even");
+  private static final int ROWS = 2000;
+  private static final int THREADS = 4;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private ThreadPoolExecutor pool;
+  private HRegion region;
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%05d", i));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    pool = Threads.getBoundedCachedThreadPool(THREADS, 60L, TimeUnit.SECONDS,
+      Threads.newDaemonThreadFactory("TestParallelScanner"));
+    RegionServerServices rsServices = mock(RegionServerServices.class);
+    when(rsServices.getServerName()).thenReturn(ServerName.valueOf("foo", 10, 10));
+    when(rsServices.getParallelScanPool()).thenReturn(pool);
+
+    TableDescriptor td = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setBlocksize(1024)
+            .build())
+        .build();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    // a few rows buffered, so the ranges wait for the handler to take them
+    conf.setInt(ParallelRegionScannerImpl.PARALLEL_SCAN_BUFFERED_ROWS_KEY, 8);
+    HBaseTestingUtility.closeRegionAndWAL(
+      HBaseTestingUtility.createRegionAndWAL(ri, rootDir, conf, td));
+    WAL wal = HBaseTestingUtility.createWal(conf, rootDir, ri);
+    region = HRegion.openHRegion(rootDir, ri, td, wal, conf, rsServices, null);
+
+    for (int i = 0; i < ROWS; i++) {
+      Put put = new Put(row(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i));
+      put.addColumn(FAMILY, EVEN, Bytes.toBytes(i % 2 == 0));
+      region.put(put);
+      if (i == ROWS / 2) {
+        region.flush(true);
+      }
+    }
+    // the rows after the flush are in the memstore
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      region.close(true);
+      region.getWAL().close();
+    }
+    pool.shutdownNow();
+  }
+
+  private static List<byte[]> scanRows(RegionScanner scanner) throws IOException {
+    List<byte[]> rows = new ArrayList<>();
+    List<Cell> cells = new ArrayList<>();
+    boolean more;
+    do {
+      more = scanner.next(cells);
+      if (!cells.isEmpty()) {
+        rows.add(CellUtil.cloneRow(cells.get(0)));
+      }
+      cells.clear();
+    } while (more);
+    scanner.close();
+    return rows;
+  }
+
+  private static void assertRows(List<byte[]> rows, int from, int to, int step) {
+    assertEquals((to - from + step - 1) / step, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertTrue(Bytes.equals(row(from + i * step), rows.get(i)));
+    }
+  }
+
+  @Test
+  public void testOrdered() throws IOException {
+    RegionScanner scanner = region.getScanner(new Scan());
+    assertTrue(scanner instanceof ParallelRegionScannerImpl);
+    assertRows(scanRows(scanner), 0, ROWS, 1);
+  }
+
+  @Test
+  public void testStartAndStopRows() throws IOException {
+    RegionScanner scanner =
+        region.getScanner(new Scan().withStartRow(row(100)).withStopRow(row(1900)));
+    assertTrue(scanner instanceof ParallelRegionScannerImpl);
+    assertRows(scanRows(scanner), 100, 1900, 1);
+  }
+
+  @Test
+  public void testUnordered() throws IOException {
+    Scan scan = new Scan();
+    scan.setAttribute(Scan.SCAN_ATTRIBUTES_UNORDERED, Bytes.toBytes(true));
+    RegionScanner scanner = region.getScanner(scan);
+    assertTrue(scanner instanceof ParallelRegionScannerImpl);
+    List<byte[]> scanned = scanRows(scanner);
+    assertEquals(ROWS, scanned.size());
+    Set<byte[]> rows = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    rows.addAll(scanned);
+    assertEquals(ROWS, rows.size());
+    for (int i = 0; i < ROWS; i++) {
+      assertTrue(rows.contains(row(i)));
+    }
+  }
+
+  @Test
+  public void testFilterCopiedForEveryRange() throws IOException {
+    SingleColumnValueFilter filter =
+        new SingleColumnValueFilter(FAMILY, EVEN, CompareOperator.EQUAL, Bytes.toBytes(true));
+    RegionScanner scanner = region.getScanner(new Scan().setFilter(filter));
+    assertTrue(scanner instanceof ParallelRegionScannerImpl);
+    assertRows(scanRows(scanner), 0, ROWS, 2);
+  }
+
+  @Test
+  public void testFilterSpanningRowsNotSplit() throws IOException {
+    RegionScanner scanner = region.getScanner(new Scan().setFilter(new PageFilter(10)));
+    assertFalse(scanner instanceof ParallelRegionScannerImpl);
+    assertEquals(10, scanRows(scanner).size());
+  }
+
+  @Test
+  public void testOnlyKnownRowFiltersSplit() throws IOException {
+    FilterList filters =
+        new FilterList(new FamilyFilter(CompareOperator.EQUAL, new BinaryComparator(FAMILY)),
+            new SingleColumnValueFilter(FAMILY, EVEN, CompareOperator.EQUAL, Bytes.toBytes(true)));
+    RegionScanner scanner = region.getScanner(new Scan().setFilter(filters));
+    assertTrue(scanner instanceof ParallelRegionScannerImpl);
+    assertRows(scanRows(scanner), 0, ROWS, 2);
+
+    // a subclass may keep state from a row to the next
+    scanner = region.getScanner(new Scan().setFilter(new KeyOnlyFilter() {}));
+    assertFalse(scanner instanceof ParallelRegionScannerImpl);
+    assertEquals(ROWS, scanRows(scanner).size());
+    scanner = region.getScanner(new Scan().setFilter(
+      new FilterList(new KeyOnlyFilter(), new WhileMatchFilter(new KeyOnlyFilter()))));
+    assertFalse(scanner instanceof ParallelRegionScannerImpl);
+    assertEquals(ROWS, scanRows(scanner).size());
+  }
+
+  @Test
+  public void testReadPoint() throws IOException {
+    RegionScanner scanner = region.getScanner(new Scan());
+    assertTrue(scanner instanceof ParallelRegionScannerImpl);
+    // written after the scanner was opened, so not seen by any of its ranges
+    region.put(new Put(row(ROWS)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(ROWS)));
+    assertRows(scanRows(scanner), 0, ROWS, 1);
+  }
+
+  @Test
+  public void testCloseBeforeDone() throws IOException {
+    RegionScanner scanner = region.getScanner(new Scan());
+    List<Cell> cells = new ArrayList<>();
+    assertTrue(scanner.next(cells));
+    scanner.close();
+    try {
+      scanner.next(cells);
+      fail("The scanner was closed");
+    } catch (UnknownScannerException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCloseCancelsQueuedRanges() throws Exception {
+    // all the threads of the pool busy, so the ranges stay queued
+    CountDownLatch started = new CountDownLatch(THREADS);
+    CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < THREADS; i++) {
+      pool.execute(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    started.await();
+    try {
+      RegionScanner scanner = region.getScanner(new Scan());
+      assertTrue(scanner instanceof ParallelRegionScannerImpl);
+      assertTrue(pool.getQueue().size() > 1);
+      // returns without waiting for the ranges to run
+      scanner.close();
+      assertTrue(pool.getQueue().isEmpty());
+    } finally {
+      release.countDown();
+    }
+  }
+}
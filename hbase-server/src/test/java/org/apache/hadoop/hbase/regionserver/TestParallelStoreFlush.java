@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.DroppedSnapshotException;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.monitoring.MonitoredTask;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Checks the stores of a region are written on the store flush pool of the regionserver and
+ * committed only when all of them are written.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestParallelStoreFlush {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestParallelStoreFlush.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final String POOL_NAME = "TestStoreFlusher";
+  private static final int FAMILIES = 8;
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int ROWS = 100;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private ThreadPoolExecutor pool;
+  private RegionServerServices rsServices;
+  private HRegion region;
+
+  /**
+   * Records the threads the stores are written on and the statuses they report to, and fails
+   * the stores of the families it is told to.
+   */
+  public static class RecordingStoreFlusher extends DefaultStoreFlusher {
+    static final String FAIL_KEY = "test.flush.fail";
+    static final Set<String> THREADS = ConcurrentHashMap.newKeySet();
+    static final Set<MonitoredTask> STATUSES = ConcurrentHashMap.newKeySet();
+
+    private final boolean fail;
+
+    public RecordingStoreFlusher(Configuration conf, HStore store) {
+      super(conf, store);
+      this.fail = conf.getBoolean(FAIL_KEY, false);
+    }
+
+    @Override
+    public List<Path> flushSnapshot(MemStoreSnapshot snapshot, long cacheFlushId,
+        MonitoredTask status, ThroughputController throughputController,
+        FlushLifeCycleTracker tracker) throws IOException {
+      THREADS.add(Thread.currentThread().getName());
+      STATUSES.add(status);
+      if (fail) {
+        throw new IOException("Simulated store flush failure");
+      }
+      return super.flushSnapshot(snapshot, cacheFlushId, status, throughputController, tracker);
+    }
+  }
+
+  @Before
+  public void setUp() {
+    RecordingStoreFlusher.THREADS.clear();
+    RecordingStoreFlusher.STATUSES.clear();
+    pool = Threads.getBoundedCachedThreadPool(4, 60L, TimeUnit.SECONDS,
+      Threads.newDaemonThreadFactory(POOL_NAME));
+    rsServices = mock(RegionServerServices.class);
+    when(rsServices.getServerName()).thenReturn(ServerName.valueOf("foo", 10, 10));
+    when(rsServices.getStoreFlushPool()).thenReturn(pool);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      region.close(true);
+      region.getWAL().close();
+    }
+    pool.shutdownNow();
+  }
+
+  private static byte[] family(int i) {
+    return Bytes.toBytes("f" + i);
+  }
+
+  private void openRegion(int failingFamily) throws IOException {
+    TableDescriptorBuilder builder =
+        TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()));
+    for (int i = 0; i < FAMILIES; i++) {
+      ColumnFamilyDescriptorBuilder family = ColumnFamilyDescriptorBuilder.newBuilder(family(i));
+      if (i == failingFamily) {
+        family.setConfiguration(RecordingStoreFlusher.FAIL_KEY, "true");
+      }
+      builder.setColumnFamily(family.build());
+    }
+    TableDescriptor td = builder.build();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.set(DefaultStoreEngine.DEFAULT_STORE_FLUSHER_CLASS_KEY,
+      RecordingStoreFlusher.class.getName());
+    HBaseTestingUtility.closeRegionAndWAL(
+      HBaseTestingUtility.createRegionAndWAL(ri, rootDir, conf, td));
+    WAL wal = HBaseTestingUtility.createWal(conf, rootDir, ri);
+    region = HRegion.openHRegion(rootDir, ri, td, wal, conf, rsServices, null);
+
+    for (int r = 0; r < ROWS; r++) {
+      Put put = new Put(Bytes.toBytes(r));
+      for (int i = 0; i < FAMILIES; i++) {
+        put.addColumn(family(i), QUALIFIER, Bytes.toBytes(r));
+      }
+      region.put(put);
+    }
+  }
+
+  @Test
+  public void testStoresFlushedInParallel() throws IOException {
+    openRegion(-1);
+    region.flush(true);
+
+    assertEquals(0, region.getMemStoreSize());
+    for (int i = 0; i < FAMILIES; i++) {
+      assertEquals(1, region.getStore(family(i)).getStorefilesCount());
+    }
+    assertFalse(RecordingStoreFlusher.THREADS.isEmpty());
+    for (String thread : RecordingStoreFlusher.THREADS) {
+      assertTrue(thread, thread.startsWith(POOL_NAME));
+    }
+    // the status of the region flush is not shared by the pool threads
+    assertEquals(FAMILIES, RecordingStoreFlusher.STATUSES.size());
+    for (int r = 0; r < ROWS; r++) {
+      Result result = region.get(new Get(Bytes.toBytes(r)));
+      for (int i = 0; i < FAMILIES; i++) {
+        assertArrayEquals(Bytes.toBytes(r), result.getValue(family(i), QUALIFIER));
+      }
+    }
+  }
+
+  @Test
+  public void testFailedStoreCommitsNoStore() throws IOException {
+    openRegion(FAMILIES / 2);
+    long memStoreSize = region.getMemStoreSize();
+    try {
+      region.flush(true);
+      fail("The store flush failure should drop the snapshot");
+    } catch (DroppedSnapshotException e) {
+      // expected
+    }
+    // the other stores were written, none of them was committed
+    for (int i = 0; i < FAMILIES; i++) {
+      assertEquals(0, region.getStore(family(i)).getStorefilesCount());
+    }
+    assertEquals(memStoreSize, region.getMemStoreSize());
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Checks the rows of repeated scans are served from the cache of the region until a change of
+ * the region makes them stale.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRegionScanCache {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestRegionScanCache.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int ROWS = 100;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private HRegion region;
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%05d", i));
+  }
+
+  private void createRegion(long cacheSize, int ttl) throws IOException {
+    TableDescriptor td = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setTimeToLive(ttl)
+            .build())
+        .build();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.setLong(RegionScanCache.SCAN_CACHE_SIZE_KEY, cacheSize);
+    region = HBaseTestingUtility.createRegionAndWAL(ri, rootDir, conf, td);
+    for (int i = 0; i < ROWS; i++) {
+      region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i)));
+    }
+  }
+
+  private void createRegion() throws IOException {
+    createRegion(1024 * 1024, ColumnFamilyDescriptorBuilder.DEFAULT_TTL);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private static Scan scan(int from, int to) {
+    return new Scan().withStartRow(row(from)).withStopRow(row(to));
+  }
+
+  private static List<byte[]> scanRows(RegionScanner scanner) throws IOException {
+    List<byte[]> rows = new ArrayList<>();
+    List<Cell> cells = new ArrayList<>();
+    boolean more;
+    do {
+      more = scanner.next(cells);
+      if (!cells.isEmpty()) {
+        rows.add(CellUtil.cloneRow(cells.get(0)));
+      }
+      cells.clear();
+    } while (more);
+    scanner.close();
+    return rows;
+  }
+
+  private static void assertRows(List<byte[]> rows, int from, int to) {
+    assertEquals(to - from, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertTrue(Bytes.equals(row(from + i), rows.get(i)));
+    }
+  }
+
+  private boolean isCached(Scan scan) throws IOException {
+    RegionScanner scanner = region.getScanner(scan);
+    scanner.close();
+    return scanner instanceof RegionScanCache.CachedRegionScannerImpl;
+  }
+
+  private boolean isRecorded(Scan scan) throws IOException {
+    RegionScanner scanner = region.getScanner(scan);
+    scanner.close();
+    return scanner instanceof RegionScanCache.RecordingRegionScannerImpl;
+  }
+
+  @Test
+  public void testRepeatedScanHits() throws IOException {
+    createRegion();
+    RegionScanner scanner = region.getScanner(scan(10, 60));
+    assertTrue(scanner instanceof RegionScanCache.RecordingRegionScannerImpl);
+    assertRows(scanRows(scanner), 10, 60);
+    scanner = region.getScanner(scan(10, 60));
+    assertTrue(scanner instanceof RegionScanCache.CachedRegionScannerImpl);
+    assertRows(scanRows(scanner), 10, 60);
+    assertEquals(1, region.getScanCacheHitCount());
+    assertEquals(1, region.getScanCacheMissCount());
+    assertTrue(region.getScanCacheSize() > 0);
+    // another range is another scan
+    assertFalse(isCached(scan(10, 61)));
+  }
+
+  @Test
+  public void testMutationInRangeInvalidates() throws IOException {
+    createRegion();
+    scanRows(region.getScanner(scan(10, 60)));
+    region.put(new Put(row(80)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(-1)));
+    assertTrue(isCached(scan(10, 60)));
+    region.delete(new Delete(row(20)));
+    RegionScanner scanner = region.getScanner(scan(10, 60));
+    assertTrue(scanner instanceof RegionScanCache.RecordingRegionScannerImpl);
+    assertEquals(49, scanRows(scanner).size());
+  }
+
+  @Test
+  public void testStoreFilesChangeInvalidates() throws IOException {
+    createRegion();
+    scanRows(region.getScanner(scan(10, 60)));
+    region.flush(true);
+    assertFalse(isCached(scan(10, 60)));
+  }
+
+  @Test
+  public void testMutationOutOfRangeKeepsRecording() throws IOException {
+    createRegion();
+    RegionScanner scanner = region.getScanner(scan(10, 60));
+    region.put(new Put(row(80)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(-1)));
+    assertRows(scanRows(scanner), 10, 60);
+    assertTrue(isCached(scan(10, 60)));
+  }
+
+  @Test
+  public void testRowsOfScanOpenedBeforeMutationNotCached() throws IOException {
+    createRegion();
+    RegionScanner scanner = region.getScanner(scan(10, 60));
+    region.put(new Put(row(30)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(-1)));
+    scanRows(scanner);
+    assertFalse(isCached(scan(10, 60)));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() {
+    Configuration conf = new Configuration(false);
+    conf.setLong(RegionScanCache.SCAN_CACHE_SIZE_KEY, 100);
+    RegionScanCache cache = new RegionScanCache(conf);
+    RegionScanCache.Key a = new RegionScanCache.Key(Bytes.toBytes("a"), row(0), row(10));
+    RegionScanCache.Key b = new RegionScanCache.Key(Bytes.toBytes("b"), row(10), row(20));
+    RegionScanCache.Key c = new RegionScanCache.Key(Bytes.toBytes("c"), row(20), row(30));
+    List<List<Cell>> rows = new ArrayList<>();
+    cache.put(cache.startRecording(a), rows, 40);
+    cache.put(cache.startRecording(b), rows, 40);
+    assertTrue(cache.get(a) != null);
+    cache.put(cache.startRecording(c), rows, 40);
+    assertEquals(1, cache.getEvictedCount());
+    assertEquals(80, cache.getSize());
+    assertTrue(cache.get(a) != null);
+    assertTrue(cache.get(b) == null);
+  }
+
+  @Test
+  public void testOnlyRecordingsOverMutatedRowsGoStale() {
+    Configuration conf = new Configuration(false);
+    conf.setLong(RegionScanCache.SCAN_CACHE_SIZE_KEY, 1000);
+    RegionScanCache cache = new RegionScanCache(conf);
+    RegionScanCache.Key a = new RegionScanCache.Key(Bytes.toBytes("a"), row(0), row(10));
+    RegionScanCache.Key b = new RegionScanCache.Key(Bytes.toBytes("b"), row(10), row(20));
+    RegionScanCache.Key c = new RegionScanCache.Key(Bytes.toBytes("c"), row(30), row(40));
+    List<List<Cell>> rows = new ArrayList<>();
+    cache.put(cache.startRecording(c), rows, 40);
+    RegionScanCache.Recording recordingA = cache.startRecording(a);
+    RegionScanCache.Recording recordingB = cache.startRecording(b);
+    // a batch of mutations over the range of b and of the cached c
+    cache.invalidate(Arrays.asList(row(35), row(15), row(50)));
+    cache.put(recordingA, rows, 40);
+    cache.put(recordingB, rows, 40);
+    assertTrue(cache.get(a) != null);
+    assertTrue(cache.get(b) == null);
+    assertTrue(cache.get(c) == null);
+    // a recording ended without its rows is forgotten
+    RegionScanCache.Recording recordingC = cache.startRecording(c);
+    cache.endRecording(recordingC);
+    cache.put(recordingC, rows, 40);
+    assertTrue(cache.get(c) == null);
+    // a change of the store files makes all the recordings stale
+    recordingC = cache.startRecording(c);
+    cache.clear();
+    cache.put(recordingC, rows, 40);
+    assertTrue(cache.get(c) == null);
+  }
+
+  @Test
+  public void testNotCacheable() throws IOException {
+    createRegion();
+    assertFalse(isRecorded(scan(10, 60).setRaw(true)));
+    assertFalse(isRecorded(scan(10, 60).setReversed(true)));
+    assertFalse(isRecorded(scan(10, 60).setBatch(1)));
+  }
+
+  @Test
+  public void testSecondaryReplicaNotCached() throws IOException {
+    TableDescriptor td = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).setReplicaId(1).build();
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.setLong(RegionScanCache.SCAN_CACHE_SIZE_KEY, 1024 * 1024);
+    region = HBaseTestingUtility.createRegionAndWAL(ri,
+      UTIL.getDataTestDir(name.getMethodName()), conf, td);
+    assertFalse(isRecorded(scan(10, 60)));
+  }
+
+  @Test
+  public void testExpiringCellsNotCached() throws IOException {
+    createRegion(1024 * 1024, 3600);
+    assertFalse(isRecorded(scan(10, 60)));
+  }
+}
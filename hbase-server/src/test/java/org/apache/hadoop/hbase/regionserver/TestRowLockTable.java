@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestRowLockTable {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestRowLockTable.class);
+
+  @Test
+  public void testSameRowSharesContext() {
+    RowLockTable table = new RowLockTable(4);
+    RowLockTable.RowLockContext c1 = table.acquire(Bytes.toBytes("row"));
+    RowLockTable.RowLockContext c2 = table.acquire(Bytes.toBytes("row"));
+    RowLockTable.RowLockContext c3 = table.acquire(Bytes.toBytes("other"));
+    assertSame(c1, c2);
+    assertNotSame(c1, c3);
+    assertEquals(2, table.size());
+
+    c1.release();
+    assertEquals(2, table.size());
+    c2.release();
+    assertEquals(1, table.size());
+    c3.release();
+    assertEquals(0, table.size());
+    assertTrue(table.values().isEmpty());
+  }
+
+  @Test
+  public void testSubRangeKey() {
+    RowLockTable table = new RowLockTable();
+    byte[] buf = Bytes.toBytes("xxrowxx");
+    RowLockTable.RowLockContext c1 = table.acquire(buf, 2, 3);
+    // the row is copied out of the buffer, which can be reused
+    Bytes.putBytes(buf, 2, Bytes.toBytes("abc"), 0, 3);
+    RowLockTable.RowLockContext c2 = table.acquire(Bytes.toBytes("row"));
+    assertSame(c1, c2);
+    assertTrue(c1.toString(), c1.toString().contains("row=row"));
+    c1.release();
+    c2.release();
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testContextsReused() {
+    RowLockTable table = new RowLockTable(1);
+    RowLockTable.RowLockContext c1 = table.acquire(Bytes.toBytes("row1"));
+    HRegion.RowLockImpl writeLock = c1.newWriteLock();
+    c1.release();
+    assertEquals(1, table.getPooledCount());
+
+    RowLockTable.RowLockContext c2 = table.acquire(Bytes.toBytes("row2"));
+    assertSame(c1, c2);
+    assertSame(writeLock, c2.newWriteLock());
+    assertEquals(0, table.getPooledCount());
+    c2.release();
+  }
+
+  @Test
+  public void testManyRows() {
+    RowLockTable table = new RowLockTable(2);
+    List<RowLockTable.RowLockContext> contexts = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      contexts.add(table.acquire(Bytes.toBytes(i)));
+    }
+    assertEquals(1000, table.size());
+    assertEquals(1000, table.values().size());
+    for (int i = 0; i < 1000; i++) {
+      assertSame(contexts.get(i), table.acquire(Bytes.toBytes(i)));
+    }
+    for (RowLockTable.RowLockContext c : contexts) {
+      c.release();
+      c.release();
+    }
+    assertEquals(0, table.size());
+    // the pool of a stripe is bounded
+    assertTrue(table.getPooledCount() <= 2 * 16);
+  }
+}
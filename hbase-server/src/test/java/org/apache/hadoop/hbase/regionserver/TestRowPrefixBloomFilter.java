@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the ROWPREFIX_FIXED_LENGTH and ROWPREFIX_DELIMITED Bloom filters with gets and with
+ * scans over a single row prefix.
+ */
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestRowPrefixBloomFilter {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestRowPrefixBloomFilter.class);
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("family");
+  private static final byte[] QUALIFIER = Bytes.toBytes("col");
+  private static final int PREFIX_COUNT = 200;
+  private static final int ROWS_PER_PREFIX = 10;
+
+  private Configuration conf;
+  private FileSystem fs;
+  private CacheConfig cacheConf;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, 0.01f);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_ENABLED, true);
+    conf.setInt(BloomFilterUtil.PREFIX_LENGTH_KEY, 5);
+    conf.set(BloomFilterUtil.DELIMITER_KEY, "#");
+    fs = FileSystem.getLocal(conf);
+    cacheConf = new CacheConfig(conf);
+  }
+
+  private static String prefix(int i) {
+    return String.format("%04d#", i);
+  }
+
+  private static byte[] row(int i, int j) {
+    return Bytes.toBytes(prefix(i) + String.format("%04d", j));
+  }
+
+  /**
+   * Writes a file holding the rows of the even prefixes only
+   */
+  private StoreFileReader writeStoreFile(BloomType bloomType, String name) throws IOException {
+    Path path = new Path(TEST_UTIL.getDataTestDir(), name);
+    HFileContext meta = new HFileContextBuilder().withBlockSize(8192).build();
+    StoreFileWriter writer = new StoreFileWriter.Builder(conf, cacheConf, fs).withFilePath(path)
+        .withBloomType(bloomType).withMaxKeyCount(PREFIX_COUNT * ROWS_PER_PREFIX)
+        .withFileContext(meta).build();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < PREFIX_COUNT; i += 2) {
+      for (int j = 0; j < ROWS_PER_PREFIX; j++) {
+        writer.append(new KeyValue(row(i, j), FAMILY, QUALIFIER, now, Bytes.toBytes("value")));
+      }
+    }
+    writer.close();
+    StoreFileReader reader =
+        new StoreFileReader(fs, path, cacheConf, true, new AtomicInteger(0), true, conf);
+    reader.loadFileInfo();
+    reader.loadBloomfilter();
+    return reader;
+  }
+
+  private void testRowPrefixBloomFilter(BloomType bloomType) throws IOException {
+    StoreFileReader reader = writeStoreFile(bloomType, bloomType.name());
+    try {
+      assertEquals(bloomType, reader.getBloomFilterType());
+      // Each prefix is one Bloom key
+      assertEquals(PREFIX_COUNT / 2, reader.getGeneralBloomFilter().getKeyCount());
+      int falsePos = 0;
+      for (int i = 0; i < PREFIX_COUNT; i++) {
+        // A get of a missing row under a present prefix still passes
+        boolean getPasses = reader.passesBloomFilter(new Scan(new Get(row(i, 99))), null);
+        Scan scan = new Scan().setRowPrefixFilter(Bytes.toBytes(prefix(i)));
+        boolean scanPasses = reader.passesBloomFilter(scan, null);
+        Scan reversed = new Scan().withStartRow(row(i, 9999)).withStopRow(row(i, 0))
+            .setReversed(true);
+        boolean reversedPasses = reader.passesBloomFilter(reversed, null);
+        if (i % 2 == 0) {
+          assertTrue(getPasses);
+          assertTrue(scanPasses);
+          assertTrue(reversedPasses);
+        } else {
+          assertEquals(getPasses, scanPasses);
+          assertEquals(getPasses, reversedPasses);
+          if (getPasses) {
+            falsePos++;
+          }
+        }
+      }
+      assertTrue("Too many false positives: " + falsePos, falsePos <= PREFIX_COUNT / 20);
+
+      // Scans over more than one prefix, or starting inside a prefix, can not use the Bloom
+      assertTrue(reader.passesBloomFilter(
+        new Scan().withStartRow(row(1, 0)).withStopRow(row(3, 0)), null));
+      assertTrue(reader.passesBloomFilter(new Scan().withStartRow(row(1, 0)), null));
+      assertTrue(reader.passesBloomFilter(
+        new Scan().withStartRow(Bytes.toBytes("000")).withStopRow(Bytes.toBytes("0002")), null));
+    } finally {
+      reader.close(true);
+    }
+  }
+
+  @Test
+  public void testRowPrefixFixedLength() throws IOException {
+    testRowPrefixBloomFilter(BloomType.ROWPREFIX_FIXED_LENGTH);
+  }
+
+  @Test
+  public void testRowPrefixDelimited() throws IOException {
+    testRowPrefixBloomFilter(BloomType.ROWPREFIX_DELIMITED);
+  }
+
+  @Test
+  public void testRowPrefix() {
+    byte[] delimiter = Bytes.toBytes("#");
+    assertArrayEquals(Bytes.toBytes("ab#"), BloomFilterUtil.getRowPrefix(Bytes.toBytes("ab#c#d"),
+      BloomType.ROWPREFIX_DELIMITED, delimiter));
+    byte[] noDelimiter = Bytes.toBytes("abc");
+    assertArrayEquals(noDelimiter,
+      BloomFilterUtil.getRowPrefix(noDelimiter, BloomType.ROWPREFIX_DELIMITED, delimiter));
+    assertFalse(BloomFilterUtil.isCompleteRowPrefix(noDelimiter, BloomType.ROWPREFIX_DELIMITED,
+      delimiter));
+    byte[] length = Bytes.toBytes(2);
+    assertArrayEquals(Bytes.toBytes("ab"), BloomFilterUtil.getRowPrefix(Bytes.toBytes("abc"),
+      BloomType.ROWPREFIX_FIXED_LENGTH, length));
+    byte[] shortRow = Bytes.toBytes("a");
+    assertArrayEquals(shortRow,
+      BloomFilterUtil.getRowPrefix(shortRow, BloomType.ROWPREFIX_FIXED_LENGTH, length));
+    assertFalse(BloomFilterUtil.isCompleteRowPrefix(shortRow, BloomType.ROWPREFIX_FIXED_LENGTH,
+      length));
+  }
+
+  @Test
+  public void testMissingParam() throws IOException {
+    conf.unset(BloomFilterUtil.PREFIX_LENGTH_KEY);
+    try {
+      writeStoreFile(BloomType.ROWPREFIX_FIXED_LENGTH, "testMissingParam");
+      fail("A fixed length row prefix Bloom filter needs a prefix length");
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+}
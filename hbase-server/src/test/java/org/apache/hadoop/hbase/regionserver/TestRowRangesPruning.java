@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.filter.FuzzyRowFilter;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter.RowRange;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests that the store files holding none of the row ranges of the filter of a scan are left out
+ * of it, and that the scans skipping to the hints of their filter in block return the same rows.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRowRangesPruning {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestRowRangesPruning.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int ROWS = 100;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private HRegion region;
+
+  private static String row(char prefix, int i) {
+    return String.format("%c%03d", prefix, i);
+  }
+
+  private void put(String row, String value) throws IOException {
+    region.put(new Put(Bytes.toBytes(row)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(value)));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    // small blocks, so the hints fall in the current block as well as in later ones
+    TableDescriptor td = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY)
+            .setBloomFilterType(BloomType.ROW).setBlocksize(256).build())
+        .build();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    region = HBaseTestingUtility.createRegionAndWAL(ri, rootDir, UTIL.getConfiguration(), td);
+    // a file of the rows of every prefix, then newer values of some rows in a file of their
+    // own, and the last rows in the memstore
+    for (char prefix : new char[] { 'a', 'b', 'c' }) {
+      for (int i = 0; i < ROWS; i++) {
+        put(row(prefix, i), "v1");
+      }
+      region.flush(true);
+    }
+    put(row('a', 15), "v2");
+    put(row('a', 16), "v2");
+    region.flush(true);
+    for (int i = 0; i < ROWS / 2; i++) {
+      put(row('d', i), "v1");
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private List<String> scan(Scan scan) throws IOException {
+    List<String> rows = new ArrayList<>();
+    try (RegionScanner scanner = region.getScanner(scan)) {
+      List<Cell> cells = new ArrayList<>();
+      boolean more;
+      do {
+        more = scanner.next(cells);
+        for (Cell cell : cells) {
+          rows.add(Bytes.toString(CellUtil.cloneRow(cell)) + "="
+              + Bytes.toString(CellUtil.cloneValue(cell)));
+        }
+        cells.clear();
+      } while (more);
+    }
+    return rows;
+  }
+
+  /**
+   * @return the number of store files the store scanner of the scan reads
+   */
+  private int countFileScanners(Scan scan) throws IOException {
+    HStore store = region.getStore(FAMILY);
+    StoreScanner scanner = (StoreScanner) store.getScanner(scan, null, Long.MAX_VALUE);
+    try {
+      int files = 0;
+      for (KeyValueScanner kvs : scanner.getAllScannersForTesting()) {
+        if (kvs.isFileScanner()) {
+          files++;
+        }
+      }
+      return files;
+    } finally {
+      scanner.close();
+    }
+  }
+
+  @Test
+  public void testMultiRowRangeFilter() throws IOException {
+    Scan scan = new Scan().setFilter(new MultiRowRangeFilter(Arrays.asList(
+      new RowRange(row('a', 14), true, row('a', 17), false),
+      new RowRange(row('c', 98), true, row('d', 1), true))));
+    assertEquals(Arrays.asList("a014=v1", "a015=v2", "a016=v2", "c098=v1", "c099=v1",
+      "d000=v1", "d001=v1"), scan(scan));
+    assertEquals(4, countFileScanners(new Scan()));
+    // the file of the b rows is left out
+    assertEquals(3, countFileScanners(scan));
+    // only the memstore holds d rows
+    assertEquals(0, countFileScanners(new Scan().setFilter(new MultiRowRangeFilter(
+      Collections.singletonList(new RowRange(row('d', 0), true, row('d', 10), false))))));
+  }
+
+  @Test
+  public void testSingleRowRanges() throws IOException {
+    Scan scan = new Scan().setFilter(new MultiRowRangeFilter(Arrays.asList(
+      new RowRange(row('b', 5), true, row('b', 5), true),
+      new RowRange(row('b', 50), true, row('b', 50), true))));
+    assertEquals(Arrays.asList("b005=v1", "b050=v1"), scan(scan));
+    assertEquals(1, countFileScanners(scan));
+  }
+
+  @Test
+  public void testFuzzyRowFilter() throws IOException {
+    byte[] mask = new byte[] { 0, 1, 0, 1 };
+    FuzzyRowFilter filter = new FuzzyRowFilter(Arrays.asList(
+      new Pair<>(Bytes.toBytes("a?1?"), mask.clone()),
+      new Pair<>(Bytes.toBytes("d?3?"), mask.clone())));
+    List<String> expected = new ArrayList<>();
+    for (int i = 10; i < 20; i++) {
+      expected.add(row('a', i) + (i == 15 || i == 16 ? "=v2" : "=v1"));
+    }
+    for (int i = 30; i < 40; i++) {
+      expected.add(row('d', i) + "=v1");
+    }
+    assertEquals(expected, scan(new Scan().setFilter(filter)));
+    // the files of the a rows only
+    assertEquals(2, countFileScanners(new Scan().setFilter(filter)));
+
+    // the reversed scan reads the same rows backwards
+    filter = new FuzzyRowFilter(Arrays.asList(
+      new Pair<>(Bytes.toBytes("a?1?"), mask.clone()),
+      new Pair<>(Bytes.toBytes("d?3?"), mask.clone())));
+    Collections.reverse(expected);
+    assertEquals(expected, scan(new Scan().setReversed(true).setFilter(filter)));
+  }
+}
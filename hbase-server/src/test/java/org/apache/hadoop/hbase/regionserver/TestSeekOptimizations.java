@@ -45,6 +45,7 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.testclassification.MediumTests;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.After;
 import org.junit.Before;
@@ -154,6 +155,8 @@ public class TestSeekOptimizations {
             .setCompressionType(comprAlgo)
             .setBloomFilterType(bloomType)
             .setMaxVersions(3)
+            .setConfiguration(BloomFilterUtil.PREFIX_LENGTH_KEY, "10")
+            .setConfiguration(BloomFilterUtil.DELIMITER_KEY, "#")
     );
 
     // Delete the given timestamp and everything before.
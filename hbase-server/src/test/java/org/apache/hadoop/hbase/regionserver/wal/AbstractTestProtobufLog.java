@@ -24,9 +24,19 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
 
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -54,6 +64,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALHeader;
+
 /**
  * WAL tests that can be reused across providers.
  */
@@ -200,6 +213,66 @@ public abstract class AbstractTestProtobufLog<W extends Closeable> {
     }
   }
 
+  /**
+   * The writers serialize the keys through a reused buffer rather than with writeDelimitedTo. The
+   * bytes must be the same, with and without the optional fields, and for keys larger than the
+   * buffer kept.
+   */
+  @Test
+  public void testKeysWrittenAsWriteDelimitedTo() throws IOException {
+    TableName tableName = TableName.valueOf("tablename");
+    byte[] region = Bytes.toBytes("region");
+    long now = System.currentTimeMillis();
+    NavigableMap<byte[], Integer> scopes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    scopes.put(Bytes.toBytes("family"), HConstants.REPLICATION_SCOPE_GLOBAL);
+    NavigableMap<byte[], Integer> manyScopes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 100; i++) {
+      // a key larger than the buffers the writers keep
+      manyScopes.put(Bytes.toBytes(String.format("%01000d", i)),
+        HConstants.REPLICATION_SCOPE_LOCAL);
+    }
+    List<UUID> clusterIds = Arrays.asList(HConstants.DEFAULT_CLUSTER_ID, UUID.randomUUID());
+    List<WALKeyImpl> keys = new ArrayList<>();
+    keys.add(new WALKeyImpl(region, tableName, 1, now, Collections.emptyList(), HConstants.NO_NONCE,
+        HConstants.NO_NONCE, null, null));
+    keys.add(new WALKeyImpl(region, tableName, 2, now, clusterIds, HConstants.NO_NONCE,
+        HConstants.NO_NONCE, null, null));
+    keys.add(new WALKeyImpl(region, tableName, 3, now, Collections.emptyList(), 4, 5, null,
+        scopes));
+    keys.add(new WALKeyImpl(region, tableName, 6, now, clusterIds, 7, 8, null, manyScopes));
+    keys.add(new WALKeyImpl(region, tableName, 9, now, clusterIds, 10, 11, null, scopes));
+
+    Path path = new Path(dir, "tempwal");
+    fs.mkdirs(dir);
+    W writer = createWriter(path);
+    try {
+      for (WALKeyImpl key : keys) {
+        append(writer, new WAL.Entry(key, new WALEdit()));
+      }
+      sync(writer);
+    } finally {
+      writer.close();
+    }
+
+    byte[] file = new byte[(int) fs.getFileStatus(path).getLen()];
+    try (FSDataInputStream in = fs.open(path)) {
+      in.readFully(file);
+    }
+    ByteArrayInputStream in = new ByteArrayInputStream(file);
+    in.skip(ProtobufLogReader.PB_WAL_MAGIC.length);
+    assertNotNull(WALHeader.parseDelimitedFrom(in));
+    for (WALKeyImpl key : keys) {
+      WALProtos.WALKey expected = key.getBuilder(null).setFollowingKvCount(0).build();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      expected.writeDelimitedTo(out);
+      byte[] written = new byte[out.size()];
+      assertEquals(written.length, in.read(written, 0, written.length));
+      assertArrayEquals(out.toByteArray(), written);
+      assertEquals(expected,
+        WALProtos.WALKey.parseDelimitedFrom(new ByteArrayInputStream(written)));
+    }
+  }
+
   protected abstract W createWriter(Path path) throws IOException;
 
   protected abstract void append(W writer, WAL.Entry entry) throws IOException;
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestGroupCommitController {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestGroupCommitController.class);
+
+  private static final long SLO_NS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static long append(GroupCommitController controller, int count, long syncNs,
+      long nowNs) {
+    for (int i = 0; i < count; i++) {
+      controller.appended();
+    }
+    return controller.synced(syncNs, nowNs);
+  }
+
+  @Test
+  public void testLingerUnderLoad() {
+    GroupCommitController controller = new GroupCommitController(true, SLO_NS, 32, 0);
+    // 100 appends in 10ms, one every 100us, so 32 appends take 3.2ms which fits in the SLO
+    assertEquals(100, append(controller, 100, TimeUnit.MILLISECONDS.toNanos(2),
+      TimeUnit.MILLISECONDS.toNanos(10)));
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(3200), controller.getLingerNanos());
+  }
+
+  @Test
+  public void testLingerBoundedBySlo() {
+    GroupCommitController controller = new GroupCommitController(true, SLO_NS, 1000, 0);
+    append(controller, 100, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(10));
+    // 1000 appends would take 100ms, only 8ms are left once the sync is paid
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(8), controller.getLingerNanos());
+  }
+
+  @Test
+  public void testNoLingerWhenIdle() {
+    GroupCommitController controller = new GroupCommitController(true, SLO_NS, 32, 0);
+    // one append every 5ms, waiting 8ms would not save a sync
+    append(controller, 2, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(0, controller.getLingerNanos());
+  }
+
+  @Test
+  public void testNoLingerWhenSyncExceedsSlo() {
+    GroupCommitController controller = new GroupCommitController(true, SLO_NS, 32, 0);
+    append(controller, 100, TimeUnit.MILLISECONDS.toNanos(12), TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(0, controller.getLingerNanos());
+  }
+
+  @Test
+  public void testDisabled() {
+    GroupCommitController controller = new GroupCommitController(false, SLO_NS, 32, 0);
+    append(controller, 100, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(0, controller.getLingerNanos());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(3200), controller.getChosenLingerNanos());
+  }
+}
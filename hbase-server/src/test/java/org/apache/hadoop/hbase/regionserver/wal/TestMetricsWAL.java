@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.regionserver.wal;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -57,6 +58,16 @@ public class TestMetricsWAL {
     MetricsWAL metricsWAL = new MetricsWAL(source);
     metricsWAL.postSync(nanos, 1);
     verify(source, times(1)).incrementSyncTime(145);
+    verify(source, times(1)).incrementSyncBatchSize(1);
+  }
+
+  @Test
+  public void testPostGroupCommit() throws Exception {
+    MetricsWALSource source = mock(MetricsWALSourceImpl.class);
+    MetricsWAL metricsWAL = new MetricsWAL(source);
+    metricsWAL.postGroupCommit(24, TimeUnit.MILLISECONDS.toNanos(3));
+    verify(source, times(1)).incrementSyncAppendBatchSize(24);
+    verify(source, times(1)).setSyncLingerTime(3000);
   }
 
   @Test
@@ -81,4 +92,16 @@ public class TestMetricsWAL {
     verify(source, times(1)).incrementWrittenBytes(200);
   }
 
+  @Test
+  public void testAppendBuffers() throws Exception {
+    MetricsWALSource source = mock(MetricsWALSourceImpl.class);
+    MetricsWAL metricsWAL = new MetricsWAL(source);
+    metricsWAL.postAppendBuffers(512, 0);
+    metricsWAL.postAppendBuffers(0, 100);
+    metricsWAL.postAppendBuffers(0, 0);
+    verify(source, times(1)).incrementAppendHeapBufferSize(512);
+    verify(source, times(1)).incrementAppendDirectBufferSize(100);
+    verify(source, times(1)).incrementAppendHeapBufferSize(anyLong());
+  }
+
 }
@@ -17,7 +17,10 @@
  */
 package org.apache.hadoop.hbase.regionserver.wal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -25,9 +28,11 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.ArrayBackedTag;
 import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
@@ -35,6 +40,7 @@ import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.Tag;
 import org.apache.hadoop.hbase.codec.Codec.Decoder;
 import org.apache.hadoop.hbase.codec.Codec.Encoder;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.util.LRUDictionary;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
@@ -65,6 +71,60 @@ public class TestWALCellCodecWithCompression {
     doTest(true, true);
   }
 
+  @Test
+  public void testEncodeDecodeKVsWithValueCompression() throws Exception {
+    doValueCompressionTest(false);
+  }
+
+  @Test
+  public void testEncodeDecodeOffKVsWithValueCompression() throws Exception {
+    doValueCompressionTest(true);
+  }
+
+  private void doValueCompressionTest(boolean offheapKV) throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true);
+    int minSize = 64;
+    // Small values, compressible values and values that do not shrink
+    byte[][] values = new byte[4][];
+    values[0] = Bytes.toBytes("myValue");
+    values[1] = new byte[4096];
+    values[2] = new byte[0];
+    values[3] = new byte[1024];
+    new Random(42).nextBytes(values[3]);
+    List<KeyValue> kvs = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      kvs.add(createKV(i % 3, values[i]));
+    }
+    kvs.add(createKV(1, values[1]));
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+    CompressionContext writeContext = new CompressionContext(LRUDictionary.class, false, true,
+        Compression.Algorithm.GZ, minSize);
+    Encoder encoder = new WALCellCodec(conf, writeContext).getEncoder(bos);
+    int rawSize = 0;
+    for (KeyValue kv : kvs) {
+      encoder.write(offheapKV ? toOffheapKV(kv) : kv);
+      rawSize += kv.getValueLength();
+    }
+    writeContext.close();
+    assertTrue(bos.size() < rawSize);
+
+    CompressionContext readContext = new CompressionContext(LRUDictionary.class, false, true,
+        Compression.Algorithm.GZ, 0);
+    Decoder decoder = new WALCellCodec(conf, readContext).getDecoder(
+      new ByteArrayInputStream(bos.toByteArray()));
+    for (KeyValue expected : kvs) {
+      assertTrue(decoder.advance());
+      KeyValue kv = (KeyValue) decoder.current();
+      assertTrue(CellUtil.equals(expected, kv));
+      assertEquals(expected.getTimestamp(), kv.getTimestamp());
+      assertArrayEquals(CellUtil.cloneValue(expected), CellUtil.cloneValue(kv));
+      assertEquals(PrivateCellUtil.getTags(expected).size(), PrivateCellUtil.getTags(kv).size());
+    }
+    assertFalse(decoder.advance());
+  }
+
   private void doTest(boolean compressTags, boolean offheapKV) throws Exception {
     Configuration conf = new Configuration(false);
     conf.setBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, compressTags);
@@ -102,10 +162,13 @@ public class TestWALCellCodecWithCompression {
   }
 
   private KeyValue createKV(int noOfTags) {
+    return createKV(noOfTags, Bytes.toBytes("myValue"));
+  }
+
+  private KeyValue createKV(int noOfTags, byte[] value) {
     byte[] row = Bytes.toBytes("myRow");
     byte[] cf = Bytes.toBytes("myCF");
     byte[] q = Bytes.toBytes("myQualifier");
-    byte[] value = Bytes.toBytes("myValue");
     List<Tag> tags = new ArrayList<>(noOfTags);
     for (int i = 1; i <= noOfTags; i++) {
       tags.add(new ArrayBackedTag((byte) i, Bytes.toBytes("tagValue" + i)));
@@ -122,7 +185,10 @@ public class TestWALCellCodecWithCompression {
     for (int i = 1; i <= noOfTags; i++) {
       tags.add(new ArrayBackedTag((byte) i, Bytes.toBytes("tagValue" + i)));
     }
-    KeyValue kv = new KeyValue(row, cf, q, HConstants.LATEST_TIMESTAMP, value, tags);
+    return toOffheapKV(new KeyValue(row, cf, q, HConstants.LATEST_TIMESTAMP, value, tags));
+  }
+
+  private ByteBufferKeyValue toOffheapKV(KeyValue kv) {
     ByteBuffer dbb = ByteBuffer.allocateDirect(kv.getBuffer().length);
     dbb.put(kv.getBuffer());
     return new ByteBufferKeyValue(dbb, 0, kv.getBuffer().length);
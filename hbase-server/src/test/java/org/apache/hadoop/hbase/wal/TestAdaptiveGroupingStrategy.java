@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestAdaptiveGroupingStrategy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestAdaptiveGroupingStrategy.class);
+
+  private static final TableName TABLE = TableName.valueOf("test");
+
+  private AdaptiveGroupingStrategy strategy;
+
+  @Before
+  public void setUp() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(BoundedGroupingStrategy.NUM_REGION_GROUPS, 2);
+    strategy = new AdaptiveGroupingStrategy();
+    strategy.init(conf, "test");
+  }
+
+  private String group(String region) {
+    return strategy.group(Bytes.toBytes(region), null);
+  }
+
+  private void append(String region, long bytes) {
+    strategy.postAppend(bytes, 0, new WALKeyImpl(Bytes.toBytes(region), TABLE, 0), null);
+  }
+
+  @Test
+  public void testNewRegionsSpreadOverGroups() {
+    Set<String> groups = new HashSet<>();
+    groups.add(group("r1"));
+    groups.add(group("r2"));
+    assertEquals(2, groups.size());
+    // A region keeps its group
+    assertEquals(group("r1"), group("r1"));
+  }
+
+  @Test
+  public void testHotRegionsPlannedOnDifferentGroups() {
+    // Round robin puts the two hot regions together
+    String first = group("hot1");
+    group("cold1");
+    String second = group("hot2");
+    group("cold2");
+    assertEquals(first, second);
+
+    for (int i = 0; i < 100; i++) {
+      append("hot1", 10000);
+      append("hot2", 10000);
+      append("cold1", 10);
+      append("cold2", 10);
+    }
+    strategy.rebalance(EnvironmentEdgeManager.currentTime() + 10000);
+    assertTrue(strategy.getAppendRate("hot1") > strategy.getAppendRate("cold1"));
+    assertNotEquals(group("hot1"), group("hot2"));
+
+    // A new region joins the group with the lower append rate
+    for (int i = 0; i < 100; i++) {
+      append("hot1", 20000);
+      append("hot2", 10000);
+    }
+    strategy.rebalance(EnvironmentEdgeManager.currentTime() + 20000);
+    assertEquals(group("hot2"), group("new"));
+  }
+
+  @Test
+  public void testIdleRegionsForgotten() {
+    group("r1");
+    append("r1", 100000);
+    long now = EnvironmentEdgeManager.currentTime();
+    strategy.rebalance(now + 1000);
+    assertTrue(strategy.getAppendRate("r1") > 0);
+    for (int i = 1; i <= 30; i++) {
+      strategy.rebalance(now + 1000 + i * 1000);
+    }
+    assertEquals(0, strategy.getAppendRate("r1"), 0);
+  }
+
+  @Test
+  public void testClosedRegionsDroppedFromPlan() {
+    for (int i = 0; i < 100; i++) {
+      group("closed" + i);
+    }
+    group("r1");
+    append("r1", 100000);
+    assertEquals(101, strategy.getNumPlannedRegions());
+    String planned = group("r1");
+    strategy.rebalance(EnvironmentEdgeManager.currentTime() + 1000);
+    // Only the region still appending is kept, and it keeps its group
+    assertEquals(1, strategy.getNumPlannedRegions());
+    assertEquals(planned, group("r1"));
+  }
+}
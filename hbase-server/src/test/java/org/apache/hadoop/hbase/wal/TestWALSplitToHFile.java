@@ -0,0 +1,268 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.wal.FSHLog;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSTableDescriptors;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.hbase.util.HFileArchiveUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Splits a WAL to HFiles and checks the region loads them when it is opened.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestWALSplitToHFile {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+      HBaseClassTestRule.forClass(TestWALSplitToHFile.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final byte[][] FAMILIES = { Bytes.toBytes("a"), Bytes.toBytes("b") };
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int ROWS = 100;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path rootDir;
+  private String logName;
+  private Path logDir;
+  private Path oldLogDir;
+  private WALFactory wals;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    UTIL.startMiniDFSCluster(1);
+    Path rootDir = UTIL.getDFSCluster().getFileSystem().makeQualified(new Path("/hbase"));
+    FSUtils.setRootDir(UTIL.getConfiguration(), rootDir);
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    UTIL.shutdownMiniDFSCluster();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    conf = HBaseConfiguration.create(UTIL.getConfiguration());
+    conf.setBoolean(WALSplitter.WAL_SPLIT_TO_HFILE, true);
+    fs = UTIL.getDFSCluster().getFileSystem();
+    rootDir = FSUtils.getRootDir(conf);
+    oldLogDir = new Path(rootDir, HConstants.HREGION_OLDLOGDIR_NAME);
+    logName = AbstractFSWALProvider.getWALDirectoryName(
+      ServerName.valueOf(name.getMethodName(), 16010, System.currentTimeMillis()).toString());
+    logDir = new Path(rootDir, logName);
+    wals = new WALFactory(conf, null, name.getMethodName());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    wals.close();
+    fs.delete(rootDir, true);
+  }
+
+  private TableDescriptor createTable() throws Exception {
+    TableDescriptorBuilder builder =
+        TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()));
+    for (byte[] family : FAMILIES) {
+      builder.setColumnFamily(ColumnFamilyDescriptorBuilder.of(family));
+    }
+    TableDescriptor td = builder.build();
+    new FSTableDescriptors(conf, fs, rootDir).createTableDescriptor(td);
+    return td;
+  }
+
+  /**
+   * Writes the rows into the WAL only, then crashes the region.
+   */
+  private void writeAndCrash(TableDescriptor td, RegionInfo ri) throws Exception {
+    FSHLog wal = new FSHLog(fs, rootDir, logName, conf);
+    HRegion region = HRegion.createHRegion(ri, rootDir, conf, td, wal, true);
+    writeAndCrash(region, wal);
+  }
+
+  private static void writeAndCrash(HRegion region, FSHLog wal) throws IOException {
+    for (int i = 0; i < ROWS; i++) {
+      Put put = new Put(Bytes.toBytes(i));
+      for (byte[] family : FAMILIES) {
+        put.addColumn(family, QUALIFIER, Bytes.toBytes(i));
+      }
+      region.put(put);
+    }
+    // Overwrite some rows so the replayed versions have to be told apart
+    for (int i = 0; i < ROWS; i += 10) {
+      region.put(new Put(Bytes.toBytes(i)).addColumn(FAMILIES[0], QUALIFIER, Bytes.toBytes(-i)));
+    }
+    region.close(true);
+    wal.shutdown();
+  }
+
+  private Path getRegionDir(TableDescriptor td, RegionInfo ri) {
+    return HRegion.getRegionDir(FSUtils.getTableDir(rootDir, td.getTableName()),
+      ri.getEncodedName());
+  }
+
+  private void verifyRegion(TableDescriptor td, RegionInfo ri) throws Exception {
+    Path regionDir = getRegionDir(td, ri);
+    for (byte[] family : FAMILIES) {
+      FileStatus[] files = WALSplitter.getRecoveredHFiles(fs, regionDir, Bytes.toString(family));
+      assertNotNull(files);
+    }
+
+    FSHLog wal = new FSHLog(fs, rootDir, logName + "-reopen", conf);
+    // the loaded files are told to the secondary replicas and the replication
+    AtomicInteger bulkLoadMarkers = new AtomicInteger();
+    wal.registerWALActionsListener(new WALActionsListener() {
+      @Override
+      public void visitLogEntryBeforeWrite(WALKey logKey, WALEdit logEdit) throws IOException {
+        for (Cell cell : logEdit.getCells()) {
+          if (WALEdit.getBulkLoadDescriptor(cell) != null) {
+            assertEquals(FAMILIES.length,
+              WALEdit.getBulkLoadDescriptor(cell).getStoresCount());
+            bulkLoadMarkers.incrementAndGet();
+          }
+        }
+      }
+    });
+    HRegion region = HRegion.openHRegion(conf, fs, rootDir, ri, td, wal);
+    try {
+      assertEquals(1, bulkLoadMarkers.get());
+      for (int i = 0; i < ROWS; i++) {
+        Result result = region.get(new Get(Bytes.toBytes(i)));
+        int expected = i % 10 == 0 ? -i : i;
+        assertArrayEquals(Bytes.toBytes(expected), result.getValue(FAMILIES[0], QUALIFIER));
+        assertArrayEquals(Bytes.toBytes(i), result.getValue(FAMILIES[1], QUALIFIER));
+      }
+      for (byte[] family : FAMILIES) {
+        assertTrue(region.getStore(family).getStorefilesCount() > 0);
+        assertFalse(
+          fs.exists(WALSplitter.getRecoveredHFilesDir(regionDir, Bytes.toString(family))));
+      }
+      assertEquals(0, region.getMemStoreSize());
+    } finally {
+      region.close();
+      wal.close();
+    }
+  }
+
+  @Test
+  public void testSplitToHFiles() throws Exception {
+    TableDescriptor td = createTable();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    writeAndCrash(td, ri);
+    WALSplitter.split(rootDir, logDir, oldLogDir, fs, conf, wals);
+    assertTrue(WALSplitter.getSplitEditFilesSorted(fs, getRegionDir(td, ri)).isEmpty());
+    verifyRegion(td, ri);
+  }
+
+  @Test
+  public void testSplitToHFilesInChunks() throws Exception {
+    // every entry buffer is written out while the WAL is still being read
+    conf.setLong(WALSplitter.WAL_SPLIT_TO_HFILE_CHUNK_SIZE, 1);
+    TableDescriptor td = createTable();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    writeAndCrash(td, ri);
+    WALSplitter.split(rootDir, logDir, oldLogDir, fs, conf, wals);
+    assertTrue(WALSplitter.getSplitEditFilesSorted(fs, getRegionDir(td, ri)).isEmpty());
+    verifyRegion(td, ri);
+  }
+
+  @Test
+  public void testCompactionMarkerReplayed() throws Exception {
+    TableDescriptor td = createTable();
+    RegionInfo ri = RegionInfoBuilder.newBuilder(td.getTableName()).build();
+    FSHLog wal = new FSHLog(fs, rootDir, logName, conf);
+    HRegion region = HRegion.createHRegion(ri, rootDir, conf, td, wal, true);
+    HStore store = region.getStore(FAMILIES[0]);
+    for (int i = ROWS; i < ROWS + 2; i++) {
+      region.put(new Put(Bytes.toBytes(i)).addColumn(FAMILIES[0], QUALIFIER, Bytes.toBytes(i)));
+      region.flush(true);
+    }
+    List<Path> inputs =
+        store.getStorefiles().stream().map(HStoreFile::getPath).collect(Collectors.toList());
+    assertEquals(2, inputs.size());
+    region.compact(true);
+    assertEquals(1, store.getStorefilesCount());
+    writeAndCrash(region, wal);
+    // the inputs are back in the store, as if the server died before it archived them
+    Path archiveDir = HFileArchiveUtil.getStoreArchivePath(conf, ri, FAMILIES[0]);
+    for (Path input : inputs) {
+      if (!fs.exists(input)) {
+        assertTrue(fs.rename(new Path(archiveDir, input.getName()), input));
+      }
+    }
+
+    WALSplitter.split(rootDir, logDir, oldLogDir, fs, conf, wals);
+    // the compaction marker goes to recovered edits
+    assertFalse(WALSplitter.getSplitEditFilesSorted(fs, getRegionDir(td, ri)).isEmpty());
+    verifyRegion(td, ri);
+    for (Path input : inputs) {
+      assertFalse(fs.exists(input));
+      assertTrue(fs.exists(new Path(archiveDir, input.getName())));
+    }
+  }
+}